@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.core.patch;
 
 import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.LookupVocabulary;
 import eu.neverblink.jelly.core.ProtoEncoderConverter;
 import eu.neverblink.jelly.core.RdfBufferAppender;
 import eu.neverblink.jelly.core.internal.EncoderBase;
@@ -33,12 +34,27 @@ public abstract class PatchEncoder<TNode>
      *                            this buffer. The caller is responsible for managing this buffer and grouping
      *                            the rows in RdfPatchFrames.
      * @param allocator allocator for proto class instances. Obtain it from {@link EncoderAllocator}.
+     * @param vocabulary vocabulary to warm up the lookups with, emitted right after the options row.
+     *                   See {@link LookupVocabulary}. Default: null (no vocabulary).
      */
     public record Params(
         RdfPatchOptions options,
         MessageCollection<RdfPatchRow, RdfPatchRow.Mutable> rowBuffer,
-        EncoderAllocator allocator
+        EncoderAllocator allocator,
+        LookupVocabulary vocabulary
     ) {
+        /**
+         * Creates a new Params instance, without a vocabulary.
+         * Kept for compatibility with code written before the vocabulary field was added.
+         */
+        public Params(
+            RdfPatchOptions options,
+            MessageCollection<RdfPatchRow, RdfPatchRow.Mutable> rowBuffer,
+            EncoderAllocator allocator
+        ) {
+            this(options, rowBuffer, allocator, null);
+        }
+
         /**
          * Creates a new Params instance.
          */
@@ -49,6 +65,10 @@ public abstract class PatchEncoder<TNode>
         ) {
             return new Params(options, rowBuffer, allocator);
         }
+
+        public Params withVocabulary(LookupVocabulary vocabulary) {
+            return new Params(options, rowBuffer, allocator, vocabulary);
+        }
     }
 
     protected final RdfPatchOptions options;
@@ -57,6 +77,8 @@ public abstract class PatchEncoder<TNode>
 
     protected final EncoderAllocator allocator;
 
+    protected final LookupVocabulary vocabulary;
+
     /**
      * Creates a new PatchEncoder instance.
      * @param converter converter for the RDF nodes
@@ -71,6 +93,7 @@ public abstract class PatchEncoder<TNode>
                 .setVersion(JellyPatchConstants.PROTO_VERSION_1_0_X);
         this.rowBuffer = params.rowBuffer;
         this.allocator = params.allocator;
+        this.vocabulary = params.vocabulary;
     }
 
     @Override
@@ -168,5 +168,6 @@ public final class PatchEncoderImpl<TNode> extends PatchEncoder<TNode> {
 
         hasEmittedOptions = true;
         rowBuffer.appendMessage().setOptions(options).getSerializedSize();
+        preloadVocabulary(vocabulary);
     }
 }
@@ -1,7 +1,8 @@
 package eu.neverblink.jelly.core.patch
 
 import eu.neverblink.jelly.core.patch.helpers.MockPatchConverterFactory
-import eu.neverblink.jelly.core.RdfProtoSerializationError
+import eu.neverblink.jelly.core.{LookupVocabulary, RdfProtoSerializationError}
+import eu.neverblink.jelly.core.helpers.RdfAdapter.*
 import eu.neverblink.jelly.core.proto.v1.*
 import eu.neverblink.jelly.core.proto.v1.patch.*
 import org.scalatest.matchers.should.Matchers
@@ -107,6 +108,35 @@ class PatchEncoderSpec extends AnyWordSpec, Matchers:
       }
     }
 
+    "emit the lookup entries of the vocabulary right after the options" in {
+      val buffer = getBuffer
+      val encoder = MockPatchConverterFactory.encoder(
+        Pep(
+          JellyPatchOptions.SMALL_STRICT.clone
+            .setStatementType(PatchStatementType.TRIPLES)
+            .setStreamType(PatchStreamType.PUNCTUATED),
+          buffer,
+          EncoderAllocator.newHeapAllocator(),
+        ).withVocabulary(
+          LookupVocabulary(
+            Seq("https://test.org/test/").asJava,
+            Seq("https://test.org/ns2/object").asJava,
+          ),
+        ),
+      )
+      encoder.punctuation()
+      assertEncoded(
+        buffer.asScala.toSeq,
+        Seq(
+          rdfPatchRow(encoder.options),
+          rdfPatchRow(rdfPrefixEntry(0, "https://test.org/test/")),
+          rdfPatchRow(rdfPrefixEntry(0, "https://test.org/ns2/")),
+          rdfPatchRow(rdfNameEntry(0, "object")),
+          rdfPatchRow(rdfPatchPunctuation()),
+        ),
+      )
+    }
+
     "clone the provided options and override the version" in {
       val options = JellyPatchOptions.SMALL_GENERALIZED
         .clone
@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.core.sparql;
 
 import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.LookupVocabulary;
 import eu.neverblink.jelly.core.ProtoEncoderConverter;
 import eu.neverblink.jelly.core.RdfBufferAppender;
 import eu.neverblink.jelly.core.internal.NodeEncoderImpl;
@@ -25,18 +26,33 @@ public abstract class SparqlEncoder<TNode> implements RdfBufferAppender<TNode> {
      * Parameters passed to the Jelly-SPARQL encoder.
      *
      * @param options options for this result stream
+     * @param vocabulary vocabulary to warm up the lookups with, sent in the first frame.
+     *                   See {@link LookupVocabulary}. Default: null (no vocabulary).
      */
-    public record Params(SparqlResultsOptions options) {
+    public record Params(SparqlResultsOptions options, LookupVocabulary vocabulary) {
+        /**
+         * Creates a new Params instance, without a vocabulary.
+         * Kept for compatibility with code written before the vocabulary field was added.
+         */
+        public Params(SparqlResultsOptions options) {
+            this(options, null);
+        }
+
         /**
          * Creates a new Params instance.
          */
         public static Params of(SparqlResultsOptions options) {
             return new Params(options);
         }
+
+        public Params withVocabulary(LookupVocabulary vocabulary) {
+            return new Params(options, vocabulary);
+        }
     }
 
     protected final ProtoEncoderConverter<TNode> converter;
     protected final SparqlResultsOptions options;
+    protected final LookupVocabulary vocabulary;
     private final NodeEncoderImpl<TNode> lookupEncoder;
 
     /**
@@ -53,6 +69,7 @@ public abstract class SparqlEncoder<TNode> implements RdfBufferAppender<TNode> {
                 .clone()
                 // Override the user's version setting with what is really supported by the encoder.
                 .setVersion(JellySparqlConstants.PROTO_VERSION);
+        this.vocabulary = params.vocabulary();
         // Safe to pass `this` here: the node encoder only stores `this` as the receiver of the
         // lookup entries it emits later, during encoding.
         this.lookupEncoder = NodeEncoderImpl.create(
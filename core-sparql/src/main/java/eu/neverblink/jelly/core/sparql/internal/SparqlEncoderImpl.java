@@ -2,6 +2,7 @@ package eu.neverblink.jelly.core.sparql.internal;
 
 import eu.neverblink.jelly.core.ExperimentalApi;
 import eu.neverblink.jelly.core.InternalApi;
+import eu.neverblink.jelly.core.LookupVocabulary;
 import eu.neverblink.jelly.core.NodeEncoder;
 import eu.neverblink.jelly.core.ProtoEncoderConverter;
 import eu.neverblink.jelly.core.RdfProtoSerializationError;
@@ -418,6 +419,31 @@ public final class SparqlEncoderImpl<TNode> extends SparqlEncoder<TNode> impleme
             columns[i] = new ColumnState();
         }
         resetUsedIds();
+        preloadVocabulary();
+    }
+
+    /**
+     * Puts the vocabulary in the lookups, so that its entries go out with the first frame. It may
+     * take at most half of each table's per-frame budget, leaving the rest for the rows of the
+     * first frame, as no entry can be evicted within the frame that added it.
+     */
+    private void preloadVocabulary() {
+        if (vocabulary == null) {
+            return;
+        }
+        final int nameRoom = (int) Math.max(0, usedIdsBudget(options.getMaxNameTableSize(), columns.length) / 2);
+        final int prefixRoom = options.getMaxPrefixTableSize() == 0
+            ? Integer.MAX_VALUE
+            : (int) Math.max(0, usedIdsBudget(options.getMaxPrefixTableSize(), columns.length) / 2);
+        // Every IRI may add a prefix as well
+        final int maxIris = Math.min(vocabulary.iris().size(), Math.min(nameRoom, prefixRoom));
+        final int maxPrefixes = Math.min(vocabulary.prefixes().size(), prefixRoom - maxIris);
+        getLookupEncoder().preloadVocabulary(
+            new LookupVocabulary(
+                vocabulary.prefixes().subList(0, maxPrefixes),
+                vocabulary.iris().subList(0, maxIris)
+            )
+        );
     }
 
     /** Clears the used-ids bits and puts each remaining-budget counter back at its budget. */
@@ -1,9 +1,14 @@
 package eu.neverblink.jelly.core.sparql
 
 import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.proto.v1.RdfLookupEntryPacked
 import eu.neverblink.jelly.core.proto.v1.sparql.*
 import eu.neverblink.jelly.core.sparql.helpers.{MockSparqlConverterFactory, ResultsCollector}
-import eu.neverblink.jelly.core.{RdfProtoDeserializationError, RdfProtoSerializationError}
+import eu.neverblink.jelly.core.{
+  LookupVocabulary,
+  RdfProtoDeserializationError,
+  RdfProtoSerializationError,
+}
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
@@ -25,8 +30,11 @@ class SparqlRoundTripSpec extends AnyWordSpec, Matchers:
       vars: Seq[String],
       frames: Seq[Seq[Seq[Node | Null]]],
       options: SparqlResultsOptions = JellySparqlOptions.SMALL,
+      vocabulary: LookupVocabulary = null,
   ): (ResultsCollector, Seq[SparqlResultsFrame]) =
-    val encoder = MockSparqlConverterFactory.encoder(SparqlEncoder.Params.of(options))
+    val encoder = MockSparqlConverterFactory.encoder(
+      SparqlEncoder.Params.of(options).withVocabulary(vocabulary),
+    )
     encoder.setVariables(vars.asJava)
     val collector = ResultsCollector()
     val decoder =
@@ -340,6 +348,34 @@ class SparqlRoundTripSpec extends AnyWordSpec, Matchers:
       assertResults(collector, Seq("a", "b"), rows)
     }
 
+    "round-trip a result set encoded with a vocabulary" in {
+      val vocabulary = LookupVocabulary(
+        Seq("https://other.org/").asJava,
+        (1 to 3).map(i => iri(i).iri).asJava,
+      )
+      val rows = Seq(
+        Seq(iri(1), iri(2)),
+        Seq(iri(4), Iri("https://other.org/x")),
+      )
+      val (collector, frames) = roundTrip(Seq("s", "o"), Seq(rows, rows), vocabulary = vocabulary)
+      assertResults(collector, Seq("s", "o"), rows ++ rows)
+      def values(entries: Iterable[RdfLookupEntryPacked]) =
+        entries.toSeq.flatMap(e => (0 until e.getValues.size).map(e.getValues.get))
+      // The vocabulary goes out with the first frame, before the entries of its rows
+      values(frames.head.getPrefixes.asScala) shouldBe
+        Seq("https://other.org/", "https://test.org/ns#")
+      values(frames.head.getNames.asScala) shouldBe Seq("term1", "term2", "term3", "term4", "x")
+      values(frames(1).getNames.asScala) shouldBe empty
+    }
+
+    "leave room in the first frame when the vocabulary is larger than the lookups" in {
+      val vocabulary = LookupVocabulary.ofIris((1 to 1000).map(i => iri(i).iri).asJava)
+      val rows = Seq(Seq(Iri("https://a.org/x1"), Iri("https://b.org/x2")))
+      val (collector, frames) = roundTrip(Seq("s", "o"), Seq(rows), vocabulary = vocabulary)
+      assertResults(collector, Seq("s", "o"), rows)
+      frames.head.getRowCount shouldBe 1
+    }
+
     "throw when appending rows before setting variables" in {
       val encoder =
         MockSparqlConverterFactory.encoder(SparqlEncoder.Params.of(JellySparqlOptions.SMALL))
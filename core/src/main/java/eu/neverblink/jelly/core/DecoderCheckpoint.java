@@ -0,0 +1,318 @@
+package eu.neverblink.jelly.core;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+
+/**
+ * Snapshot of the state of a {@link ProtoDecoder} between two frames of a stream: the stream options,
+ * the contents of the prefix, name, and datatype lookups, the references used to infer omitted
+ * lookup ids, and the terms used to infer repeated terms.
+ * <p>
+ * Restoring a checkpoint with {@link ProtoDecoder#restoreCheckpoint(DecoderCheckpoint)} lets a fresh decoder
+ * continue decoding the stream from the frame at which the checkpoint was taken, without decoding the
+ * previous frames. The terms are stored independently of any RDF library, so a checkpoint taken with one
+ * library can be restored in another.
+ * <p>
+ * Checkpoints are created by {@link eu.neverblink.jelly.core.utils.FrameIndexer}.
+ *
+ * @param options options of the stream, or null if the checkpoint was taken at the start of the stream
+ * @param prefixes state of the prefix lookup
+ * @param names state of the name lookup
+ * @param datatypes state of the datatype lookup
+ * @param lastPrefixIdReference last prefix id used in an IRI (0 if none)
+ * @param lastNameIdReference last name id used in an IRI (0 if none)
+ * @param lastSubject last subject term, or null
+ * @param lastPredicate last predicate term, or null
+ * @param lastObject last object term, or null
+ * @param lastGraph last graph term, or null
+ * @param currentGraph graph that was started and not yet ended in a GRAPHS stream, or null
+ */
+@ExperimentalApi
+public record DecoderCheckpoint(
+    RdfStreamOptions options,
+    Lookup prefixes,
+    Lookup names,
+    Lookup datatypes,
+    int lastPrefixIdReference,
+    int lastNameIdReference,
+    Term lastSubject,
+    Term lastPredicate,
+    Term lastObject,
+    Term lastGraph,
+    Term currentGraph
+) {
+    /**
+     * Checkpoint at the start of a stream. Restoring it is a no-op.
+     */
+    public static final DecoderCheckpoint EMPTY = new DecoderCheckpoint(
+        null,
+        Lookup.EMPTY,
+        Lookup.EMPTY,
+        Lookup.EMPTY,
+        0,
+        0,
+        null,
+        null,
+        null,
+        null,
+        null
+    );
+
+    /**
+     * State of a lookup table.
+     *
+     * @param values values of the entries, where values[i] is the entry with id i + 1. Unset entries are null.
+     * @param lastSetId id of the last set entry (0 if none), used to infer omitted ids of new entries
+     */
+    public record Lookup(String[] values, int lastSetId) {
+        public static final Lookup EMPTY = new Lookup(new String[0], 0);
+    }
+
+    /**
+     * RDF term, independent of any RDF library.
+     */
+    public sealed interface Term {}
+
+    public record Iri(String iri) implements Term {}
+
+    public record BlankNode(String label) implements Term {}
+
+    /**
+     * Literal. At most one of langtag and datatype is non-null.
+     */
+    public record Literal(String lex, String langtag, String datatype) implements Term {}
+
+    public record QuotedTriple(Term subject, Term predicate, Term object) implements Term {}
+
+    public record DefaultGraph() implements Term {}
+
+    /**
+     * Converter that decodes the stream into library-independent terms. Used to track the state of
+     * the stream, when taking checkpoints.
+     */
+    public static final ProtoDecoderConverter<Term, String> TERM_CONVERTER = new ProtoDecoderConverter<>() {
+        private final DefaultGraph defaultGraph = new DefaultGraph();
+
+        @Override
+        public Term makeSimpleLiteral(String lex) {
+            return new Literal(lex, null, null);
+        }
+
+        @Override
+        public Term makeLangLiteral(String lex, String lang) {
+            return new Literal(lex, lang, null);
+        }
+
+        @Override
+        public Term makeDtLiteral(String lex, String dt) {
+            return new Literal(lex, null, dt);
+        }
+
+        @Override
+        public String makeDatatype(String dt) {
+            return dt;
+        }
+
+        @Override
+        public Term makeBlankNode(String label) {
+            return new BlankNode(label);
+        }
+
+        @Override
+        public Term makeIriNode(String iri) {
+            return new Iri(iri);
+        }
+
+        @Override
+        public Term makeTripleNode(Term s, Term p, Term o) {
+            return new QuotedTriple(s, p, o);
+        }
+
+        @Override
+        public Term makeDefaultGraphNode() {
+            return defaultGraph;
+        }
+    };
+
+    /**
+     * Converts a term to a node of an RDF library.
+     *
+     * @param term term to convert, may be null
+     * @param converter converter of the RDF library
+     * @return converted node, or null if the term is null
+     * @param <TNode> type of RDF nodes in the library
+     * @param <TDatatype> type of the datatype in the library
+     */
+    public static <TNode, TDatatype> TNode toNode(Term term, ProtoDecoderConverter<TNode, TDatatype> converter) {
+        if (term == null) {
+            return null;
+        } else if (term instanceof Iri iri) {
+            return converter.makeIriNode(iri.iri());
+        } else if (term instanceof BlankNode bnode) {
+            return converter.makeBlankNode(bnode.label());
+        } else if (term instanceof Literal literal) {
+            if (literal.langtag() != null) {
+                return converter.makeLangLiteral(literal.lex(), literal.langtag());
+            } else if (literal.datatype() != null) {
+                return converter.makeDtLiteral(literal.lex(), converter.makeDatatype(literal.datatype()));
+            }
+            return converter.makeSimpleLiteral(literal.lex());
+        } else if (term instanceof QuotedTriple triple) {
+            return converter.makeTripleNode(
+                toNode(triple.subject(), converter),
+                toNode(triple.predicate(), converter),
+                toNode(triple.object(), converter)
+            );
+        }
+        return converter.makeDefaultGraphNode();
+    }
+
+    // Tags of the terms in the serialized form
+    private static final int TAG_NULL = 0;
+    private static final int TAG_IRI = 1;
+    private static final int TAG_BLANK_NODE = 2;
+    private static final int TAG_SIMPLE_LITERAL = 3;
+    private static final int TAG_LANG_LITERAL = 4;
+    private static final int TAG_DT_LITERAL = 5;
+    private static final int TAG_QUOTED_TRIPLE = 6;
+    private static final int TAG_DEFAULT_GRAPH = 7;
+
+    /**
+     * Serializes the checkpoint. The format is compact and private to Jelly-JVM – use
+     * {@link #parseFrom(CodedInputStream)} to read it back.
+     *
+     * @param output output to write to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(CodedOutputStream output) throws IOException {
+        if (options == null) {
+            output.writeBoolNoTag(false);
+        } else {
+            output.writeBoolNoTag(true);
+            output.writeByteArrayNoTag(options.toByteArray());
+        }
+        writeLookup(output, prefixes);
+        writeLookup(output, names);
+        writeLookup(output, datatypes);
+        output.writeUInt32NoTag(lastPrefixIdReference);
+        output.writeUInt32NoTag(lastNameIdReference);
+        writeTerm(output, lastSubject);
+        writeTerm(output, lastPredicate);
+        writeTerm(output, lastObject);
+        writeTerm(output, lastGraph);
+        writeTerm(output, currentGraph);
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #writeTo(CodedOutputStream)}.
+     *
+     * @param input input to read from
+     * @return checkpoint
+     * @throws IOException if an I/O error occurs or the checkpoint is malformed
+     */
+    public static DecoderCheckpoint parseFrom(CodedInputStream input) throws IOException {
+        final RdfStreamOptions options = input.readBool()
+            ? ProtoMessage.mergeFrom(RdfStreamOptions.newInstance(), input.readByteArray())
+            : null;
+        return new DecoderCheckpoint(
+            options,
+            readLookup(input),
+            readLookup(input),
+            readLookup(input),
+            input.readUInt32(),
+            input.readUInt32(),
+            readTerm(input),
+            readTerm(input),
+            readTerm(input),
+            readTerm(input),
+            readTerm(input)
+        );
+    }
+
+    private static void writeLookup(CodedOutputStream output, Lookup lookup) throws IOException {
+        output.writeUInt32NoTag(lookup.values().length);
+        output.writeUInt32NoTag(lookup.lastSetId());
+        int setEntries = 0;
+        for (final String value : lookup.values()) {
+            if (value != null) {
+                setEntries++;
+            }
+        }
+        output.writeUInt32NoTag(setEntries);
+        for (int i = 0; i < lookup.values().length; i++) {
+            if (lookup.values()[i] != null) {
+                output.writeUInt32NoTag(i);
+                output.writeStringNoTag(lookup.values()[i]);
+            }
+        }
+    }
+
+    private static Lookup readLookup(CodedInputStream input) throws IOException {
+        final int size = input.readUInt32();
+        final int lastSetId = input.readUInt32();
+        final int setEntries = input.readUInt32();
+        if (size < 0 || setEntries < 0 || setEntries > size || lastSetId > size) {
+            throw new InvalidProtocolBufferException("Malformed lookup in a decoder checkpoint.");
+        }
+        final var values = new String[size];
+        for (int i = 0; i < setEntries; i++) {
+            final int index = input.readUInt32();
+            if (index < 0 || index >= size) {
+                throw new InvalidProtocolBufferException("Malformed lookup in a decoder checkpoint.");
+            }
+            values[index] = input.readString();
+        }
+        return new Lookup(values, lastSetId);
+    }
+
+    private static void writeTerm(CodedOutputStream output, Term term) throws IOException {
+        if (term == null) {
+            output.writeUInt32NoTag(TAG_NULL);
+        } else if (term instanceof Iri iri) {
+            output.writeUInt32NoTag(TAG_IRI);
+            output.writeStringNoTag(iri.iri());
+        } else if (term instanceof BlankNode bnode) {
+            output.writeUInt32NoTag(TAG_BLANK_NODE);
+            output.writeStringNoTag(bnode.label());
+        } else if (term instanceof Literal literal) {
+            if (literal.langtag() != null) {
+                output.writeUInt32NoTag(TAG_LANG_LITERAL);
+                output.writeStringNoTag(literal.lex());
+                output.writeStringNoTag(literal.langtag());
+            } else if (literal.datatype() != null) {
+                output.writeUInt32NoTag(TAG_DT_LITERAL);
+                output.writeStringNoTag(literal.lex());
+                output.writeStringNoTag(literal.datatype());
+            } else {
+                output.writeUInt32NoTag(TAG_SIMPLE_LITERAL);
+                output.writeStringNoTag(literal.lex());
+            }
+        } else if (term instanceof QuotedTriple triple) {
+            output.writeUInt32NoTag(TAG_QUOTED_TRIPLE);
+            writeTerm(output, triple.subject());
+            writeTerm(output, triple.predicate());
+            writeTerm(output, triple.object());
+        } else {
+            output.writeUInt32NoTag(TAG_DEFAULT_GRAPH);
+        }
+    }
+
+    private static Term readTerm(CodedInputStream input) throws IOException {
+        final int tag = input.readUInt32();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_IRI -> new Iri(input.readString());
+            case TAG_BLANK_NODE -> new BlankNode(input.readString());
+            case TAG_SIMPLE_LITERAL -> new Literal(input.readString(), null, null);
+            case TAG_LANG_LITERAL -> new Literal(input.readString(), input.readString(), null);
+            case TAG_DT_LITERAL -> new Literal(input.readString(), null, input.readString());
+            case TAG_QUOTED_TRIPLE -> new QuotedTriple(readTerm(input), readTerm(input), readTerm(input));
+            case TAG_DEFAULT_GRAPH -> TERM_CONVERTER.makeDefaultGraphNode();
+            default -> throw new InvalidProtocolBufferException("Unknown term tag in a decoder checkpoint: " + tag);
+        };
+    }
+}
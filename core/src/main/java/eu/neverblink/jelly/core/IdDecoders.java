@@ -0,0 +1,83 @@
+package eu.neverblink.jelly.core;
+
+import eu.neverblink.jelly.core.internal.ProtoDecoderImpl;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+
+/**
+ * Factory methods for decoders that decode the statements into {@link IdTerm}s instead of the nodes of an
+ * RDF library. IRIs are not built at all, which makes these decoders much faster for jobs that only count,
+ * filter, or deduplicate the statements.
+ * <p>
+ * The decoders resolve the lookups, the inferred ids, and the repeated terms exactly like the regular ones.
+ * They do not support checkpoints.
+ */
+@ExperimentalApi
+public final class IdDecoders {
+
+    private IdDecoders() {}
+
+    /**
+     * Create a new TriplesDecoder that decodes to id terms.
+     * @param tripleHandler the handler to use for decoding triples
+     * @param supportedOptions maximum supported options for the decoder
+     * @return decoder
+     */
+    public static ProtoDecoder<IdTerm, String> triplesDecoder(
+        RdfHandler.TripleHandler<IdTerm> tripleHandler,
+        RdfStreamOptions supportedOptions
+    ) {
+        return new ProtoDecoderImpl.TriplesDecoder<>(IdTerm.CONVERTER, tripleHandler, supportedOptions);
+    }
+
+    /**
+     * Create a new QuadsDecoder that decodes to id terms.
+     * @param quadHandler the handler to use for decoding quads
+     * @param supportedOptions maximum supported options for the decoder
+     * @return decoder
+     */
+    public static ProtoDecoder<IdTerm, String> quadsDecoder(
+        RdfHandler.QuadHandler<IdTerm> quadHandler,
+        RdfStreamOptions supportedOptions
+    ) {
+        return new ProtoDecoderImpl.QuadsDecoder<>(IdTerm.CONVERTER, quadHandler, supportedOptions);
+    }
+
+    /**
+     * Create a new GraphsAsQuadsDecoder that decodes to id terms.
+     * @param graphHandler the handler to use for decoding graphs
+     * @param supportedOptions maximum supported options for the decoder
+     * @return decoder
+     */
+    public static ProtoDecoder<IdTerm, String> graphsAsQuadsDecoder(
+        RdfHandler.QuadHandler<IdTerm> graphHandler,
+        RdfStreamOptions supportedOptions
+    ) {
+        return new ProtoDecoderImpl.GraphsAsQuadsDecoder<>(IdTerm.CONVERTER, graphHandler, supportedOptions);
+    }
+
+    /**
+     * Create a new GraphsDecoder that decodes to id terms.
+     * @param graphHandler the handler to use for decoding graphs
+     * @param supportedOptions maximum supported options for the decoder
+     * @return decoder
+     */
+    public static ProtoDecoder<IdTerm, String> graphsDecoder(
+        RdfHandler.GraphHandler<IdTerm> graphHandler,
+        RdfStreamOptions supportedOptions
+    ) {
+        return new ProtoDecoderImpl.GraphsDecoder<>(IdTerm.CONVERTER, graphHandler, supportedOptions);
+    }
+
+    /**
+     * Create a new AnyStatementDecoder that decodes to id terms.
+     * @param anyStatementHandler the handler to use for decoding any statements
+     * @param supportedOptions maximum supported options for the decoder
+     * @return decoder
+     */
+    public static ProtoDecoder<IdTerm, String> anyStatementDecoder(
+        RdfHandler.AnyStatementHandler<IdTerm> anyStatementHandler,
+        RdfStreamOptions supportedOptions
+    ) {
+        return new ProtoDecoderImpl.AnyStatementDecoder<>(IdTerm.CONVERTER, anyStatementHandler, supportedOptions);
+    }
+}
@@ -0,0 +1,97 @@
+package eu.neverblink.jelly.core;
+
+import eu.neverblink.jelly.core.internal.IdNameDecoder;
+
+/**
+ * RDF term decoded only down to the lookup ids of the stream, for jobs that count, filter, or deduplicate
+ * statements and do not need the nodes of an RDF library. See {@link IdDecoders}.
+ * <p>
+ * IRIs are not built from their prefix and name – they are the resolved lookup ids, with the inferred
+ * (0-compressed) ids already filled in. Literals and blank nodes keep the strings parsed from the stream.
+ */
+@ExperimentalApi
+public sealed interface IdTerm {
+    /**
+     * IRI, as the entries of the prefix and name lookups it was made from.
+     * <p>
+     * The encoder reuses the lookup entries for other values when the lookups are full, so the ids alone
+     * may stand for different IRIs in different parts of the stream. Each entry is therefore paired with its
+     * serial – the number of times the entry was set. Two equal Iri records in one stream are always the
+     * same IRI. The same IRI may still come with different ids, if the encoder evicted it and added it
+     * again.
+     *
+     * @param prefixId id of the prefix entry, or 0 if the IRI has no prefix
+     * @param prefixSerial serial of the prefix entry, or 0 if the IRI has no prefix
+     * @param nameId id of the name entry
+     * @param nameSerial serial of the name entry
+     */
+    record Iri(int prefixId, int prefixSerial, int nameId, int nameSerial) implements IdTerm {}
+
+    record BlankNode(String label) implements IdTerm {}
+
+    /**
+     * Literal. At most one of langtag and datatype is non-null.
+     */
+    record Literal(String lex, String langtag, String datatype) implements IdTerm {}
+
+    record QuotedTriple(IdTerm subject, IdTerm predicate, IdTerm object) implements IdTerm {}
+
+    record DefaultGraph() implements IdTerm {}
+
+    /**
+     * Converter that decodes the stream into id terms. The datatypes are their IRIs.
+     */
+    ProtoDecoderConverter<IdTerm, String> CONVERTER = new ProtoDecoderConverter<>() {
+        private final DefaultGraph defaultGraph = new DefaultGraph();
+
+        @Override
+        public IdTerm makeSimpleLiteral(String lex) {
+            return new Literal(lex, null, null);
+        }
+
+        @Override
+        public IdTerm makeLangLiteral(String lex, String lang) {
+            return new Literal(lex, lang, null);
+        }
+
+        @Override
+        public IdTerm makeDtLiteral(String lex, String dt) {
+            return new Literal(lex, null, dt);
+        }
+
+        @Override
+        public String makeDatatype(String dt) {
+            return dt;
+        }
+
+        @Override
+        public IdTerm makeBlankNode(String label) {
+            return new BlankNode(label);
+        }
+
+        @Override
+        public IdTerm makeIriNode(String iri) {
+            throw new UnsupportedOperationException("IRIs are decoded to lookup ids, not from their strings.");
+        }
+
+        @Override
+        public IdTerm makeTripleNode(IdTerm s, IdTerm p, IdTerm o) {
+            return new QuotedTriple(s, p, o);
+        }
+
+        @Override
+        public IdTerm makeDefaultGraphNode() {
+            return defaultGraph;
+        }
+
+        @Override
+        public NameDecoder<IdTerm> makeNameDecoder(int prefixTableSize, int nameTableSize) {
+            return new IdNameDecoder(prefixTableSize, nameTableSize);
+        }
+
+        @Override
+        public boolean decodesIrisFromStrings() {
+            return false;
+        }
+    };
+}
@@ -0,0 +1,87 @@
+package eu.neverblink.jelly.core;
+
+import eu.neverblink.jelly.core.utils.AdaptiveIriSplitter;
+
+/**
+ * Strategy for splitting IRIs into a prefix and a name, used by the encoder when the prefix table is enabled.
+ * The prefix goes into the prefix table and the rest of the IRI into the name table.
+ * <p>
+ * The split only affects how well the stream compresses – the decoder simply concatenates the prefix and the
+ * name, so any strategy produces a valid stream. A good strategy puts the part of the IRI shared by many IRIs
+ * in the prefix, and the part that varies in the name. If every IRI gets its own prefix, the prefix table
+ * thrashes.
+ * <p>
+ * Pass the strategy to the encoder with {@link ProtoEncoder.Params#withIriSplitter}. The built-in strategies
+ * are stateless and can be shared. {@link AdaptiveIriSplitter} is stateful and must not be shared between
+ * encoders.
+ */
+@ExperimentalApi
+@FunctionalInterface
+public interface IriSplitter {
+    /**
+     * The default strategy: splits after the first '#' past the scheme, or else after the last '/'.
+     * Works well for hash and slash namespaces, like most RDF vocabularies.
+     */
+    IriSplitter DEFAULT = IriSplitter::defaultPrefixLength;
+
+    /**
+     * Splits after the last ':', '/', or '#'. Suited to URN-style IRIs, like {@code urn:x:sensor:1234:obs:5678},
+     * which the default strategy would not split at all.
+     */
+    IriSplitter COLON = atLastOf(":/#");
+
+    /**
+     * Splits IRIs with a query string after the first '=' in it, or after the '?' if the query has no '='.
+     * For example, {@code https://host/api?id=123&x=5} has the prefix {@code https://host/api?id=}. IRIs without
+     * a query string are split with the default strategy.
+     */
+    IriSplitter QUERY = iri -> {
+        final int query = iri.indexOf('?');
+        if (query == -1) {
+            return defaultPrefixLength(iri);
+        }
+        final int equals = iri.indexOf('=', query);
+        return (equals == -1 ? query : equals) + 1;
+    };
+
+    /**
+     * Returns the length of the prefix of the IRI. The rest of the IRI is the name.
+     * @param iri the IRI to split
+     * @return length of the prefix, between 0 (no prefix) and the length of the IRI (empty name)
+     */
+    int prefixLength(String iri);
+
+    /**
+     * Creates a strategy that splits after the last occurrence of any of the given characters. IRIs without
+     * any of them get an empty prefix.
+     * @param separators characters to split after
+     * @return strategy
+     */
+    static IriSplitter atLastOf(String separators) {
+        final char[] chars = separators.toCharArray();
+        return iri -> {
+            for (int i = iri.length() - 1; i >= 0; i--) {
+                final char c = iri.charAt(i);
+                for (final char separator : chars) {
+                    if (c == separator) {
+                        return i + 1;
+                    }
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Length of the prefix in the default strategy, see {@link #DEFAULT}.
+     * @param iri the IRI to split
+     * @return length of the prefix
+     */
+    static int defaultPrefixLength(String iri) {
+        int i = iri.indexOf('#', 8);
+        if (i == -1) {
+            i = iri.lastIndexOf('/');
+        }
+        return i + 1;
+    }
+}
@@ -1,7 +1,9 @@
 package eu.neverblink.jelly.core;
 
+import eu.neverblink.jelly.core.internal.DirectProtoEncoderImpl;
 import eu.neverblink.jelly.core.internal.ProtoDecoderImpl;
 import eu.neverblink.jelly.core.internal.ProtoEncoderImpl;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 
 /**
@@ -42,6 +44,21 @@ public abstract class JellyConverterFactory<
         return new ProtoEncoderImpl<>(encoderConverter(), params);
     }
 
+    /**
+     * Create a new ProtoEncoder that writes the serialized rows directly into a byte buffer,
+     * without building intermediate RdfStreamRow objects. The output is the same as with
+     * {@link #encoder(ProtoEncoder.Params)}, but with much less allocation.
+     * <p>
+     * Use this if you only need the serialized frames (e.g., in writers). The row buffer and
+     * the allocator in the params are ignored and may be null.
+     * @param params Parameters for the encoder.
+     * @param frameBuffer Buffer to which the encoder will append the serialized rows.
+     * @return encoder
+     */
+    public final ProtoEncoder<TNode> directEncoder(ProtoEncoder.Params params, SerializedFrameBuffer frameBuffer) {
+        return new DirectProtoEncoderImpl<>(encoderConverter(), params, frameBuffer);
+    }
+
     /**
      * Create a new TriplesDecoder.
      * @param supportedOptions maximum supported options for the decoder. If not provided, this.defaultSupportedOptions
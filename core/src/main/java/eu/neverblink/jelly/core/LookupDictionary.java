@@ -0,0 +1,393 @@
+package eu.neverblink.jelly.core;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import eu.neverblink.jelly.core.internal.ProtoDecoderImpl;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import eu.neverblink.protoc.java.runtime.ProtobufUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of IRIs and datatypes shared in advance by the producer and the consumer of a stream.
+ * <p>
+ * When the encoder and the decoder are given the same dictionary, both pre-seed their prefix, name, and
+ * datatype lookups with its entries at the start of the stream. The encoder then does not emit the lookup
+ * entry rows for the IRIs and datatypes in the dictionary, which makes short streams over a fixed vocabulary
+ * much smaller. Use it for many short messages (e.g., sensor updates) that use the same few hundred IRIs.
+ * <p>
+ * A stream encoded with a dictionary can only be decoded with the same dictionary. The dictionary is
+ * identified by a hash of its contents ({@link #getId()}), which writers attach to the metadata of the first
+ * frame of the stream with {@link #tagFrame(RdfStreamFrame.Mutable)}. Decoders that ingest whole frames check
+ * it against their own dictionary, and consumers can also pick the dictionary with
+ * {@link #getFrameDictionaryId(RdfStreamFrame)}.
+ * <p>
+ * Build dictionaries from a sample corpus with {@link #newBuilder()}.
+ */
+@ExperimentalApi
+public final class LookupDictionary {
+
+    /**
+     * Key of the frame metadata entry holding the id of the dictionary used by the stream.
+     */
+    public static final String METADATA_KEY = "jelly.dictionary";
+
+    // "JDIC" in ASCII
+    private static final byte[] MAGIC = { 0x4A, 0x44, 0x49, 0x43 };
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Entries to pre-seed the lookups with, for given lookup sizes. Each entry gets the id equal to
+     * its position in the array + 1.
+     *
+     * @param prefixes entries of the prefix lookup
+     * @param names entries of the name lookup
+     * @param datatypes entries of the datatype lookup
+     */
+    public record Entries(String[] prefixes, String[] names, String[] datatypes) {}
+
+    private record SizedEntries(int prefixTableSize, int nameTableSize, int datatypeTableSize, Entries entries) {}
+
+    private final List<String> iris;
+    private final List<String> datatypes;
+    private final String id;
+
+    // Entries for the last requested table sizes. Streams usually reuse the same sizes, so this is
+    // enough to avoid splitting the IRIs again for every stream.
+    private volatile SizedEntries lastEntries = null;
+
+    /**
+     * Creates a new dictionary. The order of entries matters: if the lookups are smaller than the
+     * dictionary, only the first entries are used. Put the most frequent IRIs and datatypes first.
+     *
+     * @param iris full IRIs to put in the prefix and name lookups
+     * @param datatypes datatype IRIs to put in the datatype lookup
+     */
+    public LookupDictionary(List<String> iris, List<String> datatypes) {
+        this.iris = List.copyOf(iris);
+        this.datatypes = List.copyOf(datatypes);
+        this.id = computeId(this.iris, this.datatypes);
+    }
+
+    /**
+     * Returns the IRIs in the dictionary.
+     * @return IRIs
+     */
+    public List<String> getIris() {
+        return iris;
+    }
+
+    /**
+     * Returns the datatype IRIs in the dictionary.
+     * @return datatype IRIs
+     */
+    public List<String> getDatatypes() {
+        return datatypes;
+    }
+
+    /**
+     * Returns the id of the dictionary: a hex-encoded 64-bit hash of its contents.
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the entries to pre-seed the lookups with. The IRIs are split into prefixes and names with
+     * {@link IriSplitter#DEFAULT}, whatever splitter the encoder uses – the decoder does not know it.
+     * If the prefix lookup is disabled, the full IRIs go into the name lookup. Entries that do not fit
+     * in a lookup are skipped.
+     * <p>
+     * The encoder and the decoder must both use this method, so that they assign the same ids.
+     *
+     * @param prefixTableSize size of the prefix lookup
+     * @param nameTableSize size of the name lookup
+     * @param datatypeTableSize size of the datatype lookup
+     * @return entries
+     */
+    public Entries entriesFor(int prefixTableSize, int nameTableSize, int datatypeTableSize) {
+        final var cached = lastEntries;
+        if (
+            cached != null &&
+            cached.prefixTableSize == prefixTableSize &&
+            cached.nameTableSize == nameTableSize &&
+            cached.datatypeTableSize == datatypeTableSize
+        ) {
+            return cached.entries;
+        }
+        final var prefixSet = new LinkedHashSet<String>();
+        final var nameSet = new LinkedHashSet<String>();
+        for (final String iri : iris) {
+            if (prefixTableSize > 0) {
+                final int prefixLen = IriSplitter.defaultPrefixLength(iri);
+                if (prefixSet.size() < prefixTableSize) {
+                    prefixSet.add(iri.substring(0, prefixLen));
+                }
+                if (nameSet.size() < nameTableSize) {
+                    nameSet.add(iri.substring(prefixLen));
+                }
+            } else if (nameSet.size() < nameTableSize) {
+                nameSet.add(iri);
+            }
+        }
+        final var entries = new Entries(
+            prefixSet.toArray(new String[0]),
+            nameSet.toArray(new String[0]),
+            datatypes.stream().distinct().limit(datatypeTableSize).toArray(String[]::new)
+        );
+        lastEntries = new SizedEntries(prefixTableSize, nameTableSize, datatypeTableSize, entries);
+        return entries;
+    }
+
+    /**
+     * Adds the id of this dictionary to the metadata of a frame.
+     * @param frame frame to tag
+     */
+    public void tagFrame(RdfStreamFrame.Mutable frame) {
+        final var entry = RdfStreamFrame.MetadataEntry.newInstance().setKey(METADATA_KEY);
+        frame.getMetadata().add(entry.setValue(ByteString.copyFromUtf8(id)));
+    }
+
+    /**
+     * Adds the id of this dictionary to the metadata of a frame serialized by the direct encoder.
+     * Call this after the last row of the frame.
+     * @param frameBuffer buffer of the frame
+     */
+    public void tagFrame(SerializedFrameBuffer frameBuffer) {
+        frameBuffer.writeMetadataEntry(METADATA_KEY, id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the id of the dictionary recorded in the metadata of a frame.
+     * @param frame frame
+     * @return id of the dictionary, or null if the frame does not have it
+     */
+    public static String getFrameDictionaryId(RdfStreamFrame frame) {
+        for (final var entry : frame.getMetadata()) {
+            if (METADATA_KEY.equals(entry.getKey())) {
+                return entry.getValue().toStringUtf8();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the dictionary to an output stream, for distributing it to the consumers.
+     *
+     * @param outputStream output stream. It is flushed, but not closed.
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(MAGIC);
+        writeContents(outputStream, iris, datatypes);
+        outputStream.flush();
+    }
+
+    /**
+     * Reads a dictionary written with {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream input stream
+     * @return dictionary
+     * @throws IOException if an I/O error occurs or the dictionary is malformed
+     */
+    public static LookupDictionary parseFrom(InputStream inputStream) throws IOException {
+        final var input = CodedInputStream.newInstance(inputStream);
+        if (!Arrays.equals(input.readRawBytes(MAGIC.length), MAGIC)) {
+            throw new InvalidProtocolBufferException("Not a Jelly lookup dictionary.");
+        }
+        final int version = input.readUInt32();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidProtocolBufferException("Unsupported Jelly lookup dictionary version: " + version);
+        }
+        final var iris = readStrings(input);
+        final var datatypes = readStrings(input);
+        return new LookupDictionary(iris, datatypes);
+    }
+
+    private static void writeContents(OutputStream outputStream, List<String> iris, List<String> datatypes)
+        throws IOException {
+        final var output = ProtobufUtil.createCodedOutputStream(outputStream);
+        output.writeUInt32NoTag(FORMAT_VERSION);
+        output.writeUInt32NoTag(iris.size());
+        for (final String iri : iris) {
+            output.writeStringNoTag(iri);
+        }
+        output.writeUInt32NoTag(datatypes.size());
+        for (final String datatype : datatypes) {
+            output.writeStringNoTag(datatype);
+        }
+        output.flush();
+    }
+
+    private static List<String> readStrings(CodedInputStream input) throws IOException {
+        final int size = input.readUInt32();
+        if (size < 0) {
+            throw new InvalidProtocolBufferException("Invalid number of dictionary entries: " + size);
+        }
+        final var strings = new ArrayList<String>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            strings.add(input.readString());
+        }
+        return strings;
+    }
+
+    private static String computeId(List<String> iris, List<String> datatypes) {
+        final var bytes = new ByteArrayOutputStream();
+        try {
+            writeContents(bytes, iris, datatypes);
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+            final var id = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                id.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                id.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return id.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Neither can happen: the output is in memory, and SHA-256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a new builder for a dictionary.
+     * @return builder
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds a dictionary from a sample corpus, by counting how often the IRIs and datatypes occur in it.
+     * <p>
+     * This class is NOT thread-safe.
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> iriCounts = new HashMap<>();
+        private final Map<String, Integer> datatypeCounts = new HashMap<>();
+        private final ProtoDecoder<DecoderCheckpoint.Term, String> decoder;
+
+        private Builder() {
+            this.decoder = new ProtoDecoderImpl.AnyStatementDecoder<>(
+                DecoderCheckpoint.TERM_CONVERTER,
+                new RdfHandler.AnyStatementHandler<>() {
+                    @Override
+                    public void handleNamespace(String prefix, DecoderCheckpoint.Term namespace) {
+                        addTerm(namespace);
+                    }
+
+                    @Override
+                    public void handleTriple(
+                        DecoderCheckpoint.Term subject,
+                        DecoderCheckpoint.Term predicate,
+                        DecoderCheckpoint.Term object
+                    ) {
+                        addTerm(subject);
+                        addTerm(predicate);
+                        addTerm(object);
+                    }
+
+                    @Override
+                    public void handleQuad(
+                        DecoderCheckpoint.Term subject,
+                        DecoderCheckpoint.Term predicate,
+                        DecoderCheckpoint.Term object,
+                        DecoderCheckpoint.Term graph
+                    ) {
+                        handleTriple(subject, predicate, object);
+                        addTerm(graph);
+                    }
+                },
+                JellyOptions.DEFAULT_SUPPORTED_OPTIONS
+            );
+        }
+
+        /**
+         * Counts one occurrence of an IRI.
+         * @param iri IRI
+         * @return this builder
+         */
+        public Builder addIri(String iri) {
+            iriCounts.merge(iri, 1, Integer::sum);
+            return this;
+        }
+
+        /**
+         * Counts one occurrence of a datatype.
+         * @param datatype datatype IRI
+         * @return this builder
+         */
+        public Builder addDatatype(String datatype) {
+            datatypeCounts.merge(datatype, 1, Integer::sum);
+            return this;
+        }
+
+        /**
+         * Counts the IRIs and datatypes in the next frame of a sample Jelly stream. Frames of several
+         * streams can be added one after another, as long as each stream starts with its options row.
+         *
+         * @param frame frame
+         * @return this builder
+         */
+        public Builder addFrame(RdfStreamFrame frame) {
+            for (final RdfStreamRow row : frame.getRows()) {
+                decoder.ingestRow(row);
+            }
+            return this;
+        }
+
+        private void addTerm(DecoderCheckpoint.Term term) {
+            if (term instanceof DecoderCheckpoint.Iri iri) {
+                addIri(iri.iri());
+            } else if (term instanceof DecoderCheckpoint.Literal literal && literal.datatype() != null) {
+                addDatatype(literal.datatype());
+            } else if (term instanceof DecoderCheckpoint.QuotedTriple triple) {
+                addTerm(triple.subject());
+                addTerm(triple.predicate());
+                addTerm(triple.object());
+            }
+        }
+
+        /**
+         * Builds the dictionary from the most frequent IRIs and datatypes.
+         *
+         * @param maxIris maximum number of IRIs in the dictionary
+         * @param maxDatatypes maximum number of datatypes in the dictionary
+         * @return dictionary
+         */
+        public LookupDictionary build(int maxIris, int maxDatatypes) {
+            return new LookupDictionary(mostFrequent(iriCounts, maxIris), mostFrequent(datatypeCounts, maxDatatypes));
+        }
+
+        private static List<String> mostFrequent(Map<String, Integer> counts, int limit) {
+            // Ties are broken by the value, so that the same corpus always gives the same dictionary
+            return counts
+                .entrySet()
+                .stream()
+                .sorted(
+                    Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()).thenComparing(
+                        Map.Entry.<String, Integer>comparingByKey()
+                    )
+                )
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+        }
+    }
+}
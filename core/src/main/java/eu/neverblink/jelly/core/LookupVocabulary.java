@@ -0,0 +1,62 @@
+package eu.neverblink.jelly.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Known vocabulary, with which an encoder warms up its lookups at the start of the stream.
+ * <p>
+ * Right after the options row, the encoder emits the lookup entries for the vocabulary – first the prefixes,
+ * then the prefixes and names of the IRIs – before any statement. For streams dominated by a known ontology
+ * this gives stable, low lookup ids and keeps the lookup entry rows out of the way of the statements.
+ * <p>
+ * Unlike {@link LookupDictionary}, the entries are written to the stream, so it can be read by any decoder.
+ * Prefixes and IRIs beyond the size of the lookups are ignored.
+ *
+ * @param prefixes IRI prefixes (namespaces) to put in the prefix lookup, e.g., from a prefix map
+ * @param iris full IRIs to put in the prefix and name lookups, e.g., the terms of an ontology
+ */
+@ExperimentalApi
+public record LookupVocabulary(List<String> prefixes, List<String> iris) {
+    /**
+     * Empty vocabulary.
+     */
+    public static final LookupVocabulary EMPTY = new LookupVocabulary(List.of(), List.of());
+
+    public LookupVocabulary {
+        prefixes = List.copyOf(prefixes);
+        iris = List.copyOf(iris);
+    }
+
+    /**
+     * Creates a vocabulary of IRI prefixes, e.g., the namespace IRIs of a prefix map.
+     * @param prefixes IRI prefixes
+     * @return vocabulary
+     */
+    public static LookupVocabulary ofPrefixes(Collection<String> prefixes) {
+        return new LookupVocabulary(List.copyOf(prefixes), List.of());
+    }
+
+    /**
+     * Creates a vocabulary of full IRIs, e.g., the classes and properties of an ontology.
+     * @param iris IRIs
+     * @return vocabulary
+     */
+    public static LookupVocabulary ofIris(Collection<String> iris) {
+        return new LookupVocabulary(List.of(), List.copyOf(iris));
+    }
+
+    /**
+     * Returns a vocabulary with the prefixes and IRIs of both this one and the other one.
+     * @param other other vocabulary
+     * @return merged vocabulary
+     */
+    public LookupVocabulary merge(LookupVocabulary other) {
+        final var mergedPrefixes = new ArrayList<>(prefixes);
+        mergedPrefixes.addAll(other.prefixes);
+        final var mergedIris = new ArrayList<>(iris);
+        mergedIris.addAll(other.iris);
+        return new LookupVocabulary(mergedPrefixes, mergedIris);
+    }
+}
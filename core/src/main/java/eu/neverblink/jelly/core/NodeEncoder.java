@@ -68,6 +68,22 @@ public interface NodeEncoder<TNode> {
      */
     RdfTriple makeQuotedTriple(TNode s, TNode p, TNode o);
 
+    /**
+     * Encode a quoted triple node (RDF-star), which may be cached under the triple term node.
+     * <p>
+     * Prefer this over {@link #makeQuotedTriple(Object, Object, Object)} if the library has a node for
+     * the whole triple term, so that repeated quoted triples are not encoded again.
+     * By default, the key is ignored.
+     *
+     * @param key The triple term node. This is used for caching and deduplication.
+     * @param s The subject of the triple.
+     * @param p The predicate of the triple.
+     * @param o The object of the triple.
+     */
+    default RdfTriple makeQuotedTriple(TNode key, TNode s, TNode p, TNode o) {
+        return makeQuotedTriple(s, p, o);
+    }
+
     /**
      * Encode a default graph node.
      */
@@ -1,8 +1,14 @@
 package eu.neverblink.jelly.core;
 
+import com.google.protobuf.CodedInputStream;
 import eu.neverblink.jelly.core.internal.DecoderBase;
+import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+import java.util.function.Function;
 
 /**
  * Base extendable interface for decoders of protobuf RDF streams.
@@ -35,4 +41,157 @@ public abstract class ProtoDecoder<TNode, TDatatype> extends DecoderBase<TNode,
      * @param row row to ingest
      */
     public abstract void ingestRow(RdfStreamRow row);
+
+    /**
+     * Ingest all rows of a serialized RdfStreamFrame, read from the input.
+     * <p>
+     * The decoders in ProtoDecoderImpl read the rows straight from the wire format, without creating
+     * RdfStreamRow messages. This default implementation parses each row into a reused message and passes
+     * it to {@link #ingestRow(RdfStreamRow)}.
+     *
+     * @param input input positioned at the start of the frame, limited to the frame's length
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    @ExperimentalApi
+    public void ingestFrame(CodedInputStream input) throws IOException {
+        final RowBuffer buffer = RowBuffer.newSingle(this::ingestRow);
+        ProtoMessage.mergeFrom(
+            RdfStreamFrame.newInstance().setRows(buffer),
+            input,
+            ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH
+        );
+        buffer.clear();
+    }
+
+    /**
+     * Ingest all rows of a frame from the stream.
+     * <p>
+     * Unlike ingesting the rows one by one, this also checks the metadata of the frame. The decoders in
+     * ProtoDecoderImpl check the dictionary id in the metadata, see
+     * {@link #setDictionary(LookupDictionary)}.
+     *
+     * @param frame frame to ingest
+     */
+    @ExperimentalApi
+    public void ingestFrame(RdfStreamFrame frame) {
+        for (final RdfStreamRow row : frame.getRows()) {
+            ingestRow(row);
+        }
+    }
+
+    /**
+     * Sets the dictionary that the lookups of the stream were pre-seeded with by the encoder.
+     * The dictionary must be the same as the one used by the encoder (see {@link LookupDictionary#getId()}).
+     * Call this before ingesting any rows.
+     * <p>
+     * When ingesting whole frames, the decoders in ProtoDecoderImpl compare the dictionary id in the metadata
+     * of the first frame with the id of this dictionary, after ingesting the frame's rows. They throw
+     * {@link RdfProtoDeserializationError} if the ids differ, or if only one of them is set.
+     *
+     * @param dictionary dictionary, or null for no dictionary
+     * @throws IllegalStateException if the decoder has already ingested the stream options
+     */
+    @ExperimentalApi
+    public void setDictionary(LookupDictionary dictionary) {
+        if (getStreamOptions() != null) {
+            throw new IllegalStateException("The dictionary must be set before ingesting any rows.");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Sets the filter of the statements to decode. The statements that do not pass the filter are not passed
+     * to the handler, and their terms are not converted to nodes at all: the decoder only resolves the lookup
+     * ids of their IRIs and evaluates the filter on the ids. The result for each lookup entry is reused until
+     * the entry changes, so the IRI strings are built once per entry, not once per statement.
+     * <p>
+     * Filtering is much faster than decoding all statements and discarding them in the handler, when most of
+     * them are rejected. Lookup updates, namespace declarations, and the start and end of accepted graphs are
+     * processed as usual. Call this before ingesting any rows.
+     *
+     * @param filter filter, or null to decode all statements
+     * @throws IllegalStateException if the decoder has already ingested the stream options
+     * @throws UnsupportedOperationException if the decoder does not decode IRIs from the lookups, like the
+     *      decoders of {@link IdDecoders}
+     */
+    @ExperimentalApi
+    public void setFilter(StatementFilter filter) {
+        if (getStreamOptions() != null) {
+            throw new IllegalStateException("The filter must be set before ingesting any rows.");
+        }
+        if (filter != null && !supportsFilter()) {
+            throw new UnsupportedOperationException("This decoder does not support statement filters.");
+        }
+        this.filter = filter;
+    }
+
+    /**
+     * Sets the statistics to record the decoding in. Decoders count the lookup entry, statement, and other
+     * rows with their sizes, and the repeated terms. Computing the sizes of the rows makes decoding a bit
+     * slower while the statistics are enabled.
+     * <p>
+     * Call {@link StreamStats#endFrame()} after ingesting each frame to get the bytes per frame.
+     *
+     * @param stats statistics, or null to disable them
+     */
+    @ExperimentalApi
+    public void setStats(StreamStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the statistics of this decoder.
+     * @return statistics, or null if disabled
+     */
+    @ExperimentalApi
+    public StreamStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Sets the size of the cache of decoded literals. The decoder keeps the literals it made recently, and
+     * returns the same node when a literal with the same lexical form and datatype or language tag comes
+     * again, instead of making it anew with the converter.
+     * <p>
+     * The cache is disabled by default. It pays off on streams that repeat the same literals often, like
+     * booleans or status codes; otherwise every literal pays for a lookup in it. The cache keeps strong
+     * references to the nodes in it. A size of 1024 is a good start.
+     *
+     * @param size number of slots, rounded up to a power of two, or 0 (the default) to disable the cache
+     * @throws IllegalArgumentException if the size is negative
+     */
+    @ExperimentalApi
+    public void setLiteralCacheSize(int size) {
+        configureLiteralCache(size);
+    }
+
+    /**
+     * Captures the state of the decoder between two frames, so that decoding can be later resumed from this
+     * point with {@link #restoreCheckpoint(DecoderCheckpoint)}.
+     *
+     * @param termMapper converts the nodes of the RDF library to checkpoint terms
+     * @param datatypeMapper converts the datatypes of the RDF library to their IRIs
+     * @return checkpoint
+     * @throws UnsupportedOperationException if the decoder does not support checkpoints
+     */
+    @ExperimentalApi
+    public DecoderCheckpoint saveCheckpoint(
+        Function<TNode, DecoderCheckpoint.Term> termMapper,
+        Function<TDatatype, String> datatypeMapper
+    ) {
+        throw new UnsupportedOperationException("This decoder does not support checkpoints.");
+    }
+
+    /**
+     * Restores the state of the decoder from a checkpoint, so that it can continue decoding the stream from
+     * the frame at which the checkpoint was taken. The decoder must not have ingested any rows yet.
+     *
+     * @param checkpoint checkpoint to restore
+     * @throws RdfProtoDeserializationError if the options of the checkpoint are not supported by the decoder
+     * @throws UnsupportedOperationException if the decoder does not support checkpoints
+     */
+    @ExperimentalApi
+    public void restoreCheckpoint(DecoderCheckpoint checkpoint) {
+        throw new UnsupportedOperationException("This decoder does not support checkpoints.");
+    }
 }
@@ -1,5 +1,7 @@
 package eu.neverblink.jelly.core;
 
+import eu.neverblink.jelly.core.internal.NameDecoderImpl;
+
 /**
  * Converter trait for translating between Jelly's object representation of RDF and that of RDF libraries.
  * <p>
@@ -17,4 +19,29 @@ public interface ProtoDecoderConverter<TNode, TDatatype> {
     TNode makeIriNode(String iri);
     TNode makeTripleNode(TNode s, TNode p, TNode o);
     TNode makeDefaultGraphNode();
+
+    /**
+     * Creates the decoder of IRIs for a stream with the given lookup sizes. By default, it makes the IRIs
+     * with {@link #makeIriNode(String)} from their prefixes and names. Override it to decode IRIs to
+     * something else than nodes made from strings (see {@link IdTerm}).
+     *
+     * @param prefixTableSize size of the prefix lookup
+     * @param nameTableSize size of the name lookup
+     * @return name decoder
+     */
+    default NameDecoder<TNode> makeNameDecoder(int prefixTableSize, int nameTableSize) {
+        return new NameDecoderImpl<>(prefixTableSize, nameTableSize, this::makeIriNode);
+    }
+
+    /**
+     * Tells whether the IRIs are decoded from the strings in the lookups, like the default
+     * {@link #makeNameDecoder(int, int)} does. Statement filters match the IRIs by these strings, so decoders
+     * only accept a filter if this returns true. Override it to return false if you override
+     * {@link #makeNameDecoder(int, int)}.
+     *
+     * @return true if the IRIs are decoded from the strings in the lookups
+     */
+    default boolean decodesIrisFromStrings() {
+        return true;
+    }
 }
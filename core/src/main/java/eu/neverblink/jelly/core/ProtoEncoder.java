@@ -2,6 +2,7 @@ package eu.neverblink.jelly.core;
 
 import eu.neverblink.jelly.core.internal.EncoderBase;
 import eu.neverblink.jelly.core.memory.EncoderAllocator;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.memory.RowBuffer;
 import eu.neverblink.jelly.core.proto.v1.RdfQuad;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
@@ -30,14 +31,48 @@ public abstract class ProtoEncoder<TNode>
      *      The encoder will append the rows to this buffer.
      * @param allocator allocator for proto class instances. Obtain it from {@link EncoderAllocator}.
      *      If unsure, just pass in EncoderAllocator.newHeapAllocator().
-     *
+     * @param selfContainedFrames whether each frame should be decodable independently of the previous frames.
+     *      See {@link ProtoEncoder#newFrame()}. Default: false.
+     * @param dictionary dictionary to pre-seed the lookups with, shared in advance with the consumers of
+     *      the stream. See {@link LookupDictionary}. Default: null (no dictionary).
+     * @param vocabulary vocabulary to warm up the lookups with, emitted right after the options row.
+     *      See {@link LookupVocabulary}. Default: null (no vocabulary).
+     * @param stats statistics to record the encoding in. See {@link StreamStats}. Default: null (disabled).
+     * @param iriSplitter strategy for splitting IRIs into prefixes and names. See {@link IriSplitter}.
+     *      Default: null ({@link IriSplitter#DEFAULT}).
+     * @param blankNodeTableSize how many distinct blank node labels to replace with short labels ("b0", "b1", ...)
+     *      in the stream. Labels seen after the table is full are written verbatim, prefixed with "_".
+     *      The labels are consistent within the stream, also with self-contained frames. Default: 0 (disabled).
+     * @param poolLease lease from an {@link EncoderPool} to reuse the lookups and node caches of a previous
+     *      stream. The caller must close the lease after the end of the stream, and not use the encoder after
+     *      that. Default: null (new lookups for every stream).
      */
     public record Params(
         RdfStreamOptions options,
         boolean enableNamespaceDeclarations,
         RowBuffer rowBuffer,
-        EncoderAllocator allocator
+        EncoderAllocator allocator,
+        boolean selfContainedFrames,
+        LookupDictionary dictionary,
+        LookupVocabulary vocabulary,
+        StreamStats stats,
+        IriSplitter iriSplitter,
+        int blankNodeTableSize,
+        EncoderPool.Lease poolLease
     ) {
+        /**
+         * Creates a new instance of Params, with the default values of the fields added after the first four.
+         * Kept for compatibility with code written before these fields were added.
+         */
+        public Params(
+            RdfStreamOptions options,
+            boolean enableNamespaceDeclarations,
+            RowBuffer rowBuffer,
+            EncoderAllocator allocator
+        ) {
+            this(options, enableNamespaceDeclarations, rowBuffer, allocator, false, null, null, null, null, 0, null);
+        }
+
         /**
          * Creates a new instance of Params.
          * @param options options for this stream (required)
@@ -60,22 +95,126 @@ public abstract class ProtoEncoder<TNode>
         }
 
         public Params withOptions(RdfStreamOptions options) {
-            return new Params(options, enableNamespaceDeclarations, rowBuffer, allocator);
+            final var builder = new Builder(this);
+            builder.options = options;
+            return builder.build();
         }
 
         public Params withEnableNamespaceDeclarations(boolean enableNamespaceDeclarations) {
-            return new Params(options, enableNamespaceDeclarations, rowBuffer, allocator);
+            final var builder = new Builder(this);
+            builder.enableNamespaceDeclarations = enableNamespaceDeclarations;
+            return builder.build();
         }
 
         public Params withRowBuffer(RowBuffer rowBuffer) {
-            return new Params(options, enableNamespaceDeclarations, rowBuffer, allocator);
+            final var builder = new Builder(this);
+            builder.rowBuffer = rowBuffer;
+            return builder.build();
         }
 
         public Params withAllocator(EncoderAllocator allocator) {
-            return new Params(options, enableNamespaceDeclarations, rowBuffer, allocator);
+            final var builder = new Builder(this);
+            builder.allocator = allocator;
+            return builder.build();
+        }
+
+        public Params withSelfContainedFrames(boolean selfContainedFrames) {
+            final var builder = new Builder(this);
+            builder.selfContainedFrames = selfContainedFrames;
+            return builder.build();
+        }
+
+        public Params withDictionary(LookupDictionary dictionary) {
+            final var builder = new Builder(this);
+            builder.dictionary = dictionary;
+            return builder.build();
+        }
+
+        public Params withVocabulary(LookupVocabulary vocabulary) {
+            final var builder = new Builder(this);
+            builder.vocabulary = vocabulary;
+            return builder.build();
+        }
+
+        public Params withStats(StreamStats stats) {
+            final var builder = new Builder(this);
+            builder.stats = stats;
+            return builder.build();
+        }
+
+        public Params withIriSplitter(IriSplitter iriSplitter) {
+            final var builder = new Builder(this);
+            builder.iriSplitter = iriSplitter;
+            return builder.build();
+        }
+
+        public Params withBlankNodeTableSize(int blankNodeTableSize) {
+            final var builder = new Builder(this);
+            builder.blankNodeTableSize = blankNodeTableSize;
+            return builder.build();
+        }
+
+        public Params withPoolLease(EncoderPool.Lease poolLease) {
+            final var builder = new Builder(this);
+            builder.poolLease = poolLease;
+            return builder.build();
+        }
+
+        /**
+         * Mutable copy of Params, used by the with* methods to change one field.
+         */
+        private static final class Builder {
+
+            private RdfStreamOptions options;
+            private boolean enableNamespaceDeclarations;
+            private RowBuffer rowBuffer;
+            private EncoderAllocator allocator;
+            private boolean selfContainedFrames;
+            private LookupDictionary dictionary;
+            private LookupVocabulary vocabulary;
+            private StreamStats stats;
+            private IriSplitter iriSplitter;
+            private int blankNodeTableSize;
+            private EncoderPool.Lease poolLease;
+
+            private Builder(Params params) {
+                this.options = params.options;
+                this.enableNamespaceDeclarations = params.enableNamespaceDeclarations;
+                this.rowBuffer = params.rowBuffer;
+                this.allocator = params.allocator;
+                this.selfContainedFrames = params.selfContainedFrames;
+                this.dictionary = params.dictionary;
+                this.vocabulary = params.vocabulary;
+                this.stats = params.stats;
+                this.iriSplitter = params.iriSplitter;
+                this.blankNodeTableSize = params.blankNodeTableSize;
+                this.poolLease = params.poolLease;
+            }
+
+            private Params build() {
+                return new Params(
+                    options,
+                    enableNamespaceDeclarations,
+                    rowBuffer,
+                    allocator,
+                    selfContainedFrames,
+                    dictionary,
+                    vocabulary,
+                    stats,
+                    iriSplitter,
+                    blankNodeTableSize,
+                    poolLease
+                );
+            }
         }
     }
 
+    /**
+     * Suggested number of statements in a batch passed to {@link #handleTriples} or {@link #handleQuads}.
+     */
+    @ExperimentalApi
+    public static final int BATCH_SIZE = 256;
+
     /**
      * RdfStreamOptions for this encoder.
      */
@@ -96,8 +235,48 @@ public abstract class ProtoEncoder<TNode>
      */
     protected final EncoderAllocator allocator;
 
+    /**
+     * Whether each frame should be decodable independently of the previous frames.
+     */
+    protected final boolean selfContainedFrames;
+
+    /**
+     * Dictionary to pre-seed the lookups with, or null.
+     */
+    protected final LookupDictionary dictionary;
+
+    /**
+     * Vocabulary to warm up the lookups with, or null.
+     */
+    protected final LookupVocabulary vocabulary;
+
+    /**
+     * Strategy for splitting IRIs into prefixes and names, or null for the default.
+     */
+    protected final IriSplitter iriSplitter;
+
+    /**
+     * How many blank node labels to replace with short labels, or 0 to write them verbatim.
+     */
+    protected final int blankNodeTableSize;
+
+    /**
+     * Pool lease to take the lookups from, or null.
+     */
+    protected final EncoderPool.Lease poolLease;
+
+    /**
+     * Whether the options row was already emitted in the current stream.
+     */
+    protected boolean hasEmittedOptions = false;
+
+    /**
+     * Serialized size of the rows emitted since the last {@link #newFrame()}, in the frame.
+     */
+    protected long frameBytes = 0;
+
     protected ProtoEncoder(ProtoEncoderConverter<TNode> converter, Params params) {
-        super(converter);
+        super(converter, params.stats);
         this.options =
             params.options
                 .clone()
@@ -111,6 +290,17 @@ public abstract class ProtoEncoder<TNode>
         this.enableNamespaceDeclarations = params.enableNamespaceDeclarations;
         this.rowBuffer = params.rowBuffer;
         this.allocator = params.allocator;
+        this.selfContainedFrames = params.selfContainedFrames;
+        this.dictionary = params.dictionary;
+        this.vocabulary = params.vocabulary;
+        this.iriSplitter = params.iriSplitter;
+        if (params.blankNodeTableSize < 0) {
+            throw new IllegalArgumentException(
+                "Blank node table size must not be negative, got " + params.blankNodeTableSize
+            );
+        }
+        this.blankNodeTableSize = params.blankNodeTableSize;
+        this.poolLease = params.poolLease;
     }
 
     @Override
@@ -128,6 +318,26 @@ public abstract class ProtoEncoder<TNode>
         return options.getMaxDatatypeTableSize();
     }
 
+    @Override
+    protected final LookupDictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    protected final IriSplitter getIriSplitter() {
+        return iriSplitter;
+    }
+
+    @Override
+    protected final int getBlankNodeTableSize() {
+        return blankNodeTableSize;
+    }
+
+    @Override
+    protected final EncoderPool.Lease getPoolLease() {
+        return poolLease;
+    }
+
     @Override
     protected final RdfTriple.Mutable newTriple() {
         return allocator.newTriple();
@@ -138,6 +348,87 @@ public abstract class ProtoEncoder<TNode>
         return allocator.newQuad();
     }
 
+    /**
+     * Notifies the encoder that the current frame was written out, and the following rows go into a new frame.
+     * Call this after each flush of the row buffer.
+     * <p>
+     * If self-contained frames are enabled in the params, the encoder forgets its lookups and the
+     * previously encoded terms, and it starts the next frame with a new options row. This way each frame is a
+     * complete stream on its own: it can be decoded without the previous frames, which allows for seeking
+     * in large files, splitting them, and decoding frames in parallel. This comes at the cost of a larger
+     * output, as the lookup entries are repeated in every frame that uses them. Decoders read such a
+     * stream as a sequence of concatenated streams.
+     * <p>
+     * In GRAPHS streams, frames must only be split between graphs for this to work.
+     * <p>
+     * If self-contained frames are disabled, this method only closes the frame in the statistics (if enabled)
+     * and resets {@link #getFrameBytes()}.
+     */
+    public final void newFrame() {
+        if (stats != null) {
+            stats.endFrame();
+        }
+        frameBytes = 0;
+        if (!selfContainedFrames) {
+            return;
+        }
+        resetState();
+        hasEmittedOptions = false;
+    }
+
+    /**
+     * Returns the serialized size of the rows emitted since the last {@link #newFrame()}, as they will be
+     * written in the frame. The encoder computes the size of each row anyway, so this is cheap to call after
+     * every statement – e.g., to end frames at a byte limit.
+     * @return size in bytes
+     */
+    @ExperimentalApi
+    public long getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * Encodes a batch of triples: the first {@code count} elements of the arrays, in order.
+     * <p>
+     * The output is the same as when calling {@link #handleTriple} for each triple, but the per-statement
+     * overhead is lower: the encoder is called once per batch, and a subject or predicate that is the same
+     * object as in the previous triple of the batch is elided without calling {@code equals()}.
+     * Callers that flush frames should check the frame size once after each batch. Batches of about
+     * {@link #BATCH_SIZE} triples work well.
+     * <p>
+     * The arrays are not modified or retained, so they can be reused for the next batch.
+     *
+     * @param subjects subjects of the triples
+     * @param predicates predicates of the triples
+     * @param objects objects of the triples
+     * @param count number of triples in the batch
+     */
+    @ExperimentalApi
+    public void handleTriples(TNode[] subjects, TNode[] predicates, TNode[] objects, int count) {
+        for (int i = 0; i < count; i++) {
+            handleTriple(subjects[i], predicates[i], objects[i]);
+        }
+    }
+
+    /**
+     * Encodes a batch of quads: the first {@code count} elements of the arrays, in order.
+     * <p>
+     * Like {@link #handleTriples}, but for quads. The graph is also elided without calling {@code equals()}
+     * if it is the same object as in the previous quad of the batch.
+     *
+     * @param subjects subjects of the quads
+     * @param predicates predicates of the quads
+     * @param objects objects of the quads
+     * @param graphs graphs of the quads
+     * @param count number of quads in the batch
+     */
+    @ExperimentalApi
+    public void handleQuads(TNode[] subjects, TNode[] predicates, TNode[] objects, TNode[] graphs, int count) {
+        for (int i = 0; i < count; i++) {
+            handleQuad(subjects[i], predicates[i], objects[i], graphs[i]);
+        }
+    }
+
     /**
      * Returns the options for this encoder.
      * @return the options for this encoder
@@ -146,6 +437,15 @@ public abstract class ProtoEncoder<TNode>
         return options;
     }
 
+    /**
+     * Returns the statistics of this encoder.
+     * @return statistics, or null if disabled
+     */
+    @ExperimentalApi
+    public StreamStats getStats() {
+        return stats;
+    }
+
     /**
      * Returns the internal row buffer.
      * @return row buffer
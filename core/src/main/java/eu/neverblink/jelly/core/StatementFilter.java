@@ -0,0 +1,103 @@
+package eu.neverblink.jelly.core;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Filter of the statements in a stream by their predicate and graph IRIs, applied by the decoder before the
+ * statements are converted to the nodes of an RDF library. See {@link ProtoDecoder#setFilter(StatementFilter)}.
+ * <p>
+ * A term passes the filter if it is in the allowed set (or no allowed set is given) and it is not in the denied
+ * set. Terms that are not IRIs (blank nodes, literals, quoted triples in generalized streams, and the default
+ * graph) are in none of the sets, so they only pass if no allowed set is given.
+ * <p>
+ * The graph sets do not apply to TRIPLES streams. In GRAPHS streams, they apply to whole graphs.
+ * <p>
+ * Instances are immutable.
+ */
+@ExperimentalApi
+public final class StatementFilter {
+
+    /**
+     * Filter that accepts all statements.
+     */
+    public static final StatementFilter ALL = new StatementFilter(null, Set.of(), null, Set.of());
+
+    // Null if any IRI is allowed
+    private final Set<String> allowedPredicates;
+    private final Set<String> deniedPredicates;
+    private final Set<String> allowedGraphs;
+    private final Set<String> deniedGraphs;
+
+    private StatementFilter(
+        Set<String> allowedPredicates,
+        Set<String> deniedPredicates,
+        Set<String> allowedGraphs,
+        Set<String> deniedGraphs
+    ) {
+        this.allowedPredicates = allowedPredicates;
+        this.deniedPredicates = deniedPredicates;
+        this.allowedGraphs = allowedGraphs;
+        this.deniedGraphs = deniedGraphs;
+    }
+
+    /**
+     * Returns a copy of this filter that accepts only the statements with one of the given predicates.
+     * @param iris predicate IRIs
+     * @return new filter
+     */
+    public StatementFilter withAllowedPredicates(Collection<String> iris) {
+        return new StatementFilter(Set.copyOf(iris), deniedPredicates, allowedGraphs, deniedGraphs);
+    }
+
+    /**
+     * Returns a copy of this filter that rejects the statements with any of the given predicates.
+     * @param iris predicate IRIs
+     * @return new filter
+     */
+    public StatementFilter withDeniedPredicates(Collection<String> iris) {
+        return new StatementFilter(allowedPredicates, Set.copyOf(iris), allowedGraphs, deniedGraphs);
+    }
+
+    /**
+     * Returns a copy of this filter that accepts only the statements in one of the given named graphs.
+     * @param iris graph IRIs
+     * @return new filter
+     */
+    public StatementFilter withAllowedGraphs(Collection<String> iris) {
+        return new StatementFilter(allowedPredicates, deniedPredicates, Set.copyOf(iris), deniedGraphs);
+    }
+
+    /**
+     * Returns a copy of this filter that rejects the statements in any of the given named graphs.
+     * @param iris graph IRIs
+     * @return new filter
+     */
+    public StatementFilter withDeniedGraphs(Collection<String> iris) {
+        return new StatementFilter(allowedPredicates, deniedPredicates, allowedGraphs, Set.copyOf(iris));
+    }
+
+    /**
+     * Tells whether statements with the given predicate pass the filter.
+     * @param iri IRI of the predicate, or null if the predicate is not an IRI
+     * @return true if the predicate passes
+     */
+    public boolean acceptsPredicate(String iri) {
+        if (iri == null) {
+            return allowedPredicates == null;
+        }
+        return (allowedPredicates == null || allowedPredicates.contains(iri)) && !deniedPredicates.contains(iri);
+    }
+
+    /**
+     * Tells whether statements in the given graph pass the filter.
+     * @param iri IRI of the graph, or null for the default graph and graphs that are not IRIs
+     * @return true if the graph passes
+     */
+    public boolean acceptsGraph(String iri) {
+        if (iri == null) {
+            return allowedGraphs == null;
+        }
+        return (allowedGraphs == null || allowedGraphs.contains(iri)) && !deniedGraphs.contains(iri);
+    }
+}
@@ -0,0 +1,430 @@
+package eu.neverblink.jelly.core;
+
+/**
+ * Counters of what an encoder or decoder did with the stream: node cache hits and misses, lookup entries
+ * and evictions, emitted rows, repeated terms, and serialized bytes per frame. Use them to check how well the
+ * lookup table sizes fit the data.
+ * <p>
+ * Statistics are opt-in. Pass an instance to the encoder with {@link ProtoEncoder.Params#withStats} or to the
+ * decoder with {@link ProtoDecoder#setStats}. Without it, the encoders and decoders only pay for a null check
+ * at each counted event.
+ * <p>
+ * The counters can be read at any time and they keep growing until {@link #reset()} is called. Counters that
+ * do not apply to a component stay at zero – for example, decoders have no node caches and do not know which
+ * lookup entries were evicted.
+ * <p>
+ * Bytes are counted as the size of the rows in the serialized RdfStreamFrame. The encoder closes a frame in
+ * {@link ProtoEncoder#newFrame()}. With a decoder, call {@link #endFrame()} after ingesting each frame.
+ * <p>
+ * This class is NOT thread-safe. Read the counters on the thread that uses the encoder or decoder.
+ */
+@ExperimentalApi
+public final class StreamStats {
+
+    private long iriCacheHits = 0;
+    private long iriCacheMisses = 0;
+    private long dtLiteralCacheHits = 0;
+    private long dtLiteralCacheMisses = 0;
+    private long otherLiteralCacheHits = 0;
+    private long otherLiteralCacheMisses = 0;
+
+    private long prefixEntries = 0;
+    private long prefixEvictions = 0;
+    private long nameEntries = 0;
+    private long nameEvictions = 0;
+    private long datatypeEntries = 0;
+    private long datatypeEvictions = 0;
+
+    private long statementRows = 0;
+    private long otherRows = 0;
+    private long repeatedTerms = 0;
+
+    private long frames = 0;
+    private long totalBytes = 0;
+    private long currentFrameBytes = 0;
+    private long lastFrameBytes = 0;
+    private long maxFrameBytes = 0;
+
+    /**
+     * Creates a new instance with all counters at zero.
+     */
+    public StreamStats() {}
+
+    // -----------------------------------------------------------------
+    // Recording, used by the encoders and decoders.
+    // -----------------------------------------------------------------
+
+    @InternalApi
+    public void recordIriCacheHit() {
+        iriCacheHits++;
+    }
+
+    @InternalApi
+    public void recordIriCacheMiss() {
+        iriCacheMisses++;
+    }
+
+    @InternalApi
+    public void recordDtLiteralCacheHit() {
+        dtLiteralCacheHits++;
+    }
+
+    @InternalApi
+    public void recordDtLiteralCacheMiss() {
+        dtLiteralCacheMisses++;
+    }
+
+    @InternalApi
+    public void recordOtherLiteralCacheHit() {
+        otherLiteralCacheHits++;
+    }
+
+    @InternalApi
+    public void recordOtherLiteralCacheMiss() {
+        otherLiteralCacheMisses++;
+    }
+
+    @InternalApi
+    public void recordPrefixEviction() {
+        prefixEvictions++;
+    }
+
+    @InternalApi
+    public void recordNameEviction() {
+        nameEvictions++;
+    }
+
+    @InternalApi
+    public void recordDatatypeEviction() {
+        datatypeEvictions++;
+    }
+
+    @InternalApi
+    public void recordRepeatedTerm() {
+        repeatedTerms++;
+    }
+
+    /**
+     * Records a prefix entry row.
+     * @param bytes size of the row in the frame
+     */
+    @InternalApi
+    public void recordPrefixEntry(int bytes) {
+        prefixEntries++;
+        currentFrameBytes += bytes;
+    }
+
+    /**
+     * Records a name entry row.
+     * @param bytes size of the row in the frame
+     */
+    @InternalApi
+    public void recordNameEntry(int bytes) {
+        nameEntries++;
+        currentFrameBytes += bytes;
+    }
+
+    /**
+     * Records a datatype entry row.
+     * @param bytes size of the row in the frame
+     */
+    @InternalApi
+    public void recordDatatypeEntry(int bytes) {
+        datatypeEntries++;
+        currentFrameBytes += bytes;
+    }
+
+    /**
+     * Records a triple or quad row.
+     * @param bytes size of the row in the frame
+     */
+    @InternalApi
+    public void recordStatementRow(int bytes) {
+        statementRows++;
+        currentFrameBytes += bytes;
+    }
+
+    /**
+     * Records a row that is neither a statement nor a lookup entry (options, namespace, graph start or end).
+     * @param bytes size of the row in the frame
+     */
+    @InternalApi
+    public void recordOtherRow(int bytes) {
+        otherRows++;
+        currentFrameBytes += bytes;
+    }
+
+    /**
+     * Closes the current frame: its bytes become {@link #getLastFrameBytes()} and the next rows are counted
+     * in a new frame. Encoders call this in {@link ProtoEncoder#newFrame()}.
+     */
+    public void endFrame() {
+        frames++;
+        totalBytes += currentFrameBytes;
+        lastFrameBytes = currentFrameBytes;
+        maxFrameBytes = Math.max(maxFrameBytes, currentFrameBytes);
+        currentFrameBytes = 0;
+    }
+
+    /**
+     * Sets all counters back to zero, e.g., to get the statistics of each frame separately.
+     */
+    public void reset() {
+        iriCacheHits = 0;
+        iriCacheMisses = 0;
+        dtLiteralCacheHits = 0;
+        dtLiteralCacheMisses = 0;
+        otherLiteralCacheHits = 0;
+        otherLiteralCacheMisses = 0;
+        prefixEntries = 0;
+        prefixEvictions = 0;
+        nameEntries = 0;
+        nameEvictions = 0;
+        datatypeEntries = 0;
+        datatypeEvictions = 0;
+        statementRows = 0;
+        otherRows = 0;
+        repeatedTerms = 0;
+        frames = 0;
+        totalBytes = 0;
+        currentFrameBytes = 0;
+        lastFrameBytes = 0;
+        maxFrameBytes = 0;
+    }
+
+    // -----------------------------------------------------------------
+    // Node caches (encoder only)
+    // -----------------------------------------------------------------
+
+    /**
+     * Returns the number of IRIs found in the IRI node cache, with their lookup entries still valid.
+     * The IRI node cache is only used when the prefix table is enabled.
+     * @return number of hits
+     */
+    public long getIriCacheHits() {
+        return iriCacheHits;
+    }
+
+    /**
+     * Returns the number of IRIs that had to be split and looked up in the prefix and name tables.
+     * @return number of misses
+     */
+    public long getIriCacheMisses() {
+        return iriCacheMisses;
+    }
+
+    /**
+     * Returns the number of datatype literals found in the datatype literal node cache.
+     * @return number of hits
+     */
+    public long getDtLiteralCacheHits() {
+        return dtLiteralCacheHits;
+    }
+
+    /**
+     * Returns the number of datatype literals that had to be encoded anew.
+     * @return number of misses
+     */
+    public long getDtLiteralCacheMisses() {
+        return dtLiteralCacheMisses;
+    }
+
+    /**
+     * Returns the number of simple and language-tagged literals found in the node cache.
+     * @return number of hits
+     */
+    public long getOtherLiteralCacheHits() {
+        return otherLiteralCacheHits;
+    }
+
+    /**
+     * Returns the number of simple and language-tagged literals that had to be encoded anew.
+     * @return number of misses
+     */
+    public long getOtherLiteralCacheMisses() {
+        return otherLiteralCacheMisses;
+    }
+
+    // -----------------------------------------------------------------
+    // Lookups
+    // -----------------------------------------------------------------
+
+    /**
+     * Returns the number of prefix entry rows, i.e., insertions into the prefix table.
+     * @return number of entries
+     */
+    public long getPrefixEntries() {
+        return prefixEntries;
+    }
+
+    /**
+     * Returns the number of prefix entries that replaced an evicted entry (encoder only).
+     * @return number of evictions
+     */
+    public long getPrefixEvictions() {
+        return prefixEvictions;
+    }
+
+    /**
+     * Returns the number of name entry rows, i.e., insertions into the name table.
+     * @return number of entries
+     */
+    public long getNameEntries() {
+        return nameEntries;
+    }
+
+    /**
+     * Returns the number of name entries that replaced an evicted entry (encoder only).
+     * @return number of evictions
+     */
+    public long getNameEvictions() {
+        return nameEvictions;
+    }
+
+    /**
+     * Returns the number of datatype entry rows, i.e., insertions into the datatype table.
+     * @return number of entries
+     */
+    public long getDatatypeEntries() {
+        return datatypeEntries;
+    }
+
+    /**
+     * Returns the number of datatype entries that replaced an evicted entry (encoder only).
+     * @return number of evictions
+     */
+    public long getDatatypeEvictions() {
+        return datatypeEvictions;
+    }
+
+    // -----------------------------------------------------------------
+    // Rows
+    // -----------------------------------------------------------------
+
+    /**
+     * Returns the number of lookup entry rows of all three tables.
+     * @return number of rows
+     */
+    public long getLookupRows() {
+        return prefixEntries + nameEntries + datatypeEntries;
+    }
+
+    /**
+     * Returns the number of triple and quad rows.
+     * @return number of rows
+     */
+    public long getStatementRows() {
+        return statementRows;
+    }
+
+    /**
+     * Returns the number of options, namespace, graph start, and graph end rows.
+     * @return number of rows
+     */
+    public long getOtherRows() {
+        return otherRows;
+    }
+
+    /**
+     * Returns the number of terms left out of statement rows because they were the same as in the previous
+     * statement.
+     * @return number of repeated terms
+     */
+    public long getRepeatedTerms() {
+        return repeatedTerms;
+    }
+
+    // -----------------------------------------------------------------
+    // Bytes
+    // -----------------------------------------------------------------
+
+    /**
+     * Returns the number of frames closed with {@link #endFrame()}.
+     * @return number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of bytes of the rows counted so far, including the current frame.
+     * @return size in bytes
+     */
+    public long getTotalBytes() {
+        return totalBytes + currentFrameBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the rows in the frame that is not closed yet.
+     * @return size in bytes
+     */
+    public long getCurrentFrameBytes() {
+        return currentFrameBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the rows in the last closed frame.
+     * @return size in bytes, or 0 if no frame was closed yet
+     */
+    public long getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    /**
+     * Returns the number of bytes of the rows in the largest closed frame.
+     * @return size in bytes, or 0 if no frame was closed yet
+     */
+    public long getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    /**
+     * Returns the average number of bytes of the rows in a closed frame.
+     * @return size in bytes, or 0 if no frame was closed yet
+     */
+    public double getAverageFrameBytes() {
+        return frames == 0 ? 0.0 : (double) totalBytes / frames;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "StreamStats{" +
+            "iriCache=" +
+            iriCacheHits +
+            "/" +
+            (iriCacheHits + iriCacheMisses) +
+            ", dtLiteralCache=" +
+            dtLiteralCacheHits +
+            "/" +
+            (dtLiteralCacheHits + dtLiteralCacheMisses) +
+            ", otherLiteralCache=" +
+            otherLiteralCacheHits +
+            "/" +
+            (otherLiteralCacheHits + otherLiteralCacheMisses) +
+            ", prefixEntries=" +
+            prefixEntries +
+            " (evicted " +
+            prefixEvictions +
+            "), nameEntries=" +
+            nameEntries +
+            " (evicted " +
+            nameEvictions +
+            "), datatypeEntries=" +
+            datatypeEntries +
+            " (evicted " +
+            datatypeEvictions +
+            "), statementRows=" +
+            statementRows +
+            ", otherRows=" +
+            otherRows +
+            ", repeatedTerms=" +
+            repeatedTerms +
+            ", frames=" +
+            frames +
+            ", totalBytes=" +
+            getTotalBytes() +
+            '}'
+        );
+    }
+}
@@ -0,0 +1,119 @@
+package eu.neverblink.jelly.core.internal;
+
+import eu.neverblink.jelly.core.InternalApi;
+
+/**
+ * Maps the blank node labels of the RDF library to short labels for the stream: "b0", "b1", ..., "bz", "b10", ...
+ * (a base-36 counter). Jena and RDF4J label blank nodes with long UUID-like strings, and these would otherwise
+ * be written verbatim in every row that mentions the blank node.
+ * <p>
+ * The same input label is always mapped to the same output label for the lifetime of this object, so it must
+ * live as long as the stream, not just as long as the lookups. The map is bounded: it holds at most
+ * {@code capacity} labels. Mappings are never evicted, because a label that came back after its mapping was
+ * evicted would get a second, different label – turning one blank node into two. Instead, once the map is full,
+ * new labels spill: they are written verbatim with a "_" in front. The spilled labels cannot collide with the
+ * counter labels nor with each other, so the stream stays consistent, only less compact.
+ * <p>
+ * The map is an open-addressing table keyed by the (cached) hash code of the label, so looking up a label
+ * does not allocate. Not thread-safe.
+ */
+@InternalApi
+final class BlankNodeLabeler {
+
+    /** How many slots the table starts with. Grows up to what the capacity needs. */
+    private static final int INITIAL_SLOTS = 64;
+
+    private final int capacity;
+
+    /** Hash code of the label in each slot. Only valid if the slot is used. */
+    private int[] hashes;
+    /** Input label in each slot, or null if the slot is empty. */
+    private String[] labels;
+    /** Output label in each slot. */
+    private String[] shortLabels;
+    private int mask;
+    private int count = 0;
+
+    /**
+     * @param capacity the maximum number of labels to map to short labels (must be positive)
+     */
+    BlankNodeLabeler(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Blank node table size must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        allocate(Math.min(INITIAL_SLOTS, slotsFor(capacity)));
+    }
+
+    /** Keeps the load factor at most 0.5. */
+    private static int slotsFor(int labels) {
+        return Integer.highestOneBit(Math.max(labels * 2 - 1, 1)) << 1;
+    }
+
+    private void allocate(int slots) {
+        hashes = new int[slots];
+        labels = new String[slots];
+        shortLabels = new String[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Returns the label to write in the stream for a blank node.
+     * @param label label of the blank node in the RDF library
+     * @return short label, or the spilled label if the map is full
+     */
+    String relabel(String label) {
+        final int hash = label.hashCode();
+        int slot = spread(hash) & mask;
+        String existing;
+        while ((existing = labels[slot]) != null) {
+            if (hashes[slot] == hash && existing.equals(label)) {
+                return shortLabels[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (count == capacity) {
+            return "_" + label;
+        }
+        final String shortLabel = "b" + Integer.toString(count, 36);
+        count++;
+        hashes[slot] = hash;
+        labels[slot] = label;
+        shortLabels[slot] = shortLabel;
+        if (count * 2 > labels.length) {
+            grow();
+        }
+        return shortLabel;
+    }
+
+    /**
+     * Returns the number of labels mapped to short labels so far.
+     */
+    int size() {
+        return count;
+    }
+
+    private static int spread(int hash) {
+        final int h = hash * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        final int[] oldHashes = hashes;
+        final String[] oldLabels = labels;
+        final String[] oldShortLabels = shortLabels;
+        allocate(oldLabels.length * 2);
+        for (int i = 0; i < oldLabels.length; i++) {
+            if (oldLabels[i] == null) {
+                continue;
+            }
+            int slot = spread(oldHashes[i]) & mask;
+            while (labels[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = oldHashes[i];
+            labels[slot] = oldLabels[i];
+            shortLabels[slot] = oldShortLabels[i];
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package eu.neverblink.jelly.core.internal;
 
+import com.google.protobuf.CodedInputStream;
 import eu.neverblink.jelly.core.*;
 import eu.neverblink.jelly.core.NameDecoder;
 import eu.neverblink.jelly.core.ProtoDecoderConverter;
@@ -7,6 +8,9 @@ import eu.neverblink.jelly.core.RdfProtoDeserializationError;
 import eu.neverblink.jelly.core.internal.proto.GraphBase;
 import eu.neverblink.jelly.core.internal.proto.SpoBase;
 import eu.neverblink.jelly.core.proto.v1.*;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+import java.util.function.Function;
 
 /**
  * Base trait for Jelly proto decoders. Only for internal use.
@@ -20,29 +24,243 @@ public abstract class DecoderBase<TNode, TDatatype> {
     private NameDecoder<TNode> nameDecoder = null;
     private DecoderLookup<TDatatype> datatypeLookup = null;
 
+    /**
+     * Dictionary to pre-seed the lookups with, whenever they are created. Null if the lookups start empty.
+     */
+    protected LookupDictionary dictionary = null;
+
+    /**
+     * Statistics to record the decoding in, or null if disabled.
+     */
+    protected StreamStats stats = null;
+
+    /**
+     * Filter of the statements, or null if all statements are decoded.
+     */
+    protected StatementFilter filter = null;
+
+    /**
+     * Default number of slots in the literal cache: disabled, so the converter makes every literal unless
+     * the cache is enabled with {@link ProtoDecoder#setLiteralCacheSize(int)}.
+     */
+    protected static final int DEFAULT_LITERAL_CACHE_SIZE = 0;
+
+    // Number of slots in the literal cache, 0 if disabled. The cache is created on first use.
+    private int literalCacheSize = DEFAULT_LITERAL_CACHE_SIZE;
+    private DecoderLiteralCache<TNode> literalCache = null;
+
     protected TNode lastSubject = null;
     protected TNode lastPredicate = null;
     protected TNode lastObject = null;
     protected TNode lastGraph = null;
 
+    // Kinds of terms read from the wire format
+    private static final int TERM_UNSET = 0;
+    private static final int TERM_IRI = 1;
+    private static final int TERM_BNODE = 2;
+    private static final int TERM_LITERAL = 3;
+    private static final int TERM_TRIPLE = 4;
+    private static final int TERM_DEFAULT_GRAPH = 5;
+    // Kinds of terms resolved for a statement filter
+    private static final int TERM_RESOLVED_IRI = 6;
+    private static final int TERM_NODE = 7;
+
+    // Kinds of the consecutive fields of a term in RdfTriple, RdfQuad, and RdfGraphStart
+    private static final int[] SPO_TERM_KINDS = { TERM_IRI, TERM_BNODE, TERM_LITERAL, TERM_TRIPLE };
+    private static final int[] GRAPH_TERM_KINDS = { TERM_IRI, TERM_BNODE, TERM_DEFAULT_GRAPH, TERM_LITERAL };
+
+    /**
+     * Term of a statement row read from the wire format, before it is converted to a node.
+     * Reused for every row.
+     */
+    private static final class ReadTerm {
+
+        int kind;
+        int prefixId;
+        int nameId;
+        // Blank node label or lexical form of a literal
+        String value;
+        // RdfLiteral.LANGTAG, RdfLiteral.DATATYPE, or 0 for a simple literal
+        int literalKind;
+        String langtag;
+        int datatype;
+        RdfTriple quotedTriple;
+        // Set by resolveFilteredTerm: the lookup entries of a TERM_RESOLVED_IRI when it was resolved,
+        // the datatype of a literal, and the node of a TERM_NODE
+        String iriPrefix;
+        String iriName;
+        Object datatypeValue;
+        Object node;
+    }
+
+    // Subject, predicate, object, and graph of the row being read
+    private final ReadTerm[] readTerms = { new ReadTerm(), new ReadTerm(), new ReadTerm(), new ReadTerm() };
+
+    // Resolved terms of the statements rejected by the filter, converted only if a later statement repeats
+    // them. At each position, either the pending term is set, or the last term is in lastSubject etc.
+    private final ReadTerm[] pendingTerms = { new ReadTerm(), new ReadTerm(), new ReadTerm(), new ReadTerm() };
+    // Whether the last predicate and graph passed the filter, for repeated terms
+    private boolean lastPredicateAccepted = true;
+    private boolean lastGraphAccepted = true;
+
     protected DecoderBase(ProtoDecoderConverter<TNode, TDatatype> converter) {
         this.converter = converter;
     }
 
     protected final NameDecoder<TNode> getNameDecoder() {
         if (nameDecoder == null) {
-            nameDecoder = new NameDecoderImpl<>(getPrefixTableSize(), getNameTableSize(), converter::makeIriNode);
+            final var decoder = converter.makeNameDecoder(getPrefixTableSize(), getNameTableSize());
+            if (dictionary != null) {
+                // Same as receiving the entries in the stream, with consecutive ids starting from 1
+                final var entries = dictionary.entriesFor(
+                    getPrefixTableSize(),
+                    getNameTableSize(),
+                    getDatatypeTableSize()
+                );
+                for (final String prefix : entries.prefixes()) {
+                    decoder.updatePrefixes(0, prefix);
+                }
+                for (final String name : entries.names()) {
+                    decoder.updateNames(0, name);
+                }
+            }
+            nameDecoder = decoder;
         }
         return nameDecoder;
     }
 
     protected final DecoderLookup<TDatatype> getDatatypeLookup() {
         if (datatypeLookup == null) {
-            datatypeLookup = new DecoderLookup<>(getDatatypeTableSize());
+            final var lookup = new DecoderLookup<TDatatype>(getDatatypeTableSize());
+            if (dictionary != null) {
+                final var entries = dictionary.entriesFor(
+                    getPrefixTableSize(),
+                    getNameTableSize(),
+                    getDatatypeTableSize()
+                );
+                for (final String datatype : entries.datatypes()) {
+                    lookup.update(0, converter.makeDatatype(datatype));
+                }
+            }
+            datatypeLookup = lookup;
         }
         return datatypeLookup;
     }
 
+    /**
+     * Sets the number of slots in the cache of decoded literals, dropping the cached ones.
+     * @param size number of slots, rounded up to a power of two, or 0 to disable the cache
+     */
+    protected final void configureLiteralCache(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Literal cache size must not be negative, got " + size);
+        }
+        literalCacheSize = size;
+        literalCache = null;
+    }
+
+    /**
+     * Returns the number of slots requested for the literal cache.
+     * @return number of slots, or 0 if the cache is disabled
+     */
+    protected final int getLiteralCacheSize() {
+        return literalCacheSize;
+    }
+
+    /**
+     * Forgets all lookup table entries and previously seen terms, so that the decoder can start
+     * decoding a new, independent stream (e.g., one of several concatenated streams).
+     */
+    protected final void resetState() {
+        nameDecoder = null;
+        datatypeLookup = null;
+        lastSubject = null;
+        lastPredicate = null;
+        lastObject = null;
+        lastGraph = null;
+        for (final var pending : pendingTerms) {
+            pending.kind = TERM_UNSET;
+        }
+        lastPredicateAccepted = true;
+        lastGraphAccepted = true;
+    }
+
+    /**
+     * Captures the state of the lookups and of the repeated terms in a checkpoint.
+     *
+     * @param options options of the stream
+     * @param currentGraph graph that was started and not yet ended (GRAPHS streams), or null
+     * @param termMapper converts the nodes of the RDF library to checkpoint terms
+     * @param datatypeMapper converts the datatypes of the RDF library to their IRIs
+     * @return checkpoint
+     */
+    protected final DecoderCheckpoint saveCheckpointState(
+        RdfStreamOptions options,
+        TNode currentGraph,
+        Function<TNode, DecoderCheckpoint.Term> termMapper,
+        Function<TDatatype, String> datatypeMapper
+    ) {
+        if (!(getNameDecoder() instanceof NameDecoderImpl<TNode> names)) {
+            throw new UnsupportedOperationException("This decoder does not support checkpoints.");
+        }
+        convertPendingTerms();
+        final Function<TNode, DecoderCheckpoint.Term> nullableMapper = node ->
+            node == null ? null : termMapper.apply(node);
+        return new DecoderCheckpoint(
+            options,
+            names.savePrefixLookup(),
+            names.saveNameLookup(),
+            getDatatypeLookup().saveState(datatypeMapper),
+            names.getLastPrefixIdReference(),
+            names.getLastNameIdReference(),
+            nullableMapper.apply(lastSubject),
+            nullableMapper.apply(lastPredicate),
+            nullableMapper.apply(lastObject),
+            nullableMapper.apply(lastGraph),
+            nullableMapper.apply(currentGraph)
+        );
+    }
+
+    /**
+     * Replaces the state of the lookups and of the repeated terms with the one from a checkpoint.
+     * The stream options must be already set.
+     *
+     * @param checkpoint checkpoint to restore
+     * @throws RdfProtoDeserializationError if the checkpoint does not fit in the lookups
+     */
+    protected final void restoreCheckpointState(DecoderCheckpoint checkpoint) {
+        resetState();
+        if (!(getNameDecoder() instanceof NameDecoderImpl<TNode> names)) {
+            throw new UnsupportedOperationException("This decoder does not support checkpoints.");
+        }
+        names.restoreState(checkpoint);
+        if (checkpoint.datatypes().values().length > getDatatypeTableSize()) {
+            throw new RdfProtoDeserializationError("The checkpoint does not fit in the datatype lookup table.");
+        }
+        getDatatypeLookup().restoreState(checkpoint.datatypes(), converter::makeDatatype);
+        lastSubject = DecoderCheckpoint.toNode(checkpoint.lastSubject(), converter);
+        lastPredicate = DecoderCheckpoint.toNode(checkpoint.lastPredicate(), converter);
+        lastObject = DecoderCheckpoint.toNode(checkpoint.lastObject(), converter);
+        lastGraph = DecoderCheckpoint.toNode(checkpoint.lastGraph(), converter);
+        if (filter != null) {
+            lastPredicateAccepted = filter.acceptsPredicate(checkpointIri(checkpoint.lastPredicate()));
+            lastGraphAccepted = filter.acceptsGraph(checkpointIri(checkpoint.lastGraph()));
+        }
+    }
+
+    /**
+     * Tells whether the graph that was started in a checkpoint passes the filter.
+     * @param graph graph from the checkpoint, or null
+     * @return true if there is no filter or the graph passes it
+     */
+    protected final boolean acceptsCheckpointGraph(DecoderCheckpoint.Term graph) {
+        return filter == null || filter.acceptsGraph(checkpointIri(graph));
+    }
+
+    private static String checkpointIri(DecoderCheckpoint.Term term) {
+        return term instanceof DecoderCheckpoint.Iri iri ? iri.iri() : null;
+    }
+
     protected abstract int getNameTableSize();
 
     protected abstract int getPrefixTableSize();
@@ -113,17 +331,51 @@ public abstract class DecoderBase<TNode, TDatatype> {
     }
 
     protected final TNode convertLiteral(RdfLiteral literal) {
-        switch (literal.getLiteralKindFieldNumber()) {
-            case RdfLiteral.LANGTAG -> {
-                return converter.makeLangLiteral(literal.getLex(), literal.getLangtag());
-            }
-            case RdfLiteral.DATATYPE -> {
-                return converter.makeDtLiteral(literal.getLex(), getDatatypeLookup().get(literal.getDatatype()));
-            }
-            default -> {
-                return converter.makeSimpleLiteral(literal.getLex());
-            }
+        return switch (literal.getLiteralKindFieldNumber()) {
+            case RdfLiteral.LANGTAG -> makeLiteral(literal.getLex(), RdfLiteral.LANGTAG, literal.getLangtag());
+            case RdfLiteral.DATATYPE -> makeLiteral(
+                literal.getLex(),
+                RdfLiteral.DATATYPE,
+                getDatatypeLookup().get(literal.getDatatype())
+            );
+            default -> makeLiteral(literal.getLex(), 0, DecoderLiteralCache.SIMPLE);
+        };
+    }
+
+    /**
+     * Makes a literal node, or takes it from the literal cache. Literals like "true"^^xsd:boolean may be
+     * repeated millions of times in a stream, and making them again means allocating and validating them
+     * in the RDF library every time.
+     *
+     * @param lex lexical form
+     * @param literalKind RdfLiteral.LANGTAG, RdfLiteral.DATATYPE, or 0 for a simple literal
+     * @param qualifier language tag, datatype from the lookup, or DecoderLiteralCache.SIMPLE
+     * @return literal node
+     */
+    private TNode makeLiteral(String lex, int literalKind, Object qualifier) {
+        // A null datatype (empty lookup entry) is passed on to the converter, as without the cache
+        if (literalCacheSize == 0 || qualifier == null) {
+            return makeUncachedLiteral(lex, literalKind, qualifier);
+        }
+        if (literalCache == null) {
+            literalCache = new DecoderLiteralCache<>(literalCacheSize);
         }
+        final int slot = literalCache.slotFor(lex, literalKind, qualifier);
+        TNode node = literalCache.get(slot, lex, literalKind, qualifier);
+        if (node == null) {
+            node = makeUncachedLiteral(lex, literalKind, qualifier);
+            literalCache.put(slot, lex, literalKind, qualifier, node);
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TNode makeUncachedLiteral(String lex, int literalKind, Object qualifier) {
+        return switch (literalKind) {
+            case RdfLiteral.LANGTAG -> converter.makeLangLiteral(lex, (String) qualifier);
+            case RdfLiteral.DATATYPE -> converter.makeDtLiteral(lex, (TDatatype) qualifier);
+            default -> converter.makeSimpleLiteral(lex);
+        };
     }
 
     /**
@@ -141,6 +393,9 @@ public abstract class DecoderBase<TNode, TDatatype> {
         }
 
         if (term == null) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
             return lastSubject;
         }
 
@@ -164,6 +419,9 @@ public abstract class DecoderBase<TNode, TDatatype> {
         }
 
         if (term == null) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
             return lastPredicate;
         }
 
@@ -187,6 +445,9 @@ public abstract class DecoderBase<TNode, TDatatype> {
         }
 
         if (term == null) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
             return lastObject;
         }
 
@@ -208,6 +469,9 @@ public abstract class DecoderBase<TNode, TDatatype> {
         }
 
         if (graph.getGraph() == null) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
             return lastGraph;
         }
 
@@ -215,4 +479,586 @@ public abstract class DecoderBase<TNode, TDatatype> {
         lastGraph = node;
         return node;
     }
+
+    /**
+     * Reads the terms of an RdfTriple or RdfQuad message from the wire format, up to the current limit
+     * of the input. The terms are converted afterward, with {@link #convertReadSubject()} etc., in the order
+     * of the positions in the statement, regardless of the order of the fields on the wire.
+     * <p>
+     * Quoted triples are rare, so they are parsed into RdfTriple messages.
+     *
+     * @param input input positioned at the first field of the message
+     * @throws IOException if the input is malformed
+     */
+    protected final void readStatementTerms(CodedInputStream input) throws IOException {
+        final var terms = readTerms;
+        terms[0].kind = TERM_UNSET;
+        terms[1].kind = TERM_UNSET;
+        terms[2].kind = TERM_UNSET;
+        terms[3].kind = TERM_UNSET;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            final int field = tag >>> 3;
+            // All terms are length-delimited (wire type 2)
+            if ((tag & 7) != 2 || field < 1 || field > 16) {
+                input.skipField(tag);
+                continue;
+            }
+            final int position = (field - 1) >>> 2;
+            final int variant = (field - 1) & 3;
+            readTerm(input, terms[position], position == 3 ? GRAPH_TERM_KINDS[variant] : SPO_TERM_KINDS[variant]);
+        }
+    }
+
+    /**
+     * Reads the graph term of an RdfGraphStart message from the wire format, up to the current limit
+     * of the input. Convert it with {@link #convertReadGraphStart()}.
+     *
+     * @param input input positioned at the first field of the message
+     * @throws IOException if the input is malformed
+     */
+    protected final void readGraphStartTerm(CodedInputStream input) throws IOException {
+        final var term = readTerms[3];
+        term.kind = TERM_UNSET;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            final int field = tag >>> 3;
+            if ((tag & 7) != 2 || field < 1 || field > 4) {
+                input.skipField(tag);
+                continue;
+            }
+            readTerm(input, term, GRAPH_TERM_KINDS[field - 1]);
+        }
+    }
+
+    private void readTerm(CodedInputStream input, ReadTerm term, int kind) throws IOException {
+        term.kind = kind;
+        switch (kind) {
+            case TERM_BNODE -> term.value = input.readString();
+            case TERM_TRIPLE -> {
+                final var triple = RdfTriple.newInstance();
+                ProtoMessage.mergeDelimitedFrom(triple, input, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH);
+                term.quotedTriple = triple;
+            }
+            case TERM_DEFAULT_GRAPH -> input.skipRawBytes(input.readRawVarint32());
+            default -> {
+                final int oldLimit = input.pushLimit(input.readRawVarint32());
+                if (kind == TERM_IRI) {
+                    readIri(input, term);
+                } else {
+                    readLiteral(input, term);
+                }
+                input.popLimit(oldLimit);
+            }
+        }
+    }
+
+    private static void readIri(CodedInputStream input, ReadTerm term) throws IOException {
+        int prefixId = 0;
+        int nameId = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (tag) {
+                case 8 -> prefixId = input.readUInt32();
+                case 16 -> nameId = input.readUInt32();
+                default -> input.skipField(tag);
+            }
+        }
+        term.prefixId = prefixId;
+        term.nameId = nameId;
+    }
+
+    private static void readLiteral(CodedInputStream input, ReadTerm term) throws IOException {
+        term.value = "";
+        term.literalKind = 0;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (tag) {
+                case 10 -> term.value = input.readString();
+                case 18 -> {
+                    term.langtag = input.readString();
+                    term.literalKind = RdfLiteral.LANGTAG;
+                }
+                case 24 -> {
+                    term.datatype = input.readUInt32();
+                    term.literalKind = RdfLiteral.DATATYPE;
+                }
+                default -> input.skipField(tag);
+            }
+        }
+    }
+
+    private TNode convertReadTerm(ReadTerm term) {
+        return switch (term.kind) {
+            case TERM_IRI -> getNameDecoder().decode(term.prefixId, term.nameId);
+            case TERM_BNODE -> converter.makeBlankNode(term.value);
+            case TERM_LITERAL -> switch (term.literalKind) {
+                case RdfLiteral.LANGTAG -> makeLiteral(term.value, RdfLiteral.LANGTAG, term.langtag);
+                case RdfLiteral.DATATYPE -> makeLiteral(
+                    term.value,
+                    RdfLiteral.DATATYPE,
+                    getDatatypeLookup().get(term.datatype)
+                );
+                default -> makeLiteral(term.value, 0, DecoderLiteralCache.SIMPLE);
+            };
+            case TERM_TRIPLE -> converter.makeTripleNode(
+                convertTerm(term.quotedTriple.getSubject()),
+                convertTerm(term.quotedTriple.getPredicate()),
+                convertTerm(term.quotedTriple.getObject())
+            );
+            default -> converter.makeDefaultGraphNode();
+        };
+    }
+
+    /**
+     * Convert the subject read by {@link #readStatementTerms}, while respecting repeated terms.
+     * Same as {@link #convertSubjectTermWrapped(SpoBase)}.
+     * @return converted node
+     */
+    protected final TNode convertReadSubject() {
+        final var term = readTerms[0];
+        if (term.kind == TERM_UNSET) {
+            if (lastSubject == null) {
+                throw new RdfProtoDeserializationError("Empty subject term without previous term.");
+            }
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return lastSubject;
+        }
+        final var node = convertReadSpoTerm(term);
+        lastSubject = node;
+        return node;
+    }
+
+    /**
+     * Convert the predicate read by {@link #readStatementTerms}, while respecting repeated terms.
+     * Same as {@link #convertPredicateTermWrapped(SpoBase)}.
+     * @return converted node
+     */
+    protected final TNode convertReadPredicate() {
+        final var term = readTerms[1];
+        if (term.kind == TERM_UNSET) {
+            if (lastPredicate == null) {
+                throw new RdfProtoDeserializationError("Empty predicate term without previous term.");
+            }
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return lastPredicate;
+        }
+        final var node = convertReadSpoTerm(term);
+        lastPredicate = node;
+        return node;
+    }
+
+    /**
+     * Convert the object read by {@link #readStatementTerms}, while respecting repeated terms.
+     * Same as {@link #convertObjectTermWrapped(SpoBase)}.
+     * @return converted node
+     */
+    protected final TNode convertReadObject() {
+        final var term = readTerms[2];
+        if (term.kind == TERM_UNSET) {
+            if (lastObject == null) {
+                throw new RdfProtoDeserializationError("Empty object term without previous term.");
+            }
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return lastObject;
+        }
+        final var node = convertReadSpoTerm(term);
+        lastObject = node;
+        return node;
+    }
+
+    /**
+     * Convert the graph read by {@link #readStatementTerms}, while respecting repeated terms.
+     * Same as {@link #convertGraphTermWrapped(GraphBase)}.
+     * @return converted node
+     */
+    protected final TNode convertReadGraph() {
+        final var term = readTerms[3];
+        if (term.kind == TERM_UNSET) {
+            if (lastGraph != null && stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return lastGraph;
+        }
+        final var node = convertReadGraphTerm(term);
+        lastGraph = node;
+        return node;
+    }
+
+    /**
+     * Convert the graph read by {@link #readGraphStartTerm}. Same as {@link #convertGraphTerm(Object)}.
+     * @return converted node
+     */
+    protected final TNode convertReadGraphStart() {
+        final var term = readTerms[3];
+        if (term.kind == TERM_UNSET) {
+            throw new RdfProtoDeserializationError("Empty graph term encountered in a GRAPHS stream.");
+        }
+        return convertReadGraphTerm(term);
+    }
+
+    private TNode convertReadSpoTerm(ReadTerm term) {
+        try {
+            return convertReadTerm(term);
+        } catch (Exception e) {
+            throw new RdfProtoDeserializationError("Error while decoding term %s".formatted(e), e);
+        }
+    }
+
+    private TNode convertReadGraphTerm(ReadTerm term) {
+        try {
+            return convertReadTerm(term);
+        } catch (Exception e) {
+            throw new RdfProtoDeserializationError("Error while decoding graph term %s".formatted(e), e);
+        }
+    }
+
+    /**
+     * Loads the terms of a statement message into the same slots as {@link #readStatementTerms}, so that
+     * statements from messages are filtered in the same way as the ones read from the wire format.
+     *
+     * @param spo triple or quad
+     * @param graph the quad, or null for a triple
+     */
+    protected final void loadStatementTerms(SpoBase spo, GraphBase graph) {
+        final var terms = readTerms;
+        loadTerm(spo.getSubject(), terms[0]);
+        loadTerm(spo.getPredicate(), terms[1]);
+        loadTerm(spo.getObject(), terms[2]);
+        loadTerm(graph == null ? null : graph.getGraph(), terms[3]);
+    }
+
+    /**
+     * Loads the graph of a graph start message into the same slot as {@link #readGraphStartTerm}.
+     * @param graphStart graph start
+     */
+    protected final void loadGraphStartTerm(RdfGraphStart graphStart) {
+        loadTerm(graphStart.getGraph(), readTerms[3]);
+    }
+
+    private static void loadTerm(Object value, ReadTerm term) {
+        if (value == null) {
+            term.kind = TERM_UNSET;
+        } else if (value instanceof RdfIri iri) {
+            term.kind = TERM_IRI;
+            term.prefixId = iri.getPrefixId();
+            term.nameId = iri.getNameId();
+        } else if (value instanceof String bNode) {
+            term.kind = TERM_BNODE;
+            term.value = bNode;
+        } else if (value instanceof RdfLiteral literal) {
+            term.kind = TERM_LITERAL;
+            term.value = literal.getLex();
+            switch (literal.getLiteralKindFieldNumber()) {
+                case RdfLiteral.LANGTAG -> {
+                    term.literalKind = RdfLiteral.LANGTAG;
+                    term.langtag = literal.getLangtag();
+                }
+                case RdfLiteral.DATATYPE -> {
+                    term.literalKind = RdfLiteral.DATATYPE;
+                    term.datatype = literal.getDatatype();
+                }
+                default -> term.literalKind = 0;
+            }
+        } else if (value instanceof RdfTriple triple) {
+            term.kind = TERM_TRIPLE;
+            term.quotedTriple = triple;
+        } else if (value instanceof RdfDefaultGraph) {
+            term.kind = TERM_DEFAULT_GRAPH;
+        } else {
+            throw new RdfProtoDeserializationError("Unknown term type: %s".formatted(value.getClass().getName()));
+        }
+    }
+
+    /**
+     * Checks the statement read by {@link #readStatementTerms} or loaded by {@link #loadStatementTerms}
+     * against the filter.
+     * <p>
+     * The IRIs are only resolved to their lookup ids (keeping the inference of the 0 ids in step), and the
+     * filter is evaluated on the ids. If the statement passes, convert its terms with
+     * {@link #convertFilteredSubject()} etc. Otherwise, nothing is converted: the terms are kept as pending,
+     * in case the next statements repeat them.
+     *
+     * @param hasGraph whether the graph slot is part of the statement (quads)
+     * @param graphAccepted whether the graph passes the filter, for triples in GRAPHS streams
+     * @return true if the statement passes the filter
+     */
+    protected final boolean filterReadStatement(boolean hasGraph, boolean graphAccepted) {
+        final var names = getFilterNameDecoder();
+        final var terms = readTerms;
+        resolveFilteredTerm(names, terms[0], 0);
+        resolveFilteredTerm(names, terms[1], 1);
+        resolveFilteredTerm(names, terms[2], 2);
+        final boolean predicateAccepted = acceptsFilteredPredicate(names, terms[1]);
+        final int count;
+        if (hasGraph) {
+            resolveFilteredTerm(names, terms[3], 3);
+            graphAccepted = acceptsFilteredGraph(names, terms[3]);
+            count = 4;
+        } else {
+            count = 3;
+        }
+        if (predicateAccepted && graphAccepted) {
+            return true;
+        }
+
+        final var pending = pendingTerms;
+        for (int i = 0; i < count; i++) {
+            final var term = terms[i];
+            if (term.kind != TERM_UNSET) {
+                terms[i] = pending[i];
+                pending[i] = term;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the graph just converted with {@link #convertReadGraphStart()} passes the filter.
+     * @return true if the graph passes
+     */
+    protected final boolean acceptsReadGraphStart() {
+        if (readTerms[3].kind != TERM_IRI) {
+            return filter.acceptsGraph(null);
+        }
+        final var names = getFilterNameDecoder();
+        try {
+            final int mask = names.matchFilter(
+                names.getLastPrefixIdReference(),
+                names.getLastNameIdReference(),
+                filter
+            );
+            return (mask & NameDecoderImpl.FILTER_GRAPH) != 0;
+        } catch (Exception e) {
+            throw new RdfProtoDeserializationError("Error while decoding graph term %s".formatted(e), e);
+        }
+    }
+
+    /**
+     * Convert the subject of a statement that passed {@link #filterReadStatement}.
+     * @return converted node
+     */
+    protected final TNode convertFilteredSubject() {
+        return lastSubject = convertFilteredTerm(0, lastSubject);
+    }
+
+    /**
+     * Convert the predicate of a statement that passed {@link #filterReadStatement}.
+     * @return converted node
+     */
+    protected final TNode convertFilteredPredicate() {
+        return lastPredicate = convertFilteredTerm(1, lastPredicate);
+    }
+
+    /**
+     * Convert the object of a statement that passed {@link #filterReadStatement}.
+     * @return converted node
+     */
+    protected final TNode convertFilteredObject() {
+        return lastObject = convertFilteredTerm(2, lastObject);
+    }
+
+    /**
+     * Convert the graph of a quad that passed {@link #filterReadStatement}.
+     * @return converted node
+     */
+    protected final TNode convertFilteredGraph() {
+        return lastGraph = convertFilteredTerm(3, lastGraph);
+    }
+
+    /**
+     * Tells whether the decoder can apply a statement filter. The filter needs the IRIs of the lookup entries,
+     * which are not kept by converters that decode IRIs to something else than strings (see {@link IdTerm}).
+     * @return true if the converter decodes the IRIs from the strings in the lookups
+     */
+    protected final boolean supportsFilter() {
+        return converter.decodesIrisFromStrings();
+    }
+
+    private NameDecoderImpl<TNode> getFilterNameDecoder() {
+        if (getNameDecoder() instanceof NameDecoderImpl<TNode> names) {
+            return names;
+        }
+        throw new UnsupportedOperationException("This decoder does not support statement filters.");
+    }
+
+    private TNode getLastTerm(int position) {
+        return switch (position) {
+            case 0 -> lastSubject;
+            case 1 -> lastPredicate;
+            case 2 -> lastObject;
+            default -> lastGraph;
+        };
+    }
+
+    private void resolveFilteredTerm(NameDecoderImpl<TNode> names, ReadTerm term, int position) {
+        if (term.kind == TERM_UNSET) {
+            if (pendingTerms[position].kind == TERM_UNSET && getLastTerm(position) == null) {
+                switch (position) {
+                    case 0 -> throw new RdfProtoDeserializationError("Empty subject term without previous term.");
+                    case 1 -> throw new RdfProtoDeserializationError("Empty predicate term without previous term.");
+                    case 2 -> throw new RdfProtoDeserializationError("Empty object term without previous term.");
+                    // No graph is allowed, like in convertGraphTermWrapped
+                    default -> {
+                        return;
+                    }
+                }
+            }
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return;
+        }
+
+        try {
+            switch (term.kind) {
+                case TERM_IRI -> {
+                    names.resolve(term.prefixId, term.nameId);
+                    term.kind = TERM_RESOLVED_IRI;
+                    term.prefixId = names.getLastPrefixIdReference();
+                    term.nameId = names.getLastNameIdReference();
+                    term.iriPrefix = names.getPrefix(term.prefixId);
+                    term.iriName = names.getName(term.nameId);
+                }
+                case TERM_LITERAL -> {
+                    if (term.literalKind == RdfLiteral.DATATYPE) {
+                        term.datatypeValue = getDatatypeLookup().get(term.datatype);
+                    }
+                }
+                case TERM_TRIPLE -> {
+                    // Quoted triples are rare, and their IRIs must be decoded in order anyway
+                    term.node = convertReadTerm(term);
+                    term.kind = TERM_NODE;
+                }
+                default -> {}
+            }
+        } catch (Exception e) {
+            throw filteredTermError(position, e);
+        }
+    }
+
+    private boolean acceptsFilteredPredicate(NameDecoderImpl<TNode> names, ReadTerm term) {
+        return switch (term.kind) {
+            // There must be a previous predicate, checked in resolveFilteredTerm
+            case TERM_UNSET -> lastPredicateAccepted;
+            case TERM_RESOLVED_IRI -> lastPredicateAccepted =
+                (matchFilteredIri(names, term, 1) & NameDecoderImpl.FILTER_PREDICATE) != 0;
+            default -> lastPredicateAccepted = filter.acceptsPredicate(null);
+        };
+    }
+
+    private boolean acceptsFilteredGraph(NameDecoderImpl<TNode> names, ReadTerm term) {
+        return switch (term.kind) {
+            // No graph at all if there is no previous one
+            case TERM_UNSET -> pendingTerms[3].kind != TERM_UNSET || lastGraph != null
+                ? lastGraphAccepted
+                : filter.acceptsGraph(null);
+            case TERM_RESOLVED_IRI -> lastGraphAccepted =
+                (matchFilteredIri(names, term, 3) & NameDecoderImpl.FILTER_GRAPH) != 0;
+            default -> lastGraphAccepted = filter.acceptsGraph(null);
+        };
+    }
+
+    private int matchFilteredIri(NameDecoderImpl<TNode> names, ReadTerm term, int position) {
+        try {
+            return names.matchFilter(term.prefixId, term.nameId, filter);
+        } catch (Exception e) {
+            throw filteredTermError(position, e);
+        }
+    }
+
+    private TNode convertFilteredTerm(int position, TNode lastTerm) {
+        var term = readTerms[position];
+        final var pending = pendingTerms[position];
+        if (term.kind == TERM_UNSET) {
+            if (pending.kind == TERM_UNSET) {
+                return lastTerm;
+            }
+            term = pending;
+        }
+        final TNode node;
+        try {
+            node = convertResolvedTerm(term);
+        } catch (Exception e) {
+            throw filteredTermError(position, e);
+        }
+        pending.kind = TERM_UNSET;
+        return node;
+    }
+
+    /**
+     * Converts the terms left pending by the filter, so that lastSubject etc. are up to date.
+     */
+    private void convertPendingTerms() {
+        if (pendingTerms[0].kind != TERM_UNSET) {
+            lastSubject = convertPendingTerm(0);
+        }
+        if (pendingTerms[1].kind != TERM_UNSET) {
+            lastPredicate = convertPendingTerm(1);
+        }
+        if (pendingTerms[2].kind != TERM_UNSET) {
+            lastObject = convertPendingTerm(2);
+        }
+        if (pendingTerms[3].kind != TERM_UNSET) {
+            lastGraph = convertPendingTerm(3);
+        }
+    }
+
+    private TNode convertPendingTerm(int position) {
+        final var pending = pendingTerms[position];
+        final TNode node;
+        try {
+            node = convertResolvedTerm(pending);
+        } catch (Exception e) {
+            throw filteredTermError(position, e);
+        }
+        pending.kind = TERM_UNSET;
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TNode convertResolvedTerm(ReadTerm term) {
+        return switch (term.kind) {
+            case TERM_RESOLVED_IRI -> {
+                final var names = getFilterNameDecoder();
+                if (term.iriName == null || (term.prefixId != 0 && term.iriPrefix == null)) {
+                    throw new RdfProtoDeserializationError(
+                        "Encountered an invalid IRI reference. Prefix ID: %d, Name ID: %d".formatted(
+                            term.prefixId,
+                            term.nameId
+                        )
+                    );
+                }
+                // The IRI may have been pending while its lookup entries were replaced
+                if (
+                    names.getName(term.nameId) == term.iriName && names.getPrefix(term.prefixId) == term.iriPrefix
+                ) {
+                    yield names.decodeRaw(term.prefixId, term.nameId);
+                }
+                yield converter.makeIriNode(
+                    term.iriPrefix == null ? term.iriName : term.iriPrefix.concat(term.iriName)
+                );
+            }
+            case TERM_BNODE -> converter.makeBlankNode(term.value);
+            case TERM_LITERAL -> switch (term.literalKind) {
+                case RdfLiteral.LANGTAG -> makeLiteral(term.value, RdfLiteral.LANGTAG, term.langtag);
+                case RdfLiteral.DATATYPE -> makeLiteral(term.value, RdfLiteral.DATATYPE, term.datatypeValue);
+                default -> makeLiteral(term.value, 0, DecoderLiteralCache.SIMPLE);
+            };
+            case TERM_NODE -> (TNode) term.node;
+            default -> converter.makeDefaultGraphNode();
+        };
+    }
+
+    private static RdfProtoDeserializationError filteredTermError(int position, Exception e) {
+        return position == 3
+            ? new RdfProtoDeserializationError("Error while decoding graph term %s".formatted(e), e)
+            : new RdfProtoDeserializationError("Error while decoding term %s".formatted(e), e);
+    }
 }
@@ -0,0 +1,71 @@
+package eu.neverblink.jelly.core.internal;
+
+/**
+ * A direct-mapped cache for decoded literals, keyed by the lexical form and the datatype or language tag.
+ * Like the node caches of {@link NodeEncoderImpl}, the hash picks one slot, and a colliding literal takes
+ * it over.
+ * <p>
+ * The datatype in the key is the one resolved from the lookup, not its id, so the entries stay valid when
+ * the datatype lookup is updated. The key also includes the kind of the literal, as some libraries represent
+ * datatypes as plain strings, just like language tags. Not thread-safe.
+ *
+ * @param <TNode> type of RDF nodes in the library
+ */
+final class DecoderLiteralCache<TNode> {
+
+    /**
+     * Stands in for the datatype of simple literals.
+     */
+    static final Object SIMPLE = new Object();
+
+    private final String[] lexes;
+    // RdfLiteral.LANGTAG, RdfLiteral.DATATYPE, or 0 for a simple literal
+    private final int[] kinds;
+    // Datatype, language tag, or SIMPLE
+    private final Object[] qualifiers;
+    private final Object[] nodes;
+    private final int mask;
+
+    /**
+     * @param minSize minimum number of slots, rounded up to a power of two
+     */
+    DecoderLiteralCache(int minSize) {
+        final int size = Integer.highestOneBit(Math.max(minSize - 1, 1)) << 1;
+        this.lexes = new String[size];
+        this.kinds = new int[size];
+        this.qualifiers = new Object[size];
+        this.nodes = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Picks the slot for a literal. Pass it to {@link #get} and, on a miss, to {@link #put}.
+     */
+    int slotFor(String lex, int kind, Object qualifier) {
+        final int h = ((lex.hashCode() * 31 + qualifier.hashCode()) * 31 + kind) * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return the cached literal, or null if the slot holds another one
+     */
+    @SuppressWarnings("unchecked")
+    TNode get(int slot, String lex, int kind, Object qualifier) {
+        final Object cachedQualifier = qualifiers[slot];
+        if (
+            kinds[slot] == kind &&
+            (cachedQualifier == qualifier || qualifier.equals(cachedQualifier)) &&
+            lex.equals(lexes[slot])
+        ) {
+            return (TNode) nodes[slot];
+        }
+        return null;
+    }
+
+    void put(int slot, String lex, int kind, Object qualifier, TNode node) {
+        lexes[slot] = lex;
+        kinds[slot] = kind;
+        qualifiers[slot] = qualifier;
+        nodes[slot] = node;
+    }
+}
@@ -1,6 +1,8 @@
 package eu.neverblink.jelly.core.internal;
 
+import eu.neverblink.jelly.core.DecoderCheckpoint;
 import eu.neverblink.jelly.core.InternalApi;
+import java.util.function.Function;
 
 /**
  * Simple, array-based lookup for the protobuf decoder.
@@ -44,4 +46,31 @@ public final class DecoderLookup<T> {
     public T get(int id) {
         return lookup[id - 1];
     }
+
+    /**
+     * Captures the contents of the lookup, for a {@link DecoderCheckpoint}.
+     * @param toString converts the values to the strings they were created from
+     * @return state of the lookup
+     */
+    public DecoderCheckpoint.Lookup saveState(Function<T, String> toString) {
+        final var values = new String[lookup.length];
+        for (int i = 0; i < lookup.length; i++) {
+            values[i] = lookup[i] == null ? null : toString.apply(lookup[i]);
+        }
+        return new DecoderCheckpoint.Lookup(values, lastSetId + 1);
+    }
+
+    /**
+     * Restores the contents of the lookup from a checkpoint.
+     * @param state state of the lookup
+     * @param fromString converts the strings back to the values
+     * @throws ArrayIndexOutOfBoundsException if the state does not fit in the lookup
+     */
+    public void restoreState(DecoderCheckpoint.Lookup state, Function<String, T> fromString) {
+        final var values = state.values();
+        for (int i = 0; i < values.length; i++) {
+            lookup[i] = values[i] == null ? null : fromString.apply(values[i]);
+        }
+        lastSetId = state.lastSetId() - 1;
+    }
 }
@@ -0,0 +1,363 @@
+package eu.neverblink.jelly.core.internal;
+
+import com.google.protobuf.CodedOutputStream;
+import eu.neverblink.jelly.core.*;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
+import eu.neverblink.jelly.core.proto.v1.*;
+import java.io.IOException;
+
+/**
+ * Stateful encoder of a protobuf RDF stream that writes the wire format of each row directly into
+ * a {@link SerializedFrameBuffer}, instead of building RdfStreamRow / RdfTriple / RdfQuad objects.
+ * <p>
+ * The output is byte-for-byte identical to serializing the rows produced by {@link ProtoEncoderImpl},
+ * but there is no per-row allocation and no second walk over the object graph at serialization time.
+ * The row buffer and allocator in the params are not used and may be null.
+ * <p>
+ * Like ProtoEncoderImpl, this class does not check if the user is conforming to the stream options.
+ */
+@InternalApi
+public final class DirectProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
+
+    // Field numbers of RdfStreamRow
+    private static final int ROW_OPTIONS = 1;
+    private static final int ROW_TRIPLE = 2;
+    private static final int ROW_QUAD = 3;
+    private static final int ROW_GRAPH_START = 4;
+    private static final int ROW_GRAPH_END = 5;
+    private static final int ROW_NAMESPACE = 6;
+    private static final int ROW_NAME = 9;
+    private static final int ROW_PREFIX = 10;
+    private static final int ROW_DATATYPE = 11;
+
+    // First field number of each term in RdfTriple, RdfQuad, and RdfGraphStart.
+    // The term kinds follow in order: IRI, bnode, literal, triple (or default graph for graphs).
+    private static final int SUBJECT_BASE = 1;
+    private static final int PREDICATE_BASE = 5;
+    private static final int OBJECT_BASE = 9;
+    private static final int QUAD_GRAPH_BASE = 13;
+    private static final int GRAPH_START_BASE = 1;
+
+    private final SerializedFrameBuffer frameBuffer;
+
+    /**
+     * Constructor for the DirectProtoEncoderImpl class.
+     *
+     * @param converter   converter for the encoder
+     * @param params      parameters object for the encoder (row buffer and allocator are ignored)
+     * @param frameBuffer buffer to which the serialized rows will be appended
+     */
+    public DirectProtoEncoderImpl(
+        ProtoEncoderConverter<TNode> converter,
+        ProtoEncoder.Params params,
+        SerializedFrameBuffer frameBuffer
+    ) {
+        super(converter, params);
+        this.frameBuffer = frameBuffer;
+    }
+
+    /**
+     * Returns the buffer to which this encoder writes the serialized rows.
+     * @return frame buffer
+     */
+    public SerializedFrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    /**
+     * Returns the size of the frame buffer, which is exact and already tracked by the buffer.
+     */
+    @Override
+    public long getFrameBytes() {
+        return frameBuffer.getSerializedSize();
+    }
+
+    @Override
+    public void handleTriple(TNode subject, TNode predicate, TNode object) {
+        emitOptions();
+        // Encode the terms first, as they may emit lookup entry rows that must precede this row.
+        final var s = encodeSubject(subject);
+        final var p = encodePredicate(predicate);
+        final var o = encodeObject(object);
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int start = buf.beginLengthDelimited(ROW_TRIPLE);
+        writeTerm(s, SUBJECT_BASE);
+        writeTerm(p, PREDICATE_BASE);
+        writeTerm(o, OBJECT_BASE);
+        buf.endLengthDelimited(start);
+        final int rowBytes = buf.endRow();
+        if (stats != null) {
+            stats.recordStatementRow(rowBytes);
+        }
+    }
+
+    @Override
+    public void handleQuad(TNode subject, TNode predicate, TNode object, TNode graph) {
+        emitOptions();
+        final var s = encodeSubject(subject);
+        final var p = encodePredicate(predicate);
+        final var o = encodeObject(object);
+        final var g = encodeGraph(graph);
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int start = buf.beginLengthDelimited(ROW_QUAD);
+        writeTerm(s, SUBJECT_BASE);
+        writeTerm(p, PREDICATE_BASE);
+        writeTerm(o, OBJECT_BASE);
+        writeGraphTerm(g, QUAD_GRAPH_BASE);
+        buf.endLengthDelimited(start);
+        final int rowBytes = buf.endRow();
+        if (stats != null) {
+            stats.recordStatementRow(rowBytes);
+        }
+    }
+
+    @Override
+    public void handleTriples(TNode[] subjects, TNode[] predicates, TNode[] objects, int count) {
+        emitOptions();
+        final var buf = frameBuffer;
+        for (int i = 0; i < count; i++) {
+            final var s = encodeSubject(subjects, i);
+            final var p = encodePredicate(predicates, i);
+            final var o = encodeObject(objects[i]);
+            buf.beginRow();
+            final int start = buf.beginLengthDelimited(ROW_TRIPLE);
+            writeTerm(s, SUBJECT_BASE);
+            writeTerm(p, PREDICATE_BASE);
+            writeTerm(o, OBJECT_BASE);
+            buf.endLengthDelimited(start);
+            final int rowBytes = buf.endRow();
+            if (stats != null) {
+                stats.recordStatementRow(rowBytes);
+            }
+        }
+    }
+
+    @Override
+    public void handleQuads(TNode[] subjects, TNode[] predicates, TNode[] objects, TNode[] graphs, int count) {
+        emitOptions();
+        final var buf = frameBuffer;
+        for (int i = 0; i < count; i++) {
+            final var s = encodeSubject(subjects, i);
+            final var p = encodePredicate(predicates, i);
+            final var o = encodeObject(objects[i]);
+            final var g = encodeGraph(graphs, i);
+            buf.beginRow();
+            final int start = buf.beginLengthDelimited(ROW_QUAD);
+            writeTerm(s, SUBJECT_BASE);
+            writeTerm(p, PREDICATE_BASE);
+            writeTerm(o, OBJECT_BASE);
+            writeGraphTerm(g, QUAD_GRAPH_BASE);
+            buf.endLengthDelimited(start);
+            final int rowBytes = buf.endRow();
+            if (stats != null) {
+                stats.recordStatementRow(rowBytes);
+            }
+        }
+    }
+
+    @Override
+    public void handleGraphStart(TNode graph) {
+        emitOptions();
+        final var g = converter.graphNodeToProto(getNodeEncoder(), graph);
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int start = buf.beginLengthDelimited(ROW_GRAPH_START);
+        writeGraphTerm(g, GRAPH_START_BASE);
+        buf.endLengthDelimited(start);
+        final int rowBytes = buf.endRow();
+        if (stats != null) {
+            stats.recordOtherRow(rowBytes);
+        }
+    }
+
+    @Override
+    public void handleGraphEnd() {
+        if (!hasEmittedOptions) {
+            throw new RdfProtoSerializationError("Cannot end a delimited graph before starting one");
+        }
+        frameBuffer.beginRow();
+        frameBuffer.writeEmptyMessage(ROW_GRAPH_END);
+        final int rowBytes = frameBuffer.endRow();
+        if (stats != null) {
+            stats.recordOtherRow(rowBytes);
+        }
+    }
+
+    @Override
+    public void handleNamespace(String prefix, TNode namespace) {
+        if (!enableNamespaceDeclarations) {
+            throw new RdfProtoSerializationError("Namespace declarations are not enabled in this stream");
+        }
+
+        emitOptions();
+
+        final var iri = (RdfIri) converter.nodeToProto(getNodeEncoder(), namespace);
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int start = buf.beginLengthDelimited(ROW_NAMESPACE);
+        if (!prefix.isEmpty()) {
+            buf.writeString(1, prefix);
+        }
+        writeIri(iri, 2);
+        buf.endLengthDelimited(start);
+        final int rowBytes = buf.endRow();
+        if (stats != null) {
+            stats.recordOtherRow(rowBytes);
+        }
+    }
+
+    @Override
+    public void appendNameEntry(RdfNameEntry nameEntry) {
+        final int rowBytes = writeLookupEntry(ROW_NAME, nameEntry.getId(), nameEntry.getValue());
+        if (stats != null) {
+            stats.recordNameEntry(rowBytes);
+        }
+    }
+
+    @Override
+    public void appendPrefixEntry(RdfPrefixEntry prefixEntry) {
+        final int rowBytes = writeLookupEntry(ROW_PREFIX, prefixEntry.getId(), prefixEntry.getValue());
+        if (stats != null) {
+            stats.recordPrefixEntry(rowBytes);
+        }
+    }
+
+    @Override
+    public void appendDatatypeEntry(RdfDatatypeEntry datatypeEntry) {
+        final int rowBytes = writeLookupEntry(ROW_DATATYPE, datatypeEntry.getId(), datatypeEntry.getValue());
+        if (stats != null) {
+            stats.recordDatatypeEntry(rowBytes);
+        }
+    }
+
+    /**
+     * Writes a lookup entry row.
+     * @return size of the row in bytes
+     */
+    private int writeLookupEntry(int rowField, int id, String value) {
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int start = buf.beginLengthDelimited(rowField);
+        if (id != 0) {
+            buf.writeUInt32(1, id);
+        }
+        if (!value.isEmpty()) {
+            buf.writeString(2, value);
+        }
+        buf.endLengthDelimited(start);
+        return buf.endRow();
+    }
+
+    /**
+     * Writes a subject, predicate, or object term. Null (elided term) writes nothing.
+     * @param term encoded term
+     * @param base field number of the IRI variant of this term
+     */
+    private void writeTerm(Object term, int base) {
+        if (term == null) {
+            return;
+        }
+        if (term instanceof RdfIri iri) {
+            writeIri(iri, base);
+        } else if (term instanceof String bnode) {
+            frameBuffer.writeString(base + 1, bnode);
+        } else if (term instanceof RdfLiteral literal) {
+            writeLiteral(literal, base + 2);
+        } else if (term instanceof RdfTriple triple) {
+            final int start = frameBuffer.beginLengthDelimited(base + 3);
+            writeTerm(triple.getSubject(), SUBJECT_BASE);
+            writeTerm(triple.getPredicate(), PREDICATE_BASE);
+            writeTerm(triple.getObject(), OBJECT_BASE);
+            frameBuffer.endLengthDelimited(start);
+        } else {
+            throw new RdfProtoSerializationError("Cannot encode term of type " + term.getClass());
+        }
+    }
+
+    /**
+     * Writes a graph term. Null (elided term) writes nothing.
+     * @param term encoded graph term
+     * @param base field number of the IRI variant of this term
+     */
+    private void writeGraphTerm(Object term, int base) {
+        if (term == null) {
+            return;
+        }
+        if (term instanceof RdfIri iri) {
+            writeIri(iri, base);
+        } else if (term instanceof String bnode) {
+            frameBuffer.writeString(base + 1, bnode);
+        } else if (term instanceof RdfDefaultGraph) {
+            frameBuffer.writeEmptyMessage(base + 2);
+        } else if (term instanceof RdfLiteral literal) {
+            writeLiteral(literal, base + 3);
+        } else {
+            throw new RdfProtoSerializationError("Cannot encode graph term of type " + term.getClass());
+        }
+    }
+
+    private void writeIri(RdfIri iri, int fieldNumber) {
+        final int prefixId = iri.getPrefixId();
+        final int nameId = iri.getNameId();
+        // The size of RdfIri is known up front, so there's no need to patch it later.
+        int size = 0;
+        if (prefixId != 0) {
+            size += 1 + CodedOutputStream.computeUInt32SizeNoTag(prefixId);
+        }
+        if (nameId != 0) {
+            size += 1 + CodedOutputStream.computeUInt32SizeNoTag(nameId);
+        }
+        final var buf = frameBuffer;
+        buf.writeTag(fieldNumber, 2);
+        buf.writeVarint32(size);
+        if (prefixId != 0) {
+            buf.writeUInt32(1, prefixId);
+        }
+        if (nameId != 0) {
+            buf.writeUInt32(2, nameId);
+        }
+    }
+
+    private void writeLiteral(RdfLiteral literal, int fieldNumber) {
+        final var buf = frameBuffer;
+        final int start = buf.beginLengthDelimited(fieldNumber);
+        final String lex = literal.getLex();
+        if (!lex.isEmpty()) {
+            buf.writeString(1, lex);
+        }
+        switch (literal.getLiteralKindFieldNumber()) {
+            case RdfLiteral.LANGTAG -> buf.writeString(2, literal.getLangtag());
+            case RdfLiteral.DATATYPE -> buf.writeUInt32(3, literal.getDatatype());
+            default -> {}
+        }
+        buf.endLengthDelimited(start);
+    }
+
+    private void emitOptions() {
+        if (hasEmittedOptions) {
+            return;
+        }
+
+        hasEmittedOptions = true;
+        final var buf = frameBuffer;
+        buf.beginRow();
+        final int size = options.getSerializedSize();
+        buf.writeTag(ROW_OPTIONS, 2);
+        buf.writeVarint32(size);
+        final int offset = buf.reserve(size);
+        final var output = CodedOutputStream.newInstance(buf.array(), offset, size);
+        try {
+            options.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new RdfProtoSerializationError("Failed to serialize stream options", e);
+        }
+        final int rowBytes = buf.endRow();
+        if (stats != null) {
+            stats.recordOtherRow(rowBytes);
+        }
+        preloadVocabulary(vocabulary);
+    }
+}
@@ -2,6 +2,7 @@ package eu.neverblink.jelly.core.internal;
 
 import eu.neverblink.jelly.core.*;
 import eu.neverblink.jelly.core.internal.proto.*;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.proto.v1.*;
 
 /**
@@ -13,6 +14,13 @@ public abstract class EncoderBase<TNode> implements RdfBufferAppender<TNode> {
 
     protected final ProtoEncoderConverter<TNode> converter;
     private NodeEncoder<TNode> nodeEncoder;
+    // Not reset with the node encoder, as the blank node labels must be consistent in the whole stream.
+    private BlankNodeLabeler blankNodeLabeler;
+
+    /**
+     * Statistics to record the encoding in, or null if disabled.
+     */
+    protected final StreamStats stats;
 
     protected TNode lastSubject = null;
     protected TNode lastPredicate = null;
@@ -22,21 +30,91 @@ public abstract class EncoderBase<TNode> implements RdfBufferAppender<TNode> {
     protected TNode lastGraph = null;
 
     protected EncoderBase(ProtoEncoderConverter<TNode> converter) {
+        this(converter, null);
+    }
+
+    protected EncoderBase(ProtoEncoderConverter<TNode> converter, StreamStats stats) {
         this.converter = converter;
+        this.stats = stats;
     }
 
     protected final NodeEncoder<TNode> getNodeEncoder() {
         if (nodeEncoder == null) {
-            nodeEncoder = NodeEncoderImpl.create(
-                this,
-                getPrefixTableSize(),
-                getNameTableSize(),
-                getDatatypeTableSize()
-            );
+            final var lease = getPoolLease();
+            final NodeEncoderImpl<TNode> encoder = lease != null
+                ? lease.nodeEncoder(this, getPrefixTableSize(), getNameTableSize(), getDatatypeTableSize())
+                : NodeEncoderImpl.create(this, getPrefixTableSize(), getNameTableSize(), getDatatypeTableSize());
+            final var dictionary = getDictionary();
+            if (dictionary != null) {
+                encoder.preloadDictionary(dictionary);
+            }
+            encoder.setStats(stats);
+            encoder.setIriSplitter(getIriSplitter());
+            final int blankNodeTableSize = getBlankNodeTableSize();
+            if (blankNodeTableSize > 0 && blankNodeLabeler == null) {
+                blankNodeLabeler = new BlankNodeLabeler(blankNodeTableSize);
+            }
+            encoder.setBlankNodeLabeler(blankNodeLabeler);
+            nodeEncoder = encoder;
         }
         return nodeEncoder;
     }
 
+    /**
+     * Adds a vocabulary to the lookups, emitting the lookup entry rows.
+     * @param vocabulary vocabulary, or null to do nothing
+     */
+    protected final void preloadVocabulary(LookupVocabulary vocabulary) {
+        if (vocabulary != null) {
+            ((NodeEncoderImpl<TNode>) getNodeEncoder()).preloadVocabulary(vocabulary);
+        }
+    }
+
+    /**
+     * Forgets all lookup entries and previously encoded terms, so that the following rows can be
+     * decoded without the rows emitted so far. The lookups are created anew on first use.
+     */
+    protected final void resetState() {
+        nodeEncoder = null;
+        lastSubject = null;
+        lastPredicate = null;
+        lastObject = null;
+        lastGraphSet = false;
+        lastGraph = null;
+    }
+
+    /**
+     * Returns the dictionary to pre-seed the lookups with, whenever they are created.
+     * @return dictionary, or null if the lookups start empty
+     */
+    protected LookupDictionary getDictionary() {
+        return null;
+    }
+
+    /**
+     * Returns the strategy for splitting IRIs into prefixes and names.
+     * @return strategy, or null for {@link IriSplitter#DEFAULT}
+     */
+    protected IriSplitter getIriSplitter() {
+        return null;
+    }
+
+    /**
+     * Returns how many blank node labels to map to short labels. See {@link BlankNodeLabeler}.
+     * @return number of labels, or 0 to write the labels verbatim
+     */
+    protected int getBlankNodeTableSize() {
+        return 0;
+    }
+
+    /**
+     * Returns the pool lease to take the lookups and node caches from, instead of allocating new ones.
+     * @return lease, or null to allocate them
+     */
+    protected EncoderPool.Lease getPoolLease() {
+        return null;
+    }
+
     protected abstract int getNameTableSize();
 
     protected abstract int getPrefixTableSize();
@@ -72,6 +150,40 @@ public abstract class EncoderBase<TNode> implements RdfBufferAppender<TNode> {
         return quad;
     }
 
+    /**
+     * Converts the i-th triple of a batch. See {@link #encodeSubject(Object[], int)}.
+     */
+    protected final RdfTriple tripleToProto(TNode[] subjects, TNode[] predicates, TNode[] objects, int i) {
+        final RdfTriple.Mutable triple = newTriple();
+        setIfEncoded(triple, encodeSubject(subjects, i), encodePredicate(predicates, i), encodeObject(objects[i]));
+        return triple;
+    }
+
+    /**
+     * Converts the i-th quad of a batch. See {@link #encodeSubject(Object[], int)}.
+     */
+    protected final RdfQuad quadToProto(TNode[] subjects, TNode[] predicates, TNode[] objects, TNode[] graphs, int i) {
+        final RdfQuad.Mutable quad = newQuad();
+        setIfEncoded(quad, encodeSubject(subjects, i), encodePredicate(predicates, i), encodeObject(objects[i]));
+        final var g = encodeGraph(graphs, i);
+        if (g != null) {
+            quad.setGraph(g);
+        }
+        return quad;
+    }
+
+    private static void setIfEncoded(SpoBase.Setters target, Object s, Object p, Object o) {
+        if (s != null) {
+            target.setSubject(s);
+        }
+        if (p != null) {
+            target.setPredicate(p);
+        }
+        if (o != null) {
+            target.setObject(o);
+        }
+    }
+
     /**
      * Converts a triple to an RdfQuad object with a null graph.
      * <p>
@@ -96,39 +208,151 @@ public abstract class EncoderBase<TNode> implements RdfBufferAppender<TNode> {
     }
 
     private void subjectNodeToProtoWrapped(SpoBase.Setters target, TNode node) {
-        if (!node.equals(lastSubject)) {
-            lastSubject = node;
-            final var encoded = converter.nodeToProto(getNodeEncoder(), node);
+        final var encoded = encodeSubject(node);
+        if (encoded != null) {
             target.setSubject(encoded);
         }
     }
 
     private void predicateNodeToProtoWrapped(SpoBase.Setters target, TNode node) {
-        if (!node.equals(lastPredicate)) {
-            lastPredicate = node;
-            final var encoded = converter.nodeToProto(getNodeEncoder(), node);
+        final var encoded = encodePredicate(node);
+        if (encoded != null) {
             target.setPredicate(encoded);
         }
     }
 
     private void objectNodeToProtoWrapped(SpoBase.Setters target, TNode node) {
-        if (!node.equals(lastObject)) {
-            lastObject = node;
-            final var encoded = converter.nodeToProto(getNodeEncoder(), node);
+        final var encoded = encodeObject(node);
+        if (encoded != null) {
             target.setObject(encoded);
         }
     }
 
     protected final void graphNodeToProtoWrapped(GraphBase.Setters target, TNode node) {
+        final var encoded = encodeGraph(node);
+        if (encoded != null) {
+            target.setGraph(encoded);
+        }
+    }
+
+    /**
+     * Encodes the subject of a statement, applying the repeated term elision.
+     * @param node subject node
+     * @return the encoded term, or null if the subject is the same as in the previous statement
+     */
+    protected final Object encodeSubject(TNode node) {
+        if (node.equals(lastSubject)) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return null;
+        }
+        lastSubject = node;
+        return converter.nodeToProto(getNodeEncoder(), node);
+    }
+
+    /**
+     * Encodes the predicate of a statement, applying the repeated term elision.
+     * @param node predicate node
+     * @return the encoded term, or null if the predicate is the same as in the previous statement
+     */
+    protected final Object encodePredicate(TNode node) {
+        if (node.equals(lastPredicate)) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return null;
+        }
+        lastPredicate = node;
+        return converter.nodeToProto(getNodeEncoder(), node);
+    }
+
+    /**
+     * Encodes the object of a statement, applying the repeated term elision.
+     * @param node object node
+     * @return the encoded term, or null if the object is the same as in the previous statement
+     */
+    protected final Object encodeObject(TNode node) {
+        if (node.equals(lastObject)) {
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return null;
+        }
+        lastObject = node;
+        return converter.nodeToProto(getNodeEncoder(), node);
+    }
+
+    /**
+     * Encodes the graph of a quad, applying the repeated term elision.
+     * @param node graph node (may be null for the default graph in some libraries)
+     * @return the encoded term, or null if the graph is the same as in the previous statement
+     */
+    protected final Object encodeGraph(TNode node) {
         // Graph nodes may be null in Jena for example... so we need to handle that.
         if ((lastGraphSet && node == null && lastGraph == null) || (node != null && node.equals(lastGraph))) {
-            return;
+            if (stats != null) {
+                stats.recordRepeatedTerm();
+            }
+            return null;
         }
 
         lastGraphSet = true;
         lastGraph = node;
-        final var encoded = converter.graphNodeToProto(getNodeEncoder(), node);
-        target.setGraph(encoded);
+        return converter.graphNodeToProto(getNodeEncoder(), node);
+    }
+
+    /**
+     * Encodes the subject of the i-th statement of a batch, applying the repeated term elision.
+     * <p>
+     * After the previous statement of the batch, the last subject equals the previous element of the array.
+     * So, in a run of the same subject object, the term is elided after a reference comparison, without
+     * calling {@code equals()}.
+     * @param subjects subjects of the batch
+     * @param i index of the statement in the batch
+     * @return the encoded term, or null if the subject is the same as in the previous statement
+     */
+    protected final Object encodeSubject(TNode[] subjects, int i) {
+        final TNode node = subjects[i];
+        if (i > 0 && node == subjects[i - 1]) {
+            return repeatedTerm();
+        }
+        return encodeSubject(node);
+    }
+
+    /**
+     * Encodes the predicate of the i-th statement of a batch. See {@link #encodeSubject(Object[], int)}.
+     * @param predicates predicates of the batch
+     * @param i index of the statement in the batch
+     * @return the encoded term, or null if the predicate is the same as in the previous statement
+     */
+    protected final Object encodePredicate(TNode[] predicates, int i) {
+        final TNode node = predicates[i];
+        if (i > 0 && node == predicates[i - 1]) {
+            return repeatedTerm();
+        }
+        return encodePredicate(node);
+    }
+
+    /**
+     * Encodes the graph of the i-th quad of a batch. See {@link #encodeSubject(Object[], int)}.
+     * @param graphs graphs of the batch (may contain nulls for the default graph in some libraries)
+     * @param i index of the statement in the batch
+     * @return the encoded term, or null if the graph is the same as in the previous statement
+     */
+    protected final Object encodeGraph(TNode[] graphs, int i) {
+        final TNode node = graphs[i];
+        if (i > 0 && node == graphs[i - 1]) {
+            return repeatedTerm();
+        }
+        return encodeGraph(node);
+    }
+
+    private Object repeatedTerm() {
+        if (stats != null) {
+            stats.recordRepeatedTerm();
+        }
+        return null;
     }
 
     @Override
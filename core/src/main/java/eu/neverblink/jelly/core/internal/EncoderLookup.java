@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.core.internal;
 
 import eu.neverblink.jelly.core.InternalApi;
+import eu.neverblink.jelly.core.jfr.LookupEvictingEvent;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -23,6 +24,8 @@ final class EncoderLookup {
         public int setId;
         /** Whether this entry is a new entry. */
         public boolean newEntry;
+        /** Whether the new entry took the place of an evicted one. Only valid if newEntry is true. */
+        public boolean evicted;
 
         public LookupEntry(int getId, int setId, boolean newEntry) {
             this.getId = getId;
@@ -108,10 +111,24 @@ final class EncoderLookup {
     String[] names;
     // Whether to maintain serial numbers for the entries.
     private final boolean useSerials;
+    // Name of the table (prefix, name, datatype), for the JFR event.
+    private final String tableName;
+    // Whether an entry was already evicted, i.e., the table is full.
+    private boolean evicting = false;
 
     private final LookupEntry entryForReturns = new LookupEntry(0, 0, true);
 
     public EncoderLookup(int size, boolean useSerials) {
+        this(size, useSerials, "unknown");
+    }
+
+    /**
+     * Creates a new lookup.
+     * @param size maximum number of entries
+     * @param useSerials whether to maintain serial numbers for the entries
+     * @param tableName name of the table (prefix, name, datatype), reported in {@link LookupEvictingEvent}
+     */
+    public EncoderLookup(int size, boolean useSerials, String tableName) {
         if (size > MAX_TABLE_SIZE) {
             throw new IllegalArgumentException(
                 "Lookup table size %d is above the maximum of %d.".formatted(size, MAX_TABLE_SIZE)
@@ -126,6 +143,7 @@ final class EncoderLookup {
         index = new int[Integer.highestOneBit(Math.max(size * 2 - 1, 1)) << 1];
         indexMask = index.length - 1;
         this.useSerials = useSerials;
+        this.tableName = tableName;
         if (useSerials) {
             serials = new int[capacity + 1];
             // Set the head's serial to non-zero value, so that default-initialized DependentNodes are not
@@ -146,6 +164,28 @@ final class EncoderLookup {
         }
     }
 
+    /**
+     * Empties the lookup for a new stream, keeping the arrays it has grown to.
+     * <p>
+     * The serials of the used entries are bumped instead of cleared, so that nodes cached against them
+     * anywhere are invalidated without having to find them.
+     */
+    void reset() {
+        Arrays.fill(index, 0);
+        Arrays.fill(table, 0, (used + 1) * 2, 0);
+        Arrays.fill(names, 1, used + 1, null);
+        if (useSerials) {
+            final int[] s = Objects.requireNonNull(serials);
+            for (int id = 1; id <= used; id++) {
+                s[id]++;
+            }
+        }
+        tail = 0;
+        used = 0;
+        lastSetId = -1000;
+        evicting = false;
+    }
+
     /** Mixes a hash so that both the slot bits (low) and the tag bits (high) depend on all of it. */
     private static int spread(int hash) {
         final int h = hash * 0x9E3779B1;
@@ -193,6 +233,19 @@ final class EncoderLookup {
         return result;
     }
 
+    /**
+     * Reports that the table became full. Called only once, so it stays out of the hot path.
+     */
+    private void onFirstEviction() {
+        evicting = true;
+        final var event = new LookupEvictingEvent();
+        if (event.shouldCommit()) {
+            event.table = tableName;
+            event.size = size;
+            event.commit();
+        }
+    }
+
     /**
      * Finds the entry whose name is the suffix of source starting at from.
      * @param spread The spread hash of the key.
@@ -368,10 +421,15 @@ final class EncoderLookup {
                 grow();
             }
             addEntrySequential(key, id, spread);
+            entry.evicted = false;
         } else {
             // The table is full, evict the least recently used entry.
             id = table[1] / 2;
             addEntryEvicting(key, id, spread);
+            entry.evicted = true;
+            if (!evicting) {
+                onFirstEviction();
+            }
         }
         if (this.useSerials) {
             // Increment the serial number
@@ -409,6 +467,7 @@ final class EncoderLookup {
                 grow();
             }
             addEntrySequential(key, id, spread);
+            entry.evicted = false;
         } else {
             // The table is full
             if (evictHint != 0) {
@@ -419,6 +478,10 @@ final class EncoderLookup {
                 id = table[1] / 2;
             }
             addEntryEvicting(key, id, spread);
+            entry.evicted = true;
+            if (!evicting) {
+                onFirstEviction();
+            }
         }
         // Serials are not used for transcoders
         entry.getId = id;
@@ -0,0 +1,136 @@
+package eu.neverblink.jelly.core.internal;
+
+import eu.neverblink.jelly.core.IdTerm;
+import eu.neverblink.jelly.core.InternalApi;
+import eu.neverblink.jelly.core.NameDecoder;
+import eu.neverblink.jelly.core.RdfProtoDeserializationError;
+import eu.neverblink.jelly.core.proto.v1.RdfNameEntry;
+import eu.neverblink.jelly.core.proto.v1.RdfPrefixEntry;
+
+/**
+ * Decodes IRIs to the lookup ids they refer to, without building the IRI strings. The ids are inferred
+ * exactly like in {@link NameDecoderImpl}, and every lookup entry gets a serial that is bumped whenever the
+ * entry is set, so that the decoded {@link IdTerm.Iri} stays valid when the entry is reused.
+ */
+@InternalApi
+public final class IdNameDecoder implements NameDecoder<IdTerm> {
+
+    // Serials of the entries, indexed by the 1-based ids. 0 if the entry was never set.
+    private final int[] nameSerials;
+    // Last IRI decoded with each name, reused while its prefix is the same
+    private final IdTerm.Iri[] lastIris;
+    private final int[] prefixSerials;
+
+    private int lastPrefixIdReference = 0;
+    private int lastNameIdReference = 0;
+
+    private int lastPrefixIdSet = 0;
+    private int lastNameIdSet = 0;
+
+    /**
+     * Creates a new IdNameDecoder.
+     *
+     * @param prefixTableSize The size of the prefix lookup table.
+     * @param nameTableSize The size of the name lookup table.
+     */
+    public IdNameDecoder(int prefixTableSize, int nameTableSize) {
+        nameSerials = new int[nameTableSize + 1];
+        lastIris = new IdTerm.Iri[nameTableSize + 1];
+        prefixSerials = new int[prefixTableSize + 1];
+    }
+
+    @Override
+    public void updateNames(RdfNameEntry nameEntry) {
+        updateNames(nameEntry.getId(), nameEntry.getValue());
+    }
+
+    /**
+     * Update the name table with a new entry. Only the serial of the entry is kept, not its value.
+     *
+     * @param id 1-based identifier, or 0 for "the previous id + 1"
+     * @param value new value of the entry
+     * @throws RdfProtoDeserializationError if the identifier is out of bounds
+     */
+    @Override
+    public void updateNames(int id, String value) {
+        lastNameIdSet = ((lastNameIdSet + 1) & ((id - 1) >> 31)) + id;
+        if (lastNameIdSet < 1 || lastNameIdSet >= nameSerials.length) {
+            throw new RdfProtoDeserializationError(
+                "Name entry with ID %d is out of bounds of the name lookup table.".formatted(id)
+            );
+        }
+        nameSerials[lastNameIdSet]++;
+        lastIris[lastNameIdSet] = null;
+    }
+
+    @Override
+    public void updatePrefixes(RdfPrefixEntry prefixEntry) {
+        updatePrefixes(prefixEntry.getId(), prefixEntry.getValue());
+    }
+
+    @Override
+    public void updatePrefixes(int id, String value) {
+        lastPrefixIdSet = ((lastPrefixIdSet + 1) & ((id - 1) >> 31)) + id;
+        if (lastPrefixIdSet < 1 || lastPrefixIdSet >= prefixSerials.length) {
+            throw new RdfProtoDeserializationError(
+                "Prefix entry with ID %d is out of bounds of the prefix lookup table.".formatted(id)
+            );
+        }
+        prefixSerials[lastPrefixIdSet]++;
+    }
+
+    @Override
+    public IdTerm decode(int prefixId, int nameId) {
+        // Same inference of the 0 identifiers as in NameDecoderImpl
+        lastNameIdReference = ((lastNameIdReference + 1) & ((nameId - 1) >> 31)) + nameId;
+        final int resolvedPrefixId = (lastPrefixIdReference =
+            (((prefixId - 1) >> 31) & lastPrefixIdReference) + prefixId);
+        return decodeResolved(resolvedPrefixId, lastNameIdReference, prefixId, nameId);
+    }
+
+    @Override
+    public IdTerm decodeRaw(int prefixId, int nameId) {
+        return decodeResolved(prefixId, nameId, prefixId, nameId);
+    }
+
+    private IdTerm decodeResolved(int prefixId, int nameId, int originalPrefixId, int originalNameId) {
+        if (nameId < 0 || nameId >= nameSerials.length) {
+            throw new RdfProtoDeserializationError(
+                (
+                    "Encountered an invalid name table reference (out of bounds). " + "Name ID: %d, Prefix ID: %d"
+                ).formatted(originalNameId, originalPrefixId)
+            );
+        }
+        if (nameId == 0) {
+            // Only possible when nameId = 0 is passed to decodeRaw
+            throw new RdfProtoDeserializationError(
+                "Encountered an invalid name table reference. Name ID: %d, Prefix ID: %d".formatted(
+                    originalNameId,
+                    originalPrefixId
+                )
+            );
+        }
+        if (prefixId < 0 || prefixId >= prefixSerials.length) {
+            throw new RdfProtoDeserializationError(
+                (
+                    "Encountered an invalid prefix table reference (out of bounds). " + "Prefix ID: %d, Name ID: %d"
+                ).formatted(prefixId, originalNameId)
+            );
+        }
+        final int prefixSerial = prefixSerials[prefixId];
+        if (nameSerials[nameId] == 0 || (prefixId != 0 && prefixSerial == 0)) {
+            throw new RdfProtoDeserializationError(
+                "Encountered an invalid IRI reference. Prefix ID: %d, Name ID: %d".formatted(
+                    originalPrefixId,
+                    originalNameId
+                )
+            );
+        }
+
+        final IdTerm.Iri last = lastIris[nameId];
+        if (last != null && last.prefixId() == prefixId && last.prefixSerial() == prefixSerial) {
+            return last;
+        }
+        return (lastIris[nameId] = new IdTerm.Iri(prefixId, prefixSerial, nameId, nameSerials[nameId]));
+    }
+}
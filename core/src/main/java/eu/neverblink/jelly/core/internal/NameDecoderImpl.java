@@ -1,8 +1,10 @@
 package eu.neverblink.jelly.core.internal;
 
+import eu.neverblink.jelly.core.DecoderCheckpoint;
 import eu.neverblink.jelly.core.InternalApi;
 import eu.neverblink.jelly.core.NameDecoder;
 import eu.neverblink.jelly.core.RdfProtoDeserializationError;
+import eu.neverblink.jelly.core.StatementFilter;
 import eu.neverblink.jelly.core.proto.v1.RdfNameEntry;
 import eu.neverblink.jelly.core.proto.v1.RdfPrefixEntry;
 import java.util.function.Function;
@@ -14,6 +16,12 @@ import java.util.function.Function;
 @InternalApi
 public final class NameDecoderImpl<TIri> implements NameDecoder<TIri> {
 
+    /**
+     * Bits of {@link #matchFilter}: the IRI passes the predicate or the graph part of the filter.
+     */
+    public static final int FILTER_PREDICATE = 1;
+    public static final int FILTER_GRAPH = 2;
+
     private static final class NameLookupEntry {
 
         // Primary: the actual name
@@ -25,6 +33,10 @@ public final class NameDecoderImpl<TIri> implements NameDecoder<TIri> {
         public int lastPrefixSerial;
         // Last IRI encoded with this name
         public Object lastIri;
+        // Result of matchFilter for the IRI with this name and the given prefix, -1 if not computed
+        public int filterMask = -1;
+        public int filterPrefixId;
+        public int filterPrefixSerial;
     }
 
     private static final class PrefixLookupEntry {
@@ -96,6 +108,7 @@ public final class NameDecoderImpl<TIri> implements NameDecoder<TIri> {
             entry.lastPrefixId = 0;
             // Set to null is required to avoid a false positive in the decode method for cases without a prefix.
             entry.lastIri = null;
+            entry.filterMask = -1;
         } catch (ArrayIndexOutOfBoundsException | NullPointerException e) {
             throw new RdfProtoDeserializationError(
                 "Name entry with ID %d is out of bounds of the name lookup table.".formatted(id)
@@ -135,6 +148,143 @@ public final class NameDecoderImpl<TIri> implements NameDecoder<TIri> {
         }
     }
 
+    /**
+     * Captures the contents of the prefix lookup, for a {@link DecoderCheckpoint}.
+     * @return state of the prefix lookup
+     */
+    public DecoderCheckpoint.Lookup savePrefixLookup() {
+        final var values = new String[prefixLookup.length - 1];
+        for (int i = 1; i < prefixLookup.length; i++) {
+            values[i - 1] = prefixLookup[i].prefix;
+        }
+        return new DecoderCheckpoint.Lookup(values, lastPrefixIdSet);
+    }
+
+    /**
+     * Captures the contents of the name lookup, for a {@link DecoderCheckpoint}.
+     * @return state of the name lookup
+     */
+    public DecoderCheckpoint.Lookup saveNameLookup() {
+        final var values = new String[nameLookup.length - 1];
+        for (int i = 1; i < nameLookup.length; i++) {
+            values[i - 1] = nameLookup[i].name;
+        }
+        return new DecoderCheckpoint.Lookup(values, lastNameIdSet);
+    }
+
+    public int getLastPrefixIdReference() {
+        return lastPrefixIdReference;
+    }
+
+    public int getLastNameIdReference() {
+        return lastNameIdReference;
+    }
+
+    /**
+     * Returns the value of a name entry.
+     * @param id 1-based identifier
+     * @return name, or null if the entry is not set or the id is out of bounds
+     */
+    public String getName(int id) {
+        return id > 0 && id < nameLookup.length ? nameLookup[id].name : null;
+    }
+
+    /**
+     * Returns the value of a prefix entry.
+     * @param id 1-based identifier
+     * @return prefix, or null if the entry is not set or the id is 0 or out of bounds
+     */
+    public String getPrefix(int id) {
+        return id > 0 && id < prefixLookup.length ? prefixLookup[id].prefix : null;
+    }
+
+    /**
+     * Resolves the 0-compressed ids of an IRI like {@link #decode}, without making the IRI. The resolved ids
+     * are then returned by {@link #getLastPrefixIdReference()} and {@link #getLastNameIdReference()}.
+     *
+     * @param prefixId prefix ID
+     * @param nameId name ID
+     */
+    public void resolve(int prefixId, int nameId) {
+        lastNameIdReference = ((lastNameIdReference + 1) & ((nameId - 1) >> 31)) + nameId;
+        lastPrefixIdReference = (((prefixId - 1) >> 31) & lastPrefixIdReference) + prefixId;
+    }
+
+    /**
+     * Evaluates a statement filter on the IRI with the given resolved ids.
+     * <p>
+     * Like the IRI in {@link #decode}, the result is kept in the name entry together with the prefix it was
+     * computed for, so the IRI string is only built when the name or its prefix changes. The filter must be
+     * the same for all calls.
+     *
+     * @param prefixId resolved prefix ID, or 0 for no prefix
+     * @param nameId resolved name ID
+     * @param filter filter to evaluate
+     * @return combination of {@link #FILTER_PREDICATE} and {@link #FILTER_GRAPH}
+     * @throws RdfProtoDeserializationError if the IRI reference is invalid
+     */
+    public int matchFilter(int prefixId, int nameId, StatementFilter filter) {
+        final String name = getName(nameId);
+        final PrefixLookupEntry prefixEntry = prefixId > 0 && prefixId < prefixLookup.length
+            ? prefixLookup[prefixId]
+            : null;
+        if (name == null || (prefixId != 0 && (prefixEntry == null || prefixEntry.prefix == null))) {
+            throw new RdfProtoDeserializationError(
+                "Encountered an invalid IRI reference. Prefix ID: %d, Name ID: %d".formatted(prefixId, nameId)
+            );
+        }
+        final NameLookupEntry nameEntry = nameLookup[nameId];
+        final int prefixSerial = prefixEntry == null ? 0 : prefixEntry.serial;
+        if (
+            nameEntry.filterMask >= 0 &&
+            nameEntry.filterPrefixId == prefixId &&
+            nameEntry.filterPrefixSerial == prefixSerial
+        ) {
+            return nameEntry.filterMask;
+        }
+
+        final String iri = prefixEntry == null ? name : prefixEntry.prefix.concat(name);
+        int mask = 0;
+        if (filter.acceptsPredicate(iri)) {
+            mask |= FILTER_PREDICATE;
+        }
+        if (filter.acceptsGraph(iri)) {
+            mask |= FILTER_GRAPH;
+        }
+        nameEntry.filterPrefixId = prefixId;
+        nameEntry.filterPrefixSerial = prefixSerial;
+        nameEntry.filterMask = mask;
+        return mask;
+    }
+
+    /**
+     * Restores the lookups and the id references from a checkpoint. The decoder must be freshly created,
+     * with the same table sizes as the decoder the checkpoint was taken from.
+     *
+     * @param checkpoint checkpoint to restore
+     * @throws RdfProtoDeserializationError if the checkpoint does not fit in the lookups
+     */
+    public void restoreState(DecoderCheckpoint checkpoint) {
+        final var prefixes = checkpoint.prefixes();
+        final var names = checkpoint.names();
+        if (prefixes.values().length > prefixLookup.length - 1 || names.values().length > nameLookup.length - 1) {
+            throw new RdfProtoDeserializationError("The checkpoint does not fit in the lookup tables.");
+        }
+        for (int i = 0; i < prefixes.values().length; i++) {
+            if (prefixes.values()[i] != null) {
+                prefixLookup[i + 1].prefix = prefixes.values()[i];
+                prefixLookup[i + 1].serial = 0;
+            }
+        }
+        for (int i = 0; i < names.values().length; i++) {
+            nameLookup[i + 1].name = names.values()[i];
+        }
+        lastPrefixIdSet = prefixes.lastSetId();
+        lastNameIdSet = names.lastSetId();
+        lastPrefixIdReference = checkpoint.lastPrefixIdReference();
+        lastNameIdReference = checkpoint.lastNameIdReference();
+    }
+
     /**
      * Reconstruct an IRI from its prefix and name ids.
      *
@@ -4,6 +4,7 @@ import static eu.neverblink.jelly.core.internal.BaseJellyOptions.MIN_NAME_TABLE_
 
 import eu.neverblink.jelly.core.*;
 import eu.neverblink.jelly.core.proto.v1.*;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -141,6 +142,47 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         }
     }
 
+    /**
+     * A cached quoted triple (RDF-star).
+     * <p>
+     * The IRIs in the encoded triple are compressed against the IRIs encoded before it, so the same quoted
+     * triple may need different RdfTriples in different places. The entry keeps the last encoded triple with
+     * the compression state it was encoded in, and the terms with their full lookup ids, so that the triple
+     * can be encoded again in another state without calling the converter.
+     */
+    private static final class QuotedTripleNode {
+
+        // Subject, predicate, and object: RdfIri with the full lookup ids, QuotedTripleNode for nested
+        // triples, or the encoded term for terms that do not depend on the compression state.
+        final Object[] terms = new Object[3];
+        // The lookup entries used by the terms (also in nested triples), with their serials.
+        // The serials in the lookups must be equal to these for the entry to be valid.
+        final EncoderLookup[] lookups;
+        final int[] pointers;
+        final int[] serials;
+        // The last encoded triple, and the last IRI prefix and name ids before and after it
+        RdfTriple encoded;
+        int prefixIdBefore;
+        int nameIdBefore;
+        int prefixIdAfter;
+        int nameIdAfter;
+
+        QuotedTripleNode(EncoderLookup[] lookups, int[] pointers, int[] serials) {
+            this.lookups = lookups;
+            this.pointers = pointers;
+            this.serials = serials;
+        }
+
+        boolean isValid() {
+            for (int i = 0; i < lookups.length; i++) {
+                if (Objects.requireNonNull(lookups[i].serials)[pointers[i]] != serials[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private final int maxPrefixTableSize;
     private int lastIriNameId;
     private int lastIriPrefixId = -1000;
@@ -151,13 +193,30 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
     private final EncoderLookup prefixLookup;
     private final EncoderLookup nameLookup;
 
-    private final RdfBufferAppender<TNode> bufferAppender;
+    private RdfBufferAppender<TNode> bufferAppender;
 
     // We split the node caches in three – the first two are for nodes that depend on the lookups
     // (IRIs and datatype literals). The third one is for nodes that don't depend on the lookups.
     private final DependentNodeCache<RdfIri> iriNodeCache;
     private final DependentNodeCache<RdfLiteral> dtLiteralNodeCache;
     private final NodeCache<RdfLiteral> otherLiteralCache;
+    // Created on first use, as most streams have no quoted triples
+    private NodeCache<QuotedTripleNode> quotedTripleCache = null;
+    private final int quotedTripleCacheSize;
+
+    // State of the quoted triples being encoded (and not found in the cache), possibly nested.
+    private int quotedDepth = 0;
+    // Lookup entries used by the terms
+    private EncoderLookup[] quotedDepLookups = new EncoderLookup[16];
+    private int[] quotedDepPointers = new int[16];
+    private int[] quotedDepSerials = new int[16];
+    private int quotedDepCount = 0;
+    // IRI terms with the full lookup ids, in order
+    private RdfIri[] quotedIris = new RdfIri[8];
+    private int quotedIriCount = 0;
+    // Nested triple terms, in order
+    private QuotedTripleNode[] quotedChildren = new QuotedTripleNode[4];
+    private int quotedChildCount = 0;
 
     // Pre-allocated IRI that has prefixId=0 and nameId=0
     static final RdfIri zeroIri = RdfIri.newInstance();
@@ -169,12 +228,20 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
     private static final RdfIri IDS_ONLY = RdfIri.newInstance();
     private final RdfIri[] nameOnlyIris;
 
+    // Statistics to record the cache hits and lookup evictions in, or null if disabled.
+    private StreamStats stats = null;
+    // Splits the IRIs into prefixes and names when the prefix table is enabled.
+    private IriSplitter iriSplitter = IriSplitter.DEFAULT;
+    // Maps the blank node labels to short ones, or null to write them verbatim.
+    private BlankNodeLabeler blankNodeLabeler = null;
+
     /**
      * Creates a new NodeEncoder.
      * @param prefixTableSize The size of the prefix lookup table
      * @param nameTableSize The size of the name lookup table
      * @param dtTableSize The size of the datatype lookup table
-     * @param nodeCacheSize The size of the node cache (for nodes that don't depend on lookups)
+     * @param nodeCacheSize The size of the node cache (for nodes that don't depend on lookups) and of
+     *                      the quoted triple cache
      * @param iriNodeCacheSize The size of the IRI dependent node cache (for prefix+name encoding)
      * @param dtLiteralNodeCacheSize The size of the datatype literal dependent node cache
      * @param bufferAppender consumer of the lookup entry rows and the encoded nodes
@@ -188,10 +255,10 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         int dtLiteralNodeCacheSize,
         RdfBufferAppender<TNode> bufferAppender
     ) {
-        datatypeLookup = new EncoderLookup(dtTableSize, true);
+        datatypeLookup = new EncoderLookup(dtTableSize, true, "datatype");
         this.maxPrefixTableSize = prefixTableSize;
         if (maxPrefixTableSize > 0) {
-            prefixLookup = new EncoderLookup(maxPrefixTableSize, true);
+            prefixLookup = new EncoderLookup(maxPrefixTableSize, true, "prefix");
             iriNodeCache = new DependentNodeCache<>(iriNodeCacheSize);
         } else {
             prefixLookup = null;
@@ -207,8 +274,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         }
         nameOnlyIris = new RdfIri[nameTableSize + 1];
         dtLiteralNodeCache = new DependentNodeCache<>(dtLiteralNodeCacheSize);
-        nameLookup = new EncoderLookup(nameTableSize, maxPrefixTableSize > 0);
+        nameLookup = new EncoderLookup(nameTableSize, maxPrefixTableSize > 0, "name");
         otherLiteralCache = new NodeCache<>(nodeCacheSize);
+        quotedTripleCacheSize = nodeCacheSize;
         this.bufferAppender = bufferAppender;
     }
 
@@ -237,6 +305,125 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         );
     }
 
+    /**
+     * Sets the statistics to record the node cache hits and misses and the lookup evictions in.
+     * @param stats statistics, or null to disable them
+     */
+    public void setStats(StreamStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Sets the strategy for splitting IRIs into prefixes and names.
+     * @param iriSplitter strategy, or null for {@link IriSplitter#DEFAULT}
+     */
+    public void setIriSplitter(IriSplitter iriSplitter) {
+        this.iriSplitter = iriSplitter == null ? IriSplitter.DEFAULT : iriSplitter;
+    }
+
+    /**
+     * Sets the map from blank node labels to short labels. It must be the same for the whole stream.
+     * @param blankNodeLabeler map, or null to write the labels verbatim
+     */
+    void setBlankNodeLabeler(BlankNodeLabeler blankNodeLabeler) {
+        this.blankNodeLabeler = blankNodeLabeler;
+    }
+
+    /**
+     * Checks if the lookups of this encoder have the given sizes, so that it can be {@link #reset} for a
+     * stream with these options.
+     */
+    public boolean hasTableSizes(int prefixTableSize, int nameTableSize, int dtTableSize) {
+        return (
+            maxPrefixTableSize == prefixTableSize &&
+            nameLookup.size == nameTableSize &&
+            datatypeLookup.size == dtTableSize
+        );
+    }
+
+    /**
+     * Makes this encoder behave like a new one, for reuse in another stream. The lookups are emptied in place,
+     * and the cached nodes that depend on them are invalidated through their serials. The cached literals
+     * that do not depend on the lookups are kept, as they are valid in any stream.
+     * <p>
+     * The statistics, the IRI splitter, and the blank node labeler must be set again after this.
+     * @param bufferAppender consumer of the lookup entry rows and the encoded nodes in the new stream
+     */
+    @SuppressWarnings("unchecked")
+    public <T> NodeEncoderImpl<T> reset(RdfBufferAppender<T> bufferAppender) {
+        final var encoder = (NodeEncoderImpl<T>) this;
+        encoder.bufferAppender = bufferAppender;
+        datatypeLookup.reset();
+        nameLookup.reset();
+        if (prefixLookup != null) {
+            prefixLookup.reset();
+        }
+        lastIriNameId = 0;
+        lastIriPrefixId = -1000;
+        lastPrefixId = 0;
+        // The cached quoted triples also depend on the compression state, so they go entirely
+        quotedTripleCache = null;
+        quotedDepth = 0;
+        quotedDepCount = 0;
+        quotedIriCount = 0;
+        quotedChildCount = 0;
+        stats = null;
+        iriSplitter = IriSplitter.DEFAULT;
+        blankNodeLabeler = null;
+        return encoder;
+    }
+
+    /**
+     * Fills the lookups with the entries of a dictionary, without emitting any lookup entry rows.
+     * The decoder must be given the same dictionary. Call this only on a new encoder, before encoding
+     * any nodes.
+     * @param dictionary dictionary shared with the decoder
+     */
+    public void preloadDictionary(LookupDictionary dictionary) {
+        final var entries = dictionary.entriesFor(maxPrefixTableSize, nameLookup.size, datatypeLookup.size);
+        // The entries are distinct and fit in the lookups, so they get the ids 1, 2, 3, ... in order
+        for (final String prefix : entries.prefixes()) {
+            Objects.requireNonNull(prefixLookup).getOrAddEntry(prefix);
+        }
+        for (final String name : entries.names()) {
+            nameLookup.getOrAddEntry(name);
+        }
+        for (final String datatype : entries.datatypes()) {
+            datatypeLookup.getOrAddEntry(datatype);
+        }
+    }
+
+    /**
+     * Adds the prefixes and IRIs of a vocabulary to the lookups, emitting their lookup entry rows.
+     * Entries that do not fit in the lookups are skipped, so that the vocabulary does not evict its own
+     * entries. Every IRI may add its own prefix, so the IRIs take at most the whole prefix lookup, and the
+     * prefixes of the vocabulary get the room that the IRIs leave.
+     * @param vocabulary vocabulary to add
+     */
+    public void preloadVocabulary(LookupVocabulary vocabulary) {
+        final int prefixRoom = prefixLookup == null ? Integer.MAX_VALUE : maxPrefixTableSize;
+        final int iriCount = Math.min(vocabulary.iris().size(), Math.min(nameLookup.size, prefixRoom));
+        if (prefixLookup != null) {
+            final int prefixCount = Math.min(vocabulary.prefixes().size(), prefixRoom - iriCount);
+            for (int i = 0; i < prefixCount; i++) {
+                final String prefix = vocabulary.prefixes().get(i);
+                final var prefixEntry = prefixLookup.getOrAddEntry(prefix);
+                if (prefixEntry.newEntry) {
+                    if (stats != null && prefixEntry.evicted) {
+                        stats.recordPrefixEviction();
+                    }
+                    bufferAppender.appendPrefixEntry(
+                        RdfPrefixEntry.newInstance().setId(prefixEntry.setId).setValue(prefix)
+                    );
+                }
+            }
+        }
+        for (int i = 0; i < iriCount; i++) {
+            // Emits the entries of the IRI, without touching the state of the compressed ids
+            makeIriIds(vocabulary.iris().get(i));
+        }
+    }
+
     /**
      * The prefix-0 IRI for a name id, created on first use.
      * @param nameId The id of the entry in the name lookup
@@ -266,7 +453,16 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
                 return nameOnlyIri(nameId);
             }
         }
-        return outputIri(encodeIriWithPrefix(iri));
+        final var cachedNode = encodeIriWithPrefix(iri);
+        if (quotedDepth > 0) {
+            addQuotedDependency(nameLookup, cachedNode.lookupPointer1);
+            addQuotedDependency(prefixLookup, cachedNode.lookupPointer2);
+            if (quotedIriCount == quotedIris.length) {
+                quotedIris = Arrays.copyOf(quotedIris, quotedIriCount * 2);
+            }
+            quotedIris[quotedIriCount++] = materializedIri(cachedNode);
+        }
+        return outputIri(cachedNode);
     }
 
     @Override
@@ -286,6 +482,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
     private int encodeIriNameOnly(String iri) {
         final var nameEntry = nameLookup.getOrAddEntry(iri);
         if (nameEntry.newEntry) {
+            if (stats != null && nameEntry.evicted) {
+                stats.recordNameEviction();
+            }
             bufferAppender.appendNameEntry(RdfNameEntry.newInstance().setId(nameEntry.setId).setValue(iri));
         }
         return nameEntry.getId;
@@ -310,14 +509,26 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         ) {
             nameLookup.onAccess(cachedNode.lookupPointer1);
             prefixLookup.onAccess(cachedNode.lookupPointer2);
+            if (stats != null) {
+                stats.recordIriCacheHit();
+            }
             return cachedNode;
         }
+        if (stats != null) {
+            stats.recordIriCacheMiss();
+        }
 
-        int i = iri.indexOf('#', 8);
-        if (i == -1) {
-            i = iri.lastIndexOf('/');
+        final int prefixLen = iriSplitter.prefixLength(iri);
+        if (prefixLen < 0 || prefixLen > iri.length()) {
+            throw new RdfProtoSerializationError(
+                "IRI splitter %s returned the prefix length %d for an IRI of length %d: %s".formatted(
+                    iriSplitter.getClass().getName(),
+                    prefixLen,
+                    iri.length(),
+                    iri
+                )
+            );
         }
-        final int prefixLen = i + 1;
         final int prefixId;
         final String prefix;
         final String lastPrefix = prefixLookup.names[lastPrefixId];
@@ -331,6 +542,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
             prefix = iri.substring(0, prefixLen);
             final var prefixEntry = prefixLookup.getOrAddEntry(prefix);
             if (prefixEntry.newEntry) {
+                if (stats != null && prefixEntry.evicted) {
+                    stats.recordPrefixEviction();
+                }
                 bufferAppender.appendPrefixEntry(
                     RdfPrefixEntry.newInstance().setId(prefixEntry.setId).setValue(prefix)
                 );
@@ -347,6 +561,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
             EncoderLookup.hashOfSuffix(iri.hashCode(), prefix.hashCode(), iri.length() - prefixLen)
         );
         if (nameEntry.newEntry) {
+            if (stats != null && nameEntry.evicted) {
+                stats.recordNameEviction();
+            }
             bufferAppender.appendNameEntry(
                 RdfNameEntry.newInstance().setId(nameEntry.setId).setValue(nameLookup.names[nameEntry.getId])
             );
@@ -391,6 +608,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
     @Override
     public String makeBlankNode(String label) {
         // Blank nodes are not cached, as they are just strings.
+        if (blankNodeLabeler != null) {
+            return blankNodeLabeler.relabel(label);
+        }
         return label;
     }
 
@@ -400,6 +620,11 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         if (literal == null) {
             literal = RdfLiteral.newInstance().setLex(lex);
             otherLiteralCache.put(lex, literal);
+            if (stats != null) {
+                stats.recordOtherLiteralCacheMiss();
+            }
+        } else if (stats != null) {
+            stats.recordOtherLiteralCacheHit();
         }
         return literal;
     }
@@ -410,6 +635,11 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         if (literal == null) {
             literal = RdfLiteral.newInstance().setLex(lex).setLangtag(lang);
             otherLiteralCache.put(lit, literal);
+            if (stats != null) {
+                stats.recordOtherLiteralCacheMiss();
+            }
+        } else if (stats != null) {
+            stats.recordOtherLiteralCacheHit();
         }
         return literal;
     }
@@ -436,12 +666,24 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
             cachedNode.lookupSerial1 == Objects.requireNonNull(datatypeLookup.serials)[cachedNode.lookupPointer1]
         ) {
             datatypeLookup.onAccess(cachedNode.lookupPointer1);
+            if (stats != null) {
+                stats.recordDtLiteralCacheHit();
+            }
+            if (quotedDepth > 0) {
+                addQuotedDependency(datatypeLookup, cachedNode.lookupPointer1);
+            }
             return cachedNode.encoded;
         }
+        if (stats != null) {
+            stats.recordDtLiteralCacheMiss();
+        }
 
         // The node is not encoded, but we may already have the datatype encoded
         final var dtEntry = datatypeLookup.getOrAddEntry(datatypeName);
         if (dtEntry.newEntry) {
+            if (stats != null && dtEntry.evicted) {
+                stats.recordDatatypeEviction();
+            }
             bufferAppender.appendDatatypeEntry(
                 RdfDatatypeEntry.newInstance().setId(dtEntry.setId).setValue(datatypeName)
             );
@@ -450,6 +692,9 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         cachedNode.lookupPointer1 = dtId;
         cachedNode.lookupSerial1 = Objects.requireNonNull(datatypeLookup.serials)[dtId];
         cachedNode.encoded = RdfLiteral.newInstance().setLex(lex).setDatatype(dtId);
+        if (quotedDepth > 0) {
+            addQuotedDependency(datatypeLookup, dtId);
+        }
         return cachedNode.encoded;
     }
 
@@ -458,6 +703,141 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
         return bufferAppender.appendQuotedTriple(s, p, o);
     }
 
+    /**
+     * Encodes a quoted triple, caching it under the triple term node. A repeated quoted triple (also one
+     * nested in another) is encoded with a single cache lookup, as long as the lookup entries it uses
+     * were not evicted.
+     * <p>
+     * Only cached if the prefix table is enabled, as otherwise the name lookup has no serials to validate
+     * the cached entries against.
+     */
+    @Override
+    public RdfTriple makeQuotedTriple(TNode key, TNode s, TNode p, TNode o) {
+        if (iriNodeCache == null) {
+            return bufferAppender.appendQuotedTriple(s, p, o);
+        }
+        if (quotedTripleCache == null) {
+            quotedTripleCache = new NodeCache<>(quotedTripleCacheSize);
+        }
+        final var cachedNode = quotedTripleCache.get(key);
+        if (cachedNode != null && cachedNode.isValid()) {
+            for (int i = 0; i < cachedNode.lookups.length; i++) {
+                cachedNode.lookups[i].onAccess(cachedNode.pointers[i]);
+                if (quotedDepth > 0) {
+                    // Nested in a triple that is being encoded, which depends on the same entries
+                    addQuotedDependency(cachedNode.lookups[i], cachedNode.pointers[i]);
+                }
+            }
+            if (quotedDepth > 0) {
+                addQuotedChild(cachedNode);
+            }
+            return outputQuotedTriple(cachedNode);
+        }
+
+        if (quotedDepth == 0) {
+            quotedDepCount = 0;
+            quotedIriCount = 0;
+            quotedChildCount = 0;
+        }
+        final int depStart = quotedDepCount;
+        final int iriStart = quotedIriCount;
+        final int childStart = quotedChildCount;
+        final int prefixIdBefore = lastIriPrefixId;
+        final int nameIdBefore = lastIriNameId;
+        final RdfTriple triple;
+        quotedDepth++;
+        try {
+            triple = bufferAppender.appendQuotedTriple(s, p, o);
+        } finally {
+            quotedDepth--;
+        }
+
+        // The dependencies stay on the list, as the enclosing triple (if any) depends on them too
+        final var node = new QuotedTripleNode(
+            Arrays.copyOfRange(quotedDepLookups, depStart, quotedDepCount),
+            Arrays.copyOfRange(quotedDepPointers, depStart, quotedDepCount),
+            Arrays.copyOfRange(quotedDepSerials, depStart, quotedDepCount)
+        );
+        int iri = iriStart;
+        int child = childStart;
+        for (int k = 0; k < 3; k++) {
+            final Object term = k == 0 ? triple.getSubject() : k == 1 ? triple.getPredicate() : triple.getObject();
+            if (term instanceof RdfIri) {
+                node.terms[k] = quotedIris[iri++];
+            } else if (term instanceof RdfTriple) {
+                node.terms[k] = quotedChildren[child++];
+            } else {
+                node.terms[k] = term;
+            }
+        }
+        quotedIriCount = iriStart;
+        quotedChildCount = childStart;
+        node.encoded = triple;
+        node.prefixIdBefore = prefixIdBefore;
+        node.nameIdBefore = nameIdBefore;
+        node.prefixIdAfter = lastIriPrefixId;
+        node.nameIdAfter = lastIriNameId;
+        quotedTripleCache.put(key, node);
+        if (quotedDepth > 0) {
+            addQuotedChild(node);
+        }
+        return triple;
+    }
+
+    private void addQuotedDependency(EncoderLookup lookup, int pointer) {
+        if (quotedDepCount == quotedDepPointers.length) {
+            final int newLength = quotedDepCount * 2;
+            quotedDepLookups = Arrays.copyOf(quotedDepLookups, newLength);
+            quotedDepPointers = Arrays.copyOf(quotedDepPointers, newLength);
+            quotedDepSerials = Arrays.copyOf(quotedDepSerials, newLength);
+        }
+        quotedDepLookups[quotedDepCount] = lookup;
+        quotedDepPointers[quotedDepCount] = pointer;
+        quotedDepSerials[quotedDepCount] = Objects.requireNonNull(lookup.serials)[pointer];
+        quotedDepCount++;
+    }
+
+    private void addQuotedChild(QuotedTripleNode node) {
+        if (quotedChildCount == quotedChildren.length) {
+            quotedChildren = Arrays.copyOf(quotedChildren, quotedChildCount * 2);
+        }
+        quotedChildren[quotedChildCount++] = node;
+    }
+
+    /**
+     * Outputs a cached quoted triple, encoding it again if the IRI compression state is not the same as
+     * when it was last encoded.
+     */
+    private RdfTriple outputQuotedTriple(QuotedTripleNode node) {
+        if (lastIriPrefixId == node.prefixIdBefore && lastIriNameId == node.nameIdBefore) {
+            lastIriPrefixId = node.prefixIdAfter;
+            lastIriNameId = node.nameIdAfter;
+            return node.encoded;
+        }
+        final int prefixIdBefore = lastIriPrefixId;
+        final int nameIdBefore = lastIriNameId;
+        final RdfTriple.Mutable triple = RdfTriple.newInstance();
+        triple.setSubject(outputQuotedTerm(node.terms[0]));
+        triple.setPredicate(outputQuotedTerm(node.terms[1]));
+        triple.setObject(outputQuotedTerm(node.terms[2]));
+        node.encoded = triple;
+        node.prefixIdBefore = prefixIdBefore;
+        node.nameIdBefore = nameIdBefore;
+        node.prefixIdAfter = lastIriPrefixId;
+        node.nameIdAfter = lastIriNameId;
+        return triple;
+    }
+
+    private Object outputQuotedTerm(Object term) {
+        if (term instanceof RdfIri iri) {
+            final var compressed = compressedIri(iri.getPrefixId(), iri.getNameId());
+            return compressed != null ? compressed : iri;
+        } else if (term instanceof QuotedTripleNode child) {
+            return outputQuotedTriple(child);
+        }
+        return term;
+    }
+
     @Override
     public RdfDefaultGraph makeDefaultGraph() {
         return RdfDefaultGraph.EMPTY;
@@ -468,8 +848,17 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
      * @param cachedNode The cached node
      */
     private RdfIri outputIri(DependentNode<RdfIri> cachedNode) {
-        int nameId = cachedNode.lookupPointer1;
-        int prefixId = cachedNode.lookupPointer2;
+        final var compressed = compressedIri(cachedNode.lookupPointer2, cachedNode.lookupPointer1);
+        return compressed != null ? compressed : materializedIri(cachedNode);
+    }
+
+    /**
+     * Applies the same-prefix and next-name optimizations to an IRI, updating the compression state.
+     * @param prefixId The id of the prefix in the lookup
+     * @param nameId The id of the name in the lookup
+     * @return the compressed IRI, or null if both ids must be written out
+     */
+    private RdfIri compressedIri(int prefixId, int nameId) {
         if (lastIriPrefixId == prefixId) {
             if (lastIriNameId + 1 == nameId) {
                 lastIriNameId = nameId;
@@ -485,7 +874,7 @@ public final class NodeEncoderImpl<TNode> implements NodeEncoder<TNode> {
                 return RdfIri.newInstance().setPrefixId(prefixId);
             } else {
                 lastIriNameId = nameId;
-                return materializedIri(cachedNode);
+                return null;
             }
         }
     }
@@ -3,6 +3,9 @@ package eu.neverblink.jelly.core.internal;
 import static eu.neverblink.jelly.core.JellyOptions.*;
 import static eu.neverblink.jelly.core.internal.BaseJellyOptions.*;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
 import eu.neverblink.jelly.core.*;
 import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
@@ -10,9 +13,13 @@ import eu.neverblink.jelly.core.proto.v1.RdfDatatypeEntry;
 import eu.neverblink.jelly.core.proto.v1.RdfGraphStart;
 import eu.neverblink.jelly.core.proto.v1.RdfNamespaceDeclaration;
 import eu.neverblink.jelly.core.proto.v1.RdfQuad;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
 import eu.neverblink.jelly.core.proto.v1.RdfTriple;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+import java.util.function.Function;
 
 /**
  * Base class for stateful decoders of protobuf RDF streams.
@@ -25,11 +32,34 @@ import eu.neverblink.jelly.core.proto.v1.RdfTriple;
 @InternalApi
 public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDecoder<TNode, TDatatype> {
 
+    // Tag of the rows field of RdfStreamFrame
+    private static final int FRAME_ROWS_TAG = (1 << 3) | 2;
+    // Tag of the metadata field of RdfStreamFrame
+    private static final int FRAME_METADATA_TAG = (15 << 3) | 2;
+
+    // Tags of the fields of RdfStreamRow, all length-delimited
+    private static final int ROW_OPTIONS_TAG = (1 << 3) | 2;
+    private static final int ROW_TRIPLE_TAG = (2 << 3) | 2;
+    private static final int ROW_QUAD_TAG = (3 << 3) | 2;
+    private static final int ROW_GRAPH_START_TAG = (4 << 3) | 2;
+    private static final int ROW_GRAPH_END_TAG = (5 << 3) | 2;
+    private static final int ROW_NAMESPACE_TAG = (6 << 3) | 2;
+    private static final int ROW_NAME_TAG = (9 << 3) | 2;
+    private static final int ROW_PREFIX_TAG = (10 << 3) | 2;
+    private static final int ROW_DATATYPE_TAG = (11 << 3) | 2;
+
     protected final RdfHandler<TNode> protoHandler;
     protected final RdfStreamOptions supportedOptions;
 
+    // Id and value of the last lookup entry read from the wire format
+    private int entryId;
+    private String entryValue;
+
     private RdfStreamOptions currentOptions = null;
 
+    // Whether the first stream started in the current frame, so the frame must have the dictionary id
+    private boolean dictionaryIdPending = false;
+
     public ProtoDecoderImpl(
         ProtoDecoderConverter<TNode, TDatatype> converter,
         RdfHandler<TNode> protoHandler,
@@ -93,11 +123,106 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
     }
 
     private void setStreamOptions(RdfStreamOptions options) {
+        final boolean concatenated = currentOptions != null;
+        this.currentOptions = options;
+        if (concatenated) {
+            // A repeated options row starts a new stream, concatenated to the previous one. The new stream
+            // has its own options, lookups, and repeated terms, so we must reset the state. The lookups are
+            // created again with the table sizes of the new stream.
+            resetState();
+            resetGraphState();
+        } else {
+            dictionaryIdPending = true;
+        }
+    }
+
+    /**
+     * Forgets the graph that was started in the previous stream, when a concatenated stream starts.
+     */
+    protected void resetGraphState() {
+        // No-op by default
+    }
+
+    /**
+     * Checks the dictionary id in the metadata of a frame. The frame in which the stream starts must have the
+     * id of the dictionary given to this decoder, or no id if this decoder has no dictionary. The ids in later
+     * frames (e.g., of concatenated streams) are optional, but must match as well.
+     * @param frameDictionaryId dictionary id from the metadata of the frame, or null if the frame has none
+     * @throws RdfProtoDeserializationError if the ids do not match
+     */
+    protected void checkDictionaryId(String frameDictionaryId) {
+        if (frameDictionaryId == null && !dictionaryIdPending) {
+            return;
+        }
+        dictionaryIdPending = false;
+        if (dictionary == null) {
+            if (frameDictionaryId != null) {
+                throw new RdfProtoDeserializationError(
+                    "The stream was encoded with dictionary %s, but no dictionary was set in the decoder.".formatted(
+                        frameDictionaryId
+                    )
+                );
+            }
+        } else if (frameDictionaryId == null) {
+            throw new RdfProtoDeserializationError(
+                "The stream does not have a dictionary id, but the decoder uses dictionary %s.".formatted(
+                    dictionary.getId()
+                )
+            );
+        } else if (!frameDictionaryId.equals(dictionary.getId())) {
+            throw new RdfProtoDeserializationError(
+                "The stream was encoded with dictionary %s, but the decoder uses dictionary %s.".formatted(
+                    frameDictionaryId,
+                    dictionary.getId()
+                )
+            );
+        }
+    }
+
+    @Override
+    public DecoderCheckpoint saveCheckpoint(
+        Function<TNode, DecoderCheckpoint.Term> termMapper,
+        Function<TDatatype, String> datatypeMapper
+    ) {
+        if (currentOptions == null) {
+            return DecoderCheckpoint.EMPTY;
+        }
+        return saveCheckpointState(currentOptions, getCurrentGraph(), termMapper, datatypeMapper);
+    }
+
+    @Override
+    public void restoreCheckpoint(DecoderCheckpoint checkpoint) {
         if (currentOptions != null) {
+            throw new IllegalStateException("A checkpoint can only be restored before ingesting any rows.");
+        }
+        if (checkpoint.options() == null) {
             return;
         }
+        handleOptions(checkpoint.options());
+        // The stream started before the checkpoint, in a frame that was already checked
+        dictionaryIdPending = false;
+        restoreCheckpointState(checkpoint);
+        restoreCurrentGraph(
+            DecoderCheckpoint.toNode(checkpoint.currentGraph(), converter),
+            acceptsCheckpointGraph(checkpoint.currentGraph())
+        );
+    }
 
-        this.currentOptions = options;
+    /**
+     * Returns the graph that was started and not yet ended, for checkpoints.
+     * @return current graph, or null if none
+     */
+    protected TNode getCurrentGraph() {
+        return null;
+    }
+
+    /**
+     * Restores the graph that was started and not yet ended, from a checkpoint.
+     * @param graph current graph, or null if none
+     * @param accepted whether the graph passes the statement filter
+     */
+    protected void restoreCurrentGraph(TNode graph, boolean accepted) {
+        // No-op by default
     }
 
     /**
@@ -108,6 +233,9 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
         if (row == null) {
             throw new RdfProtoDeserializationError("Row kind is not set.");
         }
+        if (stats != null) {
+            recordRow(row);
+        }
 
         switch (row.getRowFieldNumber()) {
             case RdfStreamRow.OPTIONS -> handleOptions(row.getOptions());
@@ -115,14 +243,252 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             case RdfStreamRow.PREFIX -> getNameDecoder().updatePrefixes(row.getPrefix());
             case RdfStreamRow.DATATYPE -> handleDatatype(row.getDatatype());
             case RdfStreamRow.NAMESPACE -> handleNamespace(row.getNamespace());
-            case RdfStreamRow.TRIPLE -> handleTriple(row.getTriple());
-            case RdfStreamRow.QUAD -> handleQuad(row.getQuad());
-            case RdfStreamRow.GRAPH_START -> handleGraphStart(row.getGraphStart());
+            case RdfStreamRow.TRIPLE -> {
+                if (filter == null) {
+                    handleTriple(row.getTriple());
+                } else {
+                    // Filtered statements are handled the same way as the ones read from the wire format
+                    loadStatementTerms(row.getTriple(), null);
+                    handleReadTriple();
+                }
+            }
+            case RdfStreamRow.QUAD -> {
+                if (filter == null) {
+                    handleQuad(row.getQuad());
+                } else {
+                    final var quad = row.getQuad();
+                    loadStatementTerms(quad, quad);
+                    handleReadQuad();
+                }
+            }
+            case RdfStreamRow.GRAPH_START -> {
+                if (filter == null) {
+                    handleGraphStart(row.getGraphStart());
+                } else {
+                    loadGraphStartTerm(row.getGraphStart());
+                    handleReadGraphStart();
+                }
+            }
             case RdfStreamRow.GRAPH_END -> handleGraphEnd();
             default -> throw new RdfProtoDeserializationError("Row kind is not set or unknown.");
         }
     }
 
+    /**
+     * Reads the rows of a serialized RdfStreamFrame straight from the wire format and ingests them,
+     * without creating RdfStreamRow messages. Statement rows and lookup entries, which make up nearly all
+     * of a stream, are decoded without any intermediate objects. The rare options, namespace, and quoted
+     * triple messages are still parsed into messages.
+     * <p>
+     * The result is the same as {@link #ingestFrame(RdfStreamFrame)}. Of the metadata of the frame, only the
+     * dictionary id is read.
+     *
+     * @param input input positioned at the start of the frame, limited to the frame's length
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    @Override
+    public void ingestFrame(CodedInputStream input) throws IOException {
+        String frameDictionaryId = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == FRAME_METADATA_TAG) {
+                final var entry = RdfStreamFrame.MetadataEntry.newInstance();
+                ProtoMessage.mergeDelimitedFrom(entry, input, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH);
+                if (LookupDictionary.METADATA_KEY.equals(entry.getKey())) {
+                    frameDictionaryId = entry.getValue().toStringUtf8();
+                }
+                continue;
+            }
+            if (tag != FRAME_ROWS_TAG) {
+                input.skipField(tag);
+                continue;
+            }
+            final int length = input.readRawVarint32();
+            final int oldLimit = input.pushLimit(length);
+            ingestSerializedRow(input, length);
+            input.popLimit(oldLimit);
+        }
+        checkDictionaryId(frameDictionaryId);
+    }
+
+    @Override
+    public void ingestFrame(RdfStreamFrame frame) {
+        super.ingestFrame(frame);
+        checkDictionaryId(LookupDictionary.getFrameDictionaryId(frame));
+    }
+
+    /**
+     * Ingests a row read from the wire format. Override this to pass the row to another decoder.
+     * @param input input positioned at the first field of the row, limited to the row's length
+     * @param length length of the row in bytes
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    protected void ingestSerializedRow(CodedInputStream input, int length) throws IOException {
+        ingestSerializedRowInternal(input, length);
+    }
+
+    /**
+     * Internal implementation of ingestSerializedRow that does not allow overriding.
+     * Mirrors {@link #ingestRowInternal(RdfStreamRow)}.
+     * <p>
+     * The fields of a row are a oneof, so if a row has more than one, only the last one counts – as when the
+     * row is parsed into a message. Valid rows have exactly one field, which is ingested straight from the
+     * input. Any other field is copied aside, until it is known whether a later field replaces it.
+     */
+    protected final void ingestSerializedRowInternal(CodedInputStream input, int length) throws IOException {
+        int pendingTag = 0;
+        byte[] pendingField = null;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (!isRowFieldTag(tag)) {
+                input.skipField(tag);
+                continue;
+            }
+            final int fieldLength = input.readRawVarint32();
+            if (input.getBytesUntilLimit() == fieldLength) {
+                // Nothing follows the field, so it is the last one
+                ingestRowField(tag, input, fieldLength, length);
+                return;
+            }
+            pendingTag = tag;
+            pendingField = input.readRawBytes(fieldLength);
+        }
+        if (pendingField == null) {
+            throw new RdfProtoDeserializationError("Row kind is not set or unknown.");
+        }
+        ingestRowField(pendingTag, CodedInputStream.newInstance(pendingField), pendingField.length, length);
+    }
+
+    private static boolean isRowFieldTag(int tag) {
+        return switch (tag) {
+            case ROW_OPTIONS_TAG,
+                ROW_TRIPLE_TAG,
+                ROW_QUAD_TAG,
+                ROW_GRAPH_START_TAG,
+                ROW_GRAPH_END_TAG,
+                ROW_NAMESPACE_TAG,
+                ROW_NAME_TAG,
+                ROW_PREFIX_TAG,
+                ROW_DATATYPE_TAG -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Ingests one field of a row.
+     * @param tag tag of the field
+     * @param input input positioned right after the length of the field
+     * @param fieldLength length of the field in bytes
+     * @param rowLength length of the whole row in bytes, for the statistics
+     */
+    private void ingestRowField(int tag, CodedInputStream input, int fieldLength, int rowLength)
+        throws IOException {
+        final int oldLimit = input.pushLimit(fieldLength);
+        switch (tag) {
+            case ROW_OPTIONS_TAG -> {
+                recordSerializedRow(RdfStreamRow.OPTIONS, rowLength);
+                final var options = RdfStreamOptions.newInstance();
+                mergeField(options, input);
+                handleOptions(options);
+            }
+            case ROW_NAME_TAG -> {
+                recordSerializedRow(RdfStreamRow.NAME, rowLength);
+                readLookupEntry(input);
+                getNameDecoder().updateNames(entryId, entryValue);
+            }
+            case ROW_PREFIX_TAG -> {
+                recordSerializedRow(RdfStreamRow.PREFIX, rowLength);
+                readLookupEntry(input);
+                getNameDecoder().updatePrefixes(entryId, entryValue);
+            }
+            case ROW_DATATYPE_TAG -> {
+                recordSerializedRow(RdfStreamRow.DATATYPE, rowLength);
+                readLookupEntry(input);
+                getDatatypeLookup().update(entryId, converter.makeDatatype(entryValue));
+            }
+            case ROW_NAMESPACE_TAG -> {
+                recordSerializedRow(RdfStreamRow.NAMESPACE, rowLength);
+                final var namespace = RdfNamespaceDeclaration.newInstance();
+                mergeField(namespace, input);
+                handleNamespace(namespace);
+            }
+            case ROW_TRIPLE_TAG -> {
+                recordSerializedRow(RdfStreamRow.TRIPLE, rowLength);
+                readStatementTerms(input);
+                handleReadTriple();
+            }
+            case ROW_QUAD_TAG -> {
+                recordSerializedRow(RdfStreamRow.QUAD, rowLength);
+                readStatementTerms(input);
+                handleReadQuad();
+            }
+            case ROW_GRAPH_START_TAG -> {
+                recordSerializedRow(RdfStreamRow.GRAPH_START, rowLength);
+                readGraphStartTerm(input);
+                handleReadGraphStart();
+            }
+            case ROW_GRAPH_END_TAG -> {
+                recordSerializedRow(RdfStreamRow.GRAPH_END, rowLength);
+                input.skipRawBytes(fieldLength);
+                handleGraphEnd();
+            }
+            default -> throw new IllegalStateException("Not a field of a row: " + tag);
+        }
+        input.popLimit(oldLimit);
+    }
+
+    /**
+     * Merges a message field into the message, like {@link ProtoMessage#mergeDelimitedFrom}, with the length
+     * of the field already read and its limit pushed.
+     */
+    private static <T extends ProtoMessage<T>> void mergeField(T msg, CodedInputStream input) throws IOException {
+        if (msg.mergeFrom(input, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH - 1) != 0) {
+            throw new InvalidProtocolBufferException("Protocol message end-group tag did not match expected tag.");
+        }
+    }
+
+    private void readLookupEntry(CodedInputStream input) throws IOException {
+        int id = 0;
+        String value = "";
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (tag) {
+                case 8 -> id = input.readUInt32();
+                case 18 -> value = input.readString();
+                default -> input.skipField(tag);
+            }
+        }
+        entryId = id;
+        entryValue = value;
+    }
+
+    private void recordSerializedRow(int rowKind, int length) {
+        if (stats == null) {
+            return;
+        }
+        final int rowBytes = 1 + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+        switch (rowKind) {
+            case RdfStreamRow.NAME -> stats.recordNameEntry(rowBytes);
+            case RdfStreamRow.PREFIX -> stats.recordPrefixEntry(rowBytes);
+            case RdfStreamRow.DATATYPE -> stats.recordDatatypeEntry(rowBytes);
+            case RdfStreamRow.TRIPLE, RdfStreamRow.QUAD -> stats.recordStatementRow(rowBytes);
+            default -> stats.recordOtherRow(rowBytes);
+        }
+    }
+
+    private void recordRow(RdfStreamRow row) {
+        final int size = row.getSerializedSize();
+        // The tag and length of the rows field in the frame
+        final int rowBytes = 1 + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+        switch (row.getRowFieldNumber()) {
+            case RdfStreamRow.NAME -> stats.recordNameEntry(rowBytes);
+            case RdfStreamRow.PREFIX -> stats.recordPrefixEntry(rowBytes);
+            case RdfStreamRow.DATATYPE -> stats.recordDatatypeEntry(rowBytes);
+            case RdfStreamRow.TRIPLE, RdfStreamRow.QUAD -> stats.recordStatementRow(rowBytes);
+            default -> stats.recordOtherRow(rowBytes);
+        }
+    }
+
     protected void handleOptions(RdfStreamOptions options) {
         checkCompatibility(options, supportedOptions);
         setStreamOptions(options);
@@ -153,6 +519,32 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
         throw new RdfProtoDeserializationError("Unexpected end of graph in stream.");
     }
 
+    /**
+     * Handles a triple row read from the wire format. Its terms are converted with
+     * {@link #convertReadSubject()}, {@link #convertReadPredicate()}, and {@link #convertReadObject()}.
+     * <p>
+     * With a statement filter, triple messages are handled here too, and the terms are converted with
+     * {@link #convertFilteredSubject()} etc. if the triple passes {@link #filterReadStatement}.
+     */
+    protected void handleReadTriple() {
+        throw new RdfProtoDeserializationError("Unexpected triple row in stream.");
+    }
+
+    /**
+     * Handles a quad row read from the wire format. The graph is converted with {@link #convertReadGraph()}.
+     */
+    protected void handleReadQuad() {
+        throw new RdfProtoDeserializationError("Unexpected quad row in stream.");
+    }
+
+    /**
+     * Handles a graph start row read from the wire format. The graph is converted with
+     * {@link #convertReadGraphStart()}.
+     */
+    protected void handleReadGraphStart() {
+        throw new RdfProtoDeserializationError("Unexpected start of graph in stream.");
+    }
+
     /**
      * A decoder that reads TRIPLES streams and outputs a sequence of triples.
      * <p>
@@ -193,6 +585,21 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
                 convertObjectTermWrapped(triple)
             );
         }
+
+        @Override
+        protected void handleReadTriple() {
+            if (filter != null) {
+                if (filterReadStatement(false, true)) {
+                    protoHandler.handleTriple(
+                        convertFilteredSubject(),
+                        convertFilteredPredicate(),
+                        convertFilteredObject()
+                    );
+                }
+                return;
+            }
+            protoHandler.handleTriple(convertReadSubject(), convertReadPredicate(), convertReadObject());
+        }
     }
 
     /**
@@ -236,6 +643,27 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
                 convertGraphTermWrapped(quad)
             );
         }
+
+        @Override
+        protected void handleReadQuad() {
+            if (filter != null) {
+                if (filterReadStatement(true, true)) {
+                    protoHandler.handleQuad(
+                        convertFilteredSubject(),
+                        convertFilteredPredicate(),
+                        convertFilteredObject(),
+                        convertFilteredGraph()
+                    );
+                }
+                return;
+            }
+            protoHandler.handleQuad(
+                convertReadSubject(),
+                convertReadPredicate(),
+                convertReadObject(),
+                convertReadGraph()
+            );
+        }
     }
 
     /**
@@ -252,6 +680,8 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
         // the graph term.
         private boolean currentGraphStarted = false;
         private TNode currentGraph = null;
+        // Whether the current graph passes the statement filter
+        private boolean currentGraphAccepted = true;
 
         public GraphsAsQuadsDecoder(
             ProtoDecoderConverter<TNode, TDatatype> converter,
@@ -281,12 +711,38 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             currentGraph = convertGraphTerm(graphStart.getGraph());
         }
 
+        @Override
+        protected void handleReadGraphStart() {
+            currentGraphStarted = true;
+            currentGraph = convertReadGraphStart();
+            currentGraphAccepted = filter == null || acceptsReadGraphStart();
+        }
+
         @Override
         protected void handleGraphEnd() {
             currentGraphStarted = false;
             currentGraph = null;
         }
 
+        @Override
+        protected TNode getCurrentGraph() {
+            return currentGraphStarted ? currentGraph : null;
+        }
+
+        @Override
+        protected void resetGraphState() {
+            currentGraphStarted = false;
+            currentGraph = null;
+            currentGraphAccepted = true;
+        }
+
+        @Override
+        protected void restoreCurrentGraph(TNode graph, boolean accepted) {
+            currentGraphStarted = graph != null;
+            currentGraph = graph;
+            currentGraphAccepted = accepted;
+        }
+
         @Override
         protected void handleTriple(RdfTriple triple) {
             if (!currentGraphStarted) {
@@ -300,6 +756,26 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
                 currentGraph
             );
         }
+
+        @Override
+        protected void handleReadTriple() {
+            if (!currentGraphStarted) {
+                throw new RdfProtoDeserializationError("Triple in stream without preceding graph start.");
+            }
+
+            if (filter != null) {
+                if (filterReadStatement(false, currentGraphAccepted)) {
+                    protoHandler.handleQuad(
+                        convertFilteredSubject(),
+                        convertFilteredPredicate(),
+                        convertFilteredObject(),
+                        currentGraph
+                    );
+                }
+                return;
+            }
+            protoHandler.handleQuad(convertReadSubject(), convertReadPredicate(), convertReadObject(), currentGraph);
+        }
     }
 
     /**
@@ -313,6 +789,8 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
 
         private final RdfHandler.GraphHandler<TNode> protoHandler;
         private TNode currentGraph = null;
+        // Whether the current graph passes the statement filter. The handler does not see rejected graphs.
+        private boolean currentGraphAccepted = true;
 
         public GraphsDecoder(
             ProtoDecoderConverter<TNode, TDatatype> converter,
@@ -342,6 +820,15 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             protoHandler.handleGraphStart(currentGraph);
         }
 
+        @Override
+        protected void handleReadGraphStart() {
+            currentGraph = convertReadGraphStart();
+            currentGraphAccepted = filter == null || acceptsReadGraphStart();
+            if (currentGraphAccepted) {
+                protoHandler.handleGraphStart(currentGraph);
+            }
+        }
+
         @Override
         protected void handleGraphEnd() {
             if (currentGraph == null) {
@@ -349,7 +836,32 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             }
 
             currentGraph = null;
-            protoHandler.handleGraphEnd();
+            if (currentGraphAccepted) {
+                protoHandler.handleGraphEnd();
+            }
+        }
+
+        @Override
+        protected TNode getCurrentGraph() {
+            return currentGraph;
+        }
+
+        @Override
+        protected void resetGraphState() {
+            currentGraph = null;
+            currentGraphAccepted = true;
+        }
+
+        @Override
+        protected void restoreCurrentGraph(TNode graph, boolean accepted) {
+            // The handler must see the start of the graph before its triples
+            if (graph != null) {
+                currentGraph = graph;
+                currentGraphAccepted = accepted;
+                if (accepted) {
+                    protoHandler.handleGraphStart(graph);
+                }
+            }
         }
 
         @Override
@@ -359,6 +871,23 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             var object = convertObjectTermWrapped(triple);
             protoHandler.handleTriple(subject, predicate, object);
         }
+
+        @Override
+        protected void handleReadTriple() {
+            if (filter != null) {
+                if (filterReadStatement(false, currentGraphAccepted)) {
+                    var subject = convertFilteredSubject();
+                    var predicate = convertFilteredPredicate();
+                    var object = convertFilteredObject();
+                    protoHandler.handleTriple(subject, predicate, object);
+                }
+                return;
+            }
+            var subject = convertReadSubject();
+            var predicate = convertReadPredicate();
+            var object = convertReadObject();
+            protoHandler.handleTriple(subject, predicate, object);
+        }
     }
 
     /**
@@ -402,6 +931,18 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
             delegateDecoder.ingestRowInternal(row);
         }
 
+        @Override
+        protected void ingestSerializedRow(CodedInputStream input, int length) throws IOException {
+            delegateDecoder.ingestSerializedRowInternal(input, length);
+        }
+
+        @Override
+        protected void checkDictionaryId(String frameDictionaryId) {
+            if (delegateDecoder != this) {
+                delegateDecoder.checkDictionaryId(frameDictionaryId);
+            }
+        }
+
         @Override
         protected void handleOptions(RdfStreamOptions options) {
             // Reset the logical type to UNSPECIFIED to ignore checking if it's supported by the inner decoder
@@ -412,14 +953,66 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
                 return;
             }
 
-            switch (options.getPhysicalType()) {
-                case TRIPLES -> delegateDecoder = new TriplesDecoder<>(converter, protoHandler, options);
-                case QUADS -> delegateDecoder = new QuadsDecoder<>(converter, protoHandler, options);
-                case GRAPHS -> delegateDecoder = new GraphsAsQuadsDecoder<>(converter, protoHandler, options);
+            delegateDecoder = newDelegateDecoder(options);
+            // Replay the options row to the new decoder. This decoder already counted it in the stats.
+            delegateDecoder.ingestRowInternal(RdfStreamRow.newInstance().setOptions(options));
+            delegateDecoder.setStats(stats);
+        }
+
+        @Override
+        public void setStats(StreamStats stats) {
+            super.setStats(stats);
+            if (delegateDecoder != this) {
+                delegateDecoder.setStats(stats);
+            }
+        }
+
+        @Override
+        public void setLiteralCacheSize(int size) {
+            super.setLiteralCacheSize(size);
+            if (delegateDecoder != this) {
+                delegateDecoder.setLiteralCacheSize(size);
+            }
+        }
+
+        private ProtoDecoderImpl<TNode, TDatatype> newDelegateDecoder(RdfStreamOptions options) {
+            final ProtoDecoderImpl<TNode, TDatatype> decoder = switch (options.getPhysicalType()) {
+                case TRIPLES -> new TriplesDecoder<>(converter, protoHandler, options);
+                case QUADS -> new QuadsDecoder<>(converter, protoHandler, options);
+                case GRAPHS -> new GraphsAsQuadsDecoder<>(converter, protoHandler, options);
                 default -> throw new RdfProtoDeserializationError("Incoming physical stream type is not recognized.");
+            };
+            decoder.setDictionary(dictionary);
+            decoder.setFilter(filter);
+            decoder.setLiteralCacheSize(getLiteralCacheSize());
+            return decoder;
+        }
+
+        @Override
+        public DecoderCheckpoint saveCheckpoint(
+            Function<TNode, DecoderCheckpoint.Term> termMapper,
+            Function<TDatatype, String> datatypeMapper
+        ) {
+            if (delegateDecoder == this) {
+                return DecoderCheckpoint.EMPTY;
             }
-            // Replay the options row to the new decoder
-            delegateDecoder.ingestRowInternal(RdfStreamRow.newInstance().setOptions(options));
+            return delegateDecoder.saveCheckpoint(termMapper, datatypeMapper);
+        }
+
+        @Override
+        public void restoreCheckpoint(DecoderCheckpoint checkpoint) {
+            if (delegateDecoder != this) {
+                throw new IllegalStateException("A checkpoint can only be restored before ingesting any rows.");
+            }
+            if (checkpoint.options() == null) {
+                return;
+            }
+            final var options = checkpoint.options();
+            checkCompatibility(options, supportedOptions.clone().setLogicalType(LogicalStreamType.UNSPECIFIED));
+            final var delegate = newDelegateDecoder(options);
+            delegate.restoreCheckpoint(checkpoint);
+            delegate.setStats(stats);
+            delegateDecoder = delegate;
         }
 
         @Override
@@ -431,5 +1024,15 @@ public abstract sealed class ProtoDecoderImpl<TNode, TDatatype> extends ProtoDec
         protected void handleQuad(RdfQuad quad) {
             throw new RdfProtoDeserializationError("Stream options are not set.");
         }
+
+        @Override
+        protected void handleReadTriple() {
+            throw new RdfProtoDeserializationError("Stream options are not set.");
+        }
+
+        @Override
+        protected void handleReadQuad() {
+            throw new RdfProtoDeserializationError("Stream options are not set.");
+        }
     }
 }
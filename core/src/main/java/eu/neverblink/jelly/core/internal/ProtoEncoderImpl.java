@@ -1,5 +1,6 @@
 package eu.neverblink.jelly.core.internal;
 
+import com.google.protobuf.CodedOutputStream;
 import eu.neverblink.jelly.core.*;
 import eu.neverblink.jelly.core.ProtoEncoder;
 import eu.neverblink.jelly.core.ProtoEncoderConverter;
@@ -16,8 +17,6 @@ import eu.neverblink.jelly.core.proto.v1.*;
 @InternalApi
 public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
 
-    private boolean hasEmittedOptions = false;
-
     /**
      * Constructor for the ProtoEncoderImpl class.
      * <p>
@@ -34,7 +33,10 @@ public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
         emitOptions();
         final var triple = tripleToProto(subject, predicate, object);
         // Calculate the size of the row now, as all objects are likely still in L1/L2 cache.
-        rowBuffer.appendMessage().setTriple(triple).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setTriple(triple).getSerializedSize());
+        if (stats != null) {
+            stats.recordStatementRow(size);
+        }
     }
 
     @Override
@@ -42,14 +44,44 @@ public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
         emitOptions();
         final var quad = quadToProto(subject, predicate, object, graph);
         // Calculate the size of the row now, as all objects are likely still in L1/L2 cache.
-        rowBuffer.appendMessage().setQuad(quad).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setQuad(quad).getSerializedSize());
+        if (stats != null) {
+            stats.recordStatementRow(size);
+        }
+    }
+
+    @Override
+    public void handleTriples(TNode[] subjects, TNode[] predicates, TNode[] objects, int count) {
+        emitOptions();
+        for (int i = 0; i < count; i++) {
+            final var triple = tripleToProto(subjects, predicates, objects, i);
+            final int size = frameRow(rowBuffer.appendMessage().setTriple(triple).getSerializedSize());
+            if (stats != null) {
+                stats.recordStatementRow(size);
+            }
+        }
+    }
+
+    @Override
+    public void handleQuads(TNode[] subjects, TNode[] predicates, TNode[] objects, TNode[] graphs, int count) {
+        emitOptions();
+        for (int i = 0; i < count; i++) {
+            final var quad = quadToProto(subjects, predicates, objects, graphs, i);
+            final int size = frameRow(rowBuffer.appendMessage().setQuad(quad).getSerializedSize());
+            if (stats != null) {
+                stats.recordStatementRow(size);
+            }
+        }
     }
 
     @Override
     public void handleGraphStart(TNode graph) {
         emitOptions();
         final var graphStart = graphStartToProto(graph);
-        rowBuffer.appendMessage().setGraphStart(graphStart).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setGraphStart(graphStart).getSerializedSize());
+        if (stats != null) {
+            stats.recordOtherRow(size);
+        }
     }
 
     @Override
@@ -57,7 +89,10 @@ public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
         if (!hasEmittedOptions) {
             throw new RdfProtoSerializationError("Cannot end a delimited graph before starting one");
         }
-        rowBuffer.appendMessage().setGraphEnd(RdfGraphEnd.EMPTY).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setGraphEnd(RdfGraphEnd.EMPTY).getSerializedSize());
+        if (stats != null) {
+            stats.recordOtherRow(size);
+        }
     }
 
     @Override
@@ -71,22 +106,45 @@ public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
         final var ns = RdfNamespaceDeclaration.newInstance().setName(prefix);
         final var encoded = converter.nodeToProto(getNodeEncoder(), namespace);
         ns.setValue((RdfIri) encoded);
-        rowBuffer.appendMessage().setNamespace(ns).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setNamespace(ns).getSerializedSize());
+        if (stats != null) {
+            stats.recordOtherRow(size);
+        }
     }
 
     @Override
     public void appendNameEntry(RdfNameEntry nameEntry) {
-        rowBuffer.appendMessage().setName(nameEntry).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setName(nameEntry).getSerializedSize());
+        if (stats != null) {
+            stats.recordNameEntry(size);
+        }
     }
 
     @Override
     public void appendPrefixEntry(RdfPrefixEntry prefixEntry) {
-        rowBuffer.appendMessage().setPrefix(prefixEntry).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setPrefix(prefixEntry).getSerializedSize());
+        if (stats != null) {
+            stats.recordPrefixEntry(size);
+        }
     }
 
     @Override
     public void appendDatatypeEntry(RdfDatatypeEntry datatypeEntry) {
-        rowBuffer.appendMessage().setDatatype(datatypeEntry).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setDatatype(datatypeEntry).getSerializedSize());
+        if (stats != null) {
+            stats.recordDatatypeEntry(size);
+        }
+    }
+
+    /**
+     * Adds a row to the size of the frame.
+     * @param size serialized size of the row
+     * @return size of the row in the serialized frame: the tag and length of the rows field, and the row itself
+     */
+    private int frameRow(int size) {
+        final int rowBytes = 1 + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+        frameBytes += rowBytes;
+        return rowBytes;
     }
 
     private void emitOptions() {
@@ -95,6 +153,10 @@ public final class ProtoEncoderImpl<TNode> extends ProtoEncoder<TNode> {
         }
 
         hasEmittedOptions = true;
-        rowBuffer.appendMessage().setOptions(options).getSerializedSize();
+        final int size = frameRow(rowBuffer.appendMessage().setOptions(options).getSerializedSize());
+        if (stats != null) {
+            stats.recordOtherRow(size);
+        }
+        preloadVocabulary(vocabulary);
     }
 }
@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.core.internal;
 
 import eu.neverblink.jelly.core.*;
+import eu.neverblink.jelly.core.jfr.TranscoderFrameEvent;
 import eu.neverblink.jelly.core.proto.v1.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,9 +38,9 @@ public final class ProtoTranscoderImpl implements ProtoTranscoder {
     public ProtoTranscoderImpl(RdfStreamOptions supportedInputOptions, RdfStreamOptions outputOptions) {
         this.supportedInputOptions = supportedInputOptions;
         this.outputOptions = outputOptions;
-        prefixLookup = new TranscoderLookup(false, outputOptions.getMaxPrefixTableSize());
-        nameLookup = new TranscoderLookup(true, outputOptions.getMaxNameTableSize());
-        datatypeLookup = new TranscoderLookup(false, outputOptions.getMaxDatatypeTableSize());
+        prefixLookup = new TranscoderLookup(false, outputOptions.getMaxPrefixTableSize(), "prefix");
+        nameLookup = new TranscoderLookup(true, outputOptions.getMaxNameTableSize(), "name");
+        datatypeLookup = new TranscoderLookup(false, outputOptions.getMaxDatatypeTableSize(), "datatype");
     }
 
     @Override
@@ -51,6 +52,8 @@ public final class ProtoTranscoderImpl implements ProtoTranscoder {
 
     @Override
     public RdfStreamFrame ingestFrame(RdfStreamFrame frame) {
+        final var event = new TranscoderFrameEvent();
+        event.begin();
         rowBuffer.clear();
         for (final var row : frame.getRows()) {
             processRow(row);
@@ -58,6 +61,11 @@ public final class ProtoTranscoderImpl implements ProtoTranscoder {
         final var outFrame = RdfStreamFrame.newInstance();
         outFrame.getRows().addAll(rowBuffer);
         outFrame.getMetadata().addAll(frame.getMetadata());
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(outputOptions.getStreamName(), rowBuffer.size(), frame.getSerializedSize());
+            event.commit();
+        }
         return outFrame;
     }
 
@@ -247,7 +255,8 @@ public final class ProtoTranscoderImpl implements ProtoTranscoder {
         var dt1 = datatypeLookup.remap(dt);
         if (dt1 != dt) {
             hasChangedTerms = true;
-            return RdfLiteral.newInstance().setLex(literal.getLex()).setDatatype(dt1);
+            // Copy the literal to keep its lexical form as it was read, without decoding it
+            return RdfLiteral.newInstance().copyFrom(literal).setDatatype(dt1);
         }
 
         return literal;
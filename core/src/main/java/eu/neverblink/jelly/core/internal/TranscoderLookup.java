@@ -32,9 +32,19 @@ final class TranscoderLookup {
      * @param outputSize The size of the output lookup.
      */
     TranscoderLookup(boolean isNameLookup, int outputSize) {
+        this(isNameLookup, outputSize, "unknown");
+    }
+
+    /**
+     * Create a new TranscoderLookup.
+     * @param isNameLookup Whether this lookup is for IRI names.
+     * @param outputSize The size of the output lookup.
+     * @param tableName The name of the table (prefix, name, datatype), for diagnostics.
+     */
+    TranscoderLookup(boolean isNameLookup, int outputSize, String tableName) {
         this.isNameLookup = isNameLookup;
         this.outputSize = outputSize;
-        this.lookup = new EncoderLookup(outputSize, false);
+        this.lookup = new EncoderLookup(outputSize, false, tableName);
     }
 
     /**
@@ -0,0 +1,15 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an already parsed frame whose rows were decoded into statements.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.FrameDecoded")
+@Label("Jelly Frame Decoded")
+@Description("The rows of a frame were decoded into statements")
+public final class FrameDecodedEvent extends JellyFrameEvent {}
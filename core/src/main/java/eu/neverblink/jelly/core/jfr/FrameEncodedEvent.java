@@ -0,0 +1,18 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a frame of statements that was encoded.
+ * <p>
+ * The duration is the time from the start of the frame until it was complete, so it includes the time
+ * that the application took to produce the statements.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.FrameEncoded")
+@Label("Jelly Frame Encoded")
+@Description("A frame of statements was encoded")
+public final class FrameEncodedEvent extends JellyFrameEvent {}
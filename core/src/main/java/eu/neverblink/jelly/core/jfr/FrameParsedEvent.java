@@ -0,0 +1,19 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a frame that was parsed from the input.
+ * <p>
+ * Readers that decode the rows while they are being parsed (e.g., the Jena and RDF4J readers reading
+ * frame by frame) include the decoding in the duration of this event, and do not emit
+ * {@link FrameDecodedEvent}. The number of rows is not known to the parser, so it is 0.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.FrameParsed")
+@Label("Jelly Frame Parsed")
+@Description("A frame was parsed from the input")
+public final class FrameParsedEvent extends JellyFrameEvent {}
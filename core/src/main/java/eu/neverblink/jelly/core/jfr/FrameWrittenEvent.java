@@ -0,0 +1,16 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a frame that was serialized and written to the output. With a PipelinedFrameWriter, the event
+ * is emitted by its I/O thread, after the frame is written, not when the frame is handed over to it.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.FrameWritten")
+@Label("Jelly Frame Written")
+@Description("A frame was serialized and written to the output")
+public final class FrameWrittenEvent extends JellyFrameEvent {}
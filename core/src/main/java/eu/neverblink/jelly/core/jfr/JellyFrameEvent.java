@@ -0,0 +1,60 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class of the JDK Flight Recorder events that Jelly emits for each processed frame.
+ * <p>
+ * The events are disabled unless a recording enables them (e.g., with
+ * {@code -XX:StartFlightRecording:settings=profile}, which enables all events with a duration over
+ * 20 ms). While disabled, an event costs next to nothing: the JIT removes its allocation, and the fields
+ * are only filled in after {@link #shouldCommit()} returns true.
+ * <p>
+ * Use the events like this:
+ * <pre>{@code
+ * final var event = new FrameWrittenEvent();
+ * event.begin();
+ * // ... do the work ...
+ * event.end();
+ * if (event.shouldCommit()) {
+ *     event.set(streamName, rows, bytes);
+ *     event.commit();
+ * }
+ * }</pre>
+ */
+@ExperimentalApi
+@Category({ "Jelly" })
+@StackTrace(false)
+public abstract class JellyFrameEvent extends Event {
+
+    @Label("Stream Name")
+    @Description("Name of the stream from its options row, empty if not known")
+    public String streamName;
+
+    @Label("Rows")
+    @Description("Number of rows in the frame")
+    public int rows;
+
+    @Label("Size")
+    @Description("Serialized size of the frame, without the length delimiter")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Fills in the fields of the event.
+     * @param streamName name of the stream, or null if not known
+     * @param rows number of rows in the frame
+     * @param bytes serialized size of the frame in bytes
+     */
+    public final void set(String streamName, int rows, long bytes) {
+        this.streamName = streamName == null ? "" : streamName;
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+}
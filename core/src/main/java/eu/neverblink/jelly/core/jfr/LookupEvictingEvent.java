@@ -0,0 +1,32 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a lookup table of an encoder or transcoder that became full and evicted its first entry.
+ * From then on, every new entry evicts an older one, which may have to be sent again later. It is emitted
+ * once per lookup table, so many of these events in a recording mean that many streams outgrow their
+ * tables – see {@link eu.neverblink.jelly.core.utils.OptionsAdvisor}.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.LookupEvicting")
+@Label("Jelly Lookup Table Full")
+@Description("A lookup table became full and started evicting entries")
+@Category({ "Jelly" })
+@StackTrace(false)
+public final class LookupEvictingEvent extends Event {
+
+    @Label("Table")
+    @Description("Which lookup table became full: prefix, name, or datatype")
+    public String table;
+
+    @Label("Table Size")
+    @Description("Number of entries in the table")
+    public int size;
+}
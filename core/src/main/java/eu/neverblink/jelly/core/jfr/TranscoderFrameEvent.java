@@ -0,0 +1,16 @@
+package eu.neverblink.jelly.core.jfr;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a frame processed by the transcoder. The rows are the rows of the output frame, and the
+ * size is the size of the input frame.
+ */
+@ExperimentalApi
+@Name("eu.neverblink.jelly.TranscoderFrame")
+@Label("Jelly Transcoder Frame")
+@Description("A frame was processed by the transcoder")
+public final class TranscoderFrameEvent extends JellyFrameEvent {}
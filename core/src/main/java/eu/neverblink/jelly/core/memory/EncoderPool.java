@@ -0,0 +1,246 @@
+package eu.neverblink.jelly.core.memory;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.InternalApi;
+import eu.neverblink.jelly.core.RdfBufferAppender;
+import eu.neverblink.jelly.core.internal.NodeEncoderImpl;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of the structures that an encoder and a writer allocate for each stream: the row buffer, the arena
+ * allocator, the serialized frame buffer of the direct encoder, and the lookups with the node caches.
+ * <p>
+ * For a large stream these are a one-off cost. But a server writing thousands of small responses per second
+ * spends most of its time setting them up – mainly the lookup indexes, which are allocated at their full
+ * size right away. With a pool, a writer takes a {@link Lease} at the start of the stream and returns it at
+ * the end. The next stream gets the same structures, emptied in place: the lookups are cleared and their
+ * serials bumped, which invalidates the cached nodes without touching them.
+ * <p>
+ * The leases are kept per thread and in a shared queue:
+ * <ul>
+ *     <li>A platform thread keeps the last lease it returned, so a thread that writes one stream after
+ *     another gets it back without any contention.</li>
+ *     <li>Virtual threads are short-lived and there may be millions of them, so they only use the shared
+ *     queue, as do the leases that do not fit in the thread's slot.</li>
+ * </ul>
+ * At most {@code maxIdle} leases are kept in the queue, the rest are left to the garbage collector.
+ * <p>
+ * The pool is thread-safe. A lease is NOT – it must be used by one stream at a time, and it must not be
+ * touched after it is returned.
+ */
+@ExperimentalApi
+public final class EncoderPool {
+
+    /**
+     * Structures of one stream, taken from the pool.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final EncoderPool pool;
+        private final ReusableRowBuffer rowBuffer;
+        private EncoderAllocator allocator;
+        private int allocatorSize;
+        private SerializedFrameBuffer frameBuffer = null;
+        private NodeEncoderImpl<?> nodeEncoder = null;
+        private boolean nodeEncoderUsed = false;
+        private boolean leased = false;
+
+        private Lease(EncoderPool pool, int frameCapacity) {
+            this.pool = pool;
+            this.rowBuffer = RowBuffer.newReusableForEncoder(frameCapacity);
+            this.allocator = EncoderAllocator.newArenaAllocator(frameCapacity);
+            this.allocatorSize = frameCapacity;
+        }
+
+        /**
+         * Returns the reusable row buffer, empty at the start of the stream.
+         * @return row buffer
+         */
+        public RowBuffer getRowBuffer() {
+            return rowBuffer;
+        }
+
+        /**
+         * Returns the arena allocator for the stream.
+         * @return allocator
+         */
+        public EncoderAllocator getAllocator() {
+            return allocator;
+        }
+
+        /**
+         * Returns the frame buffer for the direct encoder, empty at the start of the stream. Created on first use.
+         * @return frame buffer
+         */
+        public SerializedFrameBuffer getFrameBuffer() {
+            if (frameBuffer == null) {
+                frameBuffer = new SerializedFrameBuffer();
+            }
+            return frameBuffer;
+        }
+
+        /**
+         * Returns the node encoder of this lease, reset for a new stream, or a new one if there is none with
+         * the given table sizes. Called by the encoder whenever it needs fresh lookups – at the start of the
+         * stream, and in every frame with self-contained frames.
+         */
+        @InternalApi
+        public <TNode> NodeEncoderImpl<TNode> nodeEncoder(
+            RdfBufferAppender<TNode> bufferAppender,
+            int prefixTableSize,
+            int nameTableSize,
+            int dtTableSize
+        ) {
+            if (nodeEncoder != null && nodeEncoder.hasTableSizes(prefixTableSize, nameTableSize, dtTableSize)) {
+                if (!nodeEncoderUsed) {
+                    pool.nodeEncoderHits.increment();
+                }
+                nodeEncoderUsed = true;
+                return nodeEncoder.reset(bufferAppender);
+            }
+            final NodeEncoderImpl<TNode> encoder = NodeEncoderImpl.create(
+                bufferAppender,
+                prefixTableSize,
+                nameTableSize,
+                dtTableSize
+            );
+            nodeEncoder = encoder;
+            nodeEncoderUsed = true;
+            return encoder;
+        }
+
+        private Lease prepare(int frameCapacity) {
+            if (allocatorSize < frameCapacity) {
+                // Frames larger than before would spill from the arena to the heap
+                allocator = EncoderAllocator.newArenaAllocator(frameCapacity);
+                allocatorSize = frameCapacity;
+            }
+            leased = true;
+            nodeEncoderUsed = false;
+            return this;
+        }
+
+        /**
+         * Returns the lease to the pool. Call this at the end of the stream, once the last frame is written.
+         * Calling it again does nothing.
+         */
+        @Override
+        public void close() {
+            if (!leased) {
+                return;
+            }
+            leased = false;
+            rowBuffer.clear();
+            allocator.releaseAll();
+            if (frameBuffer != null) {
+                frameBuffer.clear();
+            }
+            pool.release(this);
+        }
+    }
+
+    private final int maxIdle;
+    private final ThreadLocal<Lease> threadLease = new ThreadLocal<>();
+    private final ConcurrentLinkedQueue<Lease> shared = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sharedCount = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder nodeEncoderHits = new LongAdder();
+
+    /**
+     * Creates a new pool.
+     * @param maxIdle maximum number of leases kept in the shared queue, on top of one per platform thread.
+     *                Roughly the number of streams written at the same time.
+     */
+    public EncoderPool(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Maximum number of idle leases must not be negative, got " + maxIdle);
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Takes a lease from the pool, or creates a new one if the pool is empty.
+     * @param frameSize target number of rows in a frame. The buffers are sized for a few rows more.
+     * @return lease, to be closed at the end of the stream
+     */
+    public Lease acquire(int frameSize) {
+        final int frameCapacity = frameSize + 8;
+        Lease lease = null;
+        if (!Thread.currentThread().isVirtual()) {
+            lease = threadLease.get();
+            if (lease != null) {
+                threadLease.remove();
+            }
+        }
+        if (lease == null) {
+            lease = shared.poll();
+            if (lease != null) {
+                sharedCount.decrementAndGet();
+            }
+        }
+        if (lease == null) {
+            misses.increment();
+            lease = new Lease(this, frameCapacity);
+        } else {
+            hits.increment();
+        }
+        return lease.prepare(frameCapacity);
+    }
+
+    private void release(Lease lease) {
+        if (!Thread.currentThread().isVirtual() && threadLease.get() == null) {
+            threadLease.set(lease);
+            return;
+        }
+        if (sharedCount.incrementAndGet() > maxIdle) {
+            sharedCount.decrementAndGet();
+            return;
+        }
+        shared.add(lease);
+    }
+
+    /**
+     * Returns the maximum number of leases kept in the shared queue.
+     * @return maximum number of idle leases
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Returns the number of leases waiting in the shared queue. Leases kept by threads are not counted.
+     * @return number of idle leases
+     */
+    public int getIdleCount() {
+        return sharedCount.get();
+    }
+
+    /**
+     * Returns how many times {@link #acquire} reused a lease.
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many times {@link #acquire} had to create a new lease.
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many streams reused the lookups and node caches of a previous stream. Lower than
+     * {@link #getHits()} if streams with different table sizes share the pool.
+     * @return number of reused node encoders
+     */
+    public long getNodeEncoderHits() {
+        return nodeEncoderHits.sum();
+    }
+}
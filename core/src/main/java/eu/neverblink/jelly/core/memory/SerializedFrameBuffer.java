@@ -0,0 +1,332 @@
+package eu.neverblink.jelly.core.memory;
+
+import com.google.protobuf.CodedOutputStream;
+import eu.neverblink.jelly.core.InternalApi;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer holding the serialized body of a single RdfStreamFrame – that is, a sequence
+ * of already encoded `rows` fields.
+ * <p>
+ * This is the counterpart of {@link RowBuffer} for the direct encoder
+ * ({@link eu.neverblink.jelly.core.JellyConverterFactory#directEncoder}), which writes the protobuf wire
+ * format of each row straight into this buffer, instead of building RdfStreamRow objects that
+ * would have to be serialized later. Writing the buffer out produces exactly the same bytes as
+ * serializing an RdfStreamFrame with the same rows and metadata entries.
+ * <p>
+ * The buffer is reusable: call {@link #clear()} after writing out each frame. It is NOT thread-safe.
+ */
+public final class SerializedFrameBuffer {
+
+    /**
+     * Tag of the `rows` field (1) of RdfStreamFrame, with the length-delimited wire type.
+     */
+    private static final int ROWS_TAG = (1 << 3) | 2;
+
+    /**
+     * Number of the `metadata` field of RdfStreamFrame.
+     */
+    private static final int METADATA_FIELD = 15;
+
+    private byte[] buffer;
+    private int position = 0;
+    private int rowCount = 0;
+    private int rowStart = -1;
+
+    /**
+     * Creates a new buffer.
+     * @param initialCapacity initial capacity in bytes. The buffer grows as needed.
+     */
+    public SerializedFrameBuffer(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    /**
+     * Creates a new buffer with an initial capacity of 8 KiB.
+     */
+    public SerializedFrameBuffer() {
+        this(8192);
+    }
+
+    /**
+     * Returns the number of rows in the buffer.
+     * @return number of rows
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns true if the buffer does not contain any rows.
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * Returns the serialized size of the frame body in bytes (without the delimiter).
+     * @return size in bytes
+     */
+    public int getSerializedSize() {
+        return position;
+    }
+
+    /**
+     * Removes all rows from the buffer. The underlying array is kept for reuse.
+     */
+    public void clear() {
+        position = 0;
+        rowCount = 0;
+        rowStart = -1;
+    }
+
+    /**
+     * Writes the frame to the output, prefixed with its length (delimited format).
+     * The result is the same as RdfStreamFrame.writeDelimitedTo.
+     * @param output output to write to
+     * @throws IOException on I/O error
+     */
+    public void writeDelimitedTo(CodedOutputStream output) throws IOException {
+        output.writeUInt32NoTag(position);
+        output.writeRawBytes(buffer, 0, position);
+    }
+
+    /**
+     * Writes the frame to the output without a length prefix (non-delimited format).
+     * The result is the same as RdfStreamFrame.writeTo.
+     * @param output output to write to
+     * @throws IOException on I/O error
+     */
+    public void writeTo(CodedOutputStream output) throws IOException {
+        output.writeRawBytes(buffer, 0, position);
+    }
+
+    /**
+     * Returns a copy of the serialized frame body.
+     * @return serialized frame (non-delimited)
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Writes an entry of the frame's metadata after the rows written so far. The entry does not count
+     * as a row, and is removed by {@link #clear()} like the rows.
+     * @param key key of the entry
+     * @param value value of the entry
+     */
+    public void writeMetadataEntry(String key, byte[] value) {
+        final int entryPosition = beginLengthDelimited(METADATA_FIELD);
+        writeString(1, key);
+        writeTag(2, 2);
+        writeVarint32(value.length);
+        writeRawBytes(value, 0, value.length);
+        endLengthDelimited(entryPosition);
+    }
+
+    // -----------------------------------------------------------------
+    // Low-level writing primitives, used by the direct encoder.
+    // -----------------------------------------------------------------
+
+    /**
+     * Starts a new row. Must be followed by exactly one field of RdfStreamRow and {@link #endRow()}.
+     */
+    @InternalApi
+    public void beginRow() {
+        ensureCapacity(1);
+        buffer[position++] = (byte) ROWS_TAG;
+        rowStart = position;
+        ensureCapacity(1);
+        position++;
+    }
+
+    /**
+     * Finishes the row started with {@link #beginRow()}.
+     * @return size of the row in bytes, including its tag and length
+     */
+    @InternalApi
+    public int endRow() {
+        endLengthDelimited(rowStart);
+        // The tag is the byte right before the length
+        final int rowBytes = position - rowStart + 1;
+        rowStart = -1;
+        rowCount++;
+        return rowBytes;
+    }
+
+    /**
+     * Starts a length-delimited field (embedded message). One byte is reserved for the length,
+     * which is patched in {@link #endLengthDelimited(int)}. If the message turns out to be longer
+     * than 127 bytes, its body is shifted to make room for the longer varint. Fields can be nested.
+     * @param fieldNumber field number
+     * @return position of the reserved length byte, to be passed to endLengthDelimited
+     */
+    @InternalApi
+    public int beginLengthDelimited(int fieldNumber) {
+        writeTag(fieldNumber, 2);
+        ensureCapacity(1);
+        return position++;
+    }
+
+    /**
+     * Finishes a length-delimited field started with {@link #beginLengthDelimited(int)}.
+     * @param lengthPosition value returned by beginLengthDelimited
+     */
+    @InternalApi
+    public void endLengthDelimited(int lengthPosition) {
+        final int length = position - lengthPosition - 1;
+        if (length < 0x80) {
+            buffer[lengthPosition] = (byte) length;
+            return;
+        }
+        final int varintSize = CodedOutputStream.computeUInt32SizeNoTag(length);
+        ensureCapacity(varintSize - 1);
+        System.arraycopy(buffer, lengthPosition + 1, buffer, lengthPosition + varintSize, length);
+        position += varintSize - 1;
+        writeVarint32At(lengthPosition, length);
+    }
+
+    /**
+     * Writes a length-delimited field with an empty body (e.g., RdfGraphEnd, RdfDefaultGraph).
+     * @param fieldNumber field number
+     */
+    @InternalApi
+    public void writeEmptyMessage(int fieldNumber) {
+        writeTag(fieldNumber, 2);
+        ensureCapacity(1);
+        buffer[position++] = 0;
+    }
+
+    /**
+     * Writes a field tag.
+     * @param fieldNumber field number
+     * @param wireType wire type
+     */
+    @InternalApi
+    public void writeTag(int fieldNumber, int wireType) {
+        writeVarint32((fieldNumber << 3) | wireType);
+    }
+
+    /**
+     * Writes a uint32 field, including its tag.
+     * @param fieldNumber field number
+     * @param value value
+     */
+    @InternalApi
+    public void writeUInt32(int fieldNumber, int value) {
+        writeTag(fieldNumber, 0);
+        writeVarint32(value);
+    }
+
+    /**
+     * Writes a raw varint.
+     * @param value value, treated as unsigned
+     */
+    @InternalApi
+    public void writeVarint32(int value) {
+        ensureCapacity(5);
+        position = writeVarint32At(position, value);
+    }
+
+    /**
+     * Writes a string field, including its tag. The string is encoded in UTF-8, with unpaired
+     * surrogates replaced by '?', just like in CodedOutputStream.
+     * @param fieldNumber field number
+     * @param value value
+     */
+    @InternalApi
+    public void writeString(int fieldNumber, String value) {
+        final int lengthPosition = beginLengthDelimited(fieldNumber);
+        final int length = value.length();
+        // Worst case: 3 bytes per UTF-16 code unit
+        ensureCapacity(length * 3);
+        final byte[] buf = buffer;
+        int pos = position;
+        int i = 0;
+        // Fast path for ASCII
+        for (char c; i < length && (c = value.charAt(i)) < 0x80; i++) {
+            buf[pos++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >>> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buf[pos++] = (byte) (0xE0 | (c >>> 12));
+                buf[pos++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (
+                Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))
+            ) {
+                final int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >>> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                // Unpaired surrogate
+                buf[pos++] = '?';
+            }
+        }
+        position = pos;
+        endLengthDelimited(lengthPosition);
+    }
+
+    /**
+     * Writes raw bytes to the buffer.
+     * @param bytes bytes
+     * @param offset offset in bytes
+     * @param length number of bytes to write
+     */
+    @InternalApi
+    public void writeRawBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Reserves space for a message of a known size and returns the offset at which it should
+     * be written in {@link #array()}.
+     * @param length number of bytes
+     * @return offset in the underlying array
+     */
+    @InternalApi
+    public int reserve(int length) {
+        ensureCapacity(length);
+        final int offset = position;
+        position += length;
+        return offset;
+    }
+
+    /**
+     * Returns the underlying array. Valid only until the next write.
+     * @return array
+     */
+    @InternalApi
+    public byte[] array() {
+        return buffer;
+    }
+
+    private int writeVarint32At(int pos, int value) {
+        final byte[] buf = buffer;
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    private void ensureCapacity(int extra) {
+        final int required = position + extra;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package eu.neverblink.jelly.core.utils;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.IriSplitter;
+
+/**
+ * IRI splitting strategy that learns the frequent prefixes of the stream, for vocabularies that do not follow
+ * the hash/slash convention.
+ * <p>
+ * Every position right after a separator ('/', '#', ':', '?', '=', '&amp;', ';') is a candidate split. The
+ * splitter counts how many of the recently split IRIs had each candidate prefix, and picks the longest one
+ * seen at least {@code minCount} times. This way, the prefix is the longest part of the IRI shared by other
+ * IRIs, and the part that varies goes into the name. If no candidate was seen often enough (a new namespace),
+ * the IRI is split after its last separator.
+ * <p>
+ * The counts form a hashed prefix trie: each candidate prefix is counted in a slot picked by its hash, so
+ * the memory use is fixed and no strings are allocated. Two prefixes may share a slot, which at worst makes
+ * the split longer than it should be. Only the last {@code windowSize} candidates are counted, so the
+ * splitter follows the stream when its vocabulary changes.
+ * <p>
+ * The encoder only splits IRIs that are not in its node cache, so repeated IRIs are not counted twice.
+ * <p>
+ * This class is NOT thread-safe. Use a new instance for each encoder.
+ */
+@ExperimentalApi
+public final class AdaptiveIriSplitter implements IriSplitter {
+
+    /**
+     * Default number of candidate prefixes counted.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    /**
+     * Default number of times a prefix must have been seen to be used.
+     */
+    public static final int DEFAULT_MIN_COUNT = 2;
+
+    // Candidates of a single IRI beyond this are dropped, starting from the shortest
+    private static final int MAX_CANDIDATES = 32;
+
+    private final int minCount;
+    // Counts of the candidate prefixes, indexed by the hash of the prefix
+    private final int[] counts;
+    private final int countMask;
+    // Slots of the counted candidates, oldest first from windowPos
+    private final int[] window;
+    private int windowPos = 0;
+    private boolean windowFull = false;
+
+    // Scratch space for the candidates of the IRI being split
+    private final int[] candidateLengths = new int[MAX_CANDIDATES];
+    private final int[] candidateSlots = new int[MAX_CANDIDATES];
+
+    /**
+     * Creates a new splitter with the default window size and minimum count.
+     */
+    public AdaptiveIriSplitter() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_COUNT);
+    }
+
+    /**
+     * Creates a new splitter.
+     * @param windowSize number of candidate prefixes counted, rounded up to a power of two.
+     *                   Each split IRI adds one candidate per separator.
+     * @param minCount number of times a prefix must have been seen to be used
+     */
+    public AdaptiveIriSplitter(int windowSize, int minCount) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1, got " + windowSize);
+        }
+        if (minCount < 1) {
+            throw new IllegalArgumentException("Minimum count must be at least 1, got " + minCount);
+        }
+        this.minCount = minCount;
+        this.window = new int[Integer.highestOneBit(Math.max(windowSize - 1, 1)) << 1];
+        // Four times as many slots as counted candidates keeps the collisions rare
+        this.counts = new int[window.length * 4];
+        this.countMask = counts.length - 1;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '#' || c == ':' || c == '?' || c == '=' || c == '&' || c == ';';
+    }
+
+    @Override
+    public int prefixLength(String iri) {
+        // Collect the candidates, hashing the prefixes incrementally
+        int candidates = 0;
+        int hash = 0;
+        final int length = iri.length();
+        for (int i = 0; i < length; i++) {
+            final char c = iri.charAt(i);
+            hash = 31 * hash + c;
+            // In a run of separators (like "://") only the last one is a candidate
+            if (!isSeparator(c) || (i + 1 < length && isSeparator(iri.charAt(i + 1)))) {
+                continue;
+            }
+            if (candidates == MAX_CANDIDATES) {
+                System.arraycopy(candidateLengths, 1, candidateLengths, 0, MAX_CANDIDATES - 1);
+                System.arraycopy(candidateSlots, 1, candidateSlots, 0, MAX_CANDIDATES - 1);
+                candidates--;
+            }
+            final int spread = hash * 0x9E3779B1;
+            candidateLengths[candidates] = i + 1;
+            candidateSlots[candidates] = (spread ^ (spread >>> 16)) & countMask;
+            candidates++;
+        }
+        if (candidates == 0) {
+            return 0;
+        }
+
+        int result = candidateLengths[candidates - 1];
+        for (int k = candidates - 1; k >= 0; k--) {
+            if (counts[candidateSlots[k]] >= minCount) {
+                result = candidateLengths[k];
+                break;
+            }
+        }
+        for (int k = 0; k < candidates; k++) {
+            count(candidateSlots[k]);
+        }
+        return result;
+    }
+
+    private void count(int slot) {
+        if (windowFull) {
+            counts[window[windowPos]]--;
+        }
+        counts[slot]++;
+        window[windowPos] = slot;
+        windowPos = (windowPos + 1) & (window.length - 1);
+        if (windowPos == 0) {
+            windowFull = true;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package eu.neverblink.jelly.core.utils;
+
+import com.google.protobuf.CodedOutputStream;
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer of delimited Jelly frames to an NIO channel, without blocking the encoding thread on I/O.
+ * <p>
+ * Each submitted frame is serialized on the calling thread into a pooled direct ByteBuffer, which is then
+ * handed to the channel:
+ * <ul>
+ *     <li>{@link AsynchronousFileChannel} – the frames are written at consecutive positions, with completion
+ *     handlers. Several frames may be in flight at once.</li>
+ *     <li>{@link AsynchronousByteChannel} (e.g., AsynchronousSocketChannel) – the frames are written one after
+ *     another, the completion handler of each write starting the next one.</li>
+ *     <li>{@link WritableByteChannel} (e.g., a non-blocking SocketChannel) – the frames are written by a
+ *     background thread, which waits briefly whenever the channel does not accept more bytes.</li>
+ * </ul>
+ * At most {@code maxInFlight} frames are waiting to be written at any time. Only when this limit is reached,
+ * submitting a frame blocks until the oldest one is written. The buffers are reused, so in the steady state
+ * this writer does not allocate.
+ * <p>
+ * This is the channel-based counterpart of {@link PipelinedFrameWriter}: use it with a ProtoEncoder and a
+ * regular row buffer, calling {@link #submitFrame(RdfStreamFrame)} when the frame is full, or with the direct
+ * encoder and {@link #submitFrame(SerializedFrameBuffer)}. Call {@link #close()} at the end of the stream.
+ * <p>
+ * This class is NOT thread-safe – all methods must be called from the encoding thread.
+ */
+@ExperimentalApi
+public final class ChannelFrameWriter implements AutoCloseable {
+
+    /** Smallest buffer allocated, so that small frames do not need to grow the buffers many times. */
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Destination of the serialized frames. {@link #write} must eventually call {@link #completed} or
+     * {@link #failed} for every buffer.
+     */
+    private abstract static class Sink {
+
+        ChannelFrameWriter owner;
+
+        abstract void write(ByteBuffer buffer);
+
+        void close() {}
+    }
+
+    private static final class FileSink extends Sink {
+
+        private final AsynchronousFileChannel channel;
+        // Position of the next frame. Reserved when the frame is submitted, so frames in flight do not overlap.
+        private long position;
+
+        FileSink(AsynchronousFileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            final long start = position;
+            position += buffer.remaining();
+            writeFrom(buffer, start);
+        }
+
+        private void writeFrom(ByteBuffer buffer, long at) {
+            channel.write(
+                buffer,
+                at,
+                buffer,
+                new CompletionHandler<>() {
+                    @Override
+                    public void completed(Integer written, ByteBuffer buf) {
+                        if (buf.hasRemaining()) {
+                            // Short write – continue with the rest of the frame
+                            writeFrom(buf, at + written);
+                        } else {
+                            owner.completed(buf);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable e, ByteBuffer buf) {
+                        owner.failed(e, buf);
+                    }
+                }
+            );
+        }
+    }
+
+    private static final class ByteChannelSink extends Sink implements CompletionHandler<Integer, ByteBuffer> {
+
+        private final AsynchronousByteChannel channel;
+        // The channel allows only one write at a time, so the other frames wait here
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private boolean writing = false;
+
+        ByteChannelSink(AsynchronousByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            synchronized (queue) {
+                if (writing) {
+                    queue.add(buffer);
+                    return;
+                }
+                writing = true;
+            }
+            channel.write(buffer, buffer, this);
+        }
+
+        @Override
+        public void completed(Integer written, ByteBuffer buffer) {
+            if (buffer.hasRemaining()) {
+                channel.write(buffer, buffer, this);
+                return;
+            }
+            owner.completed(buffer);
+            writeNext();
+        }
+
+        @Override
+        public void failed(Throwable e, ByteBuffer buffer) {
+            owner.failed(e, buffer);
+            writeNext();
+        }
+
+        private void writeNext() {
+            final ByteBuffer next;
+            synchronized (queue) {
+                next = queue.poll();
+                if (next == null) {
+                    writing = false;
+                    return;
+                }
+            }
+            if (owner.failure != null) {
+                // Do not write anything after a failed frame, just release the buffers
+                failed(owner.failure, next);
+            } else {
+                channel.write(next, next, this);
+            }
+        }
+    }
+
+    private static final class BlockingChannelSink extends Sink {
+
+        private final WritableByteChannel channel;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "jelly-channel-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        BlockingChannelSink(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        void write(ByteBuffer buffer) {
+            executor.execute(() -> {
+                if (owner.failure != null) {
+                    owner.failed(owner.failure, buffer);
+                    return;
+                }
+                try {
+                    while (buffer.hasRemaining()) {
+                        if (channel.write(buffer) == 0) {
+                            // A non-blocking channel that is full – wait a bit for it to drain
+                            LockSupport.parkNanos(50_000);
+                        }
+                    }
+                    owner.completed(buffer);
+                } catch (Throwable e) {
+                    owner.failed(e, buffer);
+                }
+            });
+        }
+
+        @Override
+        void close() {
+            executor.shutdown();
+        }
+    }
+
+    private final Sink sink;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private volatile Throwable failure = null;
+    private boolean closed = false;
+
+    private ChannelFrameWriter(Sink sink, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                "Maximum number of frames in flight must be at least 1, got " + maxInFlight
+            );
+        }
+        this.sink = sink;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        sink.owner = this;
+    }
+
+    /**
+     * Creates a writer to an asynchronous file channel.
+     * @param channel channel to write to. It is not closed on close().
+     * @param position position in the file at which the first frame is written
+     * @param maxInFlight maximum number of frames being written at once
+     * @return writer
+     */
+    public static ChannelFrameWriter of(AsynchronousFileChannel channel, long position, int maxInFlight) {
+        return new ChannelFrameWriter(new FileSink(channel, position), maxInFlight);
+    }
+
+    /**
+     * Creates a writer to an asynchronous byte channel, e.g., an AsynchronousSocketChannel.
+     * @param channel channel to write to. It is not closed on close().
+     * @param maxInFlight maximum number of frames waiting to be written
+     * @return writer
+     */
+    public static ChannelFrameWriter of(AsynchronousByteChannel channel, int maxInFlight) {
+        return new ChannelFrameWriter(new ByteChannelSink(channel), maxInFlight);
+    }
+
+    /**
+     * Creates a writer to a blocking or non-blocking byte channel. The frames are written by a background
+     * thread of this writer.
+     * @param channel channel to write to. It is not closed on close().
+     * @param maxInFlight maximum number of frames waiting to be written
+     * @return writer
+     */
+    public static ChannelFrameWriter of(WritableByteChannel channel, int maxInFlight) {
+        return new ChannelFrameWriter(new BlockingChannelSink(channel), maxInFlight);
+    }
+
+    /**
+     * Serializes the frame as a delimited message and hands it off to the channel. The frame can be cleared
+     * and reused as soon as this method returns. Blocks only if {@code maxInFlight} frames are already waiting
+     * to be written. Empty frames are skipped.
+     * @param frame frame to write
+     * @throws IOException if writing a previous frame failed, or if interrupted
+     */
+    public void submitFrame(RdfStreamFrame frame) throws IOException {
+        checkState();
+        if (frame.getRows().isEmpty()) {
+            return;
+        }
+        frame.resetCachedSize();
+        final int size = frame.getSerializedSize();
+        final ByteBuffer buffer = acquire(CodedOutputStream.computeUInt32SizeNoTag(size) + size);
+        final var output = CodedOutputStream.newInstance(buffer);
+        output.writeUInt32NoTag(size);
+        frame.writeTo(output);
+        output.flush();
+        handOff(buffer);
+    }
+
+    /**
+     * Copies the serialized rows of the direct encoder as a delimited frame, hands it off to the channel, and
+     * clears the buffer. Blocks only if {@code maxInFlight} frames are already waiting to be written.
+     * @param frameBuffer buffer of the direct encoder
+     * @throws IOException if writing a previous frame failed, or if interrupted
+     */
+    public void submitFrame(SerializedFrameBuffer frameBuffer) throws IOException {
+        checkState();
+        if (frameBuffer.isEmpty()) {
+            return;
+        }
+        final int size = frameBuffer.getSerializedSize();
+        final ByteBuffer buffer = acquire(CodedOutputStream.computeUInt32SizeNoTag(size) + size);
+        final var output = CodedOutputStream.newInstance(buffer);
+        output.writeUInt32NoTag(size);
+        output.flush();
+        buffer.put(frameBuffer.array(), 0, size);
+        frameBuffer.clear();
+        handOff(buffer);
+    }
+
+    /**
+     * Waits until all submitted frames are written. The channel is not closed.
+     * @throws IOException if writing any of the frames failed, or if interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the frames to be written");
+        } finally {
+            sink.close();
+        }
+        rethrowFailure();
+    }
+
+    private ByteBuffer acquire(int length) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a frame to be written");
+        }
+        if (failure != null) {
+            // A frame failed while we were waiting
+            inFlight.release();
+            rethrowFailure();
+        }
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null || buffer.capacity() < length) {
+            // Dropping the smaller buffer, if any. Sizes are rounded up, so this happens only a few times.
+            buffer = ByteBuffer.allocateDirect(Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(length - 1) << 1));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void handOff(ByteBuffer buffer) {
+        buffer.flip();
+        sink.write(buffer);
+    }
+
+    /** Called by the sink when a frame was written. */
+    private void completed(ByteBuffer buffer) {
+        pool.add(buffer);
+        inFlight.release();
+    }
+
+    /** Called by the sink when a frame could not be written. */
+    private void failed(Throwable e, ByteBuffer buffer) {
+        if (failure == null) {
+            failure = e;
+        }
+        completed(buffer);
+    }
+
+    private void checkState() throws IOException {
+        if (closed) {
+            throw new IOException("The writer is closed");
+        }
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() throws IOException {
+        final var f = failure;
+        if (f == null) {
+            return;
+        }
+        if (f instanceof IOException e) {
+            throw new IOException("Failed to write a frame: " + e.getMessage(), e);
+        }
+        throw new IOException("Failed to write a frame", f);
+    }
+}
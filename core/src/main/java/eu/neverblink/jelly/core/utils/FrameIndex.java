@@ -0,0 +1,199 @@
+package eu.neverblink.jelly.core.utils;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import eu.neverblink.jelly.core.DecoderCheckpoint;
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.ProtoDecoder;
+import eu.neverblink.protoc.java.runtime.ProtobufUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sidecar index of a delimited Jelly file, for seeking in the file without decoding it from the start.
+ * <p>
+ * Each entry points to a frame of the file, and holds its byte offset, the number of statements before it,
+ * and a checkpoint of the decoder state at the start of the frame. To start decoding at an arbitrary frame
+ * or statement:
+ * <ol>
+ *     <li>find the nearest preceding entry with {@link #findByFrame(long)} or {@link #findByStatement(long)},</li>
+ *     <li>restore its checkpoint in a fresh decoder with {@link ProtoDecoder#restoreCheckpoint(DecoderCheckpoint)},</li>
+ *     <li>read the file from the entry's byte offset (e.g., with {@link IoUtils#readFile} after setting the position
+ *     of the FileChannel), skipping the frames or statements before the one you need.</li>
+ * </ol>
+ * For a file on disk, {@link #decodeFrom(FileChannel, Entry, ProtoDecoder)} does the last two steps.
+ * With an index of every frame, the cost of seeking does not depend on the position in the file.
+ * <p>
+ * Indexes are built with {@link FrameIndexer}.
+ */
+@ExperimentalApi
+public final class FrameIndex {
+
+    /**
+     * Index entry.
+     *
+     * @param frameNumber 0-based number of the frame in the stream
+     * @param byteOffset offset of the frame (its delimiter) in the file
+     * @param statementCount number of statements (triples and quads) in the previous frames
+     * @param checkpoint state of the decoder at the start of the frame
+     */
+    public record Entry(long frameNumber, long byteOffset, long statementCount, DecoderCheckpoint checkpoint) {}
+
+    // "JIDX" in ASCII
+    private static final byte[] MAGIC = { 0x4A, 0x49, 0x44, 0x58 };
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Entry> entries;
+
+    FrameIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the entries of the index, in the order of the frames.
+     * @return entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Finds the last entry at or before the given frame.
+     *
+     * @param frameNumber 0-based number of the frame
+     * @return entry, or null if the index is empty
+     */
+    public Entry findByFrame(long frameNumber) {
+        int low = 0;
+        int high = entries.size() - 1;
+        Entry result = null;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (entries.get(mid).frameNumber() <= frameNumber) {
+                result = entries.get(mid);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the last entry at or before the frame with the given statement. Decoding from this entry,
+     * skip {@code statementIndex - entry.statementCount()} statements to get to the statement.
+     *
+     * @param statementIndex 0-based number of the statement
+     * @return entry, or null if the index is empty
+     */
+    public Entry findByStatement(long statementIndex) {
+        int low = 0;
+        int high = entries.size() - 1;
+        Entry result = null;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (entries.get(mid).statementCount() <= statementIndex) {
+                result = entries.get(mid);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Continues decoding an indexed file from the frame of the entry: restores the entry's checkpoint in the
+     * decoder, and passes the frames of the file from the entry's byte offset to the end to the decoder.
+     * <p>
+     * The frames before the entry are not read at all. The rest of the file is memory-mapped, as in
+     * {@link IoUtils#readFile(FileChannel, IoUtils.FrameReader)}. To start at a statement found with
+     * {@link #findByStatement(long)}, skip the first {@code statementIndex - entry.statementCount()} statements
+     * emitted by the decoder.
+     *
+     * @param channel channel of the indexed file. Its position is set to the entry's offset, and to the end of
+     *                the file after reading. The channel is not closed.
+     * @param entry entry of the index of this file
+     * @param decoder decoder that has not ingested any rows yet
+     * @throws IOException if an I/O error occurs or a frame is malformed
+     */
+    public static void decodeFrom(FileChannel channel, Entry entry, ProtoDecoder<?, ?> decoder) throws IOException {
+        decoder.restoreCheckpoint(entry.checkpoint());
+        channel.position(entry.byteOffset());
+        IoUtils.readFile(channel, input -> decoder.ingestFrame(input));
+    }
+
+    /**
+     * Builds an index of a delimited Jelly stream, in one pass.
+     *
+     * @param inputStream delimited Jelly stream, starting with its first frame
+     * @param interval number of frames between two index entries. 1 means indexing every frame.
+     * @return index
+     * @throws IOException if an I/O error occurs or a frame is malformed
+     */
+    public static FrameIndex build(InputStream inputStream, int interval) throws IOException {
+        final var indexer = new FrameIndexer(interval);
+        indexer.addDelimitedFrames(inputStream);
+        return indexer.getIndex();
+    }
+
+    /**
+     * Writes the index to an output stream, e.g., a sidecar file next to the indexed file.
+     *
+     * @param outputStream output stream. It is flushed, but not closed.
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        final var output = ProtobufUtil.createCodedOutputStream(outputStream);
+        output.writeRawBytes(MAGIC);
+        output.writeUInt32NoTag(FORMAT_VERSION);
+        output.writeUInt32NoTag(entries.size());
+        for (final Entry entry : entries) {
+            output.writeUInt64NoTag(entry.frameNumber());
+            output.writeUInt64NoTag(entry.byteOffset());
+            output.writeUInt64NoTag(entry.statementCount());
+            entry.checkpoint().writeTo(output);
+        }
+        // !!! CodedOutputStream.flush() does not flush the underlying OutputStream,
+        // so we need to do it explicitly.
+        output.flush();
+        outputStream.flush();
+    }
+
+    /**
+     * Reads an index written with {@link #writeTo(OutputStream)}.
+     *
+     * @param inputStream input stream
+     * @return index
+     * @throws IOException if an I/O error occurs or the index is malformed
+     */
+    public static FrameIndex parseFrom(InputStream inputStream) throws IOException {
+        final var input = CodedInputStream.newInstance(inputStream);
+        if (!Arrays.equals(input.readRawBytes(MAGIC.length), MAGIC)) {
+            throw new InvalidProtocolBufferException("Not a Jelly frame index.");
+        }
+        final int version = input.readUInt32();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidProtocolBufferException("Unsupported Jelly frame index version: " + version);
+        }
+        final int size = input.readUInt32();
+        if (size < 0) {
+            throw new InvalidProtocolBufferException("Invalid number of index entries: " + size);
+        }
+        final var entries = new ArrayList<Entry>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            final long frameNumber = input.readUInt64();
+            final long byteOffset = input.readUInt64();
+            final long statementCount = input.readUInt64();
+            entries.add(new Entry(frameNumber, byteOffset, statementCount, DecoderCheckpoint.parseFrom(input)));
+            // Reset the size counter to avoid integer overflows
+            input.resetSizeCounter();
+        }
+        return new FrameIndex(List.copyOf(entries));
+    }
+}
@@ -0,0 +1,191 @@
+package eu.neverblink.jelly.core.utils;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import eu.neverblink.jelly.core.DecoderCheckpoint;
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.JellyOptions;
+import eu.neverblink.jelly.core.ProtoDecoder;
+import eu.neverblink.jelly.core.RdfHandler;
+import eu.neverblink.jelly.core.internal.ProtoDecoderImpl;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link FrameIndex} of a delimited Jelly stream, in one streaming pass.
+ * <p>
+ * Pass every frame of the stream, in order, to {@link #addFrame(RdfStreamFrame)} (or one of the other
+ * add methods). For every {@code interval}-th frame (starting with the first one), the indexer records
+ * the byte offset of the frame, the number of statements before it, and a checkpoint of the decoder state.
+ * <p>
+ * The indexer can be used while reading an existing file (see {@link FrameIndex#build(InputStream, int)}), or
+ * by a writer, with the frames it writes. The stream is decoded internally to track the decoder state, so
+ * the indexer adds roughly the cost of decoding the stream.
+ * <p>
+ * This class is NOT thread-safe.
+ */
+@ExperimentalApi
+public final class FrameIndexer {
+
+    /**
+     * Default number of frames between two index entries.
+     */
+    public static final int DEFAULT_INTERVAL = 100;
+
+    private static final int DEFAULT_INPUT_STREAM_BUFFER_SIZE = 8192;
+
+    private final int interval;
+    private final ProtoDecoder<DecoderCheckpoint.Term, String> decoder;
+    private final List<FrameIndex.Entry> entries = new ArrayList<>();
+
+    private long frameCount = 0;
+    private long byteOffset;
+    private long statementCount = 0;
+
+    /**
+     * Creates a new indexer.
+     *
+     * @param interval number of frames between two index entries. 1 means indexing every frame.
+     * @param startOffset byte offset at which the stream starts in the file
+     * @param supportedOptions maximum supported options of the stream (see JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+     */
+    public FrameIndexer(int interval, long startOffset, RdfStreamOptions supportedOptions) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Index interval must be at least 1, got " + interval);
+        }
+        this.interval = interval;
+        this.byteOffset = startOffset;
+        this.decoder = new ProtoDecoderImpl.AnyStatementDecoder<>(
+            DecoderCheckpoint.TERM_CONVERTER,
+            new RdfHandler.AnyStatementHandler<>() {
+                @Override
+                public void handleTriple(
+                    DecoderCheckpoint.Term subject,
+                    DecoderCheckpoint.Term predicate,
+                    DecoderCheckpoint.Term object
+                ) {
+                    statementCount++;
+                }
+
+                @Override
+                public void handleQuad(
+                    DecoderCheckpoint.Term subject,
+                    DecoderCheckpoint.Term predicate,
+                    DecoderCheckpoint.Term object,
+                    DecoderCheckpoint.Term graph
+                ) {
+                    statementCount++;
+                }
+            },
+            supportedOptions
+        );
+    }
+
+    /**
+     * Creates a new indexer for a stream starting at the beginning of the file, with the default supported options.
+     *
+     * @param interval number of frames between two index entries. 1 means indexing every frame.
+     */
+    public FrameIndexer(int interval) {
+        this(interval, 0, JellyOptions.DEFAULT_SUPPORTED_OPTIONS);
+    }
+
+    /**
+     * Creates a new indexer with the default interval.
+     */
+    public FrameIndexer() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Adds the next frame of the stream.
+     *
+     * @param frame frame, as it is written to the stream
+     */
+    public void addFrame(RdfStreamFrame frame) {
+        addFrame(frame.getRows(), frame.getSerializedSize());
+    }
+
+    /**
+     * Adds the next frame of the stream, in its serialized (non-delimited) form.
+     *
+     * @param bytes array with the serialized frame
+     * @param offset offset of the frame in the array
+     * @param length length of the serialized frame
+     * @throws InvalidProtocolBufferException if the frame is malformed
+     */
+    public void addSerializedFrame(byte[] bytes, int offset, int length) throws InvalidProtocolBufferException {
+        final var frame = ProtoMessage.mergeFrom(RdfStreamFrame.newInstance(), bytes, offset, length);
+        addFrame(frame.getRows(), length);
+    }
+
+    /**
+     * Adds all frames from a delimited stream.
+     *
+     * @param inputStream delimited stream of frames
+     * @throws IOException if an I/O error occurs or a frame is malformed
+     */
+    public void addDelimitedFrames(InputStream inputStream) throws IOException {
+        final var codedInput = CodedInputStream.newInstance(inputStream, DEFAULT_INPUT_STREAM_BUFFER_SIZE);
+        while (!codedInput.isAtEnd()) {
+            final int frameSize = codedInput.readRawVarint32();
+            if (frameSize < 0) {
+                throw new InvalidProtocolBufferException("Invalid frame size: " + frameSize);
+            }
+            final byte[] frameBytes = codedInput.readRawBytes(frameSize);
+            // Reset the size counter to avoid integer overflows
+            codedInput.resetSizeCounter();
+            addSerializedFrame(frameBytes, 0, frameSize);
+        }
+    }
+
+    /**
+     * Returns the index of the frames added so far.
+     * @return index
+     */
+    public FrameIndex getIndex() {
+        return new FrameIndex(List.copyOf(entries));
+    }
+
+    /**
+     * Returns the number of frames added so far.
+     * @return number of frames
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of statements in the frames added so far.
+     * @return number of statements
+     */
+    public long getStatementCount() {
+        return statementCount;
+    }
+
+    private void addFrame(Iterable<RdfStreamRow> rows, int serializedSize) {
+        if (frameCount % interval == 0) {
+            entries.add(
+                new FrameIndex.Entry(
+                    frameCount,
+                    byteOffset,
+                    statementCount,
+                    decoder.saveCheckpoint(Function.identity(), Function.identity())
+                )
+            );
+        }
+        for (final RdfStreamRow row : rows) {
+            decoder.ingestRow(row);
+        }
+        frameCount++;
+        byteOffset += CodedOutputStream.computeUInt32SizeNoTag(serializedSize) + serializedSize;
+    }
+}
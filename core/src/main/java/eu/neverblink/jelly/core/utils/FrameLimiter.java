@@ -0,0 +1,193 @@
+package eu.neverblink.jelly.core.utils;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when a writer should end the current frame. A frame is ended when any of three limits is reached:
+ * the maximum number of rows, the maximum serialized size in bytes, or the maximum age – the time since the
+ * first statement of the frame entered the writer ({@link #statementAdded()}). The age counts from when the
+ * statement was handed to the writer, not from when it was encoded, so statements held back by the writer
+ * (e.g., in a StatementReorderer) are not delayed beyond the limit.
+ * <p>
+ * The row and byte limits are checked by the writer after each statement, with {@link #shouldFlush(int, long)}.
+ * So is the age limit, but a frame also has to be written when no more statements come in for a while. For
+ * that, {@link #startTimer(Runnable)} periodically checks the age of the frame on a timer thread of this
+ * limiter, and writes the frame with the given callback if it is too old. The timer thread is virtual, so a
+ * writer blocked on a slow output only holds up its own timer, not the timers of other writers.
+ * <p>
+ * The timer and the writer must not use the encoder at the same time. So, with the timer started, the writer
+ * must wrap every call that touches the encoder or the output in {@link #lock()} and {@link #unlock()}. The
+ * callback of the timer is called with the lock held. Without the timer, locking is a no-op, and writers may
+ * skip it altogether on hot paths by checking {@link #isTimerStarted()}.
+ * <p>
+ * Other than that, this class is NOT thread-safe.
+ */
+@ExperimentalApi
+public final class FrameLimiter implements AutoCloseable {
+
+    /** Marker for "no statement of the frame has entered the writer yet". */
+    private static final long NO_FRAME = Long.MIN_VALUE;
+
+    private final int maxRows;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+
+    // When the first statement of the current frame entered the writer, or NO_FRAME
+    private long frameStartNanos = NO_FRAME;
+
+    // Only set once the timer is started
+    private ReentrantLock lock = null;
+    private ScheduledThreadPoolExecutor timer = null;
+    private volatile RuntimeException timerFailure = null;
+    // Guarded by the lock, so that the timer does not call the callback after the stream ended
+    private boolean closed = false;
+
+    /**
+     * @param maxRows maximum number of rows in a frame. The frame may be slightly larger, to fit the whole
+     *                statement and its lookup entries.
+     * @param maxBytes maximum serialized size of a frame in bytes, or 0 for no limit. As with the rows, the
+     *                 frame may be slightly larger.
+     * @param maxAgeMillis maximum time in milliseconds between the first statement of a frame entering the
+     *                     writer and writing the frame, or 0 for no limit
+     */
+    public FrameLimiter(int maxRows, long maxBytes, long maxAgeMillis) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Maximum frame bytes must not be negative, got " + maxBytes);
+        }
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Maximum frame age must not be negative, got " + maxAgeMillis);
+        }
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    /**
+     * Notifies the limiter that a statement entered the writer, before it is encoded or held back. Starts the
+     * age clock of the current frame, if it is not running yet.
+     */
+    public void statementAdded() {
+        if (maxAgeNanos != 0 && frameStartNanos == NO_FRAME) {
+            frameStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Checks if the current frame should be written now. Call this after each statement.
+     * @param rows number of rows in the current frame
+     * @param bytes serialized size of the current frame, as reported by
+     *              {@link eu.neverblink.jelly.core.ProtoEncoder#getFrameBytes()}
+     * @return true if any of the limits is reached
+     */
+    public boolean shouldFlush(int rows, long bytes) {
+        if (rows >= maxRows || (maxBytes > 0 && bytes >= maxBytes)) {
+            return true;
+        }
+        if (maxAgeNanos == 0 || rows == 0 || frameStartNanos == NO_FRAME) {
+            return false;
+        }
+        return System.nanoTime() - frameStartNanos >= maxAgeNanos;
+    }
+
+    /**
+     * Notifies the limiter that the current frame was written, and a new one begins.
+     */
+    public void frameWritten() {
+        frameWritten(false);
+    }
+
+    /**
+     * Notifies the limiter that the current frame was written, and a new one begins.
+     * @param statementsPending whether statements that entered the writer are still held back, to be encoded in
+     *                          the next frame. If so, the age clock of the next frame starts now.
+     */
+    public void frameWritten(boolean statementsPending) {
+        frameStartNanos = statementsPending && maxAgeNanos != 0 ? System.nanoTime() : NO_FRAME;
+    }
+
+    /**
+     * Starts checking the age of the frame in the background, if there is an age limit. The timer runs until
+     * {@link #close()} is called.
+     * @param onExpired writes the current frame, including the statements held back by the writer, and flushes
+     *                  the output. Called with the lock held, only when a statement entered the writer more
+     *                  than the maximum age ago. Exceptions thrown by it are rethrown in the next
+     *                  {@link #lock()} call, and stop the timer.
+     */
+    public void startTimer(Runnable onExpired) {
+        if (maxAgeNanos == 0 || timer != null) {
+            return;
+        }
+        lock = new ReentrantLock();
+        timer = new ScheduledThreadPoolExecutor(1, Thread.ofVirtual().name("jelly-frame-timer").factory());
+        // Checking 4 times per period, so a frame is written at most 1.25x the maximum age after it started
+        final long periodNanos = Math.max(maxAgeNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        timer.scheduleAtFixedRate(
+            () -> checkAge(onExpired),
+            periodNanos,
+            periodNanos,
+            TimeUnit.NANOSECONDS
+        );
+    }
+
+    private void checkAge(Runnable onExpired) {
+        lock.lock();
+        try {
+            if (!closed && frameStartNanos != NO_FRAME && System.nanoTime() - frameStartNanos >= maxAgeNanos) {
+                onExpired.run();
+            }
+        } catch (RuntimeException e) {
+            timerFailure = e;
+            timer.shutdown();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the timer is running, i.e., if the writer has to lock around the encoder and the output.
+     * @return true if {@link #startTimer(Runnable)} started the timer
+     */
+    public boolean isTimerStarted() {
+        return timer != null;
+    }
+
+    /**
+     * Acquires the lock shared with the timer. No-op if the timer was not started.
+     * @throws RuntimeException the exception thrown by the timer callback, if it failed
+     */
+    public void lock() {
+        if (lock == null) {
+            return;
+        }
+        lock.lock();
+        final var failure = timerFailure;
+        if (failure != null) {
+            lock.unlock();
+            throw failure;
+        }
+    }
+
+    /**
+     * Releases the lock shared with the timer. No-op if the timer was not started.
+     */
+    public void unlock() {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the timer and its thread, if it was started. Call this when the stream ends, with the lock held.
+     * The callback is not called after this.
+     */
+    @Override
+    public void close() {
+        if (timer != null) {
+            closed = true;
+            timer.shutdown();
+        }
+    }
+}
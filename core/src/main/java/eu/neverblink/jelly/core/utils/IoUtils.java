@@ -3,15 +3,26 @@ package eu.neverblink.jelly.core.utils;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import eu.neverblink.jelly.core.jfr.FrameParsedEvent;
 import eu.neverblink.protoc.java.runtime.MessageFactory;
 import eu.neverblink.protoc.java.runtime.ProtoMessage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.function.Consumer;
 
 public final class IoUtils {
 
     private static final int DEFAULT_INPUT_STREAM_BUFFER_SIZE = 8192;
 
+    /**
+     * Maximum size of a memory-mapped window of a file. A single frame must fit in it.
+     */
+    static final long MAX_MAPPED_WINDOW_SIZE = 1L << 30;
+
     private IoUtils() {}
 
     public record AutodetectDelimitingResponse(boolean isDelimited, InputStream newInput) {}
@@ -44,8 +55,15 @@ public final class IoUtils {
 
         // Yeah, it's magic. But it works.
 
-        final var isDelimited = scout.length == 3 && (scout[0] != 0x0A || (scout[1] == 0x0A && scout[2] != 0x0A));
-        return new AutodetectDelimitingResponse(isDelimited, newInput);
+        return new AutodetectDelimitingResponse(isDelimited(scout), newInput);
+    }
+
+    /**
+     * Checks whether a Jelly file is delimited, based on its first (up to) three bytes.
+     * See {@link #autodetectDelimiting(InputStream)} for the details.
+     */
+    private static boolean isDelimited(byte[] scout) {
+        return scout.length == 3 && (scout[0] != 0x0A || (scout[1] == 0x0A && scout[2] != 0x0A));
     }
 
     /**
@@ -126,8 +144,11 @@ public final class IoUtils {
             }
             // Discard the current limit (it's always Integer.MAX_VALUE) and set a new one for the frame size
             codedInput.pushLimit(frameSize);
+            final var event = new FrameParsedEvent();
+            event.begin();
             final var frame = messageFactory.create();
             frame.mergeFrom(codedInput, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH);
+            commitParsed(event, frameSize);
             // Reset the size counter to avoid integer overflows
             codedInput.resetSizeCounter();
             // Pop the limit to be able to read the next frame's size
@@ -135,4 +156,291 @@ public final class IoUtils {
             frameConsumer.accept(frame);
         }
     }
+
+    /**
+     * Reads a serialized frame from the input, for example straight into a decoder with
+     * {@code ProtoDecoder::ingestFrame}.
+     */
+    @FunctionalInterface
+    public interface FrameReader {
+        /**
+         * Reads one frame.
+         * @param input input positioned at the start of the frame, limited to the frame's length
+         * @throws IOException if an I/O error occurs
+         */
+        void readFrame(CodedInputStream input) throws IOException;
+    }
+
+    /**
+     * Reads a stream of delimited frames from an input stream, and passes each frame to the frame reader
+     * without parsing it into a message. Otherwise the same as
+     * {@link #readStream(InputStream, MessageFactory, Consumer)}.
+     *
+     * @param inputStream the input stream to read from
+     * @param frameReader the reader of each frame
+     * @throws IOException if an I/O error occurs
+     */
+    public static void readStream(InputStream inputStream, FrameReader frameReader) throws IOException {
+        final var codedInput = CodedInputStream.newInstance(inputStream, DEFAULT_INPUT_STREAM_BUFFER_SIZE);
+        while (!codedInput.isAtEnd()) {
+            final int frameSize = codedInput.readRawVarint32();
+            if (frameSize < 0) {
+                throw new InvalidProtocolBufferException("Invalid frame size: " + frameSize);
+            }
+            codedInput.pushLimit(frameSize);
+            final var event = new FrameParsedEvent();
+            event.begin();
+            frameReader.readFrame(codedInput);
+            // Skip whatever the reader left unread, so that the next frame starts at the right position
+            codedInput.skipRawBytes(codedInput.getBytesUntilLimit());
+            commitParsed(event, frameSize);
+            codedInput.resetSizeCounter();
+            codedInput.popLimit(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Reads a single non-delimited frame from an input stream, until its end, and passes it to the frame
+     * reader without parsing it into a message.
+     *
+     * @param inputStream the input stream to read from
+     * @param frameReader the reader of the frame
+     * @throws IOException if an I/O error occurs
+     */
+    public static void readFrame(InputStream inputStream, FrameReader frameReader) throws IOException {
+        final var event = new FrameParsedEvent();
+        event.begin();
+        final var codedInput = CodedInputStream.newInstance(inputStream, DEFAULT_INPUT_STREAM_BUFFER_SIZE);
+        frameReader.readFrame(codedInput);
+        commitParsed(event, codedInput.getTotalBytesRead());
+    }
+
+    /**
+     * Reads a Jelly file (delimited or not) by memory-mapping it, and passes each frame to the consumer.
+     * <p>
+     * The frames are parsed straight from the mapped memory, without copying the file contents into heap
+     * buffers first, which is faster than reading it through an InputStream. Delimiting is autodetected,
+     * like in {@link #autodetectDelimiting(InputStream)}.
+     *
+     * @param path path to the file
+     * @param messageFactory the factory to create new frames
+     * @param frameConsumer the consumer to handle each frame
+     * @param <TFrame> the type of the frame
+     * @throws IOException if an I/O error occurs
+     */
+    public static <TFrame extends ProtoMessage<TFrame>> void readFile(
+        Path path,
+        MessageFactory<TFrame> messageFactory,
+        Consumer<TFrame> frameConsumer
+    ) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFile(channel, messageFactory, frameConsumer);
+        }
+    }
+
+    /**
+     * Reads a Jelly file (delimited or not) by memory-mapping it, and passes each frame to the consumer.
+     * <p>
+     * The file is read from the current position of the channel to its end. After reading, the position
+     * is set to the end of the file. The channel is not closed. Channels of pipes and devices can't be
+     * mapped, check them with {@link #isMappable(FileChannel)} first.
+     * <p>
+     * The lexical forms of literals in the frames are slices of the mapped file, decoded only when they are
+     * used. The mapping is kept in memory for as long as the frames are referenced.
+     *
+     * @param channel file channel to read from
+     * @param messageFactory the factory to create new frames
+     * @param frameConsumer the consumer to handle each frame
+     * @param <TFrame> the type of the frame
+     * @throws IOException if an I/O error occurs
+     * @see #readFile(Path, MessageFactory, Consumer)
+     */
+    public static <TFrame extends ProtoMessage<TFrame>> void readFile(
+        FileChannel channel,
+        MessageFactory<TFrame> messageFactory,
+        Consumer<TFrame> frameConsumer
+    ) throws IOException {
+        readFile(channel, messageFactory, frameConsumer, MAX_MAPPED_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads a Jelly file (delimited or not) by memory-mapping it, and passes each frame to the frame reader
+     * without parsing it into a message. Otherwise the same as
+     * {@link #readFile(FileChannel, MessageFactory, Consumer)}.
+     *
+     * @param channel file channel to read from
+     * @param frameReader the reader of each frame
+     * @throws IOException if an I/O error occurs
+     */
+    public static void readFile(FileChannel channel, FrameReader frameReader) throws IOException {
+        readMappedFrames(channel, bytes -> readFrame(bytes, frameReader), MAX_MAPPED_WINDOW_SIZE);
+    }
+
+    /**
+     * Checks whether the rest of the file behind the channel can be read with the memory-mapping
+     * readFile methods.
+     * <p>
+     * This is only the case for files with a known size that have bytes left after the current position.
+     * Pipes (e.g., a FIFO or /dev/stdin fed by another process), sockets and character devices report
+     * a size of zero or can't be positioned, so they must be read as a stream instead.
+     *
+     * @param channel file channel to check
+     * @return true if the channel can be memory-mapped from its current position
+     */
+    public static boolean isMappable(FileChannel channel) {
+        try {
+            return channel.size() > channel.position();
+        } catch (IOException e) {
+            // E.g., "Illegal seek" when asking a pipe for its position
+            return false;
+        }
+    }
+
+    static <TFrame extends ProtoMessage<TFrame>> void readFile(
+        FileChannel channel,
+        MessageFactory<TFrame> messageFactory,
+        Consumer<TFrame> frameConsumer,
+        long windowSize
+    ) throws IOException {
+        readMappedFrames(channel, bytes -> frameConsumer.accept(parseFrame(bytes, messageFactory)), windowSize);
+    }
+
+    /**
+     * Consumer of the bytes of a memory-mapped frame.
+     */
+    @FunctionalInterface
+    private interface MappedFrameConsumer {
+        void accept(ByteBuffer frame) throws IOException;
+    }
+
+    private static void readMappedFrames(FileChannel channel, MappedFrameConsumer frameConsumer, long windowSize)
+        throws IOException {
+        final long end = channel.size();
+        long windowStart = channel.position();
+        if (windowStart >= end) {
+            return;
+        }
+
+        // Files larger than 2 GiB can't be mapped as a whole, so we map them in windows.
+        // A new window always starts at the beginning of a frame.
+        ByteBuffer window = mapWindow(channel, windowStart, end, windowSize);
+        final var scout = new byte[(int) Math.min(3, window.limit())];
+        window.get(0, scout);
+        if (!isDelimited(scout)) {
+            // Non-delimited Jelly file – exactly one frame
+            if (end - windowStart > windowSize) {
+                throw new IOException("Non-delimited Jelly file is too large to be memory-mapped");
+            }
+            frameConsumer.accept(window);
+            channel.position(end);
+            return;
+        }
+
+        while (true) {
+            final int limit = window.limit();
+            int pos = 0;
+            while (pos < limit) {
+                // Frame size varint. -1 means that it's cut off by the end of the window.
+                final long sizeAndLength = readVarint(window, pos);
+                if (sizeAndLength < 0) {
+                    break;
+                }
+                final int frameSize = (int) sizeAndLength;
+                final int frameStart = pos + (int) (sizeAndLength >>> 32);
+                if ((long) frameStart + frameSize > limit) {
+                    break;
+                }
+                frameConsumer.accept(window.slice(frameStart, frameSize));
+                pos = frameStart + frameSize;
+            }
+
+            windowStart += pos;
+            if (windowStart >= end) {
+                break;
+            }
+            if (pos == 0) {
+                // Not even one frame fits in the window
+                if (end - windowStart <= windowSize) {
+                    throw new EOFException("Truncated frame at offset " + windowStart);
+                }
+                throw new IOException(
+                    "Frame at offset %d is larger than the maximum memory-mapped size of %d bytes".formatted(
+                        windowStart,
+                        windowSize
+                    )
+                );
+            }
+            window = mapWindow(channel, windowStart, end, windowSize);
+        }
+        channel.position(end);
+    }
+
+    private static ByteBuffer mapWindow(FileChannel channel, long start, long end, long windowSize)
+        throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, end - start));
+    }
+
+    private static <TFrame extends ProtoMessage<TFrame>> TFrame parseFrame(
+        ByteBuffer bytes,
+        MessageFactory<TFrame> messageFactory
+    ) throws IOException {
+        final var event = new FrameParsedEvent();
+        event.begin();
+        final int frameSize = bytes.remaining();
+        final var frame = messageFactory.create();
+        // The mapped file is not modified while it's read, so it can be wrapped as an immutable input.
+        // With aliasing, the lexical forms of literals are kept as slices of the mapping, and are only
+        // decoded into Strings when they are used.
+        final var input = UnsafeByteOperations.unsafeWrap(bytes).newCodedInput();
+        input.enableAliasing(true);
+        frame.mergeFrom(input, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH);
+        commitParsed(event, frameSize);
+        return frame;
+    }
+
+    private static void readFrame(ByteBuffer bytes, FrameReader frameReader) throws IOException {
+        final var event = new FrameParsedEvent();
+        event.begin();
+        final int frameSize = bytes.remaining();
+        frameReader.readFrame(CodedInputStream.newInstance(bytes));
+        commitParsed(event, frameSize);
+    }
+
+    /**
+     * Commits a {@link FrameParsedEvent}, if it is enabled in the running JFR recording.
+     * The stream name and the rows are not known at this point.
+     */
+    static void commitParsed(FrameParsedEvent event, int frameSize) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(null, 0, frameSize);
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads an unsigned 32-bit varint from the buffer at the given position.
+     *
+     * @return the value in the lower 32 bits and the number of bytes read in the upper 32 bits,
+     *         or -1 if the varint is cut off by the limit of the buffer
+     * @throws InvalidProtocolBufferException if the varint is malformed or does not fit in a positive int
+     */
+    private static long readVarint(ByteBuffer buffer, int pos) throws InvalidProtocolBufferException {
+        final int limit = buffer.limit();
+        long value = 0;
+        for (int i = 0; i < 5; i++) {
+            if (pos + i >= limit) {
+                return -1;
+            }
+            final byte b = buffer.get(pos + i);
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                if (value > Integer.MAX_VALUE) {
+                    throw new InvalidProtocolBufferException("Invalid frame size: " + value);
+                }
+                return value | ((long) (i + 1) << 32);
+            }
+        }
+        throw new InvalidProtocolBufferException("Malformed frame size varint");
+    }
 }
@@ -0,0 +1,280 @@
+package eu.neverblink.jelly.core.utils;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.ProtoEncoderConverter;
+import eu.neverblink.jelly.core.RdfBufferAppender;
+import eu.neverblink.jelly.core.RdfHandler;
+import eu.neverblink.jelly.core.internal.NodeEncoderImpl;
+import eu.neverblink.jelly.core.proto.v1.RdfDatatypeEntry;
+import eu.neverblink.jelly.core.proto.v1.RdfNameEntry;
+import eu.neverblink.jelly.core.proto.v1.RdfPrefixEntry;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.jelly.core.proto.v1.RdfTriple;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recommends the sizes of the lookup tables for a stream, based on a sample of its statements.
+ * <p>
+ * Pass the first statements of the stream to the advisor (it is a statement handler, so it can also be fed
+ * by a decoder reading a sample file), then call {@link #recommend(RdfStreamOptions)}. The advisor replays
+ * the sample through the lookups of a real encoder (LRU eviction and node cache included) for a few
+ * candidate table sizes, and picks for each table the smallest size that keeps the eviction rate at or
+ * below the target.
+ * <p>
+ * The eviction rate is the number of lookup entries that had to be sent again, because they were evicted
+ * earlier, per statement of the sample. Entries sent for the first time are not counted – no table size
+ * can avoid them.
+ * <p>
+ * This class is NOT thread-safe.
+ *
+ * @param <TNode> type of RDF nodes in the library
+ */
+@ExperimentalApi
+public final class OptionsAdvisor<TNode> implements RdfHandler.AnyStatementHandler<TNode> {
+
+    /**
+     * Default number of statements in the sample.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 10_000;
+
+    /**
+     * Default target eviction rate: one re-sent lookup entry per 20 statements.
+     */
+    public static final double DEFAULT_TARGET_EVICTION_RATE = 0.05;
+
+    // Candidate table sizes, all within the limits of JellyOptions.DEFAULT_SUPPORTED_OPTIONS
+    private static final int[] NAME_TABLE_SIZES = { 128, 256, 512, 1024, 2048, 4000 };
+    private static final int[] PREFIX_TABLE_SIZES = { 16, 32, 64, 150, 512, 1024 };
+    private static final int[] DATATYPE_TABLE_SIZES = { 16, 32, 64, 256 };
+
+    /**
+     * Recommended sizes of the lookup tables, with the eviction rates they reach on the sample.
+     *
+     * @param maxNameTableSize recommended size of the name table
+     * @param maxPrefixTableSize recommended size of the prefix table
+     * @param maxDatatypeTableSize recommended size of the datatype table
+     * @param nameEvictionRate eviction rate of the name table on the sample
+     * @param prefixEvictionRate eviction rate of the prefix table on the sample
+     * @param datatypeEvictionRate eviction rate of the datatype table on the sample
+     */
+    public record Recommendation(
+        int maxNameTableSize,
+        int maxPrefixTableSize,
+        int maxDatatypeTableSize,
+        double nameEvictionRate,
+        double prefixEvictionRate,
+        double datatypeEvictionRate
+    ) {
+        /**
+         * Returns a copy of the options with the recommended table sizes.
+         * @param options options to start from
+         * @return new options
+         */
+        public RdfStreamOptions applyTo(RdfStreamOptions options) {
+            return options
+                .clone()
+                .setMaxNameTableSize(maxNameTableSize)
+                .setMaxPrefixTableSize(maxPrefixTableSize)
+                .setMaxDatatypeTableSize(maxDatatypeTableSize);
+        }
+    }
+
+    private final ProtoEncoderConverter<TNode> converter;
+    private final int sampleSize;
+    // Terms of the sampled statements, four per statement – the graph is null for triples
+    private final List<TNode> terms = new ArrayList<>();
+    private int statementCount = 0;
+
+    /**
+     * Creates a new advisor with the default sample size.
+     * @param converter encoder converter of the library
+     */
+    public OptionsAdvisor(ProtoEncoderConverter<TNode> converter) {
+        this(converter, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Creates a new advisor.
+     * @param converter encoder converter of the library
+     * @param sampleSize number of statements to sample. Statements beyond this are ignored.
+     */
+    public OptionsAdvisor(ProtoEncoderConverter<TNode> converter, int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be at least 1, got " + sampleSize);
+        }
+        this.converter = converter;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public void handleTriple(TNode subject, TNode predicate, TNode object) {
+        handleQuad(subject, predicate, object, null);
+    }
+
+    @Override
+    public void handleQuad(TNode subject, TNode predicate, TNode object, TNode graph) {
+        if (isFull()) {
+            return;
+        }
+        terms.add(subject);
+        terms.add(predicate);
+        terms.add(object);
+        terms.add(graph);
+        statementCount++;
+    }
+
+    /**
+     * Returns the number of statements in the sample.
+     * @return number of statements
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Returns whether the sample is complete, i.e., further statements would be ignored.
+     * @return true if the sample is complete
+     */
+    public boolean isFull() {
+        return statementCount >= sampleSize;
+    }
+
+    /**
+     * Recommends the stream options for the sample, with the default target eviction rate.
+     * @param options options to start from – all fields except the table sizes are kept
+     * @return new options
+     */
+    public RdfStreamOptions recommend(RdfStreamOptions options) {
+        return recommend(DEFAULT_TARGET_EVICTION_RATE).applyTo(options);
+    }
+
+    /**
+     * Recommends the sizes of the lookup tables for the sample.
+     * <p>
+     * The tables are sized one at a time, with the other two at their largest candidate size. If no
+     * candidate reaches the target, the largest one is picked.
+     *
+     * @param targetEvictionRate maximum number of re-sent lookup entries per statement
+     * @return recommendation
+     */
+    public Recommendation recommend(double targetEvictionRate) {
+        final int maxName = NAME_TABLE_SIZES[NAME_TABLE_SIZES.length - 1];
+        final int maxPrefix = PREFIX_TABLE_SIZES[PREFIX_TABLE_SIZES.length - 1];
+        final int maxDatatype = DATATYPE_TABLE_SIZES[DATATYPE_TABLE_SIZES.length - 1];
+        // The distinct entries are the same for all candidates, as long as the prefix table is enabled
+        final var distinct = new Simulation(maxPrefix, maxName, maxDatatype, true);
+
+        int nameSize = maxName;
+        for (final int size : NAME_TABLE_SIZES) {
+            final var sim = new Simulation(maxPrefix, size, maxDatatype, false);
+            if (rate(sim.names, distinct.distinctNames.size()) <= targetEvictionRate) {
+                nameSize = size;
+                break;
+            }
+        }
+        int prefixSize = maxPrefix;
+        for (final int size : PREFIX_TABLE_SIZES) {
+            final var sim = new Simulation(size, maxName, maxDatatype, false);
+            if (rate(sim.prefixes, distinct.distinctPrefixes.size()) <= targetEvictionRate) {
+                prefixSize = size;
+                break;
+            }
+        }
+        int datatypeSize = maxDatatype;
+        for (final int size : DATATYPE_TABLE_SIZES) {
+            final var sim = new Simulation(maxPrefix, maxName, size, false);
+            if (rate(sim.datatypes, distinct.distinctDatatypes.size()) <= targetEvictionRate) {
+                datatypeSize = size;
+                break;
+            }
+        }
+
+        // The tables interact through the node cache, so report the rates of the combination
+        final var chosen = new Simulation(prefixSize, nameSize, datatypeSize, false);
+        return new Recommendation(
+            nameSize,
+            prefixSize,
+            datatypeSize,
+            rate(chosen.names, distinct.distinctNames.size()),
+            rate(chosen.prefixes, distinct.distinctPrefixes.size()),
+            rate(chosen.datatypes, distinct.distinctDatatypes.size())
+        );
+    }
+
+    private double rate(int emitted, int distinct) {
+        return statementCount == 0 ? 0.0 : (double) (emitted - distinct) / statementCount;
+    }
+
+    /**
+     * Replays the sample through a node encoder with the given table sizes, counting the lookup entries
+     * it emits. Like the encoder, it skips the terms repeated from the previous statement.
+     */
+    private final class Simulation implements RdfBufferAppender<TNode> {
+
+        private final NodeEncoderImpl<TNode> nodeEncoder;
+        private final Set<String> distinctNames;
+        private final Set<String> distinctPrefixes;
+        private final Set<String> distinctDatatypes;
+        private int names = 0;
+        private int prefixes = 0;
+        private int datatypes = 0;
+
+        Simulation(int prefixTableSize, int nameTableSize, int datatypeTableSize, boolean collectDistinct) {
+            this.nodeEncoder = NodeEncoderImpl.create(this, prefixTableSize, nameTableSize, datatypeTableSize);
+            this.distinctNames = collectDistinct ? new HashSet<>() : null;
+            this.distinctPrefixes = collectDistinct ? new HashSet<>() : null;
+            this.distinctDatatypes = collectDistinct ? new HashSet<>() : null;
+
+            final Object[] last = new Object[4];
+            for (int i = 0; i < terms.size(); i++) {
+                final TNode term = terms.get(i);
+                final int position = i & 3;
+                if (term == null || term.equals(last[position])) {
+                    continue;
+                }
+                last[position] = term;
+                if (position == 3) {
+                    converter.graphNodeToProto(nodeEncoder, term);
+                } else {
+                    converter.nodeToProto(nodeEncoder, term);
+                }
+            }
+        }
+
+        @Override
+        public void appendNameEntry(RdfNameEntry nameEntry) {
+            names++;
+            if (distinctNames != null) {
+                distinctNames.add(nameEntry.getValue());
+            }
+        }
+
+        @Override
+        public void appendPrefixEntry(RdfPrefixEntry prefixEntry) {
+            prefixes++;
+            if (distinctPrefixes != null) {
+                distinctPrefixes.add(prefixEntry.getValue());
+            }
+        }
+
+        @Override
+        public void appendDatatypeEntry(RdfDatatypeEntry datatypeEntry) {
+            datatypes++;
+            if (distinctDatatypes != null) {
+                distinctDatatypes.add(datatypeEntry.getValue());
+            }
+        }
+
+        @Override
+        public RdfTriple appendQuotedTriple(TNode subject, TNode predicate, TNode object) {
+            // Only the lookup entries of the quoted terms matter here
+            converter.nodeToProto(nodeEncoder, subject);
+            converter.nodeToProto(nodeEncoder, predicate);
+            converter.nodeToProto(nodeEncoder, object);
+            return RdfTriple.newInstance();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package eu.neverblink.jelly.core.utils;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import eu.neverblink.jelly.core.internal.proto.SpoBase;
+import eu.neverblink.jelly.core.jfr.FrameParsedEvent;
+import eu.neverblink.jelly.core.proto.v1.RdfLiteral;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import eu.neverblink.jelly.core.proto.v1.RdfTriple;
+import eu.neverblink.protoc.java.runtime.MessageFactory;
+import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parallel reader of delimited streams of protobuf messages (frames).
+ * <p>
+ * The work is split into stages:
+ * <ol>
+ *     <li>The calling thread splits the input stream on the varint length prefixes into raw byte slices,
+ *     one per frame.</li>
+ *     <li>A pool of worker threads parses the slices into frames, and optionally maps them to results
+ *     (e.g., decodes them into statements).</li>
+ *     <li>The calling thread passes the results to the consumer, in the original order of the frames.</li>
+ * </ol>
+ * The number of frames in flight is bounded, so the memory usage does not depend on the size of the stream.
+ * <p>
+ * With {@link #readStream(InputStream, MessageFactory, int, Consumer)}, only the parsing is parallelized,
+ * and the consumer can decode the frames with a regular, stateful decoder. This is always correct.
+ * <p>
+ * If the frames are self-contained (each frame starts with an options row and can be decoded without the
+ * previous frames, see {@link eu.neverblink.jelly.core.ProtoEncoder#newFrame()}), the decoding can also
+ * be done in the workers, with
+ * {@link #readStream(InputStream, MessageFactory, int, Function, Consumer)}. The mapper must then use a new
+ * decoder for each frame.
+ */
+public final class ParallelFrameReader {
+
+    private static final int DEFAULT_INPUT_STREAM_BUFFER_SIZE = 8192;
+    // How many frames may be in flight per worker thread
+    private static final int FRAMES_IN_FLIGHT_PER_WORKER = 4;
+
+    private ParallelFrameReader() {}
+
+    /**
+     * Reads a delimited stream of frames, parsing them in parallel. The frames are passed to the consumer
+     * on the calling thread, in order.
+     *
+     * @param inputStream the input stream to read from
+     * @param messageFactory the factory to create new frames. It must return a new instance on each call.
+     * @param parallelism number of worker threads
+     * @param frameConsumer the consumer to handle each frame
+     * @param <TFrame> the type of the frame
+     * @throws IOException if an I/O error occurs or a frame is malformed
+     */
+    public static <TFrame extends ProtoMessage<TFrame>> void readStream(
+        InputStream inputStream,
+        MessageFactory<TFrame> messageFactory,
+        int parallelism,
+        Consumer<TFrame> frameConsumer
+    ) throws IOException {
+        readStream(inputStream, messageFactory, parallelism, Function.identity(), frameConsumer);
+    }
+
+    /**
+     * Reads a delimited stream of frames, parsing them and mapping them to results in parallel. The results
+     * are passed to the consumer on the calling thread, in the order of the frames.
+     *
+     * @param inputStream the input stream to read from
+     * @param messageFactory the factory to create new frames. It must return a new instance on each call.
+     * @param parallelism number of worker threads
+     * @param frameMapper function applied to each frame in a worker thread. It must be thread-safe.
+     * @param resultConsumer the consumer to handle each result
+     * @param <TFrame> the type of the frame
+     * @param <TResult> the type of the result
+     * @throws IOException if an I/O error occurs or a frame is malformed
+     */
+    public static <TFrame extends ProtoMessage<TFrame>, TResult> void readStream(
+        InputStream inputStream,
+        MessageFactory<TFrame> messageFactory,
+        int parallelism,
+        Function<TFrame, TResult> frameMapper,
+        Consumer<TResult> resultConsumer
+    ) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        final int maxInFlight = parallelism * FRAMES_IN_FLIGHT_PER_WORKER;
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final var thread = new Thread(runnable, "jelly-parallel-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var pending = new ArrayDeque<Future<TResult>>();
+
+        try {
+            final var codedInput = CodedInputStream.newInstance(inputStream, DEFAULT_INPUT_STREAM_BUFFER_SIZE);
+            while (!codedInput.isAtEnd()) {
+                final int frameSize = codedInput.readRawVarint32();
+                if (frameSize < 0) {
+                    throw new InvalidProtocolBufferException("Invalid frame size: " + frameSize);
+                }
+                final byte[] slice = codedInput.readRawBytes(frameSize);
+                // Reset the size counter to avoid integer overflows
+                codedInput.resetSizeCounter();
+                pending.add(
+                    executor.submit(() -> frameMapper.apply(parseFrame(messageFactory, slice)))
+                );
+                if (pending.size() >= maxInFlight) {
+                    resultConsumer.accept(await(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                resultConsumer.accept(await(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Frame mapper for {@link #readStream(InputStream, MessageFactory, int, Function, Consumer)} that decodes
+     * the lexical forms of all literals in the frame, and returns the frame unchanged.
+     * <p>
+     * Lexical forms are decoded lazily, on the first call to {@link RdfLiteral#getLex()}. Use this mapper if
+     * the frames are decoded on the calling thread, so that this work is still done in the workers.
+     *
+     * @param frame the parsed frame
+     * @return the same frame
+     */
+    public static RdfStreamFrame decodeLiterals(RdfStreamFrame frame) {
+        for (final var row : frame.getRows()) {
+            switch (row.getRowFieldNumber()) {
+                case RdfStreamRow.TRIPLE -> decodeLiterals(row.getTriple());
+                case RdfStreamRow.QUAD -> {
+                    decodeLiterals(row.getQuad());
+                    decodeLiteral(row.getQuad().getGraph());
+                }
+                case RdfStreamRow.GRAPH_START -> decodeLiteral(row.getGraphStart().getGraph());
+                default -> {}
+            }
+        }
+        return frame;
+    }
+
+    private static void decodeLiterals(SpoBase statement) {
+        decodeLiteral(statement.getSubject());
+        decodeLiteral(statement.getPredicate());
+        decodeLiteral(statement.getObject());
+    }
+
+    private static void decodeLiteral(Object term) {
+        if (term instanceof RdfLiteral literal) {
+            literal.getLex();
+        } else if (term instanceof RdfTriple quotedTriple) {
+            decodeLiterals(quotedTriple);
+        }
+    }
+
+    private static <TFrame extends ProtoMessage<TFrame>> TFrame parseFrame(
+        MessageFactory<TFrame> messageFactory,
+        byte[] slice
+    ) throws IOException {
+        final var event = new FrameParsedEvent();
+        event.begin();
+        final var frame = ProtoMessage.mergeFrom(messageFactory.create(), slice);
+        IoUtils.commitParsed(event, slice.length);
+        return frame;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a frame to be parsed");
+        } catch (ExecutionException e) {
+            final var cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("Failed to parse a frame", cause);
+        }
+    }
+}
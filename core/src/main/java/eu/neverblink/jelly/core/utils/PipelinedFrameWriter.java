@@ -0,0 +1,399 @@
+package eu.neverblink.jelly.core.utils;
+
+import com.google.protobuf.CodedOutputStream;
+import eu.neverblink.jelly.core.jfr.FrameWrittenEvent;
+import eu.neverblink.jelly.core.memory.EncoderAllocator;
+import eu.neverblink.jelly.core.memory.ReusableRowBuffer;
+import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
+import eu.neverblink.jelly.core.proto.v1.RdfQuad;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import eu.neverblink.jelly.core.proto.v1.RdfTriple;
+import eu.neverblink.protoc.java.runtime.ProtobufUtil;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Two-stage, pipelined writer of delimited Jelly frames.
+ * <p>
+ * The encoding thread fills one frame (a ReusableRowBuffer with its own arena allocator), while a background
+ * thread serializes and writes the previously filled frames to the output stream. The handoff between the
+ * two is bounded – if the I/O thread falls behind by more than {@code depth} frames, the encoding thread
+ * blocks until a frame is written. This way encoding and I/O (e.g., gzip compression or a slow network
+ * stream) overlap, while the memory usage stays bounded.
+ * <p>
+ * Usage with ProtoEncoder: pass {@link #getRowBuffer()} and {@link #getAllocator()} to the encoder params.
+ * These are views of the frame that is currently being filled. Call {@link #submitFrame()} when the frame
+ * is full, and {@link #close()} at the end of the stream.
+ * <p>
+ * Usage with the direct encoder: call {@link #submitFrame(SerializedFrameBuffer)} with the buffer of the
+ * encoder. The serialized bytes are copied into a pooled array, and the buffer is cleared.
+ * <p>
+ * The I/O thread emits the {@link FrameWrittenEvent} JFR event for each frame, once its bytes are written.
+ * <p>
+ * This class is NOT thread-safe – all methods must be called from the encoding thread.
+ */
+public final class PipelinedFrameWriter implements AutoCloseable {
+
+    /**
+     * A frame in the pipeline. Either row-based (rows + allocator), or pre-serialized (bytes).
+     */
+    private static final class Slot {
+
+        final ReusableRowBuffer rows;
+        final EncoderAllocator allocator;
+        final RdfStreamFrame.Mutable frame;
+        byte[] bytes = null;
+        int byteLength = -1;
+        // Number of rows of a pre-serialized frame, for the JFR event
+        int byteRows = 0;
+
+        Slot(int frameCapacity) {
+            this.rows = RowBuffer.newReusableForEncoder(frameCapacity);
+            this.allocator = EncoderAllocator.newArenaAllocator(frameCapacity);
+            this.frame = RdfStreamFrame.newInstance().setRows(rows);
+        }
+
+        private Slot() {
+            this.rows = null;
+            this.allocator = null;
+            this.frame = null;
+        }
+
+        void clear() {
+            rows.clear();
+            allocator.releaseAll();
+            frame.getMetadata().clear();
+            byteLength = -1;
+        }
+    }
+
+    // Marks the end of the stream for the I/O thread
+    private static final Slot END = new Slot();
+    // Asks the I/O thread to flush the output after the frames submitted before it
+    private static final Slot FLUSH = new Slot();
+
+    private final OutputStream outputStream;
+    private final CodedOutputStream codedOutput;
+    private final String streamName;
+    private final BlockingQueue<Slot> filled;
+    private final BlockingQueue<Slot> free;
+    private final Thread ioThread;
+    private final CurrentRowBuffer rowBufferView = new CurrentRowBuffer();
+    private final CurrentAllocator allocatorView = new CurrentAllocator();
+
+    private Slot current;
+    private volatile Throwable failure = null;
+    private boolean closed = false;
+
+    /**
+     * Creates a new pipelined writer and starts its I/O thread.
+     * @param outputStream output stream to write the frames to. It is flushed, but not closed, on close().
+     * @param frameCapacity expected number of rows in a frame (used to size the buffers)
+     * @param depth maximum number of filled frames waiting to be written while the next one is encoded.
+     *              1 means classic double buffering.
+     * @param streamName name of the stream for the JFR events, or null if not known
+     */
+    public PipelinedFrameWriter(OutputStream outputStream, int frameCapacity, int depth, String streamName) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Pipeline depth must be at least 1, got " + depth);
+        }
+        this.outputStream = outputStream;
+        this.codedOutput = ProtobufUtil.createCodedOutputStream(outputStream);
+        this.streamName = streamName;
+        // +1 for the END or FLUSH marker
+        this.filled = new ArrayBlockingQueue<>(depth + 1);
+        this.free = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i < depth; i++) {
+            free.add(new Slot(frameCapacity));
+        }
+        this.current = new Slot(frameCapacity);
+        this.ioThread = new Thread(this::runIo, "jelly-pipelined-writer");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * Creates a new pipelined writer and starts its I/O thread.
+     * @param outputStream output stream to write the frames to. It is flushed, but not closed, on close().
+     * @param frameCapacity expected number of rows in a frame (used to size the buffers)
+     * @param depth maximum number of filled frames waiting to be written while the next one is encoded.
+     *              1 means classic double buffering.
+     */
+    public PipelinedFrameWriter(OutputStream outputStream, int frameCapacity, int depth) {
+        this(outputStream, frameCapacity, depth, null);
+    }
+
+    /**
+     * Creates a new double-buffered writer (pipeline depth of 1).
+     * @param outputStream output stream to write the frames to
+     * @param frameCapacity expected number of rows in a frame
+     */
+    public PipelinedFrameWriter(OutputStream outputStream, int frameCapacity) {
+        this(outputStream, frameCapacity, 1);
+    }
+
+    /**
+     * Returns a view of the row buffer of the frame that is currently being filled.
+     * Pass this to the encoder. The view follows the current frame across submitFrame() calls.
+     * @return row buffer
+     */
+    public RowBuffer getRowBuffer() {
+        return rowBufferView;
+    }
+
+    /**
+     * Returns a view of the allocator of the frame that is currently being filled.
+     * Pass this to the encoder. The view follows the current frame across submitFrame() calls.
+     * @return allocator
+     */
+    public EncoderAllocator getAllocator() {
+        return allocatorView;
+    }
+
+    /**
+     * Returns the frame that is currently being filled, for adding metadata to it. The metadata is cleared
+     * when the frame is written. Frames submitted from a SerializedFrameBuffer carry the buffer's metadata
+     * instead.
+     * @return frame
+     */
+    public RdfStreamFrame.Mutable getFrame() {
+        return current.frame;
+    }
+
+    /**
+     * Returns the number of rows in the frame that is currently being filled.
+     * @return number of rows
+     */
+    public int size() {
+        return current.rows.size();
+    }
+
+    /**
+     * Hands off the current frame to the I/O thread and switches to an empty frame.
+     * Blocks if the I/O thread is more than {@code depth} frames behind.
+     * @throws IOException if writing a previous frame failed, or if interrupted
+     */
+    public void submitFrame() throws IOException {
+        checkState();
+        if (current.rows.isEmpty()) {
+            return;
+        }
+        handOff();
+    }
+
+    /**
+     * Copies the serialized rows of the direct encoder to the pipeline and clears the buffer.
+     * Blocks if the I/O thread is more than {@code depth} frames behind.
+     * @param frameBuffer buffer of the direct encoder
+     * @throws IOException if writing a previous frame failed, or if interrupted
+     */
+    public void submitFrame(SerializedFrameBuffer frameBuffer) throws IOException {
+        checkState();
+        if (frameBuffer.isEmpty()) {
+            return;
+        }
+        final int length = frameBuffer.getSerializedSize();
+        if (current.bytes == null || current.bytes.length < length) {
+            current.bytes = new byte[Math.max(length, current.bytes == null ? 0 : current.bytes.length * 2)];
+        }
+        System.arraycopy(frameBuffer.array(), 0, current.bytes, 0, length);
+        current.byteLength = length;
+        current.byteRows = frameBuffer.size();
+        frameBuffer.clear();
+        handOff();
+    }
+
+    /**
+     * Makes the I/O thread flush the output stream after writing the frames submitted so far, so that the
+     * consumer gets them right away. Does not wait for the frames to be written.
+     * @throws IOException if writing a previous frame failed, or if interrupted
+     */
+    public void flush() throws IOException {
+        checkState();
+        try {
+            filled.put(FLUSH);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while asking the I/O thread to flush");
+        }
+    }
+
+    /**
+     * Writes all remaining frames, stops the I/O thread, and flushes the output stream.
+     * The frame that is currently being filled is NOT submitted – call submitFrame() first.
+     * @throws IOException if writing any of the frames failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            filled.put(END);
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the frames to be written");
+        }
+        rethrowFailure();
+        // !!! CodedOutputStream.flush() does not flush the underlying OutputStream,
+        // so we need to do it explicitly.
+        codedOutput.flush();
+        outputStream.flush();
+    }
+
+    private void handOff() throws IOException {
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing off a frame to the I/O thread");
+        }
+    }
+
+    private void checkState() throws IOException {
+        if (closed) {
+            throw new IOException("The writer is closed");
+        }
+        rethrowFailure();
+    }
+
+    private void rethrowFailure() throws IOException {
+        final var f = failure;
+        if (f == null) {
+            return;
+        }
+        if (f instanceof IOException e) {
+            throw new IOException("Failed to write a frame: " + e.getMessage(), e);
+        }
+        throw new IOException("Failed to write a frame", f);
+    }
+
+    private void runIo() {
+        while (true) {
+            final Slot slot;
+            try {
+                slot = filled.take();
+            } catch (InterruptedException e) {
+                failure = e;
+                return;
+            }
+            if (slot == END) {
+                return;
+            }
+            if (slot == FLUSH) {
+                if (failure == null) {
+                    try {
+                        // CodedOutputStream.flush() does not flush the underlying OutputStream
+                        codedOutput.flush();
+                        outputStream.flush();
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+                continue;
+            }
+            // After a failure, keep recycling the frames, so that the encoding thread never blocks forever.
+            if (failure == null) {
+                try {
+                    writeSlot(slot);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            }
+            slot.clear();
+            free.add(slot);
+        }
+    }
+
+    private void writeSlot(Slot slot) throws IOException {
+        final var writtenEvent = new FrameWrittenEvent();
+        writtenEvent.begin();
+        final int rows;
+        final long bytes;
+        if (slot.byteLength >= 0) {
+            codedOutput.writeUInt32NoTag(slot.byteLength);
+            codedOutput.writeRawBytes(slot.bytes, 0, slot.byteLength);
+            rows = slot.byteRows;
+            bytes = slot.byteLength;
+        } else {
+            slot.frame.resetCachedSize();
+            slot.frame.writeDelimitedTo(codedOutput);
+            rows = slot.rows.size();
+            // Cached by writeDelimitedTo, so the frame is not walked again
+            bytes = slot.frame.getSerializedSize();
+        }
+        writtenEvent.end();
+        if (writtenEvent.shouldCommit()) {
+            writtenEvent.set(streamName, rows, bytes);
+            writtenEvent.commit();
+        }
+    }
+
+    /**
+     * Delegates to the row buffer of the current frame.
+     */
+    private final class CurrentRowBuffer extends AbstractCollection<RdfStreamRow> implements RowBuffer {
+
+        @Override
+        public RdfStreamRow.Mutable appendMessage() {
+            return current.rows.appendMessage();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return current.rows.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return current.rows.size();
+        }
+
+        @Override
+        public Iterator<RdfStreamRow> iterator() {
+            return current.rows.iterator();
+        }
+
+        @Override
+        public Collection<RdfStreamRow> getRows() {
+            return current.rows.getRows();
+        }
+
+        @Override
+        public void clear() {
+            current.clear();
+        }
+    }
+
+    /**
+     * Delegates to the allocator of the current frame.
+     */
+    private final class CurrentAllocator extends EncoderAllocator {
+
+        @Override
+        public RdfTriple.Mutable newTriple() {
+            return current.allocator.newTriple();
+        }
+
+        @Override
+        public RdfQuad.Mutable newQuad() {
+            return current.allocator.newQuad();
+        }
+
+        @Override
+        public void releaseAll() {
+            current.allocator.releaseAll();
+        }
+    }
+}
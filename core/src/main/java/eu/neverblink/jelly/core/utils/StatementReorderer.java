@@ -0,0 +1,171 @@
+package eu.neverblink.jelly.core.utils;
+
+import eu.neverblink.jelly.core.ExperimentalApi;
+import eu.neverblink.jelly.core.RdfHandler;
+import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Reorders the statements in a bounded window before passing them on to the encoder, so that statements with
+ * the same graph, subject, and predicate follow each other.
+ * <p>
+ * The encoder leaves out the terms that are the same as in the previous statement, and the IRIs whose name
+ * id follows the previous one. Both only work well on sorted input, but many sources (like Jena's
+ * {@code Graph.find()}) return the statements in an arbitrary order. The reorderer buffers up to
+ * {@code windowSize} statements and passes them on grouped by graph, then subject, then predicate. A larger
+ * window groups more statements together, at the cost of latency and memory.
+ * <p>
+ * The statements are grouped by the hash codes of their terms. Equal terms always end up together, but the
+ * groups themselves are in no particular order.
+ * <p>
+ * Reordering changes the order of the statements in the stream, so it is only allowed for the flat triple
+ * and quad logical stream types, where the order does not matter. Namespace declarations are not reordered –
+ * the window is flushed before passing them on.
+ * <p>
+ * Call {@link #flush()} at the end of the stream, and whenever the buffered statements must be written
+ * (e.g., before ending a frame to keep latency bounded).
+ * <p>
+ * This class is NOT thread-safe.
+ *
+ * @param <TNode> type of RDF nodes in the library
+ */
+@ExperimentalApi
+public final class StatementReorderer<TNode> implements RdfHandler.AnyStatementHandler<TNode> {
+
+    /**
+     * A buffered statement, with the hash codes of the grouped terms.
+     */
+    private static final class Statement<TNode> {
+
+        TNode subject;
+        TNode predicate;
+        TNode object;
+        TNode graph;
+        // Triples are passed on as triples, even in a quad stream
+        boolean isTriple;
+        int graphHash;
+        int subjectHash;
+        int predicateHash;
+    }
+
+    private static final Comparator<Statement<?>> ORDER = (a, b) -> {
+        int c = Integer.compare(a.graphHash, b.graphHash);
+        if (c != 0) {
+            return c;
+        }
+        c = Integer.compare(a.subjectHash, b.subjectHash);
+        if (c != 0) {
+            return c;
+        }
+        return Integer.compare(a.predicateHash, b.predicateHash);
+    };
+
+    private final RdfHandler.AnyStatementHandler<TNode> handler;
+    private final Statement<TNode>[] window;
+    private int size = 0;
+
+    /**
+     * Checks whether statements of a logical stream type may be reordered.
+     * @param logicalType logical stream type
+     * @return true for flat triple and quad streams
+     */
+    public static boolean canReorder(LogicalStreamType logicalType) {
+        final var baseType = LogicalStreamTypeUtils.toBaseType(logicalType);
+        return baseType == LogicalStreamType.FLAT_TRIPLES || baseType == LogicalStreamType.FLAT_QUADS;
+    }
+
+    /**
+     * Creates a new reorderer.
+     * @param handler handler to pass the reordered statements to, usually the encoder
+     * @param logicalType logical stream type of the output, must be a flat triple or quad stream
+     * @param windowSize maximum number of buffered statements (at least 1)
+     * @throws IllegalArgumentException if the stream type does not allow reordering or the window size is
+     *                                  below 1
+     */
+    @SuppressWarnings("unchecked")
+    public StatementReorderer(
+        RdfHandler.AnyStatementHandler<TNode> handler,
+        LogicalStreamType logicalType,
+        int windowSize
+    ) {
+        if (!canReorder(logicalType)) {
+            throw new IllegalArgumentException(
+                "Statements can only be reordered in flat triple or quad streams, got " + logicalType
+            );
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1, got " + windowSize);
+        }
+        this.handler = handler;
+        this.window = new Statement[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            window[i] = new Statement<>();
+        }
+    }
+
+    @Override
+    public void handleTriple(TNode subject, TNode predicate, TNode object) {
+        add(subject, predicate, object, null, true);
+    }
+
+    @Override
+    public void handleQuad(TNode subject, TNode predicate, TNode object, TNode graph) {
+        add(subject, predicate, object, graph, false);
+    }
+
+    @Override
+    public void handleNamespace(String prefix, TNode namespace) {
+        flush();
+        handler.handleNamespace(prefix, namespace);
+    }
+
+    /**
+     * Returns the number of buffered statements.
+     * @return number of statements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes on all buffered statements, grouped.
+     */
+    public void flush() {
+        if (size == 0) {
+            return;
+        }
+        // Stable, so the statements of a group keep their order
+        Arrays.sort(window, 0, size, ORDER);
+        for (int i = 0; i < size; i++) {
+            final var st = window[i];
+            if (st.isTriple) {
+                handler.handleTriple(st.subject, st.predicate, st.object);
+            } else {
+                handler.handleQuad(st.subject, st.predicate, st.object, st.graph);
+            }
+            // Do not hold on to the terms
+            st.subject = null;
+            st.predicate = null;
+            st.object = null;
+            st.graph = null;
+        }
+        size = 0;
+    }
+
+    private void add(TNode subject, TNode predicate, TNode object, TNode graph, boolean isTriple) {
+        final var st = window[size++];
+        st.subject = subject;
+        st.predicate = predicate;
+        st.object = object;
+        st.graph = graph;
+        st.isTriple = isTriple;
+        // Triples have no graph, so they are all grouped together
+        st.graphHash = graph == null ? Integer.MIN_VALUE : graph.hashCode();
+        st.subjectHash = subject.hashCode();
+        st.predicateHash = predicate.hashCode();
+        if (size == window.length) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package eu.neverblink.jelly.core
+
+import eu.neverblink.jelly.core.RdfHandler.AnyStatementHandler
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.RdfAdapter.*
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.collection.mutable.ArrayBuffer
+
+class IdDecodersSpec extends AnyWordSpec, Matchers:
+  import ProtoTestCases.*
+
+  private class IdCollector extends AnyStatementHandler[IdTerm]:
+    val statements: ArrayBuffer[Seq[IdTerm]] = ArrayBuffer()
+
+    override def handleTriple(subject: IdTerm, predicate: IdTerm, `object`: IdTerm): Unit =
+      statements += Seq(subject, predicate, `object`)
+
+    override def handleQuad(
+        subject: IdTerm,
+        predicate: IdTerm,
+        `object`: IdTerm,
+        graph: IdTerm,
+    ): Unit =
+      statements += Seq(subject, predicate, `object`, graph)
+
+  private def decode(rows: Seq[RdfStreamRow]): Seq[Seq[IdTerm]] =
+    val collector = IdCollector()
+    val decoder = IdDecoders.anyStatementDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+    rows.foreach(decoder.ingestRow)
+    collector.statements.toSeq
+
+  /** Checks that the id term has the same shape and the same strings as the node. */
+  private def checkTerm(id: IdTerm, node: Node): Unit = (id, node) match
+    case (_: IdTerm.Iri, _: Iri) => ()
+    case (IdTerm.BlankNode(label), BlankNode(expected)) => label should be(expected)
+    case (IdTerm.Literal(lex, null, null), SimpleLiteral(expected)) => lex should be(expected)
+    case (IdTerm.Literal(lex, lang, null), LangLiteral(expected, expectedLang)) =>
+      (lex, lang) should be((expected, expectedLang))
+    case (IdTerm.Literal(lex, null, dt), DtLiteral(expected, Datatype(expectedDt))) =>
+      (lex, dt) should be((expected, expectedDt))
+    case (IdTerm.QuotedTriple(s, p, o), TripleNode(es, ep, eo)) =>
+      checkTerm(s, es)
+      checkTerm(p, ep)
+      checkTerm(o, eo)
+    case (_: IdTerm.DefaultGraph, _: DefaultGraphNode) => ()
+    case _ => fail(s"Decoded $id, expected $node")
+
+  "IdDecoders" should {
+    val cases = Seq(
+      ("triples", Triples1, PhysicalStreamType.TRIPLES),
+      ("quads", Quads1, PhysicalStreamType.QUADS),
+      ("quads with a repeated default graph", Quads2RepeatDefault, PhysicalStreamType.QUADS),
+      ("graphs", Graphs1, PhysicalStreamType.GRAPHS),
+    )
+
+    for (name, testCase, streamType) <- cases do
+      s"decode $name to the same terms as the regular decoder" in {
+        val rows = testCase.encoded(
+          JellyOptions.SMALL_GENERALIZED.clone
+            .setPhysicalType(streamType)
+            .setVersion(JellyConstants.PROTO_VERSION),
+        )
+        val expected = ProtoCollector()
+        val regular =
+          MockConverterFactory.anyStatementDecoder(expected, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+        rows.foreach(regular.ingestRow)
+        val expectedTerms = expected.statements.toSeq.map {
+          case Triple(s, p, o) => Seq(s, p, o)
+          case Quad(s, p, o, g) => Seq(s, p, o, g)
+          case other => fail(s"Unexpected statement $other")
+        }
+
+        val observed = decode(rows)
+        observed.map(_.size) should be(expectedTerms.map(_.size))
+        val pairs = observed.flatten.zip(expectedTerms.flatten)
+        for (id, node) <- pairs do checkTerm(id, node)
+        // No lookup entries are reused in the test cases, so the ids and the IRIs are one-to-one
+        for group <- pairs.groupBy(_._1).values do group.map(_._2).distinct should have size 1
+        for group <- pairs.groupBy(_._2).values do group.map(_._1).distinct should have size 1
+      }
+
+    "infer the omitted prefix and name ids" in {
+      val observed = decode(
+        wrapEncoded(
+          Seq(
+            JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+            rdfPrefixEntry(0, "https://test.org/"),
+            rdfNameEntry(0, "a"),
+            rdfNameEntry(0, "b"),
+            rdfNameEntry(0, "c"),
+            rdfTriple(rdfIri(1, 0), rdfIri(0, 0), rdfIri(0, 0)),
+          ),
+        ),
+      )
+      observed should be(
+        Seq(
+          Seq(
+            IdTerm.Iri(1, 1, 1, 1),
+            IdTerm.Iri(1, 1, 2, 1),
+            IdTerm.Iri(1, 1, 3, 1),
+          ),
+        ),
+      )
+    }
+
+    "tell apart the IRIs of a reused lookup entry by its serial" in {
+      val observed = decode(
+        wrapEncoded(
+          Seq(
+            JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+            rdfNameEntry(1, "a"),
+            rdfNameEntry(2, "p"),
+            rdfTriple(rdfIri(0, 1), rdfIri(0, 2), rdfIri(0, 1)),
+            rdfNameEntry(1, "b"),
+            rdfTriple(rdfIri(0, 1), null, null),
+          ),
+        ),
+      )
+      val first = observed.head.head
+      first should be(IdTerm.Iri(0, 0, 1, 1))
+      observed.head(2) should be theSameInstanceAs first
+      observed(1).head should be(IdTerm.Iri(0, 0, 1, 2))
+      // Repeated terms are the same as in the previous statement
+      observed(1).tail should be(observed.head.tail)
+    }
+
+    "throw exception on a reference to an unset lookup entry" in {
+      val error = intercept[RdfProtoDeserializationError] {
+        decode(
+          wrapEncoded(
+            Seq(
+              JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+              rdfNameEntry(1, "a"),
+              rdfTriple(rdfIri(3, 1), rdfIri(0, 1), rdfIri(0, 1)),
+            ),
+          ),
+        )
+      }
+      error.getMessage should include("Error while decoding term")
+      error.getCause.getMessage should include("invalid IRI reference")
+    }
+
+    "not support checkpoints" in {
+      val decoder =
+        IdDecoders.triplesDecoder((_, _, _) => (), JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      decoder.ingestRow(
+        rdfStreamRow(
+          JellyOptions.SMALL_STRICT.clone
+            .setPhysicalType(PhysicalStreamType.TRIPLES)
+            .setVersion(JellyConstants.PROTO_VERSION),
+        ),
+      )
+      intercept[UnsupportedOperationException] {
+        decoder.saveCheckpoint(_ => null, dt => dt)
+      }
+    }
+  }
@@ -0,0 +1,158 @@
+package eu.neverblink.jelly.core
+
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.proto.v1.*
+import eu.neverblink.jelly.core.utils.AdaptiveIriSplitter
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class IriSplitterSpec extends AnyWordSpec, Matchers:
+  private def prefix(splitter: IriSplitter, iri: String): String =
+    iri.substring(0, splitter.prefixLength(iri))
+
+  /** Observations of 10 sensors, each observation with its own IRI. */
+  private val urnTriples = (0 until 200).map(i =>
+    Triple(
+      Iri(s"urn:x:sensor:${i % 10}:obs:$i"),
+      Iri("urn:x:prop:value"),
+      SimpleLiteral(s"v$i"),
+    ),
+  )
+
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  private def encode(splitter: IriSplitter): Seq[RdfStreamRow] =
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(
+      ProtoEncoder.Params.of(options, false, buffer).withIriSplitter(splitter),
+    )
+    urnTriples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+    buffer.getRows.asScala.toSeq
+
+  "IriSplitter.DEFAULT" should {
+    "split after the first '#' past the scheme" in {
+      prefix(IriSplitter.DEFAULT, "https://test.org/a#b/c") should be("https://test.org/a#")
+    }
+
+    "split after the last '/' if there is no '#'" in {
+      prefix(IriSplitter.DEFAULT, "https://test.org/a/b") should be("https://test.org/a/")
+    }
+
+    "not split an IRI without '#' or '/'" in {
+      prefix(IriSplitter.DEFAULT, "urn:x:y") should be("")
+    }
+  }
+
+  "IriSplitter.COLON" should {
+    "split URNs after the last ':'" in {
+      prefix(IriSplitter.COLON, "urn:x:sensor:1234:obs:5678") should be("urn:x:sensor:1234:obs:")
+    }
+
+    "split slash IRIs after the last '/'" in {
+      prefix(IriSplitter.COLON, "https://test.org/a/b") should be("https://test.org/a/")
+    }
+  }
+
+  "IriSplitter.QUERY" should {
+    "split after the first '=' of the query" in {
+      prefix(IriSplitter.QUERY, "https://host/api?id=123&x=5") should be("https://host/api?id=")
+    }
+
+    "split after the '?' if the query has no '='" in {
+      prefix(IriSplitter.QUERY, "https://host/api?123") should be("https://host/api?")
+    }
+
+    "fall back to the default without a query" in {
+      prefix(IriSplitter.QUERY, "https://host/api/123") should be("https://host/api/")
+    }
+  }
+
+  "IriSplitter.atLastOf" should {
+    "split after the last of the given characters" in {
+      prefix(IriSplitter.atLastOf("_"), "https://test.org/a_b_c") should be("https://test.org/a_b_")
+    }
+  }
+
+  "AdaptiveIriSplitter" should {
+    "split a new IRI after its last separator" in {
+      prefix(AdaptiveIriSplitter(), "urn:x:sensor:1:obs:1") should be("urn:x:sensor:1:obs:")
+    }
+
+    "learn the prefix shared by the IRIs" in {
+      val splitter = AdaptiveIriSplitter()
+      val prefixes = (0 until 20).map(i => prefix(splitter, s"urn:x:item:$i"))
+      prefixes.head should be("urn:x:item:")
+      prefixes.distinct should be(Seq("urn:x:item:"))
+    }
+
+    "prefer the longest prefix seen often enough" in {
+      val splitter = AdaptiveIriSplitter()
+      (0 until 5).foreach(i => prefix(splitter, s"https://test.org/a/$i"))
+      (0 until 5).foreach(i => prefix(splitter, s"https://test.org/b/$i"))
+      // A new path under a known host gets the host as the prefix, not a new prefix of its own
+      prefix(splitter, "https://test.org/c/1") should be("https://test.org/")
+      prefix(splitter, "https://test.org/a/9") should be("https://test.org/a/")
+    }
+
+    "forget the prefixes outside the window" in {
+      val splitter = AdaptiveIriSplitter(4, 2)
+      (0 until 2).foreach(i => prefix(splitter, s"urn:x:$i"))
+      prefix(splitter, "urn:x:new:1") should be("urn:x:")
+      (0 until 4).foreach(i => prefix(splitter, s"https://test.org/$i"))
+      prefix(splitter, "urn:x:new:2") should be("urn:x:new:")
+    }
+
+    "reject invalid parameters" in {
+      intercept[IllegalArgumentException](AdaptiveIriSplitter(0, 2))
+      intercept[IllegalArgumentException](AdaptiveIriSplitter(16, 0))
+    }
+  }
+
+  "ProtoEncoder with an IRI splitter" should {
+    for (name, splitter) <- Seq(
+        "COLON" -> IriSplitter.COLON,
+        "QUERY" -> IriSplitter.QUERY,
+        "adaptive" -> AdaptiveIriSplitter(),
+      )
+    do
+      s"produce a stream that decodes to the same triples ($name)" in {
+        val collector = ProtoCollector()
+        val decoder =
+          MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+        encode(splitter).foreach(decoder.ingestRow)
+        collector.statements.toSeq should be(urnTriples)
+      }
+
+    "reject a negative prefix length" in {
+      val error = intercept[RdfProtoSerializationError] {
+        encode(_ => -1)
+      }
+      error.getMessage should include("IriSplitterSpec")
+      error.getMessage should include("prefix length -1")
+    }
+
+    "reject a prefix length beyond the end of the IRI" in {
+      val error = intercept[RdfProtoSerializationError] {
+        encode(iri => iri.length + 1)
+      }
+      error.getMessage should include("IriSplitterSpec")
+      // The first IRI is urn:x:sensor:0:obs:0
+      error.getMessage should include("prefix length 21 for an IRI of length 20")
+    }
+
+    "produce a smaller stream on URNs than the default splitter" in {
+      def size(rows: Seq[RdfStreamRow]) = rows.map(_.getSerializedSize).sum
+      val default = encode(IriSplitter.DEFAULT)
+      val colon = encode(IriSplitter.COLON)
+      // The default splitter puts every URN in the name table as a whole
+      default.count(_.hasPrefix) should be(1)
+      colon.count(_.hasPrefix) should be(11)
+      size(colon) should be < size(default)
+    }
+  }
@@ -0,0 +1,271 @@
+package eu.neverblink.jelly.core
+
+import com.google.protobuf.CodedInputStream
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException}
+import scala.jdk.CollectionConverters.*
+
+class LookupDictionarySpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  private val vocabulary = Seq(
+    "https://test.org/sensor#temperature",
+    "https://test.org/sensor#humidity",
+    "https://test.org/sensor#timestamp",
+    "http://www.w3.org/1999/02/22-rdf-syntax-ns#type",
+    "https://test.org/sensor#Measurement",
+  )
+  private val datatypes = Seq(
+    "http://www.w3.org/2001/XMLSchema#decimal",
+    "http://www.w3.org/2001/XMLSchema#dateTime",
+  )
+  private val dictionary = LookupDictionary(vocabulary.asJava, datatypes.asJava)
+
+  /** A short message, with some terms in the dictionary and some not. */
+  private def message(i: Int): Seq[Triple] =
+    val s = Iri(s"https://test.org/measurement/$i")
+    Seq(
+      Triple(s, Iri(vocabulary(3)), Iri(vocabulary(4))),
+      Triple(s, Iri(vocabulary(0)), DtLiteral(s"2$i.5", Datatype(datatypes(0)))),
+      Triple(s, Iri(vocabulary(1)), DtLiteral(s"$i", Datatype(datatypes(0)))),
+      Triple(s, Iri(vocabulary(2)), DtLiteral("2025-01-01T00:00:00Z", Datatype(datatypes(1)))),
+      Triple(s, Iri("https://other.org/unknown"), LangLiteral("abc", "en")),
+      Triple(
+        s,
+        Iri("https://other.org/unknown2"),
+        DtLiteral("1", Datatype("https://other.org/dt")),
+      ),
+    )
+
+  private def encode(
+      triples: Seq[Triple],
+      dictionary: LookupDictionary,
+      opt: RdfStreamOptions = options,
+  ): Seq[RdfStreamRow] =
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(
+      ProtoEncoder.Params.of(opt, false, buffer).withDictionary(dictionary),
+    )
+    triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+    buffer.getRows.asScala.toSeq
+
+  private def decode(rows: Seq[RdfStreamRow], dictionary: LookupDictionary): Seq[Statement] =
+    val collector = ProtoCollector()
+    val decoder =
+      MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+    decoder.setDictionary(dictionary)
+    rows.foreach(decoder.ingestRow)
+    collector.statements.toSeq
+
+  "LookupDictionary" should {
+    "split the IRIs into prefix and name entries" in {
+      val entries = dictionary.entriesFor(16, 128, 16)
+      entries.prefixes.toSeq should be(
+        Seq(
+          "https://test.org/sensor#",
+          "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+        ),
+      )
+      entries.names.toSeq should be(
+        Seq("temperature", "humidity", "timestamp", "type", "Measurement"),
+      )
+      entries.datatypes.toSeq should be(datatypes)
+    }
+
+    "put the full IRIs in the name lookup if the prefix lookup is disabled" in {
+      val entries = dictionary.entriesFor(0, 128, 16)
+      entries.prefixes.toSeq should be(empty)
+      entries.names.toSeq should be(vocabulary)
+    }
+
+    "skip the entries that do not fit in the lookups" in {
+      val entries = dictionary.entriesFor(1, 3, 1)
+      entries.prefixes.toSeq should be(Seq("https://test.org/sensor#"))
+      entries.names.toSeq should be(Seq("temperature", "humidity", "timestamp"))
+      entries.datatypes.toSeq should be(datatypes.take(1))
+    }
+
+    "not emit lookup entries for the terms in the dictionary" in {
+      val rows = encode(message(1), dictionary)
+      rows.filter(_.hasPrefix).map(_.getPrefix.getValue) should be(
+        Seq("https://test.org/measurement/", "https://other.org/"),
+      )
+      rows.filter(_.hasName).map(_.getName.getValue) should be(Seq("1", "unknown", "unknown2"))
+      rows.filter(_.hasDatatype).map(_.getDatatype.getValue) should be(Seq("https://other.org/dt"))
+      // New entries continue with the ids after the dictionary
+      rows.filter(_.hasName).map(_.getName.getId).head should be(0)
+    }
+
+    "make short messages smaller" in {
+      val withDictionary = encode(message(1), dictionary).map(_.getSerializedSize).sum
+      val withoutDictionary = encode(message(1), null).map(_.getSerializedSize).sum
+      withDictionary should be < withoutDictionary * 2 / 3
+    }
+
+    for (name, opt) <- Seq(
+        ("with prefixes", options),
+        ("without prefixes", options.clone.setMaxPrefixTableSize(0)),
+        ("with lookups smaller than the dictionary", options.clone.setMaxDatatypeTableSize(1)),
+      )
+    do
+      s"round-trip a stream encoded with the dictionary ($name)" in {
+        val triples = (0 until 50).flatMap(message)
+        decode(encode(triples, dictionary, opt), dictionary) should be(triples)
+      }
+
+    "round-trip self-contained frames encoded with the dictionary" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, buffer)
+          .withSelfContainedFrames(true)
+          .withDictionary(dictionary),
+      )
+      val triples = (0 until 20).flatMap(message)
+      for (t, i) <- triples.zipWithIndex do
+        encoder.handleTriple(t.s, t.p, t.o)
+        if i % 6 == 5 then encoder.newFrame()
+      val rows = buffer.getRows.asScala.toSeq
+      rows.count(_.hasOptions) should be(20)
+      decode(rows, dictionary) should be(triples)
+    }
+
+    "fail to decode a stream without the dictionary" in {
+      val rows = encode(message(1), dictionary)
+      intercept[RdfProtoDeserializationError] {
+        decode(rows, null)
+      }
+    }
+
+    for fromBytes <- Seq(false, true) do
+      val source = if fromBytes then "the wire format" else "frame messages"
+      s"check the dictionary id in the first frame, from $source" in {
+        def frame(encodedWith: LookupDictionary, tag: LookupDictionary): RdfStreamFrame =
+          val frame = RdfStreamFrame.newInstance()
+          frame.getRows.addAll(encode(message(1), encodedWith).asJava)
+          if tag != null then tag.tagFrame(frame)
+          frame
+
+        def decodeFrames(frames: Seq[RdfStreamFrame], dictionary: LookupDictionary) =
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.anyStatementDecoder(
+            collector,
+            JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+          )
+          decoder.setDictionary(dictionary)
+          for frame <- frames do
+            if fromBytes then decoder.ingestFrame(CodedInputStream.newInstance(frame.toByteArray))
+            else decoder.ingestFrame(frame)
+          collector.statements.toSeq
+
+        val other = LookupDictionary(vocabulary.reverse.asJava, datatypes.asJava)
+        decodeFrames(Seq(frame(dictionary, dictionary)), dictionary) should be(message(1))
+        decodeFrames(Seq(frame(null, null)), null) should be(message(1))
+        // Only the first frame must have the id
+        val next = RdfStreamFrame.newInstance()
+        decodeFrames(Seq(frame(dictionary, dictionary), next), dictionary) should be(message(1))
+        intercept[RdfProtoDeserializationError] {
+          decodeFrames(Seq(frame(dictionary, other)), dictionary)
+        }.getMessage should include(other.getId)
+        intercept[RdfProtoDeserializationError] {
+          decodeFrames(Seq(frame(dictionary, null)), dictionary)
+        }
+        intercept[RdfProtoDeserializationError] {
+          decodeFrames(Seq(frame(null, dictionary)), null)
+        }
+        // The ids in later frames must match too
+        val tagged = RdfStreamFrame.newInstance()
+        other.tagFrame(tagged)
+        intercept[RdfProtoDeserializationError] {
+          decodeFrames(Seq(frame(dictionary, dictionary), tagged), dictionary)
+        }
+      }
+
+    "refuse to set the dictionary after ingesting rows" in {
+      val decoder = MockConverterFactory.anyStatementDecoder(
+        ProtoCollector(),
+        JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+      )
+      decoder.ingestRow(encode(message(1), dictionary).head)
+      intercept[IllegalStateException] {
+        decoder.setDictionary(dictionary)
+      }
+    }
+
+    "be written to and read from a file" in {
+      val os = ByteArrayOutputStream()
+      dictionary.writeTo(os)
+      val parsed = LookupDictionary.parseFrom(ByteArrayInputStream(os.toByteArray))
+      parsed.getIris.asScala should be(vocabulary)
+      parsed.getDatatypes.asScala should be(datatypes)
+      parsed.getId should be(dictionary.getId)
+    }
+
+    "reject a file that is not a dictionary" in {
+      intercept[IOException] {
+        LookupDictionary.parseFrom(ByteArrayInputStream(Array[Byte](1, 2, 3, 4, 5)))
+      }
+    }
+
+    "have an id that depends on the contents" in {
+      dictionary.getId.length should be(16)
+      LookupDictionary(vocabulary.asJava, datatypes.asJava).getId should be(dictionary.getId)
+      val reversed = LookupDictionary(vocabulary.reverse.asJava, datatypes.asJava)
+      reversed.getId should not be dictionary.getId
+      LookupDictionary(vocabulary.asJava, Seq[String]().asJava).getId should not be dictionary.getId
+    }
+
+    "tag frames with its id" in {
+      val frame = RdfStreamFrame.newInstance()
+      LookupDictionary.getFrameDictionaryId(frame) should be(null)
+      dictionary.tagFrame(frame)
+      LookupDictionary.getFrameDictionaryId(frame) should be(dictionary.getId)
+    }
+
+    "tag frames serialized by the direct encoder with its id" in {
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(
+        ProtoEncoder.Params.of(options, false, null, null).withDictionary(dictionary),
+        frameBuffer,
+      )
+      for t <- message(1) do encoder.handleTriple(t.s, t.p, t.o)
+      val rows = frameBuffer.size
+      dictionary.tagFrame(frameBuffer)
+      frameBuffer.size should be(rows)
+      val frame = RdfStreamFrame.parseFrom(frameBuffer.toByteArray)
+      frame.getRows.size should be(rows)
+      LookupDictionary.getFrameDictionaryId(frame) should be(dictionary.getId)
+    }
+  }
+
+  "LookupDictionary.Builder" should {
+    "pick the most frequent IRIs and datatypes from sample frames" in {
+      val frame = RdfStreamFrame.newInstance()
+      frame.getRows.addAll(encode((0 until 10).flatMap(message), null).asJava)
+      val built = LookupDictionary.newBuilder().addFrame(frame).build(7, 1)
+      // The vocabulary and the "unknown" IRIs occur 10 times each, the subjects 6 times each.
+      // Ties are sorted by the IRI.
+      built.getIris.asScala should be(
+        (vocabulary ++ Seq("https://other.org/unknown", "https://other.org/unknown2")).sorted,
+      )
+      built.getDatatypes.asScala should be(datatypes.take(1))
+    }
+
+    "count IRIs added directly" in {
+      val built = LookupDictionary.newBuilder()
+        .addIri("https://a.org/1")
+        .addIri("https://a.org/2")
+        .addIri("https://a.org/2")
+        .addDatatype("https://a.org/dt")
+        .build(10, 10)
+      built.getIris.asScala should be(Seq("https://a.org/2", "https://a.org/1"))
+      built.getDatatypes.asScala should be(Seq("https://a.org/dt"))
+    }
+  }
@@ -0,0 +1,145 @@
+package eu.neverblink.jelly.core
+
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class LookupVocabularySpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  private val vocabulary = LookupVocabulary(
+    Seq("https://test.org/data/", "http://www.w3.org/2001/XMLSchema#").asJava,
+    Seq(
+      "http://www.w3.org/1999/02/22-rdf-syntax-ns#type",
+      "https://test.org/sensor#Measurement",
+      "https://test.org/sensor#value",
+    ).asJava,
+  )
+
+  private def triples(n: Int): Seq[Triple] = (0 until n).flatMap { i =>
+    val s = Iri(s"https://test.org/data/m$i")
+    Seq(
+      Triple(s, Iri(vocabulary.iris.get(0)), Iri(vocabulary.iris.get(1))),
+      Triple(s, Iri(vocabulary.iris.get(2)), SimpleLiteral(s"$i")),
+    )
+  }
+
+  private def encode(
+      triples: Seq[Triple],
+      params: ProtoEncoder.Params => ProtoEncoder.Params = identity,
+      direct: Boolean = false,
+  ): Seq[RdfStreamRow] =
+    val buffer = RowBuffer.newLazyImmutable()
+    val p = params(ProtoEncoder.Params.of(options, false, buffer).withVocabulary(vocabulary))
+    if direct then
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(p, frameBuffer)
+      triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      RdfStreamFrame.parseFrom(frameBuffer.toByteArray).getRows.asScala.toSeq
+    else
+      val encoder = MockConverterFactory.encoder(p)
+      triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      buffer.getRows.asScala.toSeq
+
+  private def decode(rows: Seq[RdfStreamRow]): Seq[Statement] =
+    val collector = ProtoCollector()
+    val decoder =
+      MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+    rows.foreach(decoder.ingestRow)
+    collector.statements.toSeq
+
+  "LookupVocabulary" should {
+    "be merged with another vocabulary" in {
+      val merged = LookupVocabulary.ofPrefixes(Seq("https://a.org/").asJava)
+        .merge(LookupVocabulary.ofIris(Seq("https://b.org/x").asJava))
+        .merge(vocabulary)
+      merged.prefixes.asScala should be("https://a.org/" +: vocabulary.prefixes.asScala)
+      merged.iris.asScala should be("https://b.org/x" +: vocabulary.iris.asScala)
+    }
+  }
+
+  "ProtoEncoder with a vocabulary" should {
+    for direct <- Seq(false, true) do
+      s"emit the lookup entries right after the options row (direct encoding: $direct)" in {
+        val rows = encode(triples(1), direct = direct)
+        rows.head.hasOptions should be(true)
+        val preamble = rows.tail.takeWhile(r => r.hasPrefix || r.hasName)
+        preamble.filter(_.hasPrefix).map(_.getPrefix.getValue) should be(
+          Seq(
+            "https://test.org/data/",
+            "http://www.w3.org/2001/XMLSchema#",
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+            "https://test.org/sensor#",
+          ),
+        )
+        preamble.filter(_.hasName).map(_.getName.getValue) should be(
+          Seq("type", "Measurement", "value", "m0"),
+        )
+        // The vocabulary is already in the lookups – no more entries for it later in the stream
+        rows.drop(preamble.size + 1).filter(_.hasPrefix) should be(empty)
+      }
+
+      s"round-trip with a decoder unaware of the vocabulary (direct encoding: $direct)" in {
+        val input = triples(20)
+        decode(encode(input, direct = direct)) should be(input)
+      }
+
+    "skip the entries that do not fit in the lookups" in {
+      val iris = LookupVocabulary.ofIris((0 until 100).map(i => s"https://a.org/$i").asJava)
+      val rows = encode(
+        triples(1),
+        _.withOptions(options.clone.setMaxNameTableSize(8)).withVocabulary(iris),
+      )
+      // Only as many IRIs as there are names in the lookup
+      rows.filter(_.hasName).map(_.getName.getValue) should be(
+        (0 until 8).map(_.toString) ++ Seq("m0", "type", "Measurement", "value"),
+      )
+      decode(rows) should be(triples(1))
+    }
+
+    "leave room in the prefix lookup for the prefixes of the IRIs" in {
+      val prefixes = LookupVocabulary(
+        (0 until 4).map(i => s"https://a.org/$i/").asJava,
+        vocabulary.iris,
+      )
+      val rows = encode(
+        triples(1),
+        _.withOptions(options.clone.setMaxPrefixTableSize(4)).withVocabulary(prefixes),
+      )
+      val preamble = rows.tail.takeWhile(r => r.hasPrefix || r.hasName)
+      // The 3 IRIs may each add a prefix, so only 1 prefix of the vocabulary fits
+      preamble.filter(_.hasPrefix).map(_.getPrefix.getValue) should be(
+        Seq(
+          "https://a.org/0/",
+          "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+          "https://test.org/sensor#",
+        ),
+      )
+      decode(rows) should be(triples(1))
+    }
+
+    "emit the vocabulary again in every self-contained frame" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, buffer)
+          .withSelfContainedFrames(true)
+          .withVocabulary(vocabulary),
+      )
+      val input = triples(4)
+      for (t, i) <- input.zipWithIndex do
+        encoder.handleTriple(t.s, t.p, t.o)
+        if i % 2 == 1 then encoder.newFrame()
+      val rows = buffer.getRows.asScala.toSeq
+      rows.count(_.hasOptions) should be(4)
+      val sensorPrefix = "https://test.org/sensor#"
+      rows.filter(_.hasPrefix).count(_.getPrefix.getValue == sensorPrefix) should be(4)
+      decode(rows) should be(input)
+    }
+  }
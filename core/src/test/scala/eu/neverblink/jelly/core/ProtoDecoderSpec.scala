@@ -1,5 +1,11 @@
 package eu.neverblink.jelly.core
 
+import com.google.protobuf.{
+  ByteString,
+  CodedInputStream,
+  CodedOutputStream,
+  InvalidProtocolBufferException,
+}
 import eu.neverblink.jelly.core.helpers.Assertions.*
 import eu.neverblink.jelly.core.helpers.Mrl.*
 import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
@@ -8,6 +14,8 @@ import eu.neverblink.jelly.core.proto.v1.*
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
+import java.io.ByteArrayOutputStream
+
 class ProtoDecoderSpec extends AnyWordSpec, Matchers:
   import ProtoTestCases.*
 
@@ -274,7 +282,7 @@ class ProtoDecoderSpec extends AnyWordSpec, Matchers:
     // The following cases are for the [[ProtoDecoder]] base class – but tested on the child.
     // The code is the same in quads, triples, or graphs decoders, so this is fine.
     // Code coverage checks out.
-    "ignore duplicate stream options" in {
+    "adopt the options of a concatenated stream" in {
       val collector = ProtoCollector()
 
       val decoder =
@@ -293,7 +301,65 @@ class ProtoDecoderSpec extends AnyWordSpec, Matchers:
       decoder.ingestRow(data.head)
       decoder.ingestRow(data(1))
       decoder.getStreamOptions should not be null
-      decoder.getStreamOptions.getRdfStar should be(false)
+      decoder.getStreamOptions.getRdfStar should be(true)
+    }
+
+    "decode concatenated streams, each with its own options and lookups" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      val opt = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+      (Triples1.encoded(opt) ++ Triples3LongStrings.encoded(opt) ++ Triples1.encoded(opt))
+        .foreach(row => decoder.ingestRow(row))
+
+      assertDecoded(collector.statements.toSeq, Triples1.mrl ++ Triples3LongStrings.mrl ++ Triples1.mrl)
+    }
+
+    "decode concatenated streams with larger lookups than the first one" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      val opt = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      val secondStream = wrapEncoded(
+        Seq(
+          opt.clone.setMaxNameTableSize(1000).setMaxPrefixTableSize(100),
+          rdfPrefixEntry(50, "https://test.org/"),
+          rdfNameEntry(500, "s"),
+          rdfNameEntry(0, "p"),
+          rdfTriple(rdfIri(50, 500), rdfIri(0, 0), rdfIri(0, 500)),
+        ),
+      )
+
+      (Triples1.encoded(opt) ++ secondStream).foreach(decoder.ingestRow)
+
+      assertDecoded(
+        collector.statements.toSeq,
+        Triples1.mrl :+ Triple(
+          Iri("https://test.org/s"),
+          Iri("https://test.org/p"),
+          Iri("https://test.org/s"),
+        ),
+      )
+      decoder.getStreamOptions.getMaxNameTableSize should be(1000)
+    }
+
+    "forget the graph of the previous stream in concatenated GRAPHS streams" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.graphsAsQuadsDecoder(collector, defaultOptions)
+      val opt = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.GRAPHS)
+      // The first stream ends without ending its graph
+      val rows = wrapEncoded(
+        Seq(opt, rdfGraphStart(rdfDefaultGraph()), opt, rdfTriple("s", "p", "o")),
+      )
+      rows.init.foreach(decoder.ingestRow)
+
+      val error = intercept[RdfProtoDeserializationError] {
+        decoder.ingestRow(rows.last)
+      }
+      error.getMessage should include("Triple in stream without preceding graph start")
     }
 
     "throw exception on unset term without preceding value" in {
@@ -760,6 +826,267 @@ class ProtoDecoderSpec extends AnyWordSpec, Matchers:
     }
   }
 
+  "literal cache" should {
+    val opts = JellyOptions.SMALL_GENERALIZED.clone
+      .setPhysicalType(PhysicalStreamType.TRIPLES)
+
+    "return the same node for a repeated literal" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      decoder.setLiteralCacheSize(1024)
+      wrapEncoded(
+        Seq(
+          opts,
+          rdfDatatypeEntry(0, "dt"),
+          rdfTriple("s", "p", rdfLiteral("true", 1)),
+          rdfTriple("s", "p", rdfLiteral("true", 1)),
+        ),
+      ).foreach(decoder.ingestRow)
+
+      val objects = collector.statements.map(_.asInstanceOf[Triple].o).toSeq
+      objects should be(Seq.fill(2)(DtLiteral("true", Datatype("dt"))))
+      objects(1) should be theSameInstanceAs objects(0)
+    }
+
+    "make a new node for every literal by default" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      wrapEncoded(
+        Seq(
+          opts,
+          rdfTriple("s", "p", rdfLiteral("a")),
+          rdfTriple("s", "p", rdfLiteral("a")),
+        ),
+      ).foreach(decoder.ingestRow)
+
+      val objects = collector.statements.map(_.asInstanceOf[Triple].o).toSeq
+      objects should be(Seq.fill(2)(SimpleLiteral("a")))
+      objects(1) should not be theSameInstanceAs(objects(0))
+    }
+
+    "tell apart literals with the same lexical form" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      decoder.setLiteralCacheSize(1)
+      wrapEncoded(
+        Seq(
+          opts,
+          rdfDatatypeEntry(0, "dt1"),
+          rdfDatatypeEntry(0, "dt2"),
+          rdfTriple("s", "p", rdfLiteral("a")),
+          rdfTriple("s", "p", rdfLiteral("a", "en")),
+          rdfTriple("s", "p", rdfLiteral("a", "de")),
+          rdfTriple("s", "p", rdfLiteral("a", 1)),
+          rdfTriple("s", "p", rdfLiteral("a", 2)),
+          rdfTriple("s", "p", rdfLiteral("a")),
+        ),
+      ).foreach(decoder.ingestRow)
+
+      collector.statements.map(_.asInstanceOf[Triple].o).toSeq should be(
+        Seq(
+          SimpleLiteral("a"),
+          LangLiteral("a", "en"),
+          LangLiteral("a", "de"),
+          DtLiteral("a", Datatype("dt1")),
+          DtLiteral("a", Datatype("dt2")),
+          SimpleLiteral("a"),
+        ),
+      )
+    }
+
+    "not return a literal with a datatype that was replaced in the lookup" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+      decoder.setLiteralCacheSize(1024)
+      wrapEncoded(
+        Seq(
+          opts,
+          rdfDatatypeEntry(0, "dt1"),
+          rdfTriple("s", "p", rdfLiteral("1", 1)),
+          rdfDatatypeEntry(1, "dt2"),
+          rdfTriple("s", "p", rdfLiteral("1", 1)),
+        ),
+      ).foreach(decoder.ingestRow)
+
+      collector.statements.map(_.asInstanceOf[Triple].o).toSeq should be(
+        Seq(DtLiteral("1", Datatype("dt1")), DtLiteral("1", Datatype("dt2"))),
+      )
+    }
+
+    "pass the setting on to the inner decoder of an AnyStatementDecoder" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.anyStatementDecoder(collector, defaultOptions)
+      decoder.setLiteralCacheSize(1024)
+      wrapEncoded(
+        Seq(
+          opts,
+          rdfTriple("s", "p", rdfLiteral("a")),
+          rdfTriple("s", "p", rdfLiteral("a")),
+        ),
+      ).foreach(decoder.ingestRow)
+
+      val objects = collector.statements.map(_.asInstanceOf[Triple].o).toSeq
+      objects(1) should be theSameInstanceAs objects(0)
+    }
+
+    "not allow a negative size" in {
+      val decoder = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+      intercept[IllegalArgumentException] {
+        decoder.setLiteralCacheSize(-1)
+      }
+    }
+  }
+
+  "ingestFrame" should {
+    type DecoderFactory = ProtoCollector => ProtoDecoder[?, ?]
+    val cases: Seq[(String, TestCase[?], PhysicalStreamType, DecoderFactory)] =
+      Seq(
+        (
+          "triples",
+          Triples1,
+          PhysicalStreamType.TRIPLES,
+          MockConverterFactory.triplesDecoder(_, defaultOptions),
+        ),
+        (
+          "triples with namespace declarations",
+          Triples2NsDecl,
+          PhysicalStreamType.TRIPLES,
+          MockConverterFactory.triplesDecoder(_, defaultOptions),
+        ),
+        (
+          "quads",
+          Quads1,
+          PhysicalStreamType.QUADS,
+          MockConverterFactory.quadsDecoder(_, defaultOptions),
+        ),
+        (
+          "quads with a repeated default graph",
+          Quads2RepeatDefault,
+          PhysicalStreamType.QUADS,
+          MockConverterFactory.quadsDecoder(_, defaultOptions),
+        ),
+        (
+          "graphs",
+          Graphs1,
+          PhysicalStreamType.GRAPHS,
+          MockConverterFactory.graphsDecoder(_, defaultOptions),
+        ),
+        (
+          "graphs as quads",
+          Graphs1,
+          PhysicalStreamType.GRAPHS,
+          MockConverterFactory.graphsAsQuadsDecoder(_, defaultOptions),
+        ),
+        (
+          "any statements",
+          Quads1,
+          PhysicalStreamType.QUADS,
+          MockConverterFactory.anyStatementDecoder(_, defaultOptions),
+        ),
+      )
+
+    def ingestFrames(decoder: ProtoDecoder[?, ?], frames: Seq[RdfStreamFrame]): Unit =
+      frames.foreach(frame => decoder.ingestFrame(CodedInputStream.newInstance(frame.toByteArray)))
+
+    for (name, testCase, streamType, makeDecoder) <- cases do
+      s"decode $name like ingestRow" in {
+        val opts = JellyOptions.SMALL_GENERALIZED.clone
+          .setPhysicalType(streamType)
+          .setVersion(JellyConstants.PROTO_VERSION)
+        val frames = testCase.encodedFull(opts, 4, Map("key" -> ByteString.copyFromUtf8("value")))
+
+        val expected = ProtoCollector()
+        val expectedStats = StreamStats()
+        val rowDecoder = makeDecoder(expected)
+        rowDecoder.setStats(expectedStats)
+        frames.foreach(_.getRows.forEach(rowDecoder.ingestRow(_)))
+
+        val observed = ProtoCollector()
+        val observedStats = StreamStats()
+        val frameDecoder = makeDecoder(observed)
+        frameDecoder.setStats(observedStats)
+        ingestFrames(frameDecoder, frames)
+
+        observed.statements should not be empty
+        observed.statements.toSeq should be(expected.statements.toSeq)
+        observed.namespaces.toSeq should be(expected.namespaces.toSeq)
+        observedStats.toString should be(expectedStats.toString)
+      }
+
+    "throw exception on unset row kind" in {
+      val decoder = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+      val error = intercept[RdfProtoDeserializationError] {
+        ingestFrames(decoder, Seq(rdfStreamFrame(Seq(rdfStreamRow()))))
+      }
+      error.getMessage should include("Row kind is not set")
+    }
+
+    "throw exception on a triple before a graph start" in {
+      val decoder = MockConverterFactory.graphsAsQuadsDecoder(ProtoCollector(), defaultOptions)
+      val rows = wrapEncoded(
+        Seq(
+          JellyOptions.SMALL_GENERALIZED.clone
+            .setPhysicalType(PhysicalStreamType.GRAPHS),
+          rdfTriple("1", "2", "3"),
+        ),
+      )
+      val error = intercept[RdfProtoDeserializationError] {
+        ingestFrames(decoder, Seq(rdfStreamFrame(rows)))
+      }
+      error.getMessage should include("Triple in stream without preceding graph start")
+    }
+
+    "throw exception on a row without preceding options in an AnyStatementDecoder" in {
+      val decoder = MockConverterFactory.anyStatementDecoder(ProtoCollector(), defaultOptions)
+      val error = intercept[RdfProtoDeserializationError] {
+        ingestFrames(decoder, Seq(rdfStreamFrame(wrapEncoded(Seq(rdfTriple("1", "2", "3"))))))
+      }
+      error.getMessage should include("Stream options are not set")
+    }
+
+    "ingest only the last field of a row with several, like ingestRow" in {
+      def bytes(write: CodedOutputStream => Unit): Array[Byte] =
+        val out = ByteArrayOutputStream()
+        val coded = CodedOutputStream.newInstance(out)
+        write(coded)
+        coded.flush()
+        out.toByteArray
+      val unknownField = bytes(_.writeUInt32(99, 7))
+      val rows = Seq(
+        rdfStreamRow(
+          JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+        ).toByteArray,
+        rdfStreamRow(rdfPrefixEntry(0, "https://a/")).toByteArray,
+        // Two fields in one row: only the second one counts
+        rdfStreamRow(rdfNameEntry(0, "wrong")).toByteArray ++
+          rdfStreamRow(rdfNameEntry(0, "s")).toByteArray,
+        // A field followed by an unknown field
+        rdfStreamRow(rdfNameEntry(0, "p")).toByteArray ++ unknownField,
+        rdfStreamRow(rdfTriple(rdfIri(1, 1), rdfIri(0, 2), rdfIri(0, 1))).toByteArray,
+      )
+      val frame = bytes(coded => rows.foreach(coded.writeByteArray(1, _)))
+      val expected = Seq(Triple(Iri("https://a/s"), Iri("https://a/p"), Iri("https://a/s")))
+
+      val fromRows = ProtoCollector()
+      val rowDecoder = MockConverterFactory.triplesDecoder(fromRows, defaultOptions)
+      RdfStreamFrame.parseFrom(frame).getRows.forEach(rowDecoder.ingestRow(_))
+      fromRows.statements.toSeq should be(expected)
+
+      val fromBytes = ProtoCollector()
+      val frameDecoder = MockConverterFactory.triplesDecoder(fromBytes, defaultOptions)
+      frameDecoder.ingestFrame(CodedInputStream.newInstance(frame))
+      fromBytes.statements.toSeq should be(expected)
+    }
+
+    "throw exception on a truncated frame" in {
+      val decoder = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+      val bytes = rdfStreamFrame(Seq(rdfStreamRow(rdfNameEntry(0, "name name name")))).toByteArray
+      an[InvalidProtocolBufferException] should be thrownBy {
+        decoder.ingestFrame(CodedInputStream.newInstance(bytes.dropRight(3)))
+      }
+    }
+  }
+
   private val streamTypeCases = Seq(
     (
       (o: Option[RdfStreamOptions]) =>
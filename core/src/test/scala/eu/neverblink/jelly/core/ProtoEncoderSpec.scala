@@ -3,7 +3,8 @@ package eu.neverblink.jelly.core
 import eu.neverblink.jelly.core.helpers.*
 import eu.neverblink.jelly.core.helpers.Assertions.*
 import eu.neverblink.jelly.core.helpers.Mrl.*
-import eu.neverblink.jelly.core.memory.{EncoderAllocator, RowBuffer}
+import eu.neverblink.jelly.core.internal.ProtoEncoderImpl
+import eu.neverblink.jelly.core.memory.{EncoderAllocator, RowBuffer, SerializedFrameBuffer}
 import eu.neverblink.jelly.core.proto.v1.*
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
@@ -222,4 +223,294 @@ class ProtoEncoderSpec extends AnyWordSpec, Matchers:
 
       error.getMessage should include("Namespace declarations are not enabled in this stream")
     }
+
+    "encode self-contained frames that can be decoded independently" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+      val encoder = MockConverterFactory.encoder(
+        Pep.of(options, false, buffer).withSelfContainedFrames(true),
+      )
+
+      // One frame per statement
+      val frames = Triples1.mrl.map { triple =>
+        encoder.handleTriple(triple.s, triple.p, triple.o)
+        val rows = buffer.getRows.asScala.toSeq
+        buffer.clear()
+        encoder.newFrame()
+        rows
+      }
+
+      for (frame, triple) <- frames.zip(Triples1.mrl) do
+        frame.head.hasOptions should be(true)
+        val collector = ProtoCollector()
+        val decoder = MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+        frame.foreach(decoder.ingestRow)
+        assertDecoded(collector.statements.toSeq, Seq(triple))
+
+      // The frames also decode as one stream
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      frames.flatten.foreach(decoder.ingestRow)
+      assertDecoded(collector.statements.toSeq, Triples1.mrl)
+    }
+
+    "ignore frame boundaries if self-contained frames are disabled" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setVersion(JellyConstants.PROTO_VERSION_1_0_X)
+      val encoder = MockConverterFactory.encoder(Pep.of(options, false, buffer))
+
+      Triples1.mrl.foreach { triple =>
+        encoder.handleTriple(triple.s, triple.p, triple.o)
+        encoder.newFrame()
+      }
+
+      assertEncoded(buffer.getRows.asScala.toSeq, Triples1.encoded(options))
+    }
+
+    "replace blank node labels with short labels consistently in the stream" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      val encoder = MockConverterFactory.encoder(
+        Pep.of(options, false, buffer).withSelfContainedFrames(true).withBlankNodeTableSize(3),
+      )
+      val labels = (0 until 5).map(i => s"f3a1c2e0-0000-4000-8000-00000000000$i")
+      // The labels come back in later frames, also after the table is full
+      for i <- 0 until 10 do
+        encoder.handleTriple(
+          BlankNode(labels(i % 5)),
+          Iri("https://test.org/p"),
+          BlankNode(labels((i + 1) % 5)),
+        )
+        encoder.newFrame()
+
+      val triples = buffer.getRows.asScala.filter(_.hasTriple).map(_.getTriple).toSeq
+      triples.head.getSubject should be("b0")
+      triples.head.getObject should be("b1")
+      triples(2).getObject should be("_" + labels(3))
+      val mapped = triples.flatMap(t => Seq(t.getSubject, t.getObject)).collect {
+        case label: String => label
+      }
+      mapped.toSet should be(Set("b0", "b1", "b2") ++ labels.drop(3).map("_" + _))
+
+      val collector = ProtoCollector()
+      val decoder =
+        MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      buffer.getRows.asScala.foreach(decoder.ingestRow)
+      val decoded = collector.statements.toSeq.map(_.asInstanceOf[Triple])
+      // Blank nodes are the same as in the input, up to renaming
+      val renaming = decoded.zip(0 until 10).flatMap { (t, i) =>
+        Seq(labels(i % 5) -> t.s, labels((i + 1) % 5) -> t.o)
+      }
+      renaming.groupMap(_._1)(_._2).values.foreach(_.distinct.size should be(1))
+      renaming.map(_._2).distinct.size should be(5)
+    }
+
+    "not allow a negative blank node table size" in {
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      intercept[IllegalArgumentException] {
+        MockConverterFactory.encoder(
+          Pep.of(options, false, RowBuffer.newLazyImmutable()).withBlankNodeTableSize(-1),
+        )
+      }
+    }
+
+    "report the serialized size of the current frame" in {
+      val options = JellyOptions.SMALL_STRICT.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      val buffer = RowBuffer.newLazyImmutable()
+      val frameBuffer = SerializedFrameBuffer()
+      val regular = MockConverterFactory.encoder(Pep.of(options, false, buffer))
+      val direct =
+        MockConverterFactory.directEncoder(Pep.of(options, false, null, null), frameBuffer)
+      for encoder <- Seq(regular, direct) do
+        encoder.getFrameBytes should be(0)
+        Triples1.mrl.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      val frame = RdfStreamFrame.newInstance()
+      frame.getRows.addAll(buffer.getRows)
+      regular.getFrameBytes should be(frame.getSerializedSize)
+      direct.getFrameBytes should be(frame.getSerializedSize)
+
+      buffer.clear()
+      frameBuffer.clear()
+      for encoder <- Seq(regular, direct) do
+        encoder.newFrame()
+        encoder.getFrameBytes should be(0)
+    }
+
+    "encode batches of triples the same as single triples" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setVersion(JellyConstants.PROTO_VERSION_1_0_X)
+      val encoder = MockConverterFactory.encoder(Pep.of(options, false, buffer))
+
+      // Batches of 2, so that the repeated terms span the batch boundaries
+      for batch <- Triples1.mrl.grouped(2) do
+        encoder.handleTriples(
+          batch.map(_.s).toArray,
+          batch.map(_.p).toArray,
+          batch.map(_.o).toArray,
+          batch.size,
+        )
+
+      val observed = buffer.getRows.asScala.toSeq
+      assertEncoded(observed, Triples1.encoded(options))
+      assertSizesPrecomputed(observed)
+    }
+
+    "encode batches of quads the same as single quads" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_GENERALIZED.clone
+        .setPhysicalType(PhysicalStreamType.QUADS)
+        .setVersion(JellyConstants.PROTO_VERSION_1_0_X)
+      val encoder = MockConverterFactory.encoder(Pep.of(options, false, buffer))
+
+      // Arrays longer than the batch, only the first count elements are encoded
+      val quads = Quads2RepeatDefault.mrl
+      val padding = Iri("https://test.org/unused")
+      encoder.handleQuads(
+        (quads.map(_.s) :+ padding).toArray,
+        (quads.map(_.p) :+ padding).toArray,
+        (quads.map(_.o) :+ padding).toArray,
+        (quads.map(_.g) :+ padding).toArray,
+        quads.size,
+      )
+
+      assertEncoded(buffer.getRows.asScala.toSeq, Quads2RepeatDefault.encoded(options))
+    }
+
+    "elide runs of the same term object in a batch" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val options = JellyOptions.SMALL_STRICT.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      val stats = StreamStats()
+      val encoder = MockConverterFactory.encoder(Pep.of(options, false, buffer).withStats(stats))
+      val s = Iri("https://test.org/s")
+      val p = Iri("https://test.org/p")
+
+      encoder.handleTriples(
+        Array(s, s, s),
+        Array(p, p, p),
+        Array(SimpleLiteral("1"), SimpleLiteral("2"), SimpleLiteral("3")),
+        3,
+      )
+
+      stats.getRepeatedTerms should be(4)
+      val triples = buffer.getRows.asScala.filter(_.hasTriple).map(_.getTriple).toSeq
+      triples.size should be(3)
+      triples.tail.foreach { t =>
+        t.getSubject should be(null)
+        t.getPredicate should be(null)
+      }
+    }
+
+    "encode repeated quoted triples the same with and without the cache" in {
+      // Small lookups, so that the cached quoted triples are invalidated by evictions
+      val options = JellyOptions.SMALL_ALL_FEATURES.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setMaxNameTableSize(8)
+        .setMaxPrefixTableSize(4)
+        .setMaxDatatypeTableSize(4)
+      val triples = (0 until 300).map { i =>
+        val quoted = TripleNode(
+          Iri(s"https://test.org/s/${i % 7}"),
+          Iri("https://test.org/p"),
+          Iri(s"https://test.org/o/${i % 5}"),
+        )
+        val annotated =
+          if i % 3 == 0 then
+            TripleNode(
+              quoted,
+              Iri("https://test.org/source"),
+              DtLiteral(s"${i % 4}", Datatype(s"dt${i % 6}")),
+            )
+          else quoted
+        Triple(annotated, Iri(s"https://test.org/ann/${i % 11}"), SimpleLiteral(s"v$i"))
+      }
+
+      // Calls makeQuotedTriple without the key, so nothing is cached
+      val uncachedConverter = new MockProtoEncoderConverter:
+        override def nodeToProto(encoder: NodeEncoder[Node], node: Node): Object = node match
+          case TripleNode(s, p, o) => encoder.makeQuotedTriple(s, p, o)
+          case _ => super.nodeToProto(encoder, node)
+
+      def encode(converter: MockProtoEncoderConverter): Seq[RdfStreamRow] =
+        val buffer = RowBuffer.newLazyImmutable()
+        val encoder = ProtoEncoderImpl(converter, Pep.of(options, false, buffer))
+        triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+        buffer.getRows.asScala.toSeq
+
+      val cached = encode(MockProtoEncoderConverter())
+      val uncached = encode(uncachedConverter)
+      cached.size should be(uncached.size)
+      assertEncoded(cached, uncached)
+
+      val collector = ProtoCollector()
+      val decoder =
+        MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      cached.foreach(decoder.ingestRow)
+      assertDecoded(collector.statements.toSeq, triples)
+    }
+
+    "not encode the terms of a repeated quoted triple again" in {
+      var calls = 0
+      val countingConverter = new MockProtoEncoderConverter:
+        override def nodeToProto(encoder: NodeEncoder[Node], node: Node): Object =
+          calls += 1
+          super.nodeToProto(encoder, node)
+
+      val options = JellyOptions.SMALL_ALL_FEATURES.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+      val encoder =
+        ProtoEncoderImpl(countingConverter, Pep.of(options, false, RowBuffer.newLazyImmutable()))
+      val quoted = TripleNode(
+        Iri("https://test.org/s"),
+        Iri("https://test.org/p"),
+        TripleNode(Iri("https://test.org/s2"), Iri("https://test.org/p"), SimpleLiteral("o")),
+      )
+      encoder.handleTriple(quoted, Iri("https://test.org/a"), SimpleLiteral("1"))
+      // The quoted triple, its 3 terms, and the 3 terms of the nested one, then the rest
+      calls should be(9)
+      encoder.handleTriple(quoted, Iri("https://test.org/b"), SimpleLiteral("2"))
+      // Subject elided, only the predicate and the object
+      calls should be(11)
+      encoder.handleTriple(Iri("https://test.org/x"), Iri("https://test.org/a"), quoted)
+      // One call for each term, the quoted triple comes from the cache
+      calls should be(14)
+    }
+  }
+
+  "ProtoEncoder.Params" should {
+    "change only the given field in each with method" in {
+      val options = JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES)
+      val buffer = RowBuffer.newLazyImmutable()
+      val allocator = EncoderAllocator.newHeapAllocator()
+      val stats = StreamStats()
+      val params = Pep.of(JellyOptions.SMALL_GENERALIZED, false, RowBuffer.newLazyImmutable())
+        .withOptions(options)
+        .withEnableNamespaceDeclarations(true)
+        .withRowBuffer(buffer)
+        .withAllocator(allocator)
+        .withSelfContainedFrames(true)
+        .withStats(stats)
+        .withIriSplitter(IriSplitter.COLON)
+        .withBlankNodeTableSize(16)
+      params should be(
+        Pep(options, true, buffer, allocator, true, null, null, stats, IriSplitter.COLON, 16, null),
+      )
+    }
+
+    "keep the defaults of the added fields in the compatibility constructor" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val allocator = EncoderAllocator.newHeapAllocator()
+      Pep(JellyOptions.SMALL_STRICT, true, buffer, allocator) should be(
+        Pep(JellyOptions.SMALL_STRICT, true, buffer, allocator, false, null, null, null, null, 0, null),
+      )
+    }
   }
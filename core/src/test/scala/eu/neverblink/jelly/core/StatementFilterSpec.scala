@@ -0,0 +1,373 @@
+package eu.neverblink.jelly.core
+
+import com.google.protobuf.CodedInputStream
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.helpers.RdfAdapter.*
+import eu.neverblink.jelly.core.helpers.{
+  MockConverterFactory,
+  MockProtoDecoderConverter,
+  ProtoCollector,
+}
+import eu.neverblink.jelly.core.internal.ProtoDecoderImpl
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class StatementFilterSpec extends AnyWordSpec, Matchers:
+  import ProtoTestCases.*
+
+  private val defaultOptions = JellyOptions.DEFAULT_SUPPORTED_OPTIONS
+  private val predicate = "https://test.org/test/predicate"
+  private val graph = "https://test.org/ns3/graph"
+
+  private val filters = Seq(
+    ("allowed predicates", StatementFilter.ALL.withAllowedPredicates(Seq(predicate).asJava)),
+    ("denied predicates", StatementFilter.ALL.withDeniedPredicates(Seq(predicate).asJava)),
+    ("allowed graphs", StatementFilter.ALL.withAllowedGraphs(Seq(graph).asJava)),
+    ("denied graphs", StatementFilter.ALL.withDeniedGraphs(Seq(graph).asJava)),
+  )
+
+  private def iriOf(node: Node): String = node match
+    case Iri(iri) => iri
+    case _ => null
+
+  private def accepts(filter: StatementFilter, statement: Statement): Boolean = statement match
+    case Triple(_, p, _) => filter.acceptsPredicate(iriOf(p))
+    case Quad(_, p, _, g) => filter.acceptsPredicate(iriOf(p)) && filter.acceptsGraph(iriOf(g))
+    case Graph(g, _) => filter.acceptsGraph(iriOf(g))
+
+  private def ingest(decoder: ProtoDecoder[?, ?], rows: Seq[RdfStreamRow], fromBytes: Boolean) =
+    if fromBytes then
+      val bytes = rdfStreamFrame(rows).toByteArray
+      decoder.ingestFrame(CodedInputStream.newInstance(bytes))
+    else rows.foreach(decoder.ingestRow)
+
+  private def streamOptions(streamType: PhysicalStreamType) =
+    JellyOptions.SMALL_GENERALIZED.clone
+      .setPhysicalType(streamType)
+      .setVersion(JellyConstants.PROTO_VERSION)
+
+  "StatementFilter" should {
+    "accept all statements by default" in {
+      StatementFilter.ALL.acceptsPredicate(predicate) should be(true)
+      StatementFilter.ALL.acceptsPredicate(null) should be(true)
+      StatementFilter.ALL.acceptsGraph(graph) should be(true)
+      StatementFilter.ALL.acceptsGraph(null) should be(true)
+    }
+
+    "accept only the allowed IRIs that are not denied" in {
+      val filter = StatementFilter.ALL
+        .withAllowedPredicates(Seq("a", "b").asJava)
+        .withDeniedPredicates(Seq("b").asJava)
+      filter.acceptsPredicate("a") should be(true)
+      filter.acceptsPredicate("b") should be(false)
+      filter.acceptsPredicate("c") should be(false)
+      // Terms that are not IRIs are not in the allowed set
+      filter.acceptsPredicate(null) should be(false)
+      // The graphs are not filtered
+      filter.acceptsGraph("b") should be(true)
+    }
+
+    "accept terms that are not IRIs if only denied IRIs are given" in {
+      val filter = StatementFilter.ALL.withDeniedGraphs(Seq("g").asJava)
+      filter.acceptsGraph("g") should be(false)
+      filter.acceptsGraph("h") should be(true)
+      filter.acceptsGraph(null) should be(true)
+    }
+  }
+
+  "ProtoDecoder with a filter" when {
+    for (name, filter) <- filters; fromBytes <- Seq(false, true) do
+      val source = if fromBytes then "the wire format" else "row messages"
+      s"filtering with $name, from $source" should {
+        "decode the same triples as filtering them after decoding" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+          decoder.setFilter(filter)
+          ingest(decoder, Triples1.encoded(streamOptions(PhysicalStreamType.TRIPLES)), fromBytes)
+          collector.statements.toSeq should be(Triples1.mrl.filter(accepts(filter, _)))
+        }
+
+        "decode the same quads as filtering them after decoding" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.quadsDecoder(collector, defaultOptions)
+          decoder.setFilter(filter)
+          ingest(decoder, Quads1.encoded(streamOptions(PhysicalStreamType.QUADS)), fromBytes)
+          collector.statements.toSeq should be(Quads1.mrl.filter(accepts(filter, _)))
+        }
+
+        "decode the same graphs as quads as filtering them after decoding" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.anyStatementDecoder(collector, defaultOptions)
+          decoder.setFilter(filter)
+          ingest(decoder, Graphs1.encoded(streamOptions(PhysicalStreamType.GRAPHS)), fromBytes)
+          collector.statements.toSeq should be(Graphs1.mrlQuads.filter(accepts(filter, _)))
+        }
+
+        "decode the same graphs as filtering them after decoding" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.graphsDecoder(collector, defaultOptions)
+          decoder.setFilter(filter)
+          ingest(decoder, Graphs1.encoded(streamOptions(PhysicalStreamType.GRAPHS)), fromBytes)
+          val expected = Graphs1.mrl
+            .map((g, triples) => Graph(g, triples.filter(accepts(filter, _)).toSeq))
+            .filter(g => accepts(filter, g) && g.triples.nonEmpty)
+          collector.statements.toSeq should be(expected)
+        }
+      }
+
+    val rows = wrapEncoded(
+      Seq(
+        JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+        rdfPrefixEntry(0, "https://a/"),
+        rdfNameEntry(0, "s"),
+        rdfNameEntry(0, "p"),
+        rdfNameEntry(0, "q"),
+        // Rejected
+        rdfTriple(rdfIri(1, 1), rdfIri(0, 2), rdfIri(0, 1)),
+        // The name of the pending subject and object changes
+        rdfNameEntry(1, "s2"),
+        rdfTriple(null, rdfIri(0, 3), null),
+        // Rejected, and so is the next one with the repeated predicate
+        rdfTriple(rdfIri(0, 1), rdfIri(0, 2), null),
+        rdfTriple(null, null, rdfIri(0, 3)),
+        rdfTriple(null, rdfIri(0, 3), null),
+      ),
+    )
+    val filter = StatementFilter.ALL.withDeniedPredicates(Seq("https://a/p").asJava)
+
+    "repeating the terms of rejected statements" should {
+      for fromBytes <- Seq(false, true) do
+        val source = if fromBytes then "the wire format" else "row messages"
+        s"decode them as they were in the rejected statement, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+          decoder.setFilter(filter)
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(
+              Triple(Iri("https://a/s"), Iri("https://a/q"), Iri("https://a/s")),
+              Triple(Iri("https://a/s2"), Iri("https://a/q"), Iri("https://a/q")),
+            ),
+          )
+        }
+
+      "count the repeated terms in the stats" in {
+        val stats = StreamStats()
+        val unfilteredStats = StreamStats()
+        val decoder = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+        decoder.setFilter(filter)
+        decoder.setStats(stats)
+        rows.foreach(decoder.ingestRow)
+        val unfiltered = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+        unfiltered.setStats(unfilteredStats)
+        rows.foreach(unfiltered.ingestRow)
+        stats.getRepeatedTerms should be(unfilteredStats.getRepeatedTerms)
+      }
+    }
+
+    "rejecting statements followed by changes to the lookups" should {
+      val deniedP = StatementFilter.ALL.withDeniedPredicates(Seq("https://a/p").asJava)
+
+      for fromBytes <- Seq(false, true) do
+        val source = if fromBytes then "the wire format" else "row messages"
+        s"decode the repeated IRIs with the old entries, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+          decoder.setFilter(deniedP)
+          val rows = wrapEncoded(
+            Seq(
+              JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+              rdfPrefixEntry(0, "https://a/"),
+              rdfNameEntry(0, "s"),
+              rdfNameEntry(0, "p"),
+              rdfNameEntry(0, "q"),
+              // Rejected, the subject and object are pending
+              rdfTriple(rdfIri(1, 1), rdfIri(0, 2), rdfIri(0, 1)),
+              // Both entries of the pending IRIs are replaced
+              rdfPrefixEntry(1, "https://b/"),
+              rdfNameEntry(1, "t"),
+              // The subject is repeated, the new IRIs use the new entries
+              rdfTriple(null, rdfIri(0, 3), rdfIri(0, 1)),
+            ),
+          )
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(Triple(Iri("https://a/s"), Iri("https://b/q"), Iri("https://b/t"))),
+          )
+        }
+
+        s"decode the repeated literals with the old datatype, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.triplesDecoder(collector, defaultOptions)
+          decoder.setFilter(deniedP)
+          val rows = wrapEncoded(
+            Seq(
+              JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+              rdfPrefixEntry(0, "https://a/"),
+              rdfNameEntry(0, "s"),
+              rdfNameEntry(0, "p"),
+              rdfNameEntry(0, "q"),
+              rdfDatatypeEntry(0, "dt1"),
+              // Rejected, the object is pending
+              rdfTriple(rdfIri(1, 1), rdfIri(0, 2), rdfLiteral("1", 1)),
+              rdfDatatypeEntry(1, "dt2"),
+              rdfTriple(null, rdfIri(0, 3), null),
+              rdfTriple(null, null, rdfLiteral("2", 1)),
+            ),
+          )
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(
+              Triple(Iri("https://a/s"), Iri("https://a/q"), DtLiteral("1", Datatype("dt1"))),
+              Triple(Iri("https://a/s"), Iri("https://a/q"), DtLiteral("2", Datatype("dt2"))),
+            ),
+          )
+        }
+
+        s"decode a graph repeated from a rejected quad, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.quadsDecoder(collector, defaultOptions)
+          decoder.setFilter(deniedP)
+          val rows = wrapEncoded(
+            Seq(
+              JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.QUADS),
+              rdfPrefixEntry(0, "https://a/"),
+              rdfNameEntry(0, "s"),
+              rdfNameEntry(0, "p"),
+              rdfNameEntry(0, "q"),
+              rdfNameEntry(0, "g"),
+              // Rejected, all terms but the predicate are pending
+              rdfQuad(rdfIri(1, 1), rdfIri(0, 2), rdfIri(0, 1), rdfIri(0, 4)),
+              rdfNameEntry(4, "h"),
+              rdfQuad(null, rdfIri(0, 3), null, null),
+              rdfQuad(null, null, null, rdfIri(0, 4)),
+            ),
+          )
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(
+              Quad(Iri("https://a/s"), Iri("https://a/q"), Iri("https://a/s"), Iri("https://a/g")),
+              Quad(Iri("https://a/s"), Iri("https://a/q"), Iri("https://a/s"), Iri("https://a/h")),
+            ),
+          )
+        }
+    }
+
+    "rejecting a whole graph" should {
+      val deniedG = StatementFilter.ALL.withDeniedGraphs(Seq("https://a/g").asJava)
+      val rows = wrapEncoded(
+        Seq(
+          JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.GRAPHS),
+          rdfPrefixEntry(0, "https://a/"),
+          rdfNameEntry(0, "s"),
+          rdfNameEntry(0, "p"),
+          rdfNameEntry(0, "g"),
+          rdfNameEntry(0, "h"),
+          rdfGraphStart(rdfIri(1, 3)),
+          rdfTriple(rdfIri(0, 1), rdfIri(0, 2), rdfIri(0, 1)),
+          rdfGraphEnd(),
+          rdfNameEntry(1, "t"),
+          // Repeats all terms of the triple in the rejected graph
+          rdfGraphStart(rdfIri(0, 4)),
+          rdfTriple(null, null, null),
+          rdfTriple(rdfIri(0, 1), null, null),
+          rdfGraphEnd(),
+          // Rejected again, with an empty graph
+          rdfGraphStart(rdfIri(0, 3)),
+          rdfGraphEnd(),
+        ),
+      )
+
+      for fromBytes <- Seq(false, true) do
+        val source = if fromBytes then "the wire format" else "row messages"
+        s"decode the terms repeated in the next graph as quads, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.graphsAsQuadsDecoder(collector, defaultOptions)
+          decoder.setFilter(deniedG)
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(
+              Quad(Iri("https://a/s"), Iri("https://a/p"), Iri("https://a/s"), Iri("https://a/h")),
+              Quad(Iri("https://a/t"), Iri("https://a/p"), Iri("https://a/s"), Iri("https://a/h")),
+            ),
+          )
+        }
+
+        s"decode the terms repeated in the next graph as graphs, from $source" in {
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.graphsDecoder(collector, defaultOptions)
+          decoder.setFilter(deniedG)
+          ingest(decoder, rows, fromBytes)
+          collector.statements.toSeq should be(
+            Seq(
+              Graph(
+                Iri("https://a/h"),
+                Seq(
+                  Triple(Iri("https://a/s"), Iri("https://a/p"), Iri("https://a/s")),
+                  Triple(Iri("https://a/t"), Iri("https://a/p"), Iri("https://a/s")),
+                ),
+              ),
+            ),
+          )
+        }
+    }
+
+    "not make the IRIs of rejected statements" in {
+      var iris = 0
+      val converter = new MockProtoDecoderConverter:
+        override def makeIriNode(iri: String): Node =
+          iris += 1
+          super.makeIriNode(iri)
+      val collector = ProtoCollector()
+      val decoder = ProtoDecoderImpl.TriplesDecoder(converter, collector, defaultOptions)
+      decoder.setFilter(StatementFilter.ALL.withAllowedPredicates(Seq("https://a/q").asJava))
+      wrapEncoded(
+        Seq(
+          JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES),
+          rdfPrefixEntry(0, "https://a/"),
+          rdfNameEntry(0, "s"),
+          rdfNameEntry(0, "p"),
+          rdfNameEntry(0, "o"),
+          rdfTriple(rdfIri(1, 1), rdfIri(0, 2), rdfIri(0, 3)),
+          rdfTriple(rdfIri(0, 3), rdfIri(0, 2), rdfIri(0, 1)),
+          rdfTriple(null, null, rdfIri(0, 3)),
+        ),
+      ).foreach(decoder.ingestRow)
+      collector.statements should be(empty)
+      iris should be(0)
+    }
+
+    "throw exception when set after the stream options" in {
+      val decoder = MockConverterFactory.triplesDecoder(ProtoCollector(), defaultOptions)
+      decoder.ingestRow(rdfStreamRow(streamOptions(PhysicalStreamType.TRIPLES)))
+      intercept[IllegalStateException] {
+        decoder.setFilter(filter)
+      }
+    }
+
+    "throw exception for converters that do not decode IRIs from strings, without a name decoder" in {
+      var nameDecoders = 0
+      val converter = new MockProtoDecoderConverter:
+        override def makeNameDecoder(prefixTableSize: Int, nameTableSize: Int): NameDecoder[Node] =
+          nameDecoders += 1
+          super.makeNameDecoder(prefixTableSize, nameTableSize)
+        override def decodesIrisFromStrings(): Boolean = false
+      val decoder = ProtoDecoderImpl.TriplesDecoder(converter, ProtoCollector(), defaultOptions)
+      intercept[UnsupportedOperationException] {
+        decoder.setFilter(filter)
+      }
+      nameDecoders should be(0)
+    }
+
+    "throw exception for decoders that do not decode IRIs from the lookups" in {
+      val decoder = IdDecoders.triplesDecoder((_, _, _) => (), defaultOptions)
+      intercept[UnsupportedOperationException] {
+        decoder.setFilter(filter)
+      }
+      // Removing the filter is fine
+      decoder.setFilter(null)
+    }
+  }
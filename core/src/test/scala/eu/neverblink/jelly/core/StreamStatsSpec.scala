@@ -0,0 +1,174 @@
+package eu.neverblink.jelly.core
+
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class StreamStatsSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  /** Two triples per subject, objects never repeated in consecutive triples. */
+  private val triples = (0 until 10).map(i =>
+    Triple(
+      Iri(s"https://test.org/s/${i / 2}"),
+      Iri("https://test.org/p"),
+      SimpleLiteral(s"v${i % 3}"),
+    ),
+  )
+
+  /** Encodes the triples in one frame, returning the serialized frame. */
+  private def encode(
+      input: Seq[Triple],
+      stats: StreamStats,
+      direct: Boolean = false,
+      opt: RdfStreamOptions = options,
+  ): Array[Byte] =
+    val buffer = RowBuffer.newLazyImmutable()
+    val params = ProtoEncoder.Params.of(opt, false, buffer).withStats(stats)
+    if direct then
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(params, frameBuffer)
+      input.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      encoder.newFrame()
+      frameBuffer.toByteArray
+    else
+      val encoder = MockConverterFactory.encoder(params)
+      input.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      encoder.newFrame()
+      RdfStreamFrame.newInstance().setRows(buffer).toByteArray
+
+  "ProtoEncoder with stats" should {
+    for direct <- Seq(false, true) do
+      s"count the rows and bytes of a frame (direct encoding: $direct)" in {
+        val stats = StreamStats()
+        val bytes = encode(triples, stats, direct)
+        val rows = RdfStreamFrame.parseFrom(bytes).getRows.asScala.toSeq
+        stats.getStatementRows should be(10)
+        stats.getOtherRows should be(1)
+        stats.getNameEntries should be(rows.count(_.hasName))
+        stats.getPrefixEntries should be(rows.count(_.hasPrefix))
+        stats.getLookupRows should be(rows.count(r => r.hasName || r.hasPrefix || r.hasDatatype))
+        stats.getFrames should be(1)
+        stats.getLastFrameBytes should be(bytes.length)
+        stats.getTotalBytes should be(bytes.length)
+        stats.getCurrentFrameBytes should be(0)
+      }
+
+    "count the repeated terms" in {
+      val stats = StreamStats()
+      encode(triples, stats)
+      // 5 repeated subjects, 9 repeated predicates, no repeated objects
+      stats.getRepeatedTerms should be(14)
+    }
+
+    "count the node cache hits and misses" in {
+      val xsdInt = Datatype("http://www.w3.org/2001/XMLSchema#integer")
+      val objects =
+        Seq(SimpleLiteral("a"), SimpleLiteral("b"), DtLiteral("1", xsdInt), DtLiteral("2", xsdInt))
+      val input = (0 until 8).map(i =>
+        Triple(Iri(s"https://test.org/s/${i % 2}"), Iri("https://test.org/p"), objects(i % 4)),
+      )
+      val stats = StreamStats()
+      encode(input, stats)
+      // Two subjects and one predicate, which is repeated after the first triple
+      stats.getIriCacheMisses should be(3)
+      stats.getIriCacheHits should be(6)
+      stats.getOtherLiteralCacheMisses should be(2)
+      stats.getOtherLiteralCacheHits should be(2)
+      stats.getDtLiteralCacheMisses should be(2)
+      stats.getDtLiteralCacheHits should be(2)
+      stats.getDatatypeEntries should be(1)
+      stats.getDatatypeEvictions should be(0)
+    }
+
+    "count the lookup evictions" in {
+      val input = (0 until 20).map(i =>
+        Triple(Iri(s"https://test.org/s/$i"), Iri("https://test.org/p"), Iri("https://test.org/o")),
+      )
+      val stats = StreamStats()
+      encode(input, stats, opt = options.clone.setMaxNameTableSize(8).setMaxPrefixTableSize(0))
+      // 22 distinct IRIs in a name table of 8
+      stats.getNameEntries should be(22)
+      stats.getNameEvictions should be(14)
+      stats.getPrefixEntries should be(0)
+      // No IRI node cache without the prefix table
+      stats.getIriCacheMisses should be(0)
+    }
+
+    "close a frame on each newFrame call" in {
+      val stats = StreamStats()
+      val buffer = RowBuffer.newLazyImmutable()
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, buffer).withStats(stats),
+      )
+      val frameSizes = for t <- triples yield
+        encoder.handleTriple(t.s, t.p, t.o)
+        stats.getCurrentFrameBytes should be > 0L
+        val size = RdfStreamFrame.newInstance().setRows(buffer).getSerializedSize
+        buffer.clear()
+        encoder.newFrame()
+        stats.getLastFrameBytes should be(size)
+        size
+      stats.getFrames should be(10)
+      stats.getTotalBytes should be(frameSizes.sum)
+      stats.getMaxFrameBytes should be(frameSizes.max)
+      stats.getAverageFrameBytes should be(frameSizes.sum.toDouble / 10)
+    }
+
+    "be reset" in {
+      val stats = StreamStats()
+      encode(triples, stats)
+      stats.reset()
+      stats.getStatementRows should be(0)
+      stats.getLookupRows should be(0)
+      stats.getRepeatedTerms should be(0)
+      stats.getFrames should be(0)
+      stats.getTotalBytes should be(0)
+      stats.getAverageFrameBytes should be(0.0)
+    }
+
+    "not be recorded by default" in {
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, RowBuffer.newLazyImmutable()),
+      )
+      encoder.handleTriple(triples.head.s, triples.head.p, triples.head.o)
+      encoder.getStats should be(null)
+    }
+  }
+
+  "ProtoDecoder with stats" should {
+    for anyStatement <- Seq(false, true) do
+      s"count the same rows and bytes as the encoder (any statement decoder: $anyStatement)" in {
+        val encoderStats = StreamStats()
+        val bytes = encode(triples, encoderStats)
+        val decoderStats = StreamStats()
+        val collector = ProtoCollector()
+        val decoder =
+          if anyStatement then
+            MockConverterFactory.anyStatementDecoder(
+              collector,
+              JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+            )
+          else
+            MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+        decoder.setStats(decoderStats)
+        RdfStreamFrame.parseFrom(bytes).getRows.asScala.foreach(decoder.ingestRow)
+        decoderStats.endFrame()
+
+        collector.statements.toSeq should be(triples)
+        decoderStats.getStatementRows should be(encoderStats.getStatementRows)
+        decoderStats.getOtherRows should be(encoderStats.getOtherRows)
+        decoderStats.getNameEntries should be(encoderStats.getNameEntries)
+        decoderStats.getPrefixEntries should be(encoderStats.getPrefixEntries)
+        decoderStats.getRepeatedTerms should be(encoderStats.getRepeatedTerms)
+        decoderStats.getLastFrameBytes should be(encoderStats.getLastFrameBytes)
+        decoderStats.getIriCacheHits should be(0)
+      }
+  }
@@ -17,7 +17,7 @@ class MockProtoEncoderConverter
     case LangLiteral(lex, lang) => encoder.makeLangLiteral(node, lex, lang)
     case DtLiteral(lex, dt) => encoder.makeDtLiteral(node, lex, dt.dt)
     case BlankNode(label) => encoder.makeBlankNode(label)
-    case TripleNode(s, p, o) => encoder.makeQuotedTriple(s, p, o)
+    case TripleNode(s, p, o) => encoder.makeQuotedTriple(node, s, p, o)
     case _ => throw RdfProtoSerializationError(s"Cannot encode node: $node")
 
   override def graphNodeToProto(encoder: NodeEncoder[Node], node: Node): Object = node match
@@ -0,0 +1,167 @@
+package eu.neverblink.jelly.core.internal
+
+import eu.neverblink.jelly.core.*
+import eu.neverblink.jelly.core.helpers.*
+import eu.neverblink.jelly.core.helpers.Assertions.*
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{EncoderAllocator, RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class DirectProtoEncoderSpec extends AnyWordSpec, Matchers:
+  import ProtoTestCases.*
+  import eu.neverblink.jelly.core.ProtoEncoder.Params as Pep
+
+  private def options(physicalType: PhysicalStreamType) = JellyOptions.SMALL_ALL_FEATURES.clone
+    .setPhysicalType(physicalType)
+
+  /**
+   * Runs the same statements through the regular and the direct encoder, and returns the serialized
+   * frame of the regular encoder, the bytes of the direct encoder, and the rows of the regular encoder.
+   */
+  private def encodeBoth(
+      opt: RdfStreamOptions,
+      ns: Boolean = false,
+      frameBuffer: SerializedFrameBuffer = SerializedFrameBuffer(64),
+  )(f: ProtoEncoder[Node] => Unit): (Array[Byte], Array[Byte], Seq[RdfStreamRow]) =
+    val buffer = RowBuffer.newLazyImmutable()
+    val regular = MockConverterFactory.encoder(
+      Pep.of(opt, ns, buffer, EncoderAllocator.newHeapAllocator()),
+    )
+    f(regular)
+    val rows = buffer.getRows.asScala.toSeq
+    val frame = RdfStreamFrame.newInstance()
+    frame.getRows.addAll(rows.asJava)
+
+    val direct = MockConverterFactory.directEncoder(Pep.of(opt, ns, null, null), frameBuffer)
+    f(direct)
+    frameBuffer.size should be(rows.size)
+    (frame.toByteArray, frameBuffer.toByteArray, rows)
+
+  "a DirectProtoEncoder" should {
+    for (name, testCase) <- Seq(("Triples1", Triples1), ("Triples3LongStrings", Triples3LongStrings)) do
+      s"encode triple statements the same as ProtoEncoder ($name)" in {
+        val opt = options(PhysicalStreamType.TRIPLES)
+        val (expected, observed, rows) = encodeBoth(opt) { encoder =>
+          testCase.mrl.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+        }
+        observed should be(expected)
+        val parsed = RdfStreamFrame.parseFrom(observed)
+        assertEncoded(parsed.getRows.asScala.toSeq, rows)
+      }
+
+    "encode triple statements with namespace declarations" in {
+      val opt = options(PhysicalStreamType.TRIPLES)
+      val (expected, observed, _) = encodeBoth(opt, ns = true) { encoder =>
+        for triple <- Triples2NsDecl.mrl do
+          triple match
+            case t: Triple => encoder.handleTriple(t.s, t.p, t.o)
+            case ns: NamespaceDeclaration => encoder.handleNamespace(ns.prefix, Iri(ns.iri))
+      }
+      observed should be(expected)
+    }
+
+    for (name, testCase) <- Seq(("Quads1", Quads1), ("Quads2RepeatDefault", Quads2RepeatDefault)) do
+      s"encode quad statements the same as ProtoEncoder ($name)" in {
+        val opt = options(PhysicalStreamType.QUADS)
+        val (expected, observed, _) = encodeBoth(opt) { encoder =>
+          testCase.mrl.foreach(q => encoder.handleQuad(q.s, q.p, q.o, q.g))
+        }
+        observed should be(expected)
+      }
+
+    "encode graphs the same as ProtoEncoder" in {
+      val opt = options(PhysicalStreamType.GRAPHS)
+      val (expected, observed, _) = encodeBoth(opt) { encoder =>
+        for (graphName, triples) <- Graphs1.mrl do
+          encoder.handleGraphStart(graphName)
+          for triple <- triples do encoder.handleTriple(triple.s, triple.p, triple.o)
+          encoder.handleGraphEnd()
+      }
+      observed should be(expected)
+    }
+
+    "encode batches of statements the same as single statements" in {
+      val opt = options(PhysicalStreamType.QUADS)
+      val (expected, _, _) = encodeBoth(opt) { encoder =>
+        Quads1.mrl.foreach(q => encoder.handleQuad(q.s, q.p, q.o, q.g))
+      }
+      val (regular, direct, _) = encodeBoth(opt) { encoder =>
+        for batch <- Quads1.mrl.grouped(2) do
+          encoder.handleQuads(
+            batch.map(_.s).toArray,
+            batch.map(_.p).toArray,
+            batch.map(_.o).toArray,
+            batch.map(_.g).toArray,
+            batch.size,
+          )
+      }
+      regular should be(expected)
+      direct should be(expected)
+    }
+
+    "encode non-ASCII strings, unpaired surrogates, and long rows" in {
+      val opt = options(PhysicalStreamType.TRIPLES)
+      val strings = Seq(
+        "zażółć gęślą jaźń",
+        "😀 emoji",
+        "unpaired \uD83D surrogate",
+        "trailing surrogate \uDE00",
+        "ü" * 200,
+        "x" * 20_000,
+      )
+      val (expected, observed, _) = encodeBoth(opt) { encoder =>
+        for (s, i) <- strings.zipWithIndex do
+          encoder.handleTriple(
+            BlankNode(s + i),
+            Iri(s"https://test.org/$i#p"),
+            LangLiteral(s, "pl"),
+          )
+      }
+      observed should be(expected)
+    }
+
+    "write a delimited frame that can be parsed back" in {
+      val opt = options(PhysicalStreamType.TRIPLES)
+      val frameBuffer = SerializedFrameBuffer()
+      val (expected, _, _) = encodeBoth(opt, frameBuffer = frameBuffer) { encoder =>
+        Triples1.mrl.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      }
+      val os = java.io.ByteArrayOutputStream()
+      val cos = com.google.protobuf.CodedOutputStream.newInstance(os)
+      frameBuffer.writeDelimitedTo(cos)
+      cos.flush()
+      val parsed = RdfStreamFrame.parseDelimitedFrom(java.io.ByteArrayInputStream(os.toByteArray))
+      parsed.toByteArray should be(expected)
+    }
+
+    "be reusable after clearing the frame buffer" in {
+      val opt = options(PhysicalStreamType.TRIPLES)
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(Pep.of(opt, false, null, null), frameBuffer)
+      encoder.handleTriple(Iri("https://test.org/s"), Iri("https://test.org/p"), Iri("https://test.org/o"))
+      frameBuffer.isEmpty should be(false)
+      frameBuffer.clear()
+      frameBuffer.isEmpty should be(true)
+      frameBuffer.getSerializedSize should be(0)
+      encoder.handleTriple(Iri("https://test.org/s"), Iri("https://test.org/p"), Iri("https://test.org/o2"))
+      // One name entry row and one triple row, no options row
+      frameBuffer.size should be(2)
+      val parsed = RdfStreamFrame.parseFrom(frameBuffer.toByteArray)
+      parsed.getRows.asScala.head.hasName should be(true)
+    }
+
+    "not allow to end a graph before starting one" in {
+      val encoder = MockConverterFactory.directEncoder(
+        Pep.of(options(PhysicalStreamType.GRAPHS), false, null, null),
+        SerializedFrameBuffer(),
+      )
+      val error = intercept[RdfProtoSerializationError] {
+        encoder.handleGraphEnd()
+      }
+      error.getMessage should include("Cannot end a delimited graph before starting one")
+    }
+  }
@@ -0,0 +1,99 @@
+package eu.neverblink.jelly.core.jfr
+
+import eu.neverblink.jelly.core.{JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.MockConverterFactory
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.internal.ProtoTranscoderImpl
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.utils.PipelinedFrameWriter
+import eu.neverblink.jelly.core.proto.v1.*
+import jdk.jfr.consumer.{RecordedEvent, RecordingFile}
+import jdk.jfr.{Event, Recording}
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.ByteArrayOutputStream
+import java.nio.file.Files
+import scala.jdk.CollectionConverters.*
+
+class JfrEventsSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setStreamName("test-stream")
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+    .setMaxNameTableSize(8)
+
+  /** 20 distinct subjects – more than fit in the name table. */
+  private val triples = (0 until 20).map(i =>
+    Triple(Iri(s"https://test.org/s/$i"), Iri("https://test.org/p"), SimpleLiteral("v")),
+  )
+
+  /** Runs the body with the event enabled, returning the recorded events of that type. */
+  private def record(eventClass: Class[? <: Event])(body: => Unit): Seq[RecordedEvent] =
+    val recording = Recording()
+    recording.enable(eventClass).withoutThreshold()
+    recording.start()
+    try body
+    finally recording.stop()
+    val file = Files.createTempFile("jelly-jfr", ".jfr")
+    try
+      recording.dump(file)
+      RecordingFile.readAllEvents(file).asScala.toSeq
+        .filter(_.getEventType.getName == eventClass.getAnnotation(classOf[jdk.jfr.Name]).value)
+    finally
+      recording.close()
+      Files.delete(file)
+
+  private def encode(): Seq[RdfStreamRow] =
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(ProtoEncoder.Params.of(options, false, buffer))
+    triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+    buffer.getRows.asScala.toSeq
+
+  "LookupEvictingEvent" should {
+    "be emitted once when a lookup table becomes full" in {
+      val events = record(classOf[LookupEvictingEvent])(encode())
+      events.size should be(1)
+      events.head.getString("table") should be("name")
+      events.head.getInt("size") should be(8)
+    }
+  }
+
+  "TranscoderFrameEvent" should {
+    "be emitted for each transcoded frame" in {
+      val frame = RdfStreamFrame.newInstance()
+      encode().foreach(frame.addRows)
+      val events = record(classOf[TranscoderFrameEvent]) {
+        val transcoder = ProtoTranscoderImpl(null, options)
+        transcoder.ingestFrame(frame)
+        transcoder.ingestFrame(frame)
+      }
+      events.size should be(2)
+      events.map(_.getString("streamName")).distinct should be(Seq("test-stream"))
+      events.map(_.getLong("bytes")).distinct should be(Seq(frame.getSerializedSize.toLong))
+      // The first frame is passed through as is
+      events.head.getInt("rows") should be(frame.getRows.size)
+    }
+  }
+
+  "FrameWrittenEvent" should {
+    "be emitted by the pipelined writer once each frame is written" in {
+      val os = ByteArrayOutputStream()
+      val events = record(classOf[FrameWrittenEvent]) {
+        val pipeline = PipelinedFrameWriter(os, 16, 1, "test-stream")
+        val encoder = MockConverterFactory.encoder(
+          ProtoEncoder.Params.of(options, false, pipeline.getRowBuffer, pipeline.getAllocator),
+        )
+        for (t, i) <- triples.zipWithIndex do
+          encoder.handleTriple(t.s, t.p, t.o)
+          if i % 10 == 9 then pipeline.submitFrame()
+        pipeline.close()
+      }
+      events.size should be(2)
+      events.map(_.getString("streamName")).distinct should be(Seq("test-stream"))
+      events.map(_.getThread.getJavaName).distinct should be(Seq("jelly-pipelined-writer"))
+      // The frames are written back to back, so their sizes add up to the output, less the delimiters
+      val delimiters = events.map(e => if e.getLong("bytes") < 128 then 1 else 2).sum
+      events.map(_.getLong("bytes")).sum should be(os.size - delimiters)
+    }
+  }
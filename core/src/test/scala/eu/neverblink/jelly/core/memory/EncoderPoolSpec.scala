@@ -0,0 +1,145 @@
+package eu.neverblink.jelly.core.memory
+
+import eu.neverblink.jelly.core.{JellyConstants, JellyOptions, ProtoTestCases}
+import eu.neverblink.jelly.core.helpers.Assertions.*
+import eu.neverblink.jelly.core.helpers.MockConverterFactory
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class EncoderPoolSpec extends AnyWordSpec, Matchers:
+  import ProtoTestCases.*
+  import eu.neverblink.jelly.core.ProtoEncoder.Params as Pep
+
+  private val options = JellyOptions.SMALL_GENERALIZED.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setVersion(JellyConstants.PROTO_VERSION_1_0_X)
+
+  private def encodeWith(lease: EncoderPool.Lease, triples: Seq[Triple], opt: RdfStreamOptions) =
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(Pep.of(opt, false, buffer).withPoolLease(lease))
+    triples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+    buffer.getRows.asScala.toSeq
+
+  // Shares some terms with Triples1, but gets different lookup ids for them
+  private val otherTriples = Seq(
+    Triple(
+      Iri("https://example.org/other/s"),
+      Iri("https://test.org/ns2/object"),
+      DtLiteral("123", Datatype("https://test.org/xsd/other")),
+    ),
+    Triple(
+      Iri("https://test.org/test/predicate"),
+      Iri("https://example.org/other/p"),
+      DtLiteral("123", Datatype("https://test.org/xsd/integer")),
+    ),
+    Triple(
+      Iri("https://test.org/test/subject"),
+      Iri("https://example.org/other/p"),
+      TripleNode(Iri("https://test.org/test/subject"), Iri("b"), Iri("c")),
+    ),
+  )
+
+  "EncoderPool" should {
+    "reuse a returned lease on the same thread" in {
+      val pool = EncoderPool(4)
+      val lease1 = pool.acquire(256)
+      lease1.close()
+      val lease2 = pool.acquire(256)
+      lease2 should be theSameInstanceAs lease1
+      pool.getHits should be(1)
+      pool.getMisses should be(1)
+    }
+
+    "give out different leases to streams written at the same time" in {
+      val pool = EncoderPool(4)
+      val lease1 = pool.acquire(256)
+      val lease2 = pool.acquire(256)
+      lease2 should not be theSameInstanceAs(lease1)
+      pool.getMisses should be(2)
+    }
+
+    "return the buffers empty" in {
+      val pool = EncoderPool(4)
+      val lease = pool.acquire(16)
+      lease.getRowBuffer.appendMessage()
+      lease.getFrameBuffer.beginRow()
+      lease.getFrameBuffer.endRow()
+      lease.close()
+      val reused = pool.acquire(16)
+      reused.getRowBuffer.isEmpty should be(true)
+      reused.getFrameBuffer.isEmpty should be(true)
+    }
+
+    "encode a stream with reused lookups exactly like with new ones" in {
+      val pool = EncoderPool(4)
+      val lease1 = pool.acquire(256)
+      encodeWith(lease1, otherTriples, options)
+      lease1.close()
+
+      val lease2 = pool.acquire(256)
+      val observed = encodeWith(lease2, Triples1.mrl, options)
+      assertEncoded(observed, Triples1.encoded(options))
+      lease2.close()
+      pool.getNodeEncoderHits should be(1)
+    }
+
+    "encode self-contained frames with reused lookups exactly like with new ones" in {
+      val pool = EncoderPool(4)
+      val lease = pool.acquire(256)
+      val buffer = RowBuffer.newLazyImmutable()
+      val encoder = MockConverterFactory.encoder(
+        Pep.of(options, false, buffer).withSelfContainedFrames(true).withPoolLease(lease),
+      )
+      otherTriples.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      encoder.newFrame()
+      val before = buffer.getRows.size
+      Triples1.mrl.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      assertEncoded(buffer.getRows.asScala.toSeq.drop(before), Triples1.encoded(options))
+    }
+
+    "create new lookups for a stream with other table sizes" in {
+      val pool = EncoderPool(4)
+      val lease1 = pool.acquire(256)
+      encodeWith(lease1, otherTriples, options)
+      lease1.close()
+
+      val bigger = options.clone.setMaxNameTableSize(options.getMaxNameTableSize * 2)
+      val lease2 = pool.acquire(256)
+      val observed = encodeWith(lease2, Triples1.mrl, bigger)
+      assertEncoded(observed, Triples1.encoded(bigger))
+      pool.getHits should be(1)
+      pool.getNodeEncoderHits should be(0)
+    }
+
+    "keep the leases of virtual threads in the shared queue" in {
+      val pool = EncoderPool(1)
+      val threads = (0 until 3).map(_ =>
+        Thread.ofVirtual().unstarted(() => pool.acquire(256).close()),
+      )
+      for t <- threads do
+        t.start()
+        t.join()
+      pool.getIdleCount should be(1)
+      pool.getMisses should be(1)
+      pool.getHits should be(2)
+    }
+
+    "not keep more idle leases than the limit" in {
+      val pool = EncoderPool(0)
+      for _ <- 0 until 2 do
+        val thread = Thread.ofVirtual().start(() => pool.acquire(256).close())
+        thread.join()
+      pool.getIdleCount should be(0)
+      pool.getMisses should be(2)
+    }
+
+    "not allow a negative limit" in {
+      intercept[IllegalArgumentException] {
+        EncoderPool(-1)
+      }
+    }
+  }
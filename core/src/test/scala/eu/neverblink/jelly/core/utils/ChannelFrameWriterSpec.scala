@@ -0,0 +1,134 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.MockConverterFactory
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{EncoderAllocator, RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{ByteArrayOutputStream, IOException}
+import java.nio.ByteBuffer
+import java.nio.channels.{AsynchronousFileChannel, Channels, WritableByteChannel}
+import java.nio.file.{Files, StandardOpenOption}
+
+class ChannelFrameWriterSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES)
+
+  private def triples(n: Int) = (0 until n).map(i =>
+    Triple(
+      Iri(s"https://test.org/s/${i / 7}"),
+      Iri(s"https://test.org/p/${i % 13}"),
+      SimpleLiteral(s"literal $i"),
+    ),
+  )
+
+  /** Encodes the statements in frames of frameSize rows, passing each frame to the writer. */
+  private def encode(statements: Seq[Triple], frameSize: Int)(write: RdfStreamFrame => Unit): Unit =
+    val buffer = RowBuffer.newReusableForEncoder(frameSize + 8)
+    val frame = RdfStreamFrame.newInstance().setRows(buffer)
+    val encoder = MockConverterFactory.encoder(
+      ProtoEncoder.Params.of(options, false, buffer, EncoderAllocator.newHeapAllocator()),
+    )
+    for t <- statements do
+      encoder.handleTriple(t.s, t.p, t.o)
+      if buffer.size >= frameSize then
+        write(frame)
+        buffer.clear()
+    if !buffer.isEmpty then write(frame)
+
+  /** Reference output: the same statements written synchronously. */
+  private def writeSynchronously(statements: Seq[Triple], frameSize: Int): Array[Byte] =
+    val os = ByteArrayOutputStream()
+    encode(statements, frameSize) { frame =>
+      frame.resetCachedSize()
+      frame.writeDelimitedTo(os)
+    }
+    os.toByteArray
+
+  "ChannelFrameWriter" should {
+    for maxInFlight <- Seq(1, 4) do
+      s"write the same bytes to a file channel as sync writing ($maxInFlight in flight)" in {
+        val statements = triples(2000)
+        val file = Files.createTempFile("jelly-channel", ".jelly")
+        try
+          val channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE)
+          val writer = ChannelFrameWriter.of(channel, 0, maxInFlight)
+          encode(statements, 32)(writer.submitFrame)
+          writer.close()
+          channel.close()
+          Files.readAllBytes(file) should be(writeSynchronously(statements, 32))
+        finally Files.delete(file)
+      }
+
+    "write at the given position of the file" in {
+      val statements = triples(100)
+      val file = Files.createTempFile("jelly-channel", ".jelly")
+      try
+        Files.write(file, Array[Byte](1, 2, 3))
+        val channel = AsynchronousFileChannel.open(file, StandardOpenOption.WRITE)
+        val writer = ChannelFrameWriter.of(channel, 3, 2)
+        encode(statements, 32)(writer.submitFrame)
+        writer.close()
+        channel.close()
+        val expected = Array[Byte](1, 2, 3) ++ writeSynchronously(statements, 32)
+        Files.readAllBytes(file) should be(expected)
+      finally Files.delete(file)
+    }
+
+    "write the same frames to a byte channel as a synchronous writer" in {
+      val statements = triples(2000)
+      val os = ByteArrayOutputStream()
+      val writer = ChannelFrameWriter.of(Channels.newChannel(os), 3)
+      encode(statements, 32)(writer.submitFrame)
+      writer.close()
+      os.toByteArray should be(writeSynchronously(statements, 32))
+    }
+
+    "write frames from the direct encoder" in {
+      val statements = triples(1000)
+      val os = ByteArrayOutputStream()
+      val writer = ChannelFrameWriter.of(Channels.newChannel(os), 2)
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(
+        ProtoEncoder.Params.of(options, false, null, null),
+        frameBuffer,
+      )
+      for t <- statements do
+        encoder.handleTriple(t.s, t.p, t.o)
+        if frameBuffer.size >= 32 then writer.submitFrame(frameBuffer)
+      writer.submitFrame(frameBuffer)
+      frameBuffer.isEmpty should be(true)
+      writer.close()
+      os.toByteArray should be(writeSynchronously(statements, 32))
+    }
+
+    "not write empty frames" in {
+      val os = ByteArrayOutputStream()
+      val writer = ChannelFrameWriter.of(Channels.newChannel(os), 1)
+      writer.submitFrame(RdfStreamFrame.newInstance())
+      writer.submitFrame(SerializedFrameBuffer())
+      writer.close()
+      os.size should be(0)
+    }
+
+    "report I/O errors to the encoding thread" in {
+      val failing = new WritableByteChannel:
+        override def write(src: ByteBuffer): Int = throw IOException("disk full")
+        override def isOpen: Boolean = true
+        override def close(): Unit = ()
+      val writer = ChannelFrameWriter.of(failing, 2)
+      val error = intercept[IOException] {
+        encode(triples(1000), 16)(writer.submitFrame)
+        writer.close()
+      }
+      error.getMessage should include("disk full")
+    }
+
+    "reject a non-positive number of frames in flight" in {
+      intercept[IllegalArgumentException] {
+        ChannelFrameWriter.of(Channels.newChannel(ByteArrayOutputStream()), 0)
+      }
+    }
+  }
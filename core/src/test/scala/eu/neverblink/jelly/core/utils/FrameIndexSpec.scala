@@ -0,0 +1,225 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{DecoderCheckpoint, JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.proto.v1.*
+import eu.neverblink.protoc.java.runtime.ProtoMessage
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException}
+import java.nio.channels.FileChannel
+import java.nio.file.{Files, StandardOpenOption}
+import scala.collection.mutable.ArrayBuffer
+import scala.jdk.CollectionConverters.*
+
+class FrameIndexSpec extends AnyWordSpec, Matchers:
+  // Small lookups, so that the entries are evicted and replaced many times in the stream
+  private val options = JellyOptions.SMALL_ALL_FEATURES.clone
+    .setPhysicalType(PhysicalStreamType.QUADS)
+    .setLogicalType(LogicalStreamType.FLAT_QUADS)
+
+  private val quads = (0 until 2000).map(i =>
+    val o = i % 4 match
+      case 0 => SimpleLiteral(s"literal $i")
+      case 1 => LangLiteral(s"literal $i", "en")
+      case 2 => DtLiteral(s"$i", Datatype(s"https://test.org/dt/${i % 20}"))
+      case _ => TripleNode(BlankNode(s"b${i / 3}"), Iri(s"https://test.org/p/${i % 7}"), Iri(s"$i"))
+    Quad(
+      Iri(s"https://test.org/s/${i / 5}"),
+      Iri(s"https://test.org/p/${i % 11}"),
+      o,
+      if i % 100 < 50 then DefaultGraphNode() else Iri(s"https://test.org/g/${i / 100}"),
+    ),
+  )
+
+  /** Encodes the quads as a delimited stream, with 16 statements per frame. */
+  private def encode(): (Array[Byte], Seq[RdfStreamFrame]) =
+    val os = ByteArrayOutputStream()
+    val frames = ArrayBuffer[RdfStreamFrame]()
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(ProtoEncoder.Params.of(options, false, buffer))
+    def flush(): Unit =
+      val frame = RdfStreamFrame.newInstance()
+      frame.getRows.addAll(buffer.getRows)
+      frame.writeDelimitedTo(os)
+      frames += frame
+      buffer.clear()
+    for (q, i) <- quads.zipWithIndex do
+      encoder.handleQuad(q.s, q.p, q.o, q.g)
+      if i % 16 == 15 then flush()
+    if !buffer.isEmpty then flush()
+    (os.toByteArray, frames.toSeq)
+
+  private val (bytes, frames) = encode()
+
+  /** Decodes the stream from the given index entry until the end. */
+  private def decodeFrom(entry: FrameIndex.Entry): Seq[Statement] =
+    val collector = ProtoCollector()
+    val decoder =
+      MockConverterFactory.quadsDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+    decoder.restoreCheckpoint(entry.checkpoint)
+    val offset = entry.byteOffset.toInt
+    IoUtils.readStream(
+      ByteArrayInputStream(bytes, offset, bytes.length - offset),
+      RdfStreamFrame.getFactory,
+      f => f.getRows.forEach(row => decoder.ingestRow(row)),
+    )
+    collector.statements.toSeq
+
+  "FrameIndex" should {
+    "index every frame of a stream" in {
+      val index = FrameIndex.build(ByteArrayInputStream(bytes), 1)
+      index.getEntries.size should be(frames.size)
+      index.getEntries.get(0).byteOffset should be(0)
+      index.getEntries.get(0).statementCount should be(0)
+      index.getEntries.get(0).checkpoint should be(DecoderCheckpoint.EMPTY)
+      for i <- 1 until frames.size do
+        val entry = index.getEntries.get(i)
+        entry.frameNumber should be(i)
+        entry.statementCount should be(i * 16)
+        // The offset points to the frame's delimiter
+        val frame = ProtoMessage.parseDelimitedFrom(
+          ByteArrayInputStream(bytes, entry.byteOffset.toInt, bytes.length),
+          RdfStreamFrame.getFactory,
+        )
+        frame should be(frames(i))
+    }
+
+    "resume decoding from any indexed frame" in {
+      val index = FrameIndex.build(ByteArrayInputStream(bytes), 1)
+      for frameNumber <- Seq(0, 1, 2, 17, 50, frames.size / 2, frames.size - 1) do
+        val entry = index.findByFrame(frameNumber)
+        entry.frameNumber should be(frameNumber)
+        decodeFrom(entry) should be(quads.drop(frameNumber * 16))
+    }
+
+    "find the nearest preceding entry" in {
+      val index = FrameIndex.build(ByteArrayInputStream(bytes), 10)
+      index.getEntries.size should be((frames.size + 9) / 10)
+      index.findByFrame(0).frameNumber should be(0)
+      index.findByFrame(9).frameNumber should be(0)
+      index.findByFrame(10).frameNumber should be(10)
+      index.findByFrame(Long.MaxValue).frameNumber should be((frames.size - 1) / 10 * 10)
+      index.findByStatement(159).frameNumber should be(0)
+      index.findByStatement(160).frameNumber should be(10)
+      index.findByStatement(1234).statementCount should be(1120)
+      val entry = index.findByStatement(1234)
+      decodeFrom(entry).drop((1234 - entry.statementCount).toInt).head should be(quads(1234))
+    }
+
+    "decode a file from an entry in the middle of it" in {
+      val file = Files.createTempFile("jelly-index", ".jelly")
+      try
+        Files.write(file, bytes)
+        val index = FrameIndex.build(ByteArrayInputStream(bytes), 10)
+        val statementIndex = quads.size / 2 + 3
+        val entry = index.findByStatement(statementIndex)
+        entry.frameNumber should be > 0L
+        val collector = ProtoCollector()
+        val decoder =
+          MockConverterFactory.quadsDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+        val channel = FileChannel.open(file, StandardOpenOption.READ)
+        try
+          FrameIndex.decodeFrom(channel, entry, decoder)
+          channel.position should be(bytes.length)
+        finally channel.close()
+        val skip = (statementIndex - entry.statementCount).toInt
+        collector.statements.toSeq.drop(skip) should be(quads.drop(statementIndex))
+      finally Files.delete(file)
+    }
+
+    "return null when the index is empty" in {
+      val index = FrameIndex.build(ByteArrayInputStream(Array[Byte]()), 1)
+      index.getEntries.size should be(0)
+      index.findByFrame(0) should be(null)
+      index.findByStatement(0) should be(null)
+    }
+
+    "be written to and read from a sidecar file" in {
+      val index = FrameIndex.build(ByteArrayInputStream(bytes), 7)
+      val os = ByteArrayOutputStream()
+      index.writeTo(os)
+      val parsed = FrameIndex.parseFrom(ByteArrayInputStream(os.toByteArray))
+      parsed.getEntries.size should be(index.getEntries.size)
+      for (entryA, entryB) <- parsed.getEntries.asScala.zip(index.getEntries.asScala) do
+        entryA.frameNumber should be(entryB.frameNumber)
+        entryA.byteOffset should be(entryB.byteOffset)
+        entryA.statementCount should be(entryB.statementCount)
+        decodeFrom(entryA) should be(decodeFrom(entryB))
+    }
+
+    "reject a file that is not an index" in {
+      intercept[IOException] {
+        FrameIndex.parseFrom(ByteArrayInputStream(bytes))
+      }
+    }
+  }
+
+  "FrameIndexer" should {
+    "build the same index from the frames as they are written" in {
+      val indexer = FrameIndexer(5)
+      frames.foreach(indexer.addFrame)
+      indexer.getFrameCount should be(frames.size)
+      indexer.getStatementCount should be(quads.size)
+      val built = FrameIndex.build(ByteArrayInputStream(bytes), 5)
+      indexer.getIndex.getEntries.size should be(built.getEntries.size)
+      for i <- 0 until built.getEntries.size do
+        val (a, b) = (indexer.getIndex.getEntries.get(i), built.getEntries.get(i))
+        a.frameNumber should be(b.frameNumber)
+        a.byteOffset should be(b.byteOffset)
+        a.statementCount should be(b.statementCount)
+    }
+
+    "reject a non-positive interval" in {
+      intercept[IllegalArgumentException] {
+        FrameIndexer(0)
+      }
+    }
+  }
+
+  "ProtoDecoder.restoreCheckpoint" should {
+    "restore the current graph of a GRAPHS stream" in {
+      val graphOptions = options.clone
+        .setPhysicalType(PhysicalStreamType.GRAPHS)
+        .setLogicalType(LogicalStreamType.DATASETS)
+      val buffer = RowBuffer.newLazyImmutable()
+      val encoder =
+        MockConverterFactory.encoder(ProtoEncoder.Params.of(graphOptions, false, buffer))
+      val indexer = FrameIndexer(1)
+      def flush(): Unit =
+        val frame = RdfStreamFrame.newInstance()
+        frame.getRows.addAll(buffer.getRows)
+        indexer.addFrame(frame)
+        buffer.clear()
+      encoder.handleGraphStart(Iri("https://test.org/g"))
+      encoder.handleTriple(Iri("https://test.org/s"), Iri("https://test.org/p"), SimpleLiteral("a"))
+      flush()
+      encoder.handleTriple(Iri("https://test.org/s"), Iri("https://test.org/p"), SimpleLiteral("b"))
+      encoder.handleGraphEnd()
+      val lastFrame = RdfStreamFrame.newInstance()
+      lastFrame.getRows.addAll(buffer.getRows)
+      indexer.addFrame(lastFrame)
+
+      val checkpoint = indexer.getIndex.getEntries.get(1).checkpoint
+      val collector = ProtoCollector()
+      val decoder =
+        MockConverterFactory.graphsDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      decoder.restoreCheckpoint(checkpoint)
+      lastFrame.getRows.forEach(row => decoder.ingestRow(row))
+      val triple = Triple(Iri("https://test.org/s"), Iri("https://test.org/p"), SimpleLiteral("b"))
+      collector.statements.toSeq should be(Seq(Graph(Iri("https://test.org/g"), Seq(triple))))
+    }
+
+    "refuse to restore a checkpoint after ingesting rows" in {
+      val checkpoint = FrameIndex.build(ByteArrayInputStream(bytes), 1).getEntries.get(3).checkpoint
+      val decoder =
+        MockConverterFactory.quadsDecoder(ProtoCollector(), JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      frames.head.getRows.forEach(row => decoder.ingestRow(row))
+      intercept[IllegalStateException] {
+        decoder.restoreCheckpoint(checkpoint)
+      }
+    }
+  }
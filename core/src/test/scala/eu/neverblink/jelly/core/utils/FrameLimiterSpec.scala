@@ -0,0 +1,159 @@
+package eu.neverblink.jelly.core.utils
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+
+class FrameLimiterSpec extends AnyWordSpec, Matchers:
+  "FrameLimiter" should {
+    "flush at the row limit" in {
+      val limiter = FrameLimiter(10, 0, 0)
+      limiter.shouldFlush(9, 1_000_000) should be(false)
+      limiter.shouldFlush(10, 0) should be(true)
+    }
+
+    "flush at the byte limit" in {
+      val limiter = FrameLimiter(10, 1000, 0)
+      limiter.shouldFlush(1, 999) should be(false)
+      limiter.shouldFlush(1, 1000) should be(true)
+    }
+
+    "flush at the age limit, counting from the first statement of the frame" in {
+      val limiter = FrameLimiter(10, 0, 20)
+      limiter.shouldFlush(0, 0) should be(false)
+      Thread.sleep(30)
+      // The frame starts now
+      limiter.statementAdded()
+      limiter.shouldFlush(1, 10) should be(false)
+      Thread.sleep(30)
+      limiter.statementAdded()
+      limiter.shouldFlush(2, 20) should be(true)
+      limiter.frameWritten()
+      limiter.shouldFlush(1, 10) should be(false)
+    }
+
+    "count the age from when the statement entered the writer, not from its first row" in {
+      val limiter = FrameLimiter(10, 0, 20)
+      // The statement is held back, e.g., by a reorderer
+      limiter.statementAdded()
+      Thread.sleep(30)
+      limiter.shouldFlush(1, 10) should be(true)
+    }
+
+    "restart the age clock for the statements held back after writing a frame" in {
+      val limiter = FrameLimiter(10, 0, 20)
+      limiter.statementAdded()
+      limiter.frameWritten(true)
+      Thread.sleep(30)
+      limiter.shouldFlush(1, 10) should be(true)
+      limiter.frameWritten(false)
+      Thread.sleep(30)
+      limiter.shouldFlush(1, 10) should be(false)
+    }
+
+    "not allow negative limits" in {
+      intercept[IllegalArgumentException](FrameLimiter(10, -1, 0))
+      intercept[IllegalArgumentException](FrameLimiter(10, 0, -1))
+    }
+
+    "call the timer callback when the frame is too old" in {
+      val limiter = FrameLimiter(10, 0, 10)
+      val latch = CountDownLatch(1)
+      limiter.startTimer(() => {
+        limiter.frameWritten()
+        latch.countDown()
+      })
+      limiter.lock()
+      limiter.statementAdded()
+      limiter.unlock()
+      latch.await(5, TimeUnit.SECONDS) should be(true)
+      limiter.close()
+    }
+
+    "not call the timer callback for an empty frame" in {
+      val limiter = FrameLimiter(10, 0, 5)
+      var calls = 0
+      limiter.startTimer(() => calls += 1)
+      Thread.sleep(50)
+      limiter.lock()
+      calls should be(0)
+      limiter.unlock()
+      limiter.close()
+    }
+
+    "rethrow the exception of the timer callback on lock" in {
+      val limiter = FrameLimiter(10, 0, 5)
+      limiter.startTimer(() => throw IllegalStateException("write failed"))
+      limiter.lock()
+      limiter.statementAdded()
+      limiter.unlock()
+      val deadline = System.nanoTime() + 5_000_000_000L
+      var error: Option[IllegalStateException] = None
+      while error.isEmpty && System.nanoTime() < deadline do
+        try
+          limiter.lock()
+          limiter.unlock()
+          Thread.sleep(5)
+        catch case e: IllegalStateException => error = Some(e)
+      error.map(_.getMessage) should be(Some("write failed"))
+      limiter.close()
+    }
+
+    "not lock without a timer" in {
+      val limiter = FrameLimiter(10, 0, 0)
+      limiter.startTimer(() => fail("no timer expected"))
+      limiter.isTimerStarted should be(false)
+      limiter.lock()
+      limiter.unlock()
+      limiter.close()
+    }
+
+    "report a started timer" in {
+      val limiter = FrameLimiter(10, 0, 10)
+      limiter.isTimerStarted should be(false)
+      limiter.startTimer(() => ())
+      limiter.isTimerStarted should be(true)
+      limiter.close()
+    }
+
+    "not call the timer callback after close" in {
+      val limiter = FrameLimiter(10, 0, 5)
+      @volatile var calls = 0
+      limiter.startTimer(() => calls += 1)
+      limiter.lock()
+      limiter.statementAdded()
+      // Held back until the stream ends, as the writers do
+      Thread.sleep(30)
+      limiter.close()
+      limiter.unlock()
+      Thread.sleep(30)
+      calls should be(0)
+    }
+
+    "not hold up the timer of another limiter" in {
+      val blocked = FrameLimiter(10, 0, 5)
+      val release = CountDownLatch(1)
+      blocked.startTimer(() => release.await(5, TimeUnit.SECONDS))
+      blocked.lock()
+      blocked.statementAdded()
+      blocked.unlock()
+
+      val limiter = FrameLimiter(10, 0, 5)
+      val latch = CountDownLatch(1)
+      limiter.startTimer(() => {
+        limiter.frameWritten()
+        latch.countDown()
+      })
+      // Wait until the first timer is stuck in its callback
+      Thread.sleep(30)
+      limiter.lock()
+      limiter.statementAdded()
+      limiter.unlock()
+      try latch.await(5, TimeUnit.SECONDS) should be(true)
+      finally
+        release.countDown()
+        blocked.close()
+        limiter.close()
+    }
+  }
@@ -1,12 +1,20 @@
 package eu.neverblink.jelly.core.utils
 
 import com.google.protobuf.{CodedOutputStream, InvalidProtocolBufferException}
+import eu.neverblink.jelly.core.JellyOptions
+import eu.neverblink.jelly.core.ProtoTestCases.wrapEncoded
+import eu.neverblink.jelly.core.helpers.Mrl.{SimpleLiteral, Triple}
 import eu.neverblink.jelly.core.helpers.RdfAdapter.*
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
 import eu.neverblink.jelly.core.proto.v1.*
+import eu.neverblink.protoc.java.runtime.ProtoMessage
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
-import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, EOFException, IOException}
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import scala.collection.mutable.ArrayBuffer
 import scala.jdk.CollectionConverters.*
 
 class IoUtilsSpec extends AnyWordSpec, Matchers:
@@ -223,4 +231,187 @@ class IoUtilsSpec extends AnyWordSpec, Matchers:
         }
       }
     }
+
+    "readFile" when {
+      def tempFile(bytes: Array[Byte]) =
+        val path = Files.createTempFile("jelly-io-utils", ".jelly")
+        path.toFile.deleteOnExit()
+        Files.write(path, bytes)
+
+      val frames = (0 until 200).map(i =>
+        rdfStreamFrame(Seq.tabulate(1 + i % 7)(j => rdfStreamRow(rdfNameEntry(j, s"name $i $j " * (i % 5))))),
+      )
+      val delimitedBytes =
+        val os = ByteArrayOutputStream()
+        frames.foreach(_.writeDelimitedTo(os))
+        os.toByteArray
+
+      "file is delimited" in {
+        val out = ArrayBuffer[RdfStreamFrame]()
+        IoUtils.readFile(tempFile(delimitedBytes), RdfStreamFrame.getFactory, frame => out += frame)
+        out.toSeq shouldBe frames
+      }
+
+      "file is delimited and mapped in small windows" in {
+        val largestFrame = frames.map(_.getSerializedSize).max
+        for windowSize <- Seq(largestFrame + 2, largestFrame * 3, delimitedBytes.length - 1) do
+          val out = ArrayBuffer[RdfStreamFrame]()
+          val channel = FileChannel.open(tempFile(delimitedBytes))
+          try
+            IoUtils.readFile(channel, RdfStreamFrame.getFactory, frame => out += frame, windowSize)
+            channel.position shouldBe channel.size
+          finally channel.close()
+          out.toSeq shouldBe frames
+      }
+
+      "file is non-delimited" in {
+        var out: RdfStreamFrame = null
+        IoUtils.readFile(tempFile(frameLarge.toByteArray), RdfStreamFrame.getFactory, frame => out = frame)
+        out shouldBe frameLarge
+      }
+
+      "file is read from the current position of the channel" in {
+        val os = ByteArrayOutputStream()
+        os.write(Array[Byte](1, 2, 3, 4))
+        frameSize10.writeDelimitedTo(os)
+        val out = ArrayBuffer[RdfStreamFrame]()
+        val channel = FileChannel.open(tempFile(os.toByteArray))
+        try
+          channel.position(4)
+          IoUtils.readFile(channel, RdfStreamFrame.getFactory, frame => out += frame)
+        finally channel.close()
+        out.toSeq shouldBe Seq(frameSize10)
+      }
+
+      "file is empty" in {
+        var out: RdfStreamFrame = null
+        IoUtils.readFile(tempFile(Array.emptyByteArray), RdfStreamFrame.getFactory, frame => out = frame)
+        out shouldBe null
+      }
+
+      "file has literals, which are decoded only when used" in {
+        val lexes = Seq("", "plain", "zażółć gęślą jaźń", "🦆" * 100)
+        val frame = rdfStreamFrame(
+          wrapEncoded(
+            JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES) +:
+              lexes.map(lex => rdfTriple("s", "p", rdfLiteral(lex))),
+          ),
+        )
+        val os = ByteArrayOutputStream()
+        frame.writeDelimitedTo(os)
+        var out: RdfStreamFrame = null
+        IoUtils.readFile(tempFile(os.toByteArray), RdfStreamFrame.getFactory, f => out = f)
+
+        // The lexical forms are slices of the mapped file, not copies on the heap
+        val literals = out.getRows.asScala.drop(1).map(_.getTriple.getObject.asInstanceOf[RdfLiteral])
+        for literal <- literals.tail do literal.getLexBytes.asReadOnlyByteBuffer.isDirect shouldBe true
+
+        // Written back unchanged
+        out.toByteArray shouldBe frame.toByteArray
+        out shouldBe frame
+
+        val collector = ProtoCollector()
+        MockConverterFactory
+          .triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+          .ingestFrame(out)
+        collector.statements.map(_.asInstanceOf[Triple].o).toSeq shouldBe lexes.map(SimpleLiteral(_))
+      }
+
+      "file is truncated" in {
+        an[EOFException] should be thrownBy {
+          IoUtils.readFile(tempFile(delimitedBytes.dropRight(3)), RdfStreamFrame.getFactory, _ => ())
+        }
+      }
+
+      "frame is larger than the mapped window" in {
+        val channel = FileChannel.open(tempFile(delimitedBytes))
+        try
+          val error = intercept[IOException] {
+            IoUtils.readFile(channel, RdfStreamFrame.getFactory, _ => (), 16)
+          }
+          error.getMessage should include("larger than the maximum memory-mapped size")
+        finally channel.close()
+      }
+    }
+
+    "isMappable" should {
+      def channelOf(bytes: Array[Byte]) =
+        val path = Files.createTempFile("jelly-io-utils", ".jelly")
+        path.toFile.deleteOnExit()
+        FileChannel.open(Files.write(path, bytes))
+
+      "accept a file with bytes left to read" in {
+        val channel = channelOf(frameSize10.toByteArray)
+        try IoUtils.isMappable(channel) shouldBe true
+        finally channel.close()
+      }
+
+      "reject an empty file" in {
+        val channel = channelOf(Array.emptyByteArray)
+        try IoUtils.isMappable(channel) shouldBe false
+        finally channel.close()
+      }
+
+      "reject a file read to the end" in {
+        val channel = channelOf(frameSize10.toByteArray)
+        try
+          channel.position(channel.size)
+          IoUtils.isMappable(channel) shouldBe false
+        finally channel.close()
+      }
+
+      "reject a closed channel" in {
+        val channel = channelOf(frameSize10.toByteArray)
+        channel.close()
+        IoUtils.isMappable(channel) shouldBe false
+      }
+    }
+
+    "read frames with a FrameReader" when {
+      def collectingReader(out: ArrayBuffer[RdfStreamFrame]): IoUtils.FrameReader = input =>
+        val frame = RdfStreamFrame.newInstance()
+        frame.mergeFrom(input, ProtoMessage.DEFAULT_MAX_RECURSION_DEPTH)
+        out += frame
+
+      val frames = Seq(frameLarge, frameSize10, frameOptionsSize10)
+      val delimitedBytes =
+        val os = ByteArrayOutputStream()
+        frames.foreach(_.writeDelimitedTo(os))
+        os.toByteArray
+
+      "reading a delimited stream" in {
+        val out = ArrayBuffer[RdfStreamFrame]()
+        IoUtils.readStream(ByteArrayInputStream(delimitedBytes), collectingReader(out))
+        out.toSeq shouldBe frames
+      }
+
+      "reading a delimited stream with a reader that stops early" in {
+        var count = 0
+        IoUtils.readStream(
+          ByteArrayInputStream(delimitedBytes),
+          input => {
+            input.readTag()
+            count += 1
+          },
+        )
+        count shouldBe frames.size
+      }
+
+      "reading a non-delimited frame" in {
+        val out = ArrayBuffer[RdfStreamFrame]()
+        IoUtils.readFrame(ByteArrayInputStream(frameLarge.toByteArray), collectingReader(out))
+        out.toSeq shouldBe Seq(frameLarge)
+      }
+
+      "reading a delimited file" in {
+        val path = Files.createTempFile("jelly-io-utils", ".jelly")
+        path.toFile.deleteOnExit()
+        Files.write(path, delimitedBytes)
+        val out = ArrayBuffer[RdfStreamFrame]()
+        val channel = FileChannel.open(path)
+        try IoUtils.readFile(channel, collectingReader(out))
+        finally channel.close()
+        out.toSeq shouldBe frames
+      }
+    }
   }
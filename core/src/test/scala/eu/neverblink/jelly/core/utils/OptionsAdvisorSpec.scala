@@ -0,0 +1,112 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.MockConverterFactory
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class OptionsAdvisorSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  private def advise(triples: Seq[Triple], sampleSize: Int = 10_000): OptionsAdvisor[Node] =
+    val advisor = OptionsAdvisor[Node](MockConverterFactory.encoderConverter, sampleSize)
+    triples.foreach(t => advisor.handleTriple(t.s, t.p, t.o))
+    advisor
+
+  /** 600 subjects in a cycle – more than fit in a name table of 512 entries. */
+  private val manyNames = (0 until 6000).map(i =>
+    Triple(Iri(s"https://test.org/s/${i % 600}"), Iri("https://test.org/p"), SimpleLiteral("v")),
+  )
+
+  /** 100 namespaces in a cycle – more than fit in a prefix table of 64 entries. */
+  private val manyPrefixes = (0 until 6000).map(i =>
+    Triple(Iri(s"https://test.org/ns${i % 100}/x"), Iri("https://test.org/p"), SimpleLiteral("v")),
+  )
+
+  /** 40 datatypes in a cycle – more than fit in a datatype table of 32 entries. */
+  private val manyDatatypes = (0 until 6000).map(i =>
+    Triple(
+      Iri("https://test.org/s"),
+      Iri("https://test.org/p"),
+      DtLiteral(s"$i", Datatype(s"https://test.org/dt/${i % 40}")),
+    ),
+  )
+
+  "OptionsAdvisor" should {
+    "recommend the smallest tables for a small vocabulary" in {
+      val triples = (0 until 1000).map(i =>
+        Triple(Iri(s"https://test.org/s/${i % 10}"), Iri(s"https://test.org/p/${i % 5}"), Iri("x")),
+      )
+      val recommendation = advise(triples).recommend(OptionsAdvisor.DEFAULT_TARGET_EVICTION_RATE)
+      recommendation.maxNameTableSize should be(128)
+      recommendation.maxPrefixTableSize should be(16)
+      recommendation.maxDatatypeTableSize should be(16)
+      recommendation.nameEvictionRate should be(0.0)
+    }
+
+    "recommend a name table that holds the working set of names" in {
+      val recommendation = advise(manyNames).recommend(0.01)
+      recommendation.maxNameTableSize should be(1024)
+      recommendation.maxPrefixTableSize should be(16)
+      recommendation.nameEvictionRate should be(0.0)
+    }
+
+    "recommend a prefix table that holds the working set of prefixes" in {
+      val recommendation = advise(manyPrefixes).recommend(0.01)
+      recommendation.maxPrefixTableSize should be(150)
+      recommendation.maxNameTableSize should be(128)
+    }
+
+    "recommend a datatype table that holds the working set of datatypes" in {
+      val recommendation = advise(manyDatatypes).recommend(0.01)
+      recommendation.maxDatatypeTableSize should be(64)
+    }
+
+    "accept more evictions with a higher target" in {
+      // Nearly every statement re-sends a name with a table of 128 – allowed by a target of 1
+      advise(manyNames).recommend(1.0).maxNameTableSize should be(128)
+    }
+
+    "keep the other fields of the options" in {
+      val recommended = advise(manyNames).recommend(options)
+      recommended.getMaxNameTableSize should be(1024)
+      recommended.getPhysicalType should be(PhysicalStreamType.TRIPLES)
+      recommended.getLogicalType should be(LogicalStreamType.FLAT_TRIPLES)
+      options.getMaxNameTableSize should be(JellyOptions.SMALL_STRICT.getMaxNameTableSize)
+    }
+
+    "ignore the statements beyond the sample size" in {
+      val advisor = advise(manyNames, sampleSize = 500)
+      advisor.isFull should be(true)
+      advisor.getStatementCount should be(500)
+      // The first 500 statements have 500 distinct subjects – nothing to evict
+      advisor.recommend(0.01).maxNameTableSize should be(128)
+    }
+
+    "give the same recommendation for a sample read from a Jelly stream" in {
+      val buffer = RowBuffer.newLazyImmutable()
+      val bigOptions = JellyOptions.BIG_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES)
+      val encoder = MockConverterFactory.encoder(ProtoEncoder.Params.of(bigOptions, false, buffer))
+      manyPrefixes.foreach(t => encoder.handleTriple(t.s, t.p, t.o))
+      val advisor = OptionsAdvisor[Node](MockConverterFactory.encoderConverter)
+      val decoder = MockConverterFactory.anyStatementDecoder(
+        advisor,
+        JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+      )
+      buffer.getRows.asScala.foreach(decoder.ingestRow)
+      advisor.recommend(0.01) should be(advise(manyPrefixes).recommend(0.01))
+    }
+
+    "reject a sample size below 1" in {
+      intercept[IllegalArgumentException] {
+        OptionsAdvisor[Node](MockConverterFactory.encoderConverter, 0)
+      }
+    }
+  }
@@ -0,0 +1,143 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException}
+import scala.collection.mutable.ArrayBuffer
+
+class ParallelFrameReaderSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone
+    .setPhysicalType(PhysicalStreamType.TRIPLES)
+    .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+
+  private val triples = (0 until 3000).map(i =>
+    Triple(
+      Iri(s"https://test.org/s/${i / 5}"),
+      Iri(s"https://test.org/p/${i % 11}"),
+      SimpleLiteral(s"literal $i"),
+    ),
+  )
+
+  /** Encodes the triples as a delimited stream, with 25 statements per frame. */
+  private def encode(selfContained: Boolean): Array[Byte] =
+    val os = ByteArrayOutputStream()
+    val buffer = RowBuffer.newLazyImmutable()
+    val encoder = MockConverterFactory.encoder(
+      ProtoEncoder.Params.of(options, false, buffer).withSelfContainedFrames(selfContained),
+    )
+    def flush(): Unit =
+      val frame = RdfStreamFrame.newInstance()
+      frame.getRows.addAll(buffer.getRows)
+      frame.writeDelimitedTo(os)
+      encoder.newFrame()
+    for (t, i) <- triples.zipWithIndex do
+      encoder.handleTriple(t.s, t.p, t.o)
+      if i % 25 == 24 then flush()
+    if !buffer.isEmpty then flush()
+    os.toByteArray
+
+  private def readSequentially(bytes: Array[Byte]): Seq[Array[Byte]] =
+    val frames = ArrayBuffer[Array[Byte]]()
+    IoUtils.readStream(ByteArrayInputStream(bytes), RdfStreamFrame.getFactory, f => frames += f.toByteArray)
+    frames.toSeq
+
+  "ParallelFrameReader" should {
+    for parallelism <- Seq(1, 4) do
+      s"read the same frames in the same order as IoUtils.readStream (parallelism $parallelism)" in {
+        val bytes = encode(selfContained = false)
+        val frames = ArrayBuffer[Array[Byte]]()
+        ParallelFrameReader.readStream(
+          ByteArrayInputStream(bytes),
+          RdfStreamFrame.getFactory,
+          parallelism,
+          (f: RdfStreamFrame) => frames += f.toByteArray,
+        )
+        frames.size should be(triples.size / 25)
+        frames.toSeq should contain theSameElementsInOrderAs readSequentially(bytes)
+      }
+
+    "decode frames parsed in parallel with one stateful decoder" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      ParallelFrameReader.readStream(
+        ByteArrayInputStream(encode(selfContained = false)),
+        RdfStreamFrame.getFactory,
+        4,
+        (f: RdfStreamFrame) => f.getRows.forEach(row => decoder.ingestRow(row)),
+      )
+      collector.statements.toSeq should be(triples)
+    }
+
+    "decode the literals in the workers and the frames with one stateful decoder" in {
+      val collector = ProtoCollector()
+      val decoder = MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+      ParallelFrameReader.readStream(
+        ByteArrayInputStream(encode(selfContained = false)),
+        RdfStreamFrame.getFactory,
+        4,
+        ParallelFrameReader.decodeLiterals,
+        (f: RdfStreamFrame) => f.getRows.forEach(row => decoder.ingestRow(row)),
+      )
+      collector.statements.toSeq should be(triples)
+    }
+
+    "decode self-contained frames in parallel" in {
+      val statements = ArrayBuffer[Statement]()
+      ParallelFrameReader.readStream(
+        ByteArrayInputStream(encode(selfContained = true)),
+        RdfStreamFrame.getFactory,
+        4,
+        (f: RdfStreamFrame) => {
+          // A new decoder for each frame
+          val collector = ProtoCollector()
+          val decoder = MockConverterFactory.triplesDecoder(collector, JellyOptions.DEFAULT_SUPPORTED_OPTIONS)
+          f.getRows.forEach(row => decoder.ingestRow(row))
+          collector.statements.toSeq
+        },
+        (s: Seq[Statement]) => statements ++= s,
+      )
+      statements.toSeq should be(triples)
+    }
+
+    "throw an IOException on a truncated stream" in {
+      val bytes = encode(selfContained = false)
+      intercept[IOException] {
+        ParallelFrameReader.readStream(
+          ByteArrayInputStream(bytes.take(bytes.length - 10)),
+          RdfStreamFrame.getFactory,
+          2,
+          (_: RdfStreamFrame) => (),
+        )
+      }
+    }
+
+    "propagate exceptions thrown by the frame mapper" in {
+      val error = intercept[IllegalStateException] {
+        ParallelFrameReader.readStream(
+          ByteArrayInputStream(encode(selfContained = false)),
+          RdfStreamFrame.getFactory,
+          2,
+          (_: RdfStreamFrame) => throw IllegalStateException("bad frame"),
+          (_: Unit) => (),
+        )
+      }
+      error.getMessage should be("bad frame")
+    }
+
+    "reject a non-positive parallelism" in {
+      intercept[IllegalArgumentException] {
+        ParallelFrameReader.readStream(
+          ByteArrayInputStream(Array[Byte]()),
+          RdfStreamFrame.getFactory,
+          0,
+          (_: RdfStreamFrame) => (),
+        )
+      }
+    }
+  }
@@ -0,0 +1,149 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{JellyOptions, LookupDictionary, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.MockConverterFactory
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.{EncoderAllocator, RowBuffer, SerializedFrameBuffer}
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException, OutputStream}
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+import scala.jdk.CollectionConverters.*
+
+class PipelinedFrameWriterSpec extends AnyWordSpec, Matchers:
+  private val options = JellyOptions.SMALL_STRICT.clone.setPhysicalType(PhysicalStreamType.TRIPLES)
+
+  private def triples(n: Int) = (0 until n).map(i =>
+    Triple(
+      Iri(s"https://test.org/s/${i / 7}"),
+      Iri(s"https://test.org/p/${i % 13}"),
+      SimpleLiteral(s"literal $i"),
+    ),
+  )
+
+  /** Reference output: the same statements written synchronously. */
+  private def writeSynchronously(statements: Seq[Triple], frameSize: Int): Array[Byte] =
+    val os = ByteArrayOutputStream()
+    val buffer = RowBuffer.newReusableForEncoder(frameSize + 8)
+    val frame = RdfStreamFrame.newInstance().setRows(buffer)
+    val encoder = MockConverterFactory.encoder(
+      ProtoEncoder.Params.of(options, false, buffer, EncoderAllocator.newHeapAllocator()),
+    )
+    for t <- statements do
+      encoder.handleTriple(t.s, t.p, t.o)
+      if buffer.size >= frameSize then
+        frame.resetCachedSize()
+        frame.writeDelimitedTo(os)
+        buffer.clear()
+    if !buffer.isEmpty then
+      frame.resetCachedSize()
+      frame.writeDelimitedTo(os)
+    os.toByteArray
+
+  "PipelinedFrameWriter" should {
+    for depth <- Seq(1, 3) do
+      s"write the same frames as a synchronous writer (depth $depth)" in {
+        val statements = triples(2000)
+        val os = ByteArrayOutputStream()
+        val pipeline = PipelinedFrameWriter(os, 40, depth)
+        val encoder = MockConverterFactory.encoder(
+          ProtoEncoder.Params.of(options, false, pipeline.getRowBuffer, pipeline.getAllocator),
+        )
+        for t <- statements do
+          encoder.handleTriple(t.s, t.p, t.o)
+          if pipeline.size >= 32 then pipeline.submitFrame()
+        pipeline.submitFrame()
+        pipeline.close()
+        os.toByteArray should be(writeSynchronously(statements, 32))
+      }
+
+    "write frames from the direct encoder" in {
+      val statements = triples(1000)
+      val os = ByteArrayOutputStream()
+      val pipeline = PipelinedFrameWriter(os, 40)
+      val frameBuffer = SerializedFrameBuffer()
+      val encoder = MockConverterFactory.directEncoder(
+        ProtoEncoder.Params.of(options, false, null, null),
+        frameBuffer,
+      )
+      for t <- statements do
+        encoder.handleTriple(t.s, t.p, t.o)
+        if frameBuffer.size >= 32 then pipeline.submitFrame(frameBuffer)
+      pipeline.submitFrame(frameBuffer)
+      frameBuffer.isEmpty should be(true)
+      pipeline.close()
+      os.toByteArray should be(writeSynchronously(statements, 32))
+    }
+
+    "write the metadata of the current frame only with that frame" in {
+      val os = ByteArrayOutputStream()
+      val pipeline = PipelinedFrameWriter(os, 40)
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, pipeline.getRowBuffer, pipeline.getAllocator),
+      )
+      val dictionary = LookupDictionary(Seq("https://test.org/p/0").asJava, Seq().asJava)
+      dictionary.tagFrame(pipeline.getFrame)
+      for t <- triples(96) do
+        encoder.handleTriple(t.s, t.p, t.o)
+        if pipeline.size >= 32 then pipeline.submitFrame()
+      pipeline.submitFrame()
+      pipeline.close()
+      val in = ByteArrayInputStream(os.toByteArray)
+      val frames = (0 until 3).map(_ => RdfStreamFrame.parseDelimitedFrom(in))
+      frames.map(LookupDictionary.getFrameDictionaryId) should be(
+        Seq(dictionary.getId, null, null),
+      )
+    }
+
+    "flush the output stream after the frames submitted before flush()" in {
+      val flushed = CountDownLatch(1)
+      val os = new ByteArrayOutputStream:
+        override def flush(): Unit = if size > 0 then flushed.countDown()
+      val pipeline = PipelinedFrameWriter(os, 40)
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, pipeline.getRowBuffer, pipeline.getAllocator),
+      )
+      for t <- triples(10) do encoder.handleTriple(t.s, t.p, t.o)
+      pipeline.submitFrame()
+      pipeline.flush()
+      // The frame is much smaller than the buffer of the CodedOutputStream, so only the flush writes it
+      flushed.await(5, TimeUnit.SECONDS) should be(true)
+      os.toByteArray should be(writeSynchronously(triples(10), 32))
+      pipeline.close()
+    }
+
+    "not write empty frames" in {
+      val os = ByteArrayOutputStream()
+      val pipeline = PipelinedFrameWriter(os, 16)
+      pipeline.submitFrame()
+      pipeline.submitFrame(SerializedFrameBuffer())
+      pipeline.close()
+      os.size should be(0)
+    }
+
+    "report I/O errors to the encoding thread" in {
+      val failing = new OutputStream:
+        override def write(b: Int): Unit = throw IOException("disk full")
+        override def write(b: Array[Byte], off: Int, len: Int): Unit = throw IOException("disk full")
+      val pipeline = PipelinedFrameWriter(failing, 16)
+      val encoder = MockConverterFactory.encoder(
+        ProtoEncoder.Params.of(options, false, pipeline.getRowBuffer, pipeline.getAllocator),
+      )
+      val error = intercept[IOException] {
+        // The CodedOutputStream buffers 8 KiB, so write enough data to hit the output stream
+        for t <- triples(20_000) do
+          encoder.handleTriple(t.s, t.p, t.o)
+          if pipeline.size >= 16 then pipeline.submitFrame()
+        pipeline.close()
+      }
+      error.getMessage should include("disk full")
+    }
+
+    "reject a non-positive depth" in {
+      intercept[IllegalArgumentException] {
+        PipelinedFrameWriter(ByteArrayOutputStream(), 16, 0)
+      }
+    }
+  }
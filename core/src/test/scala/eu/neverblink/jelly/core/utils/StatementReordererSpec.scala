@@ -0,0 +1,127 @@
+package eu.neverblink.jelly.core.utils
+
+import eu.neverblink.jelly.core.{JellyOptions, ProtoEncoder}
+import eu.neverblink.jelly.core.helpers.{MockConverterFactory, ProtoCollector}
+import eu.neverblink.jelly.core.helpers.Mrl.*
+import eu.neverblink.jelly.core.memory.RowBuffer
+import eu.neverblink.jelly.core.proto.v1.*
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class StatementReordererSpec extends AnyWordSpec, Matchers:
+  /** 5 subjects with 4 properties each, interleaved. */
+  private val triples = (0 until 20).map(i =>
+    Triple(
+      Iri(s"https://test.org/s/${i % 5}"),
+      Iri(s"https://test.org/p/${i % 4}"),
+      SimpleLiteral(s"v$i"),
+    ),
+  )
+
+  private def reorder(
+      input: Seq[Triple],
+      windowSize: Int,
+      collector: ProtoCollector = ProtoCollector(),
+  ): Seq[Statement] =
+    val reorderer = StatementReorderer[Node](collector, LogicalStreamType.FLAT_TRIPLES, windowSize)
+    input.foreach(t => reorderer.handleTriple(t.s, t.p, t.o))
+    reorderer.flush()
+    collector.statements.toSeq
+
+  "StatementReorderer" should {
+    "keep all statements" in {
+      reorder(triples, 8).sortBy(_.toString) should be(triples.sortBy(_.toString))
+    }
+
+    "group the statements by subject within the window" in {
+      val output = reorder(triples, 20).map(_.asInstanceOf[Triple])
+      // Each subject forms one run of consecutive statements
+      output.map(_.s).distinct.size should be(5)
+      output.map(_.s).sliding(2).count(p => p.head != p.last) should be(4)
+    }
+
+    "group the statements by predicate within a subject" in {
+      val input = (0 until 8).map(i =>
+        Triple(Iri("https://test.org/s"), Iri(s"https://test.org/p/${i % 2}"), SimpleLiteral(s"v$i")),
+      )
+      val output = reorder(input, 8).map(_.asInstanceOf[Triple])
+      output.map(_.p).sliding(2).count(p => p.head != p.last) should be(1)
+      // Statements of a group keep their input order
+      output.filter(_.p == input.head.p) should be(input.filter(_.p == input.head.p))
+    }
+
+    "pass on the statements once the window is full" in {
+      val collector = ProtoCollector()
+      val reorderer = StatementReorderer[Node](collector, LogicalStreamType.FLAT_TRIPLES, 4)
+      triples.take(3).foreach(t => reorderer.handleTriple(t.s, t.p, t.o))
+      collector.statements.size should be(0)
+      reorderer.size should be(3)
+      reorderer.handleTriple(triples(3).s, triples(3).p, triples(3).o)
+      collector.statements.size should be(4)
+      reorderer.size should be(0)
+    }
+
+    "keep the input order with a window of 1" in {
+      reorder(triples, 1) should be(triples)
+    }
+
+    "group quads by graph first" in {
+      val collector = ProtoCollector()
+      val reorderer = StatementReorderer[Node](collector, LogicalStreamType.FLAT_QUADS, 16)
+      val quads = (0 until 8).map(i =>
+        Quad(
+          Iri(s"https://test.org/s/${i % 2}"),
+          Iri("https://test.org/p"),
+          SimpleLiteral(s"v$i"),
+          Iri(s"https://test.org/g/${i % 4}"),
+        ),
+      )
+      quads.foreach(q => reorderer.handleQuad(q.s, q.p, q.o, q.g))
+      reorderer.flush()
+      val output = collector.statements.toSeq.map(_.asInstanceOf[Quad])
+      output.map(_.g).sliding(2).count(p => p.head != p.last) should be(3)
+    }
+
+    "flush the window before a namespace declaration" in {
+      val collector = ProtoCollector()
+      val reorderer = StatementReorderer[Node](collector, LogicalStreamType.FLAT_TRIPLES, 16)
+      triples.take(3).foreach(t => reorderer.handleTriple(t.s, t.p, t.o))
+      reorderer.handleNamespace("ex", Iri("https://test.org/"))
+      collector.statements.size should be(3)
+      collector.namespaces.size should be(1)
+    }
+
+    "make the encoded stream smaller" in {
+      def encode(input: Seq[Triple], windowSize: Int): Int =
+        val buffer = RowBuffer.newLazyImmutable()
+        val options = JellyOptions.SMALL_STRICT.clone
+          .setPhysicalType(PhysicalStreamType.TRIPLES)
+          .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+        val encoder = MockConverterFactory.encoder(ProtoEncoder.Params.of(options, false, buffer))
+        val reorderer = StatementReorderer[Node](encoder, LogicalStreamType.FLAT_TRIPLES, windowSize)
+        input.foreach(t => reorderer.handleTriple(t.s, t.p, t.o))
+        reorderer.flush()
+        buffer.getRows.asScala.map(_.getSerializedSize).sum
+      encode(triples, 20) should be < encode(triples, 1)
+    }
+
+    "reject stream types where the order matters" in {
+      for logicalType <- Seq(
+          LogicalStreamType.GRAPHS,
+          LogicalStreamType.DATASETS,
+          LogicalStreamType.UNSPECIFIED,
+        )
+      do
+        intercept[IllegalArgumentException] {
+          StatementReorderer[Node](ProtoCollector(), logicalType, 16)
+        }
+    }
+
+    "reject a window size below 1" in {
+      intercept[IllegalArgumentException] {
+        StatementReorderer[Node](ProtoCollector(), LogicalStreamType.FLAT_TRIPLES, 0)
+      }
+    }
+  }
@@ -106,6 +106,10 @@ class FieldGenerator(val info: FieldInfo):
   m.put("optional", info.getOptionalClass)
   if (info.isPackable) m.put("packedTag", info.packedTag)
   if (info.isFixedWidth) m.put("fixedWidth", info.getFixedWidth)
+  if (info.isLazyString) {
+    m.put("bytesField", info.bytesFieldName)
+    m.put("bytesType", RuntimeClasses.BytesType)
+  }
   if (info.isRepeated)
     m.put("getRepeatedIndex_i", if (info.isPrimitive || info.isEnum) "array()[i]" else "get(i)")
   // utility classes
@@ -127,6 +131,20 @@ class FieldGenerator(val info: FieldInfo):
     else if (info.isPrimitive || info.isEnum) {}
     else throw new IllegalStateException("unhandled field: " + info.descriptor)
     t.addField(field.build)
+    if info.isLazyString then
+      t.addField(
+        FieldSpec.builder(RuntimeClasses.BytesType, info.bytesFieldName)
+          .addJavadoc(
+            "Raw UTF-8 bytes of {@link #$N}, as read from the input, or null if the field\n" +
+              "was set from a String. If not null, {@link #$N} is decoded from them on first\n" +
+              "access and is null until then.\n",
+            info.fieldName,
+            info.fieldName,
+          )
+          .addModifiers(Modifier.PROTECTED)
+          .initializer("null")
+          .build,
+      )
 
   private def initializer =
     val initializer = CodeBlock.builder
@@ -154,6 +172,10 @@ class FieldGenerator(val info: FieldInfo):
     if info.isSingularPrimitiveOrEnum then method.addStatement(named("$field:N = $default:L"))
     else if info.isRepeated then method.addStatement(named("$field:N.clear()"))
     else if info.isMessageOrGroup then method.addStatement(named("$field:N = null"))
+    else if info.isLazyString then
+      method
+        .addStatement(named("$field:N = \"\""))
+        .addStatement(named("$bytesField:N = null"))
     else if info.isString then method.addStatement(named("$field:N = \"\""))
     else if info.isBytes then method.addStatement(named("$field:N = ByteString.EMPTY"))
     else throw new IllegalStateException("unhandled field: " + info.descriptor)
@@ -165,6 +187,10 @@ class FieldGenerator(val info: FieldInfo):
       method
         .addStatement(named("$field:N.clear()"))
         .addStatement(named("$field:N.addAll(other.$field:N)"))
+    else if (info.isLazyString)
+      method
+        .addStatement(named("$field:N = other.$field:N"))
+        .addStatement(named("$bytesField:N = other.$bytesField:N"))
     else if (info.isSingularPrimitiveOrEnum || info.isString || info.isBytes)
       method.addStatement(named("$field:N = other.$field:N"))
     else if (info.isMessageOrGroup)
@@ -187,13 +213,19 @@ class FieldGenerator(val info: FieldInfo):
         .addStatement(named("$lazyInitMethod:L()"))
         .addStatement(named("$field:N.mergeFrom(other.$field:N)"))
         .endControlFlow()
+    else if (info.isLazyString)
+      method
+        .addStatement(named("$field:N = other.$field:N"))
+        .addStatement(named("$bytesField:N = other.$bytesField:N"))
     else if (info.isBytes || info.isString) method.addStatement(named("$field:N = other.$field:N"))
     else if (info.isEnum) method.addStatement(named("$setMethod:NValue(other.$field:N)"))
     else if (info.isPrimitive) method.addStatement(named("$setMethod:N(other.$field:N)"))
     else throw new IllegalStateException("unhandled field: " + info.descriptor)
 
   def generateEqualsStatement(method: MethodSpec.Builder): Unit =
-    if (info.isRepeated || info.isBytes || info.isString)
+    if (info.isLazyString)
+      method.addNamedCode("$getMethod:N().equals(other.$getMethod:N())", m)
+    else if (info.isRepeated || info.isBytes || info.isString)
       method.addNamedCode("$field:N.equals(other.$field:N)", m)
     else if (info.isMessageOrGroup)
       method.addNamedCode(
@@ -224,7 +256,13 @@ class FieldGenerator(val info: FieldInfo):
         m,
       )
       return false // tag is already read, so don't read again
-    } else if (info.isString)
+    } else if (info.isLazyString)
+      // Only keep the bytes (a slice of the input only for immutable, aliased inputs),
+      // decoding them is left to the getter
+      method
+        .addStatement(named("$bytesField:N = input.readBytes()"))
+        .addStatement(named("$field:N = null"))
+    else if (info.isString)
       method.addStatement(named("$field:N = input.readString()"))
     else if (info.isMessageOrGroup)
       method.addStatement(
@@ -258,6 +296,8 @@ class FieldGenerator(val info: FieldInfo):
     else if info.isRepeated then code.addNamed("$field:N.size() > 0", m)
     else if info.isMessage then code.addNamed("$field:N != null", m)
     else if info.isEnum then code.addNamed("$field:N != 0", m)
+    else if info.isLazyString then
+      code.addNamed("($bytesField:N != null ? !$bytesField:N.isEmpty() : !$field:N.isEmpty())", m)
     else if info.isString then code.addNamed("!$field:N.isEmpty()", m)
     else if info.isBytes then code.addNamed("$field:N.size() > 0", m)
     else code.addNamed("$field:N != $default:L", m)
@@ -318,6 +358,18 @@ class FieldGenerator(val info: FieldInfo):
           "$writeEndGroupTagToOutput:L",
         m,
       )
+    else if (info.isLazyString)
+      // Write the bytes back unchanged if the field was read from the input
+      method.addNamedCode(
+        "" +
+          "$writeTagToOutput:L" +
+          "if ($bytesField:N != null) {$>\n" +
+          "output.writeBytesNoTag($bytesField:N);\n" +
+          "$<} else {$>\n" +
+          "output.writeStringNoTag($field:N);\n" +
+          "$<}\n",
+        m,
+      )
     else {
       // unroll varint tag loop
       method.addNamedCode(
@@ -366,7 +418,15 @@ class FieldGenerator(val info: FieldInfo):
           "size += $bytesPerTag:L + $protoSink:T.computeUInt32SizeNoTag(dataSize) + dataSize;\n",
         m,
       )
-    } else
+    } else if (info.isLazyString)
+      method.addStatement(
+        named(
+          "size += $bytesPerTag:L + ($bytesField:N != null " +
+            "? $protoSink:T.computeBytesSizeNoTag($bytesField:N) " +
+            ": $protoSink:T.computeStringSizeNoTag($field:N))",
+        ),
+      )
+    else
       method.addStatement(
         named(
           "size += $bytesPerTag:L + $protoSink:T.compute$capitalizedType:LSizeNoTag($field:N)",
@@ -476,6 +536,10 @@ class FieldGenerator(val info: FieldInfo):
           .returns(info.parentTypeInfo.mutableTypeName)
           .addParameter(RuntimeClasses.StringType, "value", Modifier.FINAL)
           .addStatement(named("$field:N = value"))
+          .addCode(
+            if info.isLazyString then named("$bytesField:N = null;\n")
+            else FieldGenerator.EMPTY_BLOCK,
+          )
           .addStatement(named("return this"))
           .build,
       )
@@ -554,6 +618,12 @@ class FieldGenerator(val info: FieldInfo):
       .addModifiers(Modifier.PUBLIC)
     if (info.isRepeated)
       getter.returns(storeType).addStatement(named("return $field:N"))
+    else if (info.isLazyString)
+      getter.returns(typeName)
+        .beginControlFlow("if ($N == null)", info.fieldName)
+        .addStatement(named("$field:N = $bytesField:N.toStringUtf8()"))
+        .endControlFlow
+        .addStatement(named("return $field:N"))
     else if (info.isString)
       getter.returns(typeName).addStatement(named("return $field:N"))
     else if (info.isEnum)
@@ -574,6 +644,27 @@ class FieldGenerator(val info: FieldInfo):
             .build,
         ).build,
       )
+    if (info.isLazyString)
+      t.addMethod(
+        MethodSpec.methodBuilder(info.bytesGetterName)
+          .addAnnotations(info.methodAnnotations)
+          .addJavadoc(
+            named(
+              "" +
+                "Gets the UTF-8 bytes of the field, without decoding them if\n" +
+                "the field was read from the input. Otherwise, encodes the String.\n" +
+                "\n" +
+                "@return the UTF-8 bytes of $field:L",
+            ),
+          )
+          .addModifiers(Modifier.PUBLIC)
+          .returns(RuntimeClasses.BytesType)
+          .beginControlFlow("if ($N != null)", info.bytesFieldName)
+          .addStatement(named("return $bytesField:N"))
+          .endControlFlow
+          .addStatement(named("return $bytesType:T.copyFromUtf8($field:N)"))
+          .build,
+      )
 
   private def named(format: String, args: AnyRef*) =
     CodeBlock.builder.addNamed(format, m).build
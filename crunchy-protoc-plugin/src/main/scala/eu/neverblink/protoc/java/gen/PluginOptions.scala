@@ -53,6 +53,7 @@ class PluginOptions(request: PluginProtos.CodeGeneratorRequest):
   val fastOneofMerge: Set[String] = map.getOrDefault("fast_oneof_merge", "").split(";").toSet
   val classBasedOneof: Set[String] = map.getOrDefault("class_based_oneof", "").split(";").toSet
   val recursiveMessages: Set[String] = map.getOrDefault("recursive_messages", "").split(";").toSet
+  val lazyStrings: Set[String] = map.getOrDefault("lazy_strings", "").split(";").toSet
 
   def isRecursive(messageName: String): Boolean =
     // If empty (default), all messages are considered recursive for security reasons.
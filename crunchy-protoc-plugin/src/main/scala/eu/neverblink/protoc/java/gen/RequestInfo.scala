@@ -198,6 +198,7 @@ object RequestInfo:
 
     val isEmptyMessage: Boolean = fieldCount == 0 && oneOfCount == 0
     val usesFastOneofMerge: Boolean = options.fastOneofMerge.contains(typeName.simpleName())
+    val usesLazyStrings: Boolean = options.lazyStrings.contains(typeName.simpleName())
   }
 
   class FieldInfo(
@@ -300,6 +301,15 @@ object RequestInfo:
 
     def isString: Boolean = descriptor.getType eq FieldDescriptorProto.Type.TYPE_STRING
 
+    // Lazy strings keep the raw UTF-8 bytes from the input and decode them on first access.
+    // Oneof members are not supported, as they share one Object store with the other members.
+    def isLazyString: Boolean =
+      isString && isSingular && !descriptor.hasOneofIndex && parentTypeInfo.usesLazyStrings
+
+    def bytesFieldName: String = fieldName + "Bytes"
+
+    def bytesGetterName: String = getterName + "Bytes"
+
     def isBytes: Boolean = descriptor.getType eq FieldDescriptorProto.Type.TYPE_BYTES
 
     def isEnum: Boolean = descriptor.getType eq FieldDescriptorProto.Type.TYPE_ENUM
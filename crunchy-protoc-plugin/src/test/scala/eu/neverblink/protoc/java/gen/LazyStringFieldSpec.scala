@@ -0,0 +1,119 @@
+package eu.neverblink.protoc.java.gen
+
+import com.google.protobuf.DescriptorProtos.*
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest
+import com.palantir.javapoet.TypeSpec
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters.*
+
+class LazyStringFieldSpec extends AnyWordSpec, Matchers:
+  private def stringField(name: String, number: Int) =
+    FieldDescriptorProto.newBuilder
+      .setName(name)
+      .setNumber(number)
+      .setType(FieldDescriptorProto.Type.TYPE_STRING)
+      .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL)
+
+  private val file = FileDescriptorProto.newBuilder
+    .setName("literal.proto")
+    .setPackage("test")
+    .setSyntax("proto3")
+    .setOptions(FileOptions.newBuilder.setJavaPackage("eu.neverblink.test"))
+    .addMessageType(
+      DescriptorProto.newBuilder
+        .setName("Literal")
+        .addField(stringField("lex", 1))
+        .addField(stringField("langtag", 2).setOneofIndex(0))
+        .addOneofDecl(OneofDescriptorProto.newBuilder.setName("literalKind")),
+    )
+    .build
+
+  /** Generates the Literal message with the given plugin parameter.
+    */
+  private def generate(parameter: String): TypeSpec =
+    val request = CodeGeneratorRequest.newBuilder
+      .setParameter(parameter)
+      .addProtoFile(file)
+      .addFileToGenerate(file.getName)
+      .build
+    val message = RequestInfo.withTypeRegistry(request).files.get(0).messageTypes.get(0)
+    MessageGenerator(message).generate
+
+  /** Returns the code of the methods with the given name and number of parameters, in the message
+    * class and its Mutable subclass.
+    */
+  private def code(t: TypeSpec, name: String, parameters: Int = -1): String =
+    (t +: t.typeSpecs.asScala.toSeq)
+      .flatMap(_.methodSpecs.asScala)
+      .filter(m => m.name == name && (parameters < 0 || m.parameters.size == parameters))
+      .map(_.code.toString)
+      .mkString("\n")
+
+  "MessageGenerator" when {
+    "the message has lazy strings" should {
+      val t = generate("gen_descriptors=false,lazy_strings=Literal")
+
+      "reset the bytes in clear" in {
+        val clear = code(t, "clear")
+        clear should include("lex = \"\"")
+        clear should include("lexBytes = null")
+      }
+
+      "copy the bytes in copyFrom" in {
+        val copyFrom = code(t, "copyFrom")
+        copyFrom should include("lex = other.lex")
+        copyFrom should include("lexBytes = other.lexBytes")
+      }
+
+      "copy the bytes when merging from a message" in {
+        val mergeFrom = code(t, "mergeFrom", 1)
+        mergeFrom should include("lex = other.lex")
+        mergeFrom should include("lexBytes = other.lexBytes")
+      }
+
+      "keep the bytes when merging from the input" in {
+        val mergeFrom = code(t, "mergeFrom", 2)
+        mergeFrom should include("lexBytes = input.readBytes()")
+        mergeFrom should include("lex = null")
+      }
+
+      "compare the decoded strings in equals" in {
+        code(t, "equals") should include("getLex().equals(other.getLex())")
+      }
+
+      "write the bytes back unchanged" in {
+        val writeTo = code(t, "writeTo")
+        writeTo should include("output.writeBytesNoTag(lexBytes)")
+        writeTo should include("output.writeStringNoTag(lex)")
+      }
+
+      "size the bytes without decoding them" in {
+        val size = code(t, "computeSerializedSize")
+        size should include("computeBytesSizeNoTag(lexBytes)")
+        size should include("computeStringSizeNoTag(lex)")
+      }
+
+      "decode the bytes in the getter" in {
+        code(t, "getLex") should include("lex = lexBytes.toStringUtf8()")
+        code(t, "getLexBytes") should include("return lexBytes")
+        code(t, "setLex") should include("lexBytes = null")
+      }
+
+      "not make oneof members lazy" in {
+        code(t, "mergeFrom", 2) should include("input.readString()")
+        code(t, "getLangtagBytes") should be(empty)
+      }
+    }
+
+    "the message is not in the lazy strings" should {
+      "read the strings eagerly" in {
+        val t = generate("gen_descriptors=false,lazy_strings=Other")
+        code(t, "mergeFrom", 2) should include("lex = input.readString()")
+        (t +: t.typeSpecs.asScala.toSeq).flatMap(_.methodSpecs.asScala).map(_.code.toString)
+          .mkString should not include "lexBytes"
+        code(t, "getLexBytes") should be(empty)
+      }
+    }
+  }
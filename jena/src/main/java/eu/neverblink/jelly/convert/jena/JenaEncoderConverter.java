@@ -39,7 +39,7 @@ public final class JenaEncoderConverter
         } else if (node.isTripleTerm()) {
             // RDF-star node
             final var t = node.getTriple();
-            return encoder.makeQuotedTriple(t.getSubject(), t.getPredicate(), t.getObject());
+            return encoder.makeQuotedTriple(node, t.getSubject(), t.getPredicate(), t.getObject());
         } else {
             throw new IllegalArgumentException("Cannot encode node: " + node);
         }
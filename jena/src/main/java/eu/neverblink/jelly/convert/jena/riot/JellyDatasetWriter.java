@@ -39,7 +39,7 @@ public final class JellyDatasetWriter extends WriterDatasetRIOTBase {
 
     @Override
     public void write(OutputStream out, DatasetGraph dataset, PrefixMap prefixMap, String baseURI, Context context) {
-        var variant = formatVariant.withContext(context);
+        var variant = formatVariant.withContext(context).withPrefixMap(prefixMap);
         variant = variant.withOptions(
             variant
                 .getOptions()
@@ -47,6 +47,14 @@ public final class JellyDatasetWriter extends WriterDatasetRIOTBase {
                 .setPhysicalType(PhysicalStreamType.QUADS)
                 .setLogicalType(LogicalStreamType.FLAT_QUADS)
         );
+        if (variant.getAutoTuneSampleSize() > 0) {
+            variant = OptionsAutoTuner.tuneOnQuads(converterFactory, variant, dataset.find());
+        }
+
+        if (variant.getParallelism() > 1 && variant.isDelimited()) {
+            ParallelStreamWriter.write(converterFactory, variant, out, prefixMap, dataset.find(), JellyStreamWriter::quad);
+            return;
+        }
 
         var inner = JellyStreamWriter.create(converterFactory, variant, out);
 
@@ -56,10 +64,7 @@ public final class JellyDatasetWriter extends WriterDatasetRIOTBase {
             }
         }
 
-        final var quads = dataset.find();
-        while (quads.hasNext()) {
-            inner.quad(quads.next());
-        }
+        inner.quads(dataset.find());
 
         inner.finish();
     }
@@ -1,10 +1,15 @@
 package eu.neverblink.jelly.convert.jena.riot;
 
 import eu.neverblink.jelly.core.JellyOptions;
+import eu.neverblink.jelly.core.LookupDictionary;
+import eu.neverblink.jelly.core.LookupVocabulary;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.jelly.core.utils.FrameIndexer;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.RDFFormatVariant;
 import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.PrefixMap;
 import org.apache.jena.sparql.util.Context;
 
 /**
@@ -18,6 +23,15 @@ public final class JellyFormatVariant extends RDFFormatVariant {
     public static final int DEFAULT_FRAME_SIZE = 256;
     public static final boolean DEFAULT_ENABLE_NAMESPACE_DECLARATIONS = false;
     public static final boolean DEFAULT_DELIMITED = true;
+    public static final boolean DEFAULT_DIRECT_ENCODING = false;
+    public static final boolean DEFAULT_PIPELINED = false;
+    public static final int DEFAULT_PARALLELISM = 1;
+    public static final boolean DEFAULT_SELF_CONTAINED_FRAMES = false;
+    public static final boolean DEFAULT_WARM_UP_FROM_PREFIXES = false;
+    public static final int DEFAULT_AUTO_TUNE_SAMPLE_SIZE = 0;
+    public static final int DEFAULT_REORDER_WINDOW = 0;
+    public static final int DEFAULT_MAX_FRAME_BYTES = 0;
+    public static final int DEFAULT_MAX_FRAME_AGE_MILLIS = 0;
     // Constant name for all variants of the Jelly format, as all writers can handle all variants.
     public static final String VARIANT_NAME = "Variant";
 
@@ -25,6 +39,19 @@ public final class JellyFormatVariant extends RDFFormatVariant {
     private final boolean enableNamespaceDeclarations;
     private final boolean isDelimited;
     private final int frameSize;
+    private final boolean directEncoding;
+    private final boolean pipelined;
+    private final int parallelism;
+    private final boolean selfContainedFrames;
+    private final FrameIndexer frameIndexer;
+    private final LookupDictionary dictionary;
+    private final LookupVocabulary vocabulary;
+    private final boolean warmUpFromPrefixes;
+    private final int autoTuneSampleSize;
+    private final int reorderWindow;
+    private final int maxFrameBytes;
+    private final int maxFrameAgeMillis;
+    private final EncoderPool encoderPool;
 
     public static Builder builder() {
         return new Builder();
@@ -40,9 +67,42 @@ public final class JellyFormatVariant extends RDFFormatVariant {
         private boolean enableNamespaceDeclarations = DEFAULT_ENABLE_NAMESPACE_DECLARATIONS;
         private boolean isDelimited = DEFAULT_DELIMITED;
         private int frameSize = DEFAULT_FRAME_SIZE;
+        private boolean directEncoding = DEFAULT_DIRECT_ENCODING;
+        private boolean pipelined = DEFAULT_PIPELINED;
+        private int parallelism = DEFAULT_PARALLELISM;
+        private boolean selfContainedFrames = DEFAULT_SELF_CONTAINED_FRAMES;
+        private FrameIndexer frameIndexer = null;
+        private LookupDictionary dictionary = null;
+        private LookupVocabulary vocabulary = null;
+        private boolean warmUpFromPrefixes = DEFAULT_WARM_UP_FROM_PREFIXES;
+        private int autoTuneSampleSize = DEFAULT_AUTO_TUNE_SAMPLE_SIZE;
+        private int reorderWindow = DEFAULT_REORDER_WINDOW;
+        private int maxFrameBytes = DEFAULT_MAX_FRAME_BYTES;
+        private int maxFrameAgeMillis = DEFAULT_MAX_FRAME_AGE_MILLIS;
+        private EncoderPool encoderPool = null;
 
         private Builder() {}
 
+        private Builder(JellyFormatVariant variant) {
+            this.options = variant.options;
+            this.enableNamespaceDeclarations = variant.enableNamespaceDeclarations;
+            this.isDelimited = variant.isDelimited;
+            this.frameSize = variant.frameSize;
+            this.directEncoding = variant.directEncoding;
+            this.pipelined = variant.pipelined;
+            this.parallelism = variant.parallelism;
+            this.selfContainedFrames = variant.selfContainedFrames;
+            this.frameIndexer = variant.frameIndexer;
+            this.dictionary = variant.dictionary;
+            this.vocabulary = variant.vocabulary;
+            this.warmUpFromPrefixes = variant.warmUpFromPrefixes;
+            this.autoTuneSampleSize = variant.autoTuneSampleSize;
+            this.reorderWindow = variant.reorderWindow;
+            this.maxFrameBytes = variant.maxFrameBytes;
+            this.maxFrameAgeMillis = variant.maxFrameAgeMillis;
+            this.encoderPool = variant.encoderPool;
+        }
+
         /**
          * Set the options for the Jelly format variant.
          * @param options Jelly options
@@ -91,35 +151,221 @@ public final class JellyFormatVariant extends RDFFormatVariant {
             return this;
         }
 
+        /**
+         * Set whether the writer should serialize rows directly into a byte buffer, instead of
+         * building intermediate protobuf objects. The output is the same, but with much less allocation.
+         * @param directEncoding whether to use direct encoding
+         * @return this
+         */
+        public Builder directEncoding(boolean directEncoding) {
+            this.directEncoding = directEncoding;
+            return this;
+        }
+
+        /**
+         * Set whether the writer should serialize and write frames on a background thread, while the
+         * next frame is being encoded. Only applies to delimited output.
+         * @param pipelined whether to use pipelined output
+         * @return this
+         */
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+
+        /**
+         * Set the number of threads used by the graph and dataset writers to encode the data.
+         * With more than 1 thread, the data is encoded as several concatenated Jelly streams.
+         * Only applies to delimited output.
+         * @param parallelism number of encoding threads (at least 1)
+         * @return this
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set whether each frame should be decodable independently of the previous frames.
+         * Every frame then starts with its own options row and lookup entries, which makes the output larger.
+         * Only applies to delimited output.
+         * @param selfContainedFrames whether to write self-contained frames
+         * @return this
+         */
+        public Builder selfContainedFrames(boolean selfContainedFrames) {
+            this.selfContainedFrames = selfContainedFrames;
+            return this;
+        }
+
+        /**
+         * Set the indexer to which the writer passes every frame it writes, to build a sidecar index of the
+         * output (see {@link eu.neverblink.jelly.core.utils.FrameIndex}). The indexer must not be shared
+         * between outputs. Only applies to delimited output.
+         * @param frameIndexer indexer, or null to disable indexing
+         * @return this
+         */
+        public Builder frameIndexer(FrameIndexer frameIndexer) {
+            this.frameIndexer = frameIndexer;
+            return this;
+        }
+
+        /**
+         * Set the dictionary to pre-seed the lookups with (see {@link LookupDictionary}). The output can only
+         * be read with the same dictionary.
+         * @param dictionary dictionary, or null to start with empty lookups
+         * @return this
+         */
+        public Builder dictionary(LookupDictionary dictionary) {
+            this.dictionary = dictionary;
+            return this;
+        }
+
+        /**
+         * Set the vocabulary to warm up the lookups with (see {@link LookupVocabulary}). Its lookup entries
+         * are written right after the options row, so the output can be read by any decoder.
+         * @param vocabulary vocabulary, or null to start with empty lookups
+         * @return this
+         */
+        public Builder vocabulary(LookupVocabulary vocabulary) {
+            this.vocabulary = vocabulary;
+            return this;
+        }
+
+        /**
+         * Set whether the graph and dataset writers should warm up the prefix lookup with the namespace IRIs
+         * of the prefix map of the written data, in addition to the vocabulary.
+         * @param warmUpFromPrefixes whether to warm up the prefix lookup from the prefix map
+         * @return this
+         */
+        public Builder warmUpFromPrefixes(boolean warmUpFromPrefixes) {
+            this.warmUpFromPrefixes = warmUpFromPrefixes;
+            return this;
+        }
+
+        /**
+         * Set the number of statements on which the writers tune the sizes of the lookup tables, before writing
+         * the options row (see {@link eu.neverblink.jelly.core.utils.OptionsAdvisor}). The other options are
+         * kept. The stream writer buffers the sampled statements in memory.
+         * @param autoTuneSampleSize number of statements in the sample, or 0 to use the table sizes as set
+         * @return this
+         */
+        public Builder autoTuneSampleSize(int autoTuneSampleSize) {
+            if (autoTuneSampleSize < 0) {
+                throw new IllegalArgumentException("Sample size must not be negative, got " + autoTuneSampleSize);
+            }
+            this.autoTuneSampleSize = autoTuneSampleSize;
+            return this;
+        }
+
+        /**
+         * Set the number of statements that the writers reorder at once, grouping them by graph, subject, and
+         * predicate before encoding (see {@link eu.neverblink.jelly.core.utils.StatementReorderer}). Only
+         * applies to flat triple and quad streams.
+         * @param reorderWindow number of statements in the window, or 0 to keep the input order
+         * @return this
+         */
+        public Builder reorderWindow(int reorderWindow) {
+            if (reorderWindow < 0) {
+                throw new IllegalArgumentException("Reorder window must not be negative, got " + reorderWindow);
+            }
+            this.reorderWindow = reorderWindow;
+            return this;
+        }
+
+        /**
+         * Set the maximum serialized size of each RdfStreamFrame, in bytes. A frame is written when it reaches
+         * either this size or the frame size in rows, so that frames with very large literals do not take up
+         * too much memory. The frame may be slightly larger, to fit the whole statement. Only applies to
+         * delimited output.
+         * @param maxFrameBytes maximum size of a frame in bytes, or 0 for no limit
+         * @return this
+         */
+        public Builder maxFrameBytes(int maxFrameBytes) {
+            if (maxFrameBytes < 0) {
+                throw new IllegalArgumentException("Maximum frame bytes must not be negative, got " + maxFrameBytes);
+            }
+            this.maxFrameBytes = maxFrameBytes;
+            return this;
+        }
+
+        /**
+         * Set the maximum time between encoding the first statement of a frame and writing the frame out, in
+         * milliseconds. This bounds the latency for consumers of a slow, live stream: the frame is also written
+         * when no more statements come in. Only applies to delimited output.
+         * <p>
+         * The writer then checks the age of the frame on a background thread, and the writer's methods must not
+         * be called concurrently with each other (as usual).
+         * @param maxFrameAgeMillis maximum age of a frame in milliseconds, or 0 for no limit
+         * @return this
+         */
+        public Builder maxFrameAgeMillis(int maxFrameAgeMillis) {
+            if (maxFrameAgeMillis < 0) {
+                throw new IllegalArgumentException(
+                    "Maximum frame age must not be negative, got " + maxFrameAgeMillis
+                );
+            }
+            this.maxFrameAgeMillis = maxFrameAgeMillis;
+            return this;
+        }
+
+        /**
+         * Set the pool to take the buffers and lookups of the writers from (see {@link EncoderPool}). This
+         * cuts the cost of setting up a writer, which dominates when writing many small outputs, e.g., in a
+         * server. The pool can be shared between any number of outputs.
+         * @param encoderPool pool, or null to allocate new structures for every output
+         * @return this
+         */
+        public Builder encoderPool(EncoderPool encoderPool) {
+            this.encoderPool = encoderPool;
+            return this;
+        }
+
         public JellyFormatVariant build() {
-            return new JellyFormatVariant(options, enableNamespaceDeclarations, isDelimited, frameSize);
+            return new JellyFormatVariant(this);
         }
     }
 
     /**
      * Constructor for JellyFormatVariant.
+     * <p>
+     * Note on isDelimited: files saved to disk are recommended to be delimited, for better interoperability
+     * with other implementations. In a non-delimited file you can have ONLY ONE FRAME. If the input data is
+     * large, this will lead to an out-of-memory error. So, this makes sense only for small data.
+     * **Disable this only if you know what you are doing.**
      *
-     * @param options Jelly options
-     * @param frameSize size of each RdfStreamFrame, in rows
-     * @param enableNamespaceDeclarations whether to include namespace declarations in the output
-     * @param isDelimited whether to write the output as delimited frames. Note: files saved to disk are
-     *                    recommended to be delimited, for better interoperability with other implementations.
-     *                    In a non-delimited file you can have ONLY ONE FRAME. If the input data is large,
-     *                    this will lead to an out-of-memory error. So, this makes sense only for small data.
-     *                    **Disable this only if you know what you are doing.**
+     * @param builder builder with the settings of the variant
      */
-    private JellyFormatVariant(
-        RdfStreamOptions options,
-        boolean enableNamespaceDeclarations,
-        boolean isDelimited,
-        int frameSize
-    ) {
+    private JellyFormatVariant(Builder builder) {
         // Constant, because all writers can handle all variants
         super(VARIANT_NAME);
-        this.options = options;
-        this.enableNamespaceDeclarations = enableNamespaceDeclarations;
-        this.isDelimited = isDelimited;
-        this.frameSize = frameSize;
+        this.options = builder.options;
+        this.enableNamespaceDeclarations = builder.enableNamespaceDeclarations;
+        this.isDelimited = builder.isDelimited;
+        this.frameSize = builder.frameSize;
+        this.directEncoding = builder.directEncoding;
+        this.pipelined = builder.pipelined;
+        this.parallelism = builder.parallelism;
+        this.selfContainedFrames = builder.selfContainedFrames;
+        this.frameIndexer = builder.frameIndexer;
+        this.dictionary = builder.dictionary;
+        this.vocabulary = builder.vocabulary;
+        this.warmUpFromPrefixes = builder.warmUpFromPrefixes;
+        this.autoTuneSampleSize = builder.autoTuneSampleSize;
+        this.reorderWindow = builder.reorderWindow;
+        this.maxFrameBytes = builder.maxFrameBytes;
+        this.maxFrameAgeMillis = builder.maxFrameAgeMillis;
+        this.encoderPool = builder.encoderPool;
+    }
+
+    /**
+     * Returns a builder initialized with the settings of this variant.
+     * @return builder
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
     }
 
     /**
@@ -156,12 +402,49 @@ public final class JellyFormatVariant extends RDFFormatVariant {
             preset = this.options;
         }
 
-        return new JellyFormatVariant(
-            context.get(JellyLanguage.SYMBOL_STREAM_OPTIONS, preset),
-            context.isTrue(JellyLanguage.SYMBOL_ENABLE_NAMESPACE_DECLARATIONS) || this.isEnableNamespaceDeclarations(),
-            context.isTrueOrUndef(JellyLanguage.SYMBOL_DELIMITED_OUTPUT),
-            context.getInt(JellyLanguage.SYMBOL_FRAME_SIZE, this.getFrameSize())
-        );
+        return toBuilder()
+            .options(context.get(JellyLanguage.SYMBOL_STREAM_OPTIONS, preset))
+            .enableNamespaceDeclarations(
+                context.isTrue(JellyLanguage.SYMBOL_ENABLE_NAMESPACE_DECLARATIONS) || this.isEnableNamespaceDeclarations()
+            )
+            .isDelimited(context.isTrueOrUndef(JellyLanguage.SYMBOL_DELIMITED_OUTPUT))
+            .frameSize(context.getInt(JellyLanguage.SYMBOL_FRAME_SIZE, this.getFrameSize()))
+            .directEncoding(context.isTrue(JellyLanguage.SYMBOL_DIRECT_ENCODING) || this.isDirectEncoding())
+            .pipelined(context.isTrue(JellyLanguage.SYMBOL_PIPELINED_OUTPUT) || this.isPipelined())
+            .parallelism(context.getInt(JellyLanguage.SYMBOL_PARALLELISM, this.getParallelism()))
+            .selfContainedFrames(
+                context.isTrue(JellyLanguage.SYMBOL_SELF_CONTAINED_FRAMES) || this.isSelfContainedFrames()
+            )
+            .frameIndexer(context.get(JellyLanguage.SYMBOL_FRAME_INDEXER, this.getFrameIndexer()))
+            .dictionary(context.get(JellyLanguage.SYMBOL_DICTIONARY, this.getDictionary()))
+            .vocabulary(context.get(JellyLanguage.SYMBOL_VOCABULARY, this.getVocabulary()))
+            .warmUpFromPrefixes(
+                context.isTrue(JellyLanguage.SYMBOL_WARM_UP_FROM_PREFIXES) || this.isWarmUpFromPrefixes()
+            )
+            .autoTuneSampleSize(
+                context.getInt(JellyLanguage.SYMBOL_AUTO_TUNE_SAMPLE_SIZE, this.getAutoTuneSampleSize())
+            )
+            .reorderWindow(context.getInt(JellyLanguage.SYMBOL_REORDER_WINDOW, this.getReorderWindow()))
+            .maxFrameBytes(context.getInt(JellyLanguage.SYMBOL_MAX_FRAME_BYTES, this.getMaxFrameBytes()))
+            .maxFrameAgeMillis(
+                context.getInt(JellyLanguage.SYMBOL_MAX_FRAME_AGE_MILLIS, this.getMaxFrameAgeMillis())
+            )
+            .encoderPool(context.get(JellyLanguage.SYMBOL_ENCODER_POOL, this.getEncoderPool()))
+            .build();
+    }
+
+    /**
+     * Make a new Jelly format variant with the namespace IRIs of the prefix map added to the vocabulary,
+     * if warming up from prefixes is enabled.
+     * @param prefixMap prefix map of the written data, may be null
+     * @return updated variant
+     */
+    public JellyFormatVariant withPrefixMap(PrefixMap prefixMap) {
+        if (!warmUpFromPrefixes || prefixMap == null || prefixMap.isEmpty()) {
+            return this;
+        }
+        final var prefixes = LookupVocabulary.ofPrefixes(prefixMap.getMapping().values());
+        return toBuilder().vocabulary(vocabulary == null ? prefixes : prefixes.merge(vocabulary)).build();
     }
 
     public RdfStreamOptions getOptions() {
@@ -180,7 +463,59 @@ public final class JellyFormatVariant extends RDFFormatVariant {
         return frameSize;
     }
 
+    public boolean isDirectEncoding() {
+        return directEncoding;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isSelfContainedFrames() {
+        return selfContainedFrames;
+    }
+
+    public FrameIndexer getFrameIndexer() {
+        return frameIndexer;
+    }
+
+    public LookupDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public LookupVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    public boolean isWarmUpFromPrefixes() {
+        return warmUpFromPrefixes;
+    }
+
+    public int getAutoTuneSampleSize() {
+        return autoTuneSampleSize;
+    }
+
+    public int getReorderWindow() {
+        return reorderWindow;
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public int getMaxFrameAgeMillis() {
+        return maxFrameAgeMillis;
+    }
+
+    public EncoderPool getEncoderPool() {
+        return encoderPool;
+    }
+
     public JellyFormatVariant withOptions(RdfStreamOptions options) {
-        return new JellyFormatVariant(options, enableNamespaceDeclarations, isDelimited, frameSize);
+        return toBuilder().options(options).build();
     }
 }
@@ -39,7 +39,7 @@ public final class JellyGraphWriter extends WriterGraphRIOTBase {
 
     @Override
     public void write(OutputStream out, Graph graph, PrefixMap prefixMap, String baseURI, Context context) {
-        var variant = formatVariant.withContext(context);
+        var variant = formatVariant.withContext(context).withPrefixMap(prefixMap);
         variant = variant.withOptions(
             variant
                 .getOptions()
@@ -47,6 +47,14 @@ public final class JellyGraphWriter extends WriterGraphRIOTBase {
                 .setPhysicalType(PhysicalStreamType.TRIPLES)
                 .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
         );
+        if (variant.getAutoTuneSampleSize() > 0) {
+            variant = OptionsAutoTuner.tuneOnTriples(converterFactory, variant, graph.find());
+        }
+
+        if (variant.getParallelism() > 1 && variant.isDelimited()) {
+            ParallelStreamWriter.write(converterFactory, variant, out, prefixMap, graph.find(), JellyStreamWriter::triple);
+            return;
+        }
 
         var inner = JellyStreamWriter.create(converterFactory, variant, out);
 
@@ -56,10 +64,7 @@ public final class JellyGraphWriter extends WriterGraphRIOTBase {
             }
         }
 
-        final var triples = graph.find();
-        while (triples.hasNext()) {
-            inner.triple(triples.next());
-        }
+        inner.triples(graph.find());
 
         inner.finish();
     }
@@ -126,6 +126,162 @@ public final class JellyLanguage {
      */
     public static final Symbol SYMBOL_DELIMITED_OUTPUT = Symbol.create(SYMBOL_NS + "delimitedOutput");
 
+    /**
+     * Symbol for enabling direct encoding in the writers. (DISABLED by default)
+     * <p>
+     * With direct encoding, the rows are serialized straight into a byte buffer as the statements are encoded,
+     * without building intermediate protobuf objects. The output is byte-for-byte the same, but with
+     * much lower allocation rates.
+     * <p>
+     * Set this to a boolean value in Jena's Context.
+     */
+    public static final Symbol SYMBOL_DIRECT_ENCODING = Symbol.create(SYMBOL_NS + "directEncoding");
+
+    /**
+     * Symbol for enabling pipelined output in the writers. (DISABLED by default)
+     * <p>
+     * With pipelined output, completed frames are serialized and written to the output stream by a background
+     * thread, while the next frame is being encoded. This helps when the output is slow (e.g., compressed or
+     * sent over the network). Only applies to delimited output.
+     * <p>
+     * Set this to a boolean value in Jena's Context.
+     */
+    public static final Symbol SYMBOL_PIPELINED_OUTPUT = Symbol.create(SYMBOL_NS + "pipelinedOutput");
+
+    /**
+     * Symbol for enabling self-contained frames in the output. (DISABLED by default)
+     * <p>
+     * With self-contained frames, every frame starts with its own options row and lookup entries, so it can be
+     * decoded without reading the previous frames. This allows for seeking in, splitting, and decoding large
+     * files in parallel, at the cost of a larger output. Only applies to delimited output.
+     * <p>
+     * When reading with {@link #SYMBOL_READ_PARALLELISM} over 1, set this to declare that the input has
+     * self-contained frames. The frames are then also decoded in parallel. The reader can't check this, and
+     * fails or decodes wrong statements if the frames are not self-contained.
+     * <p>
+     * Set this to a boolean value in Jena's Context.
+     */
+    public static final Symbol SYMBOL_SELF_CONTAINED_FRAMES = Symbol.create(SYMBOL_NS + "selfContainedFrames");
+
+    /**
+     * Symbol for the number of threads used to encode RDF graphs and datasets. (1 by default – no parallelism)
+     * <p>
+     * With a value larger than 1, the graph (or dataset) writer splits the statements into large chunks and
+     * encodes each chunk on a separate thread, as an independent Jelly stream with its own options row and
+     * lookups. The streams are then concatenated, in order, into one delimited output. This makes the output
+     * somewhat larger, but scales the writing of large graphs with the number of cores.
+     * <p>
+     * Only applies to delimited output written with the graph or dataset writer (not the stream writer).
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_PARALLELISM = Symbol.create(SYMBOL_NS + "parallelism");
+
+    /**
+     * Symbol for the number of threads used to parse the frames when reading delimited Jelly files.
+     * (1 by default – no parallelism)
+     * <p>
+     * With a value larger than 1, the frames are parsed by a pool of worker threads, while the statements are
+     * decoded in order on the reading thread. This speeds up reading large files on multicore machines.
+     * With {@link #SYMBOL_SELF_CONTAINED_FRAMES}, the statements are decoded by the workers as well.
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_READ_PARALLELISM = Symbol.create(SYMBOL_NS + "readParallelism");
+
+    /**
+     * Symbol for the indexer of the written frames. (Not set by default – no indexing)
+     * <p>
+     * The writers pass every frame they write to the indexer. After writing, call
+     * {@code FrameIndexer.getIndex()} to get a sidecar index of the output, which allows for seeking in the
+     * file without decoding it from the start. Only applies to delimited output.
+     * <p>
+     * Set this in Jena's Context to a new instance of FrameIndexer for each output.
+     */
+    public static final Symbol SYMBOL_FRAME_INDEXER = Symbol.create(SYMBOL_NS + "frameIndexer");
+
+    /**
+     * Symbol for the pre-shared dictionary of the lookups. (Not set by default – no dictionary)
+     * <p>
+     * Set this in Jena's Context to a LookupDictionary both when writing and when reading. A stream
+     * written with a dictionary can only be read with the same dictionary.
+     */
+    public static final Symbol SYMBOL_DICTIONARY = Symbol.create(SYMBOL_NS + "dictionary");
+
+    /**
+     * Symbol for the vocabulary to warm up the lookups with. (Not set by default – no vocabulary)
+     * <p>
+     * The lookup entries of the vocabulary are written right after the options row, before any statement,
+     * so the output can be read by any decoder. Useful for data dominated by a known ontology.
+     * <p>
+     * Set this in Jena's Context to a LookupVocabulary.
+     */
+    public static final Symbol SYMBOL_VOCABULARY = Symbol.create(SYMBOL_NS + "vocabulary");
+
+    /**
+     * Symbol for warming up the prefix lookup with the namespace IRIs of the written data. (DISABLED by default)
+     * <p>
+     * Only applies to the graph and dataset writers, which get the prefix map of the data from Jena.
+     * <p>
+     * Set this to a boolean value in Jena's Context.
+     */
+    public static final Symbol SYMBOL_WARM_UP_FROM_PREFIXES = Symbol.create(SYMBOL_NS + "warmUpFromPrefixes");
+
+    /**
+     * Symbol for the number of statements on which the lookup table sizes are tuned. (0 by default – no tuning)
+     * <p>
+     * With a positive value, the writers replay the first statements through the lookups for a few candidate
+     * table sizes, and write the smallest sizes that keep the lookup evictions rare. The stream writer buffers
+     * these statements in memory before writing anything.
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_AUTO_TUNE_SAMPLE_SIZE = Symbol.create(SYMBOL_NS + "autoTuneSampleSize");
+
+    /**
+     * Symbol for the number of statements reordered at once before encoding. (0 by default – no reordering)
+     * <p>
+     * With a positive value, the writers buffer that many statements and write them grouped by graph, subject,
+     * and predicate, so that more repeated terms can be left out of the output. Larger windows give smaller
+     * output, at the cost of latency and memory. Only applies to flat triple and quad streams, where the order
+     * of the statements does not matter – the graph and dataset writers always write those.
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_REORDER_WINDOW = Symbol.create(SYMBOL_NS + "reorderWindow");
+
+    /**
+     * Symbol for the maximum serialized size of a frame in bytes. (0 by default – no limit)
+     * <p>
+     * A frame is written when it reaches either this size or the frame size in rows. This bounds the memory
+     * used by the writer when the data has very large literals. Only applies to delimited output.
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_MAX_FRAME_BYTES = Symbol.create(SYMBOL_NS + "maxFrameBytes");
+
+    /**
+     * Symbol for the maximum age of a frame in milliseconds. (0 by default – no limit)
+     * <p>
+     * A frame is written at most about this long after its first statement was encoded, also when no more
+     * statements come in. This bounds the latency for the consumers of slow, live streams. Only applies to
+     * delimited output.
+     * <p>
+     * Set this in Jena's Context to an integer (not long!) value.
+     */
+    public static final Symbol SYMBOL_MAX_FRAME_AGE_MILLIS = Symbol.create(SYMBOL_NS + "maxFrameAgeMillis");
+
+    /**
+     * Symbol for the pool of the writers' buffers and lookups. (Not set by default – no pooling)
+     * <p>
+     * With a pool, the writers reuse the structures of the previous outputs instead of allocating new ones.
+     * This helps when writing many small outputs, e.g., in a SPARQL server.
+     * <p>
+     * Set this in Jena's Context to an instance of {@link eu.neverblink.jelly.core.memory.EncoderPool}, shared
+     * between the outputs.
+     */
+    public static final Symbol SYMBOL_ENCODER_POOL = Symbol.create(SYMBOL_NS + "encoderPool");
+
     private static volatile boolean isRegistered = false;
 
     /**
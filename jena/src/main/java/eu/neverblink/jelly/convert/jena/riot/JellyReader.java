@@ -4,21 +4,26 @@ import static eu.neverblink.jelly.core.utils.IoUtils.readStream;
 
 import eu.neverblink.jelly.convert.jena.JenaConverterFactory;
 import eu.neverblink.jelly.core.JellyOptions;
+import eu.neverblink.jelly.core.LookupDictionary;
 import eu.neverblink.jelly.core.RdfHandler;
-import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.jfr.FrameDecodedEvent;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.utils.IoUtils;
-import eu.neverblink.protoc.java.runtime.MessageFactory;
-import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import eu.neverblink.jelly.core.utils.ParallelFrameReader;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.jena.atlas.web.ContentType;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.riot.ReaderRIOT;
 import org.apache.jena.riot.RiotException;
 import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.util.Context;
 
 public final class JellyReader implements ReaderRIOT {
@@ -32,6 +37,14 @@ public final class JellyReader implements ReaderRIOT {
     /**
      * Reads Jelly RDF data from an InputStream.
      * Automatically detects whether the input is a single frame (non-delimited) or a stream of frames (delimited).
+     * <p>
+     * If the input is a FileInputStream of a regular file, the file is memory-mapped and parsed without
+     * copying it through the stream, from the current position to the end of the file. Pipes and devices
+     * are read as a stream.
+     * <p>
+     * With a read parallelism over 1, the frames are parsed by worker threads. If the context also declares the
+     * frames as self-contained ({@link JellyLanguage#SYMBOL_SELF_CONTAINED_FRAMES}), the workers decode them
+     * too, each frame with a new decoder, and the statements are passed to the output in the order of the frames.
      */
     @Override
     public void read(InputStream in, String baseURI, ContentType ct, StreamRDF output, Context context) {
@@ -57,24 +70,64 @@ public final class JellyReader implements ReaderRIOT {
             }
         };
 
+        final LookupDictionary dictionary = context.get(JellyLanguage.SYMBOL_DICTIONARY);
         final var decoder = converterFactory.anyStatementDecoder(handler, supportedOptions);
-        // Single row buffer -- rows are passed to the decoder immediately after being read
-        final RowBuffer buffer = RowBuffer.newSingle(decoder::ingestRow);
-        final RdfStreamFrame.Mutable reusableFrame = RdfStreamFrame.newInstance().setRows(buffer);
-        final MessageFactory<RdfStreamFrame> getReusableFrame = () -> reusableFrame;
+        decoder.setDictionary(dictionary);
 
         output.start();
         try {
+            final int parallelism = context.getInt(JellyLanguage.SYMBOL_READ_PARALLELISM, 1);
+            if (
+                in instanceof FileInputStream fileInput &&
+                parallelism <= 1 &&
+                IoUtils.isMappable(fileInput.getChannel())
+            ) {
+                // Reading from a file – memory-map it instead of copying it through the stream
+                // The rows are decoded straight from the wire format, without creating row messages
+                IoUtils.readFile(fileInput.getChannel(), decoder::ingestFrame);
+                return;
+            }
+
             final var delimitingResponse = IoUtils.autodetectDelimiting(in);
-            if (delimitingResponse.isDelimited()) {
+            if (
+                delimitingResponse.isDelimited() &&
+                parallelism > 1 &&
+                context.isTrue(JellyLanguage.SYMBOL_SELF_CONTAINED_FRAMES)
+            ) {
+                // Each frame can be decoded on its own – decode them in parallel, and emit them in order
+                ParallelFrameReader.readStream(
+                    delimitingResponse.newInput(),
+                    RdfStreamFrame.getFactory(),
+                    parallelism,
+                    frame -> decodeSelfContainedFrame(frame, supportedOptions, dictionary),
+                    statements -> emit(statements, output)
+                );
+            } else if (delimitingResponse.isDelimited() && parallelism > 1) {
+                // Parse the frames and their literals in parallel, but decode them in order on this thread
+                ParallelFrameReader.readStream(
+                    delimitingResponse.newInput(),
+                    RdfStreamFrame.getFactory(),
+                    parallelism,
+                    ParallelFrameReader::decodeLiterals,
+                    frame -> {
+                        final var event = new FrameDecodedEvent();
+                        event.begin();
+                        decoder.ingestFrame(frame);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.set(null, frame.getRows().size(), frame.getSerializedSize());
+                            event.commit();
+                        }
+                    }
+                );
+            } else if (delimitingResponse.isDelimited()) {
                 // Delimited Jelly file
                 // In this case, we can read multiple frames
-                readStream(delimitingResponse.newInput(), getReusableFrame, frame -> buffer.clear());
+                readStream(delimitingResponse.newInput(), decoder::ingestFrame);
             } else {
                 // Non-delimited Jelly file
                 // In this case, we can only read one frame
-                ProtoMessage.parseFrom(delimitingResponse.newInput(), getReusableFrame);
-                buffer.clear();
+                IoUtils.readFrame(delimitingResponse.newInput(), decoder::ingestFrame);
             }
         } catch (IOException e) {
             throw new RiotException(e);
@@ -83,6 +136,62 @@ public final class JellyReader implements ReaderRIOT {
         }
     }
 
+    /**
+     * A namespace declaration decoded by a worker thread, waiting to be passed to the output.
+     */
+    private record Prefix(String prefix, String iri) {}
+
+    /**
+     * Decodes a self-contained frame with a new decoder, on a worker thread of the parallel reader.
+     * @return the decoded triples, quads and prefixes, in the order of the frame
+     */
+    private List<Object> decodeSelfContainedFrame(
+        RdfStreamFrame frame,
+        RdfStreamOptions supportedOptions,
+        LookupDictionary dictionary
+    ) {
+        final var statements = new ArrayList<Object>(frame.getRows().size());
+        final var handler = new RdfHandler.AnyStatementHandler<Node>() {
+            @Override
+            public void handleNamespace(String prefix, Node namespace) {
+                statements.add(new Prefix(prefix, namespace.getURI()));
+            }
+
+            @Override
+            public void handleTriple(Node subject, Node predicate, Node object) {
+                statements.add(converterFactory.decoderConverter().makeTriple(subject, predicate, object));
+            }
+
+            @Override
+            public void handleQuad(Node subject, Node predicate, Node object, Node graph) {
+                statements.add(converterFactory.decoderConverter().makeQuad(subject, predicate, object, graph));
+            }
+        };
+        final var decoder = converterFactory.anyStatementDecoder(handler, supportedOptions);
+        decoder.setDictionary(dictionary);
+        final var event = new FrameDecodedEvent();
+        event.begin();
+        decoder.ingestFrame(frame);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(null, frame.getRows().size(), frame.getSerializedSize());
+            event.commit();
+        }
+        return statements;
+    }
+
+    private static void emit(List<Object> statements, StreamRDF output) {
+        for (final Object statement : statements) {
+            if (statement instanceof Triple triple) {
+                output.triple(triple);
+            } else if (statement instanceof Quad quad) {
+                output.quad(quad);
+            } else if (statement instanceof Prefix prefix) {
+                output.prefix(prefix.prefix(), prefix.iri());
+            }
+        }
+    }
+
     @Override
     public void read(Reader reader, String baseURI, ContentType ct, StreamRDF output, Context context) {
         throw new RiotException(
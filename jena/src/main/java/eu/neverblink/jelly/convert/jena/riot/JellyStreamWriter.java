@@ -2,15 +2,24 @@ package eu.neverblink.jelly.convert.jena.riot;
 
 import com.google.protobuf.CodedOutputStream;
 import eu.neverblink.jelly.convert.jena.JenaConverterFactory;
+import eu.neverblink.jelly.core.LookupDictionary;
 import eu.neverblink.jelly.core.ProtoEncoder;
+import eu.neverblink.jelly.core.RdfHandler;
+import eu.neverblink.jelly.core.jfr.FrameEncodedEvent;
+import eu.neverblink.jelly.core.jfr.FrameWrittenEvent;
 import eu.neverblink.jelly.core.memory.EncoderAllocator;
-import eu.neverblink.jelly.core.memory.ReusableRowBuffer;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
+import eu.neverblink.jelly.core.utils.FrameLimiter;
+import eu.neverblink.jelly.core.utils.PipelinedFrameWriter;
+import eu.neverblink.jelly.core.utils.StatementReorderer;
 import eu.neverblink.protoc.java.runtime.ProtobufUtil;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
@@ -24,6 +33,26 @@ import org.apache.jena.sparql.core.Quad;
  * It assumes that the caller has already set the correct stream type in the options.
  * <p>
  * It will output the statements as in a TRIPLES/QUADS stream.
+ * <p>
+ * If direct encoding is enabled in the format variant, the rows are serialized straight into
+ * a {@link SerializedFrameBuffer} and the row buffer is not used.
+ * <p>
+ * If pipelined output is enabled (delimited output only), the frames are serialized and written by a
+ * background thread, using a {@link PipelinedFrameWriter}.
+ * <p>
+ * If the format variant has a frame indexer, every written frame is passed to it.
+ * <p>
+ * If the format variant has a reorder window and the stream is a flat triple or quad stream, the statements
+ * are grouped with a {@link StatementReorderer} before encoding.
+ * <p>
+ * In delimited output, a frame is written when it reaches the frame size in rows, the maximum size in bytes, or
+ * the maximum age (see {@link FrameLimiter}). With an age limit, old frames are also written by a background
+ * timer, so {@link #finish()} must be called to stop it.
+ * <p>
+ * If the format variant has an encoder pool, the buffers and lookups are taken from it, and returned to it in
+ * {@link #finish()}.
+ * <p>
+ * Each frame emits the {@link FrameEncodedEvent} and {@link FrameWrittenEvent} JFR events.
  */
 public sealed class JellyStreamWriter implements StreamRDF {
 
@@ -31,10 +60,25 @@ public sealed class JellyStreamWriter implements StreamRDF {
     protected final OutputStream outputStream;
     protected final CodedOutputStream codedOutput;
 
-    protected final ReusableRowBuffer buffer;
+    protected final RowBuffer buffer;
     protected final EncoderAllocator allocator;
     protected final ProtoEncoder<Node> encoder;
     protected final RdfStreamFrame.Mutable reusableFrame;
+    // Only set if direct encoding is enabled
+    protected final SerializedFrameBuffer frameBuffer;
+    // Only set if pipelined output is enabled
+    protected final PipelinedFrameWriter pipeline;
+    // Only set if reordering is enabled and allowed by the stream type
+    protected final StatementReorderer<Node> reorderer;
+    // Decides when to end a frame, in delimited output
+    protected final FrameLimiter limiter;
+    // Only set if the format variant has an encoder pool
+    protected final EncoderPool.Lease lease;
+
+    // JFR event of the frame being encoded, begun when the previous frame was written
+    private FrameEncodedEvent encodedEvent;
+    // Dictionary whose id is yet to be written to the metadata of the first frame, null if none or written
+    private LookupDictionary untaggedDictionary;
 
     public static JellyStreamWriter create(
         JenaConverterFactory converterFactory,
@@ -64,18 +108,67 @@ public sealed class JellyStreamWriter implements StreamRDF {
         this.formatVariant = formatVariant;
         this.outputStream = outputStream;
         this.codedOutput = ProtobufUtil.createCodedOutputStream(outputStream);
-        this.buffer = RowBuffer.newReusableForEncoder(formatVariant.getFrameSize() + 8);
-        this.allocator = EncoderAllocator.newArenaAllocator(formatVariant.getFrameSize() + 8);
+        final var pool = formatVariant.getEncoderPool();
+        this.lease = pool != null ? pool.acquire(formatVariant.getFrameSize()) : null;
+        if (formatVariant.isPipelined() && formatVariant.isDelimited()) {
+            this.pipeline = new PipelinedFrameWriter(
+                outputStream,
+                formatVariant.getFrameSize() + 8,
+                1,
+                formatVariant.getOptions().getStreamName()
+            );
+            this.buffer = pipeline.getRowBuffer();
+            this.allocator = pipeline.getAllocator();
+        } else if (lease != null) {
+            this.pipeline = null;
+            this.buffer = lease.getRowBuffer();
+            this.allocator = lease.getAllocator();
+        } else {
+            this.pipeline = null;
+            this.buffer = RowBuffer.newReusableForEncoder(formatVariant.getFrameSize() + 8);
+            this.allocator = EncoderAllocator.newArenaAllocator(formatVariant.getFrameSize() + 8);
+        }
         this.reusableFrame = RdfStreamFrame.newInstance().setRows(buffer);
+        this.untaggedDictionary = formatVariant.getDictionary();
 
-        this.encoder = converterFactory.encoder(
-            ProtoEncoder.Params.of(
-                formatVariant.getOptions(),
-                formatVariant.isEnableNamespaceDeclarations(),
-                buffer,
-                allocator
-            )
+        final var params = ProtoEncoder.Params.of(
+            formatVariant.getOptions(),
+            formatVariant.isEnableNamespaceDeclarations(),
+            buffer,
+            allocator
+        )
+            .withSelfContainedFrames(formatVariant.isSelfContainedFrames())
+            .withDictionary(formatVariant.getDictionary())
+            .withVocabulary(formatVariant.getVocabulary())
+            .withPoolLease(lease);
+        if (formatVariant.isDirectEncoding()) {
+            this.frameBuffer = lease != null ? lease.getFrameBuffer() : new SerializedFrameBuffer();
+            this.encoder = converterFactory.directEncoder(params, frameBuffer);
+        } else {
+            this.frameBuffer = null;
+            this.encoder = converterFactory.encoder(params);
+        }
+        if (
+            formatVariant.getReorderWindow() > 0 &&
+            StatementReorderer.canReorder(formatVariant.getOptions().getLogicalType())
+        ) {
+            this.reorderer = new StatementReorderer<>(
+                new EncodingHandler(),
+                formatVariant.getOptions().getLogicalType(),
+                formatVariant.getReorderWindow()
+            );
+        } else {
+            this.reorderer = null;
+        }
+        this.limiter = new FrameLimiter(
+            formatVariant.getFrameSize(),
+            formatVariant.getMaxFrameBytes(),
+            formatVariant.getMaxFrameAgeMillis()
         );
+        beginFrameEvent();
+        if (formatVariant.isDelimited()) {
+            limiter.startTimer(this::flushExpiredFrame);
+        }
     }
 
     private static final class TriplesWriter extends JellyStreamWriter {
@@ -112,10 +205,25 @@ public sealed class JellyStreamWriter implements StreamRDF {
         @Override
         public void triple(Triple triple) {
             // Coerce triple to quad with default graph
-            encoder.handleQuad(triple.getSubject(), triple.getPredicate(), triple.getObject(), null);
-            if (formatVariant.isDelimited() && buffer.size() >= formatVariant.getFrameSize()) {
-                flushBuffer();
-            }
+            writeQuad(triple.getSubject(), triple.getPredicate(), triple.getObject(), null);
+        }
+    }
+
+    /**
+     * Passes the statements from the reorderer to the encoder.
+     */
+    private final class EncodingHandler implements RdfHandler.AnyStatementHandler<Node> {
+
+        @Override
+        public void handleTriple(Node subject, Node predicate, Node object) {
+            encoder.handleTriple(subject, predicate, object);
+            flushIfFrameFull();
+        }
+
+        @Override
+        public void handleQuad(Node subject, Node predicate, Node object, Node graph) {
+            encoder.handleQuad(subject, predicate, object, graph);
+            flushIfFrameFull();
         }
     }
 
@@ -126,20 +234,140 @@ public sealed class JellyStreamWriter implements StreamRDF {
 
     @Override
     public void triple(Triple triple) {
-        encoder.handleTriple(triple.getSubject(), triple.getPredicate(), triple.getObject());
-        if (formatVariant.isDelimited() && buffer.size() >= formatVariant.getFrameSize()) {
-            flushBuffer();
+        if (!limiter.isTimerStarted()) {
+            addTriple(triple);
+            return;
         }
+        limiter.lock();
+        try {
+            addTriple(triple);
+        } finally {
+            limiter.unlock();
+        }
+    }
+
+    private void addTriple(Triple triple) {
+        limiter.statementAdded();
+        if (reorderer != null) {
+            reorderer.handleTriple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+            return;
+        }
+        encoder.handleTriple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+        flushIfFrameFull();
     }
 
     @Override
     public void quad(Quad quad) {
-        encoder.handleQuad(quad.getSubject(), quad.getPredicate(), quad.getObject(), quad.getGraph());
-        if (formatVariant.isDelimited() && buffer.size() >= formatVariant.getFrameSize()) {
-            flushBuffer();
+        writeQuad(quad.getSubject(), quad.getPredicate(), quad.getObject(), quad.getGraph());
+    }
+
+    protected final void writeQuad(Node subject, Node predicate, Node object, Node graph) {
+        if (!limiter.isTimerStarted()) {
+            addQuad(subject, predicate, object, graph);
+            return;
+        }
+        limiter.lock();
+        try {
+            addQuad(subject, predicate, object, graph);
+        } finally {
+            limiter.unlock();
+        }
+    }
+
+    private void addQuad(Node subject, Node predicate, Node object, Node graph) {
+        limiter.statementAdded();
+        if (reorderer != null) {
+            reorderer.handleQuad(subject, predicate, object, graph);
+            return;
+        }
+        encoder.handleQuad(subject, predicate, object, graph);
+        flushIfFrameFull();
+    }
+
+    /**
+     * Writes all triples from the iterator, passing them to the encoder in batches with
+     * {@link ProtoEncoder#handleTriples}. The frame size is checked once per batch, and a batch is never
+     * larger than the room left in the current frame.
+     * <p>
+     * Used by {@link JellyGraphWriter}, which has all statements at hand.
+     */
+    void triples(Iterator<Triple> triples) {
+        if (reorderer != null || formatVariant.getOptions().getPhysicalType() != PhysicalStreamType.TRIPLES) {
+            triples.forEachRemaining(this::triple);
+            return;
+        }
+        final var subjects = new Node[ProtoEncoder.BATCH_SIZE];
+        final var predicates = new Node[ProtoEncoder.BATCH_SIZE];
+        final var objects = new Node[ProtoEncoder.BATCH_SIZE];
+        while (triples.hasNext()) {
+            final int limit = batchLimit();
+            int count = 0;
+            while (count < limit && triples.hasNext()) {
+                final var triple = triples.next();
+                subjects[count] = triple.getSubject();
+                predicates[count] = triple.getPredicate();
+                objects[count] = triple.getObject();
+                count++;
+            }
+            limiter.lock();
+            try {
+                limiter.statementAdded();
+                encoder.handleTriples(subjects, predicates, objects, count);
+                flushIfFrameFull();
+            } finally {
+                limiter.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes all quads from the iterator, passing them to the encoder in batches with
+     * {@link ProtoEncoder#handleQuads}. See {@link #triples(Iterator)}.
+     * <p>
+     * Used by {@link JellyDatasetWriter}, which has all statements at hand.
+     */
+    void quads(Iterator<Quad> quads) {
+        if (reorderer != null || formatVariant.getOptions().getPhysicalType() == PhysicalStreamType.TRIPLES) {
+            quads.forEachRemaining(this::quad);
+            return;
+        }
+        final var subjects = new Node[ProtoEncoder.BATCH_SIZE];
+        final var predicates = new Node[ProtoEncoder.BATCH_SIZE];
+        final var objects = new Node[ProtoEncoder.BATCH_SIZE];
+        final var graphs = new Node[ProtoEncoder.BATCH_SIZE];
+        while (quads.hasNext()) {
+            final int limit = batchLimit();
+            int count = 0;
+            while (count < limit && quads.hasNext()) {
+                final var quad = quads.next();
+                subjects[count] = quad.getSubject();
+                predicates[count] = quad.getPredicate();
+                objects[count] = quad.getObject();
+                graphs[count] = quad.getGraph();
+                count++;
+            }
+            limiter.lock();
+            try {
+                limiter.statementAdded();
+                encoder.handleQuads(subjects, predicates, objects, graphs, count);
+                flushIfFrameFull();
+            } finally {
+                limiter.unlock();
+            }
         }
     }
 
+    /**
+     * Maximum number of statements in the next batch, so that the frame does not grow much past its size.
+     * The byte and age limits are only checked after each batch.
+     */
+    private int batchLimit() {
+        if (!formatVariant.isDelimited()) {
+            return ProtoEncoder.BATCH_SIZE;
+        }
+        return Math.max(1, Math.min(ProtoEncoder.BATCH_SIZE, formatVariant.getFrameSize() - bufferedRows()));
+    }
+
     @Override
     public void base(String base) {
         // Not supported
@@ -160,29 +388,74 @@ public sealed class JellyStreamWriter implements StreamRDF {
             return;
         }
 
-        encoder.handleNamespace(prefix, NodeFactory.createURI(iri));
-        if (formatVariant.isDelimited() && buffer.size() >= formatVariant.getFrameSize()) {
-            flushBuffer();
+        if (!limiter.isTimerStarted()) {
+            addNamespace(prefix, iri);
+            return;
+        }
+        limiter.lock();
+        try {
+            addNamespace(prefix, iri);
+        } finally {
+            limiter.unlock();
+        }
+    }
+
+    private void addNamespace(String prefix, String iri) {
+        limiter.statementAdded();
+        if (reorderer != null) {
+            // Keep the declaration before the statements that follow it
+            reorderer.flush();
         }
+        encoder.handleNamespace(prefix, NodeFactory.createURI(iri));
+        flushIfFrameFull();
     }
 
     @Override
     public void finish() {
+        limiter.lock();
+        try {
+            limiter.close();
+            finishStream();
+        } finally {
+            if (lease != null) {
+                // The encoder must not be used after this
+                lease.close();
+            }
+            limiter.unlock();
+        }
+    }
+
+    private void finishStream() {
+        if (reorderer != null) {
+            reorderer.flush();
+        }
         // Flush the buffer and finish the stream
         if (!formatVariant.isDelimited()) {
             // Non-delimited variant – whole stream in one frame
+            commitFrameEvent();
+            tagFirstFrame();
+            final int rows = bufferedRows();
+            final var writtenEvent = new FrameWrittenEvent();
+            writtenEvent.begin();
             try {
-                reusableFrame.writeTo(codedOutput);
+                if (frameBuffer != null) {
+                    frameBuffer.writeTo(codedOutput);
+                } else {
+                    reusableFrame.writeTo(codedOutput);
+                }
             } catch (IOException e) {
                 throw new RiotException(e);
             }
-            buffer.clear();
-            allocator.releaseAll();
-        } else if (!buffer.isEmpty()) {
+            commitWrittenEvent(writtenEvent, rows);
+            clearBuffer();
+        } else if (bufferedRows() > 0) {
             flushBuffer();
         }
 
         try {
+            if (pipeline != null) {
+                pipeline.close();
+            }
             // !!! CodedOutputStream.flush() does not flush the underlying OutputStream,
             // so we need to do it explicitly.
             codedOutput.flush();
@@ -192,15 +465,162 @@ public sealed class JellyStreamWriter implements StreamRDF {
         }
     }
 
-    protected void flushBuffer() {
-        reusableFrame.resetCachedSize();
+    /**
+     * Returns the number of rows waiting to be written in the current frame.
+     * @return number of rows
+     */
+    protected final int bufferedRows() {
+        return frameBuffer != null ? frameBuffer.size() : buffer.size();
+    }
+
+    protected final void flushIfFrameFull() {
+        if (formatVariant.isDelimited() && limiter.shouldFlush(bufferedRows(), encoder.getFrameBytes())) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Called by the timer of the limiter when the current frame is older than the maximum age.
+     * Writes out the frame, and flushes the output so that the consumer gets it right away.
+     */
+    private void flushExpiredFrame() {
+        if (reorderer != null) {
+            reorderer.flush();
+        }
+        if (bufferedRows() > 0) {
+            flushBuffer();
+        } else {
+            limiter.frameWritten();
+        }
         try {
-            reusableFrame.writeDelimitedTo(codedOutput);
+            if (pipeline != null) {
+                // The frame is written by the pipeline's thread, which flushes the output after it
+                pipeline.flush();
+                return;
+            }
+            codedOutput.flush();
+            outputStream.flush();
         } catch (IOException e) {
             throw new RiotException(e);
-        } finally {
+        }
+    }
+
+    private void clearBuffer() {
+        if (frameBuffer != null) {
+            frameBuffer.clear();
+        } else {
             buffer.clear();
             allocator.releaseAll();
+            reusableFrame.getMetadata().clear();
+        }
+    }
+
+    protected void flushBuffer() {
+        commitFrameEvent();
+        writeFrame();
+        // With self-contained frames, the next frame starts with fresh lookups
+        encoder.newFrame();
+        limiter.frameWritten(reorderer != null && reorderer.size() > 0);
+        beginFrameEvent();
+    }
+
+    private void beginFrameEvent() {
+        encodedEvent = new FrameEncodedEvent();
+        encodedEvent.begin();
+    }
+
+    private void commitFrameEvent() {
+        encodedEvent.end();
+        if (encodedEvent.shouldCommit()) {
+            encodedEvent.set(streamName(), bufferedRows(), encoder.getFrameBytes());
+            encodedEvent.commit();
+        }
+    }
+
+    private String streamName() {
+        return formatVariant.getOptions().getStreamName();
+    }
+
+    /**
+     * Commits the event of a written frame if the recording wants it. The size is taken from the encoder,
+     * which is still at the written frame, so the frame is never walked just for the event.
+     * @param writtenEvent event begun before writing the frame
+     * @param rows number of rows in the frame
+     */
+    private void commitWrittenEvent(FrameWrittenEvent writtenEvent, int rows) {
+        writtenEvent.end();
+        if (writtenEvent.shouldCommit()) {
+            writtenEvent.set(streamName(), rows, encoder.getFrameBytes());
+            writtenEvent.commit();
+        }
+    }
+
+    /**
+     * Adds the id of the dictionary to the metadata of the first frame, so that readers can check it.
+     */
+    private void tagFirstFrame() {
+        if (untaggedDictionary == null || bufferedRows() == 0) {
+            return;
+        }
+        if (frameBuffer != null) {
+            untaggedDictionary.tagFrame(frameBuffer);
+        } else if (pipeline != null) {
+            untaggedDictionary.tagFrame(pipeline.getFrame());
+        } else {
+            untaggedDictionary.tagFrame(reusableFrame);
+        }
+        untaggedDictionary = null;
+    }
+
+    private void writeFrame() {
+        tagFirstFrame();
+        indexFrame();
+        if (pipeline != null) {
+            // The pipeline's thread emits the event once the frame is written
+            try {
+                if (frameBuffer != null) {
+                    pipeline.submitFrame(frameBuffer);
+                } else {
+                    pipeline.submitFrame();
+                }
+            } catch (IOException e) {
+                throw new RiotException(e);
+            }
+            return;
+        }
+        // The rows are counted up front, as the frame is cleared once written
+        final int rows = bufferedRows();
+        final var writtenEvent = new FrameWrittenEvent();
+        writtenEvent.begin();
+        try {
+            if (frameBuffer != null) {
+                frameBuffer.writeDelimitedTo(codedOutput);
+            } else {
+                reusableFrame.resetCachedSize();
+                reusableFrame.writeDelimitedTo(codedOutput);
+            }
+            commitWrittenEvent(writtenEvent, rows);
+        } catch (IOException e) {
+            throw new RiotException(e);
+        } finally {
+            clearBuffer();
+        }
+    }
+
+    private void indexFrame() {
+        final var frameIndexer = formatVariant.getFrameIndexer();
+        if (frameIndexer == null) {
+            return;
+        }
+        try {
+            if (frameBuffer != null) {
+                frameIndexer.addSerializedFrame(frameBuffer.array(), 0, frameBuffer.getSerializedSize());
+            } else {
+                reusableFrame.resetCachedSize();
+                frameIndexer.addFrame(reusableFrame);
+            }
+        } catch (IOException e) {
+            throw new RiotException(e);
         }
     }
 }
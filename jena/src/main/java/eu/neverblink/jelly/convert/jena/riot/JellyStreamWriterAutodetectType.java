@@ -4,9 +4,12 @@ import eu.neverblink.jelly.convert.jena.JenaConverterFactory;
 import eu.neverblink.jelly.core.NamespaceDeclaration;
 import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
+import eu.neverblink.jelly.core.utils.OptionsAdvisor;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.Quad;
@@ -16,16 +19,24 @@ import org.apache.jena.sparql.core.Quad;
  * (triple or quad) added to the stream.
  * <p>
  * This is used when initializing the stream writer with the RIOT APIs, where the stream type is not known.
+ * <p>
+ * If auto-tuning is enabled in the format variant, the first statements are buffered until the sample is
+ * complete (or the stream ends), and the writer is created with the table sizes tuned on them.
  */
 public final class JellyStreamWriterAutodetectType implements StreamRDF {
 
     private final JenaConverterFactory converterFactory;
-    private final JellyFormatVariant formatVariant;
+    private JellyFormatVariant formatVariant;
     private final OutputStream outputStream;
 
     // If we start receiving prefix() calls before the first triple/quad, we need to store them
     private final Collection<NamespaceDeclaration> prefixBacklog = new ArrayList<>();
 
+    // Only set while sampling the statements for auto-tuning
+    private OptionsAdvisor<Node> advisor;
+    // Triples, quads, and namespace declarations received while sampling, in order
+    private final List<Object> sampleBacklog = new ArrayList<>();
+
     private JellyStreamWriter delegatedWriter;
 
     public JellyStreamWriterAutodetectType(
@@ -36,6 +47,9 @@ public final class JellyStreamWriterAutodetectType implements StreamRDF {
         this.converterFactory = converterFactory;
         this.formatVariant = formatVariant;
         this.outputStream = outputStream;
+        if (formatVariant.getAutoTuneSampleSize() > 0) {
+            this.advisor = OptionsAutoTuner.newAdvisor(converterFactory, formatVariant);
+        }
     }
 
     @Override
@@ -45,6 +59,14 @@ public final class JellyStreamWriterAutodetectType implements StreamRDF {
 
     @Override
     public void triple(Triple triple) {
+        if (advisor != null) {
+            advisor.handleTriple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+            sampleBacklog.add(triple);
+            if (advisor.isFull()) {
+                finishSample();
+            }
+            return;
+        }
         if (delegatedWriter == null) {
             var triplesFormatVariant = formatVariant.withOptions(
                 formatVariant
@@ -67,6 +89,14 @@ public final class JellyStreamWriterAutodetectType implements StreamRDF {
 
     @Override
     public void quad(Quad quad) {
+        if (advisor != null) {
+            advisor.handleQuad(quad.getSubject(), quad.getPredicate(), quad.getObject(), quad.getGraph());
+            sampleBacklog.add(quad);
+            if (advisor.isFull()) {
+                finishSample();
+            }
+            return;
+        }
         if (delegatedWriter == null) {
             var quadsFormatVariant = formatVariant.withOptions(
                 formatVariant
@@ -103,7 +133,9 @@ public final class JellyStreamWriterAutodetectType implements StreamRDF {
 
     @Override
     public void prefix(String prefix, String iri) {
-        if (delegatedWriter != null) {
+        if (advisor != null) {
+            sampleBacklog.add(new NamespaceDeclaration(prefix, iri));
+        } else if (delegatedWriter != null) {
             delegatedWriter.prefix(prefix, iri);
         } else {
             prefixBacklog.add(new NamespaceDeclaration(prefix, iri));
@@ -112,11 +144,34 @@ public final class JellyStreamWriterAutodetectType implements StreamRDF {
 
     @Override
     public void finish() {
+        if (advisor != null) {
+            finishSample();
+        }
         if (delegatedWriter != null) {
             delegatedWriter.finish();
         }
     }
 
+    /**
+     * Tunes the options on the sampled statements and writes them out.
+     */
+    private void finishSample() {
+        if (advisor.getStatementCount() > 0) {
+            formatVariant = OptionsAutoTuner.tune(formatVariant, advisor);
+        }
+        advisor = null;
+        for (final var item : sampleBacklog) {
+            if (item instanceof Triple triple) {
+                triple(triple);
+            } else if (item instanceof Quad quad) {
+                quad(quad);
+            } else if (item instanceof NamespaceDeclaration ns) {
+                prefix(ns.prefix(), ns.iri());
+            }
+        }
+        sampleBacklog.clear();
+    }
+
     private void clearPrefixBacklog() {
         for (final var backlog : prefixBacklog) {
             delegatedWriter.prefix(backlog.prefix(), backlog.iri());
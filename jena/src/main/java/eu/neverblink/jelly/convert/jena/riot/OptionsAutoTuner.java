@@ -0,0 +1,68 @@
+package eu.neverblink.jelly.convert.jena.riot;
+
+import eu.neverblink.jelly.convert.jena.JenaConverterFactory;
+import eu.neverblink.jelly.core.utils.OptionsAdvisor;
+import java.util.Iterator;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Tunes the lookup table sizes of a format variant on a sample of the statements to be written.
+ * Used by the writers when auto-tuning is enabled in the format variant.
+ *
+ * @see OptionsAdvisor
+ */
+final class OptionsAutoTuner {
+
+    private OptionsAutoTuner() {}
+
+    static OptionsAdvisor<Node> newAdvisor(JenaConverterFactory converterFactory, JellyFormatVariant formatVariant) {
+        return new OptionsAdvisor<>(converterFactory.encoderConverter(), formatVariant.getAutoTuneSampleSize());
+    }
+
+    static JellyFormatVariant tune(JellyFormatVariant formatVariant, OptionsAdvisor<Node> advisor) {
+        return formatVariant.withOptions(advisor.recommend(formatVariant.getOptions()));
+    }
+
+    /**
+     * Tunes the variant on the first triples of the iterator, and closes the iterator.
+     */
+    static JellyFormatVariant tuneOnTriples(
+        JenaConverterFactory converterFactory,
+        JellyFormatVariant formatVariant,
+        Iterator<Triple> triples
+    ) {
+        final var advisor = newAdvisor(converterFactory, formatVariant);
+        try {
+            while (!advisor.isFull() && triples.hasNext()) {
+                final var t = triples.next();
+                advisor.handleTriple(t.getSubject(), t.getPredicate(), t.getObject());
+            }
+        } finally {
+            Iter.close(triples);
+        }
+        return tune(formatVariant, advisor);
+    }
+
+    /**
+     * Tunes the variant on the first quads of the iterator, and closes the iterator.
+     */
+    static JellyFormatVariant tuneOnQuads(
+        JenaConverterFactory converterFactory,
+        JellyFormatVariant formatVariant,
+        Iterator<Quad> quads
+    ) {
+        final var advisor = newAdvisor(converterFactory, formatVariant);
+        try {
+            while (!advisor.isFull() && quads.hasNext()) {
+                final var q = quads.next();
+                advisor.handleQuad(q.getSubject(), q.getPredicate(), q.getObject(), q.getGraph());
+            }
+        } finally {
+            Iter.close(quads);
+        }
+        return tune(formatVariant, advisor);
+    }
+}
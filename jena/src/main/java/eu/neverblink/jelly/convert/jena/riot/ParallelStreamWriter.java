@@ -0,0 +1,151 @@
+package eu.neverblink.jelly.convert.jena.riot;
+
+import eu.neverblink.jelly.convert.jena.JenaConverterFactory;
+import eu.neverblink.jelly.core.utils.FrameIndexer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.PrefixMap;
+
+/**
+ * Writes statements as a sequence of concatenated, independent Jelly streams, encoded in parallel.
+ * <p>
+ * The statements are split into chunks of {@link #FRAMES_PER_STREAM} frames. Each chunk is encoded on a
+ * separate thread, with its own encoder and lookups, into a self-contained delimited stream that starts
+ * with its own options row. The streams are written to the output in the original order, so the result
+ * is a valid delimited Jelly file, which decoders read as one stream.
+ * <p>
+ * The number of chunks held in memory is bounded by twice the parallelism.
+ * <p>
+ * Used internally by {@link JellyGraphWriter} and {@link JellyDatasetWriter}.
+ */
+final class ParallelStreamWriter {
+
+    /**
+     * Number of frames in each of the concatenated streams. Each stream restarts the lookups, so this
+     * must be large enough for the lookup entries to be amortized.
+     */
+    static final int FRAMES_PER_STREAM = 256;
+
+    private ParallelStreamWriter() {}
+
+    /**
+     * Buffer of an encoded chunk, whose contents can be read without copying them.
+     */
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+
+        ByteArrayInputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * Encodes the statements in parallel and writes them to the output stream.
+     *
+     * @param converterFactory converter factory
+     * @param formatVariant format variant, with the physical stream type and the parallelism set
+     * @param outputStream output stream. It is flushed, but not closed.
+     * @param prefixMap prefixes to emit at the start of the output, if namespace declarations are enabled.
+     *                  May be null.
+     * @param statements statements to write
+     * @param handler writes one statement to a stream writer
+     * @param <T> type of the statements
+     */
+    static <T> void write(
+        JenaConverterFactory converterFactory,
+        JellyFormatVariant formatVariant,
+        OutputStream outputStream,
+        PrefixMap prefixMap,
+        Iterator<T> statements,
+        BiConsumer<JellyStreamWriter, T> handler
+    ) {
+        final int parallelism = formatVariant.getParallelism();
+        final int chunkSize = formatVariant.getFrameSize() * FRAMES_PER_STREAM;
+        // Each chunk is encoded on a single thread, so there is no point in pipelining its output.
+        // The chunks are indexed in order, as they are written to the output.
+        final var chunkVariant = formatVariant.toBuilder().pipelined(false).parallelism(1).frameIndexer(null).build();
+        final var frameIndexer = formatVariant.getFrameIndexer();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final var thread = new Thread(runnable, "jelly-parallel-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final var pending = new ArrayDeque<Future<ChunkBuffer>>();
+
+        try {
+            boolean isFirst = true;
+            // Always encode at least one chunk, so that the prefixes are written even for an empty graph
+            do {
+                final List<T> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && statements.hasNext()) {
+                    chunk.add(statements.next());
+                }
+                final var chunkPrefixes = isFirst ? prefixMap : null;
+                isFirst = false;
+                pending.add(
+                    executor.submit(() -> encodeChunk(converterFactory, chunkVariant, chunkPrefixes, chunk, handler))
+                );
+                if (pending.size() >= 2 * parallelism) {
+                    writeChunk(pending.poll().get(), outputStream, frameIndexer);
+                }
+            } while (statements.hasNext());
+
+            while (!pending.isEmpty()) {
+                writeChunk(pending.poll().get(), outputStream, frameIndexer);
+            }
+            outputStream.flush();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RiotException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RiotException("Interrupted while encoding the statements in parallel", e);
+        } catch (IOException e) {
+            throw new RiotException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> ChunkBuffer encodeChunk(
+        JenaConverterFactory converterFactory,
+        JellyFormatVariant formatVariant,
+        PrefixMap prefixMap,
+        List<T> chunk,
+        BiConsumer<JellyStreamWriter, T> handler
+    ) {
+        final var bytes = new ChunkBuffer();
+        final var writer = JellyStreamWriter.create(converterFactory, formatVariant, bytes);
+        if (formatVariant.isEnableNamespaceDeclarations() && prefixMap != null) {
+            for (var entry : prefixMap.getMapping().entrySet()) {
+                writer.prefix(entry.getKey(), entry.getValue());
+            }
+        }
+        for (final T statement : chunk) {
+            handler.accept(writer, statement);
+        }
+        writer.finish();
+        return bytes;
+    }
+
+    private static void writeChunk(ChunkBuffer chunk, OutputStream outputStream, FrameIndexer frameIndexer)
+        throws IOException {
+        chunk.writeTo(outputStream);
+        if (frameIndexer != null) {
+            frameIndexer.addDelimitedFrames(chunk.toInputStream());
+        }
+    }
+}
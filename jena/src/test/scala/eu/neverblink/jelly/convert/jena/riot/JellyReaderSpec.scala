@@ -0,0 +1,117 @@
+package eu.neverblink.jelly.convert.jena.riot
+
+import eu.neverblink.jelly.convert.jena.JenaConverterFactory
+import eu.neverblink.jelly.convert.jena.traits.JenaTest
+import org.apache.jena.graph.{Graph, NodeFactory, Triple}
+import org.apache.jena.riot.{RDFDataMgr, RIOT}
+import org.apache.jena.riot.system.{StreamRDFBase, StreamRDFLib, StreamRDFWriter}
+import org.apache.jena.sparql.graph.GraphFactory
+import org.apache.jena.sparql.util.Context
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.io.{
+  ByteArrayInputStream,
+  ByteArrayOutputStream,
+  FileInputStream,
+  IOException,
+  InputStream,
+}
+import java.nio.file.{Files, Path}
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.jdk.CollectionConverters.*
+
+/** Tests covering the choice of the input path in the Jelly reader. The main tests are done in the
+  * integration-tests module.
+  */
+class JellyReaderSpec extends AnyWordSpec, Matchers, JenaTest:
+  val graph: Graph =
+    val g = GraphFactory.createDefaultGraph()
+    for i <- 1 to 50 do
+      g.add(
+        Triple.create(
+          NodeFactory.createURI(s"http://example.com/s$i"),
+          NodeFactory.createURI("http://example.com/p"),
+          NodeFactory.createLiteralString(s"object $i"),
+        ),
+      )
+    g
+
+  val bytes: Array[Byte] =
+    val out = ByteArrayOutputStream()
+    RDFDataMgr.write(out, graph, JellyLanguage.JELLY)
+    out.toByteArray
+
+  def read(in: InputStream): Graph =
+    val parsed = GraphFactory.createDefaultGraph()
+    JellyReader(JenaConverterFactory.getInstance())
+      .read(in, null, null, StreamRDFLib.graph(parsed), Context())
+    parsed
+
+  def withTempDir(body: Path => Unit): Unit =
+    val dir = Files.createTempDirectory("jelly-reader")
+    try body(dir)
+    finally
+      Files.list(dir).forEach(Files.delete)
+      Files.delete(dir)
+
+  "JellyReader" should {
+    "read a regular file" in {
+      withTempDir { dir =>
+        val file = Files.write(dir.resolve("in.jelly"), bytes)
+        val in = FileInputStream(file.toFile)
+        try read(in).isIsomorphicWith(graph) shouldBe true
+        finally in.close()
+      }
+    }
+
+    "read an empty regular file" in {
+      withTempDir { dir =>
+        val file = Files.write(dir.resolve("in.jelly"), Array.emptyByteArray)
+        val in = FileInputStream(file.toFile)
+        try read(in).size shouldBe 0
+        finally in.close()
+      }
+    }
+
+    "read from a named pipe" in {
+      withTempDir { dir =>
+        val fifo = dir.resolve("in.jelly")
+        val created =
+          try ProcessBuilder("mkfifo", fifo.toString).start().waitFor() == 0
+          catch case _: IOException => false
+        assume(created, "mkfifo is not available")
+
+        // Opening either end of the pipe blocks until the other end is opened
+        val writer = Future(Files.write(fifo, bytes))(ExecutionContext.global)
+        val in = FileInputStream(fifo.toFile)
+        try read(in).isIsomorphicWith(graph) shouldBe true
+        finally in.close()
+        Await.result(writer, 10.seconds)
+      }
+    }
+
+    "decode self-contained frames in parallel, keeping their order" in {
+      val triples = graph.find().toList.asScala.toSeq
+      val out = ByteArrayOutputStream()
+      val writeContext = RIOT.getContext.copy()
+        .set(JellyLanguage.SYMBOL_FRAME_SIZE, 8)
+        .set(JellyLanguage.SYMBOL_SELF_CONTAINED_FRAMES, true)
+      val writer = StreamRDFWriter.getWriterStream(out, JellyLanguage.JELLY, writeContext)
+      writer.start()
+      triples.foreach(writer.triple)
+      writer.finish()
+
+      val parsed = ArrayBuffer[Triple]()
+      val sink = new StreamRDFBase:
+        override def triple(triple: Triple): Unit = parsed += triple
+      val readContext = Context()
+        .set(JellyLanguage.SYMBOL_READ_PARALLELISM, 4)
+        .set(JellyLanguage.SYMBOL_SELF_CONTAINED_FRAMES, true)
+      JellyReader(JenaConverterFactory.getInstance())
+        .read(ByteArrayInputStream(out.toByteArray), null, null, sink, readContext)
+      parsed.toSeq should be(triples)
+    }
+  }
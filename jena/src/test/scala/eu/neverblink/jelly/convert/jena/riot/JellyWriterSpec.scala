@@ -2,16 +2,27 @@ package eu.neverblink.jelly.convert.jena.riot
 
 import eu.neverblink.jelly.convert.jena.JenaConverterFactory
 import eu.neverblink.jelly.convert.jena.traits.JenaTest
-import eu.neverblink.jelly.core.utils.IoUtils
-import eu.neverblink.jelly.core.proto.v1.{RdfStreamFrame, RdfStreamRow}
+import eu.neverblink.jelly.core.{LookupDictionary, LookupVocabulary, RdfProtoDeserializationError}
+import eu.neverblink.jelly.core.memory.EncoderPool
+import eu.neverblink.jelly.core.utils.{FrameIndex, FrameIndexer, IoUtils}
+import eu.neverblink.jelly.core.proto.v1.{
+  LogicalStreamType,
+  PhysicalStreamType,
+  RdfStreamFrame,
+  RdfStreamRow,
+}
 import org.apache.commons.io.output.{ByteArrayOutputStream, NullWriter}
 import org.apache.jena.graph.{NodeFactory, Triple}
-import org.apache.jena.riot.RiotException
-import org.apache.jena.sparql.core.Quad
+import org.apache.jena.riot.{RDFParser, RiotException}
+import org.apache.jena.riot.system.PrefixMapFactory
+import org.apache.jena.sparql.core.{DatasetGraphFactory, Quad}
+import org.apache.jena.sparql.graph.GraphFactory
+import org.apache.jena.sparql.util.Context
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
 import java.io.{ByteArrayInputStream, OutputStream}
+import scala.jdk.CollectionConverters.*
 
 /** Tests covering rare edge cases in the Jelly writer. The main tests are done in the
   * integration-tests module.
@@ -110,6 +121,95 @@ class JellyWriterSpec extends AnyWordSpec, Matchers, JenaTest:
           f.getRows.size should be > 0
       }
 
+      "split stream in frames at the byte limit" in {
+        val out = new ByteArrayOutputStream()
+        val writer = writerFactory(
+          JellyFormatVariant.builder
+            .enableNamespaceDeclarations(false)
+            .maxFrameBytes(25_000)
+            .build(),
+          out,
+        )
+        writer.start()
+        for i <- 1 to 30 do
+          writer.triple(
+            Triple.create(
+              testTriple.getSubject,
+              testTriple.getPredicate,
+              NodeFactory.createLiteralString(s"$i" * 10_000),
+            ),
+          )
+        writer.finish()
+        val input = ByteArrayInputStream(out.toByteArray)
+        val frames = Iterator
+          .continually(RdfStreamFrame.parseDelimitedFrom(input))
+          .takeWhile(_ != null)
+          .toSeq
+        frames.size should be > 5
+        // The limit may be exceeded by one statement
+        all(frames.map(_.getSerializedSize)) should be < 25_000 + 21_000
+        frames.map(_.getRows.asScala.count(_.hasTriple)).sum should be(30)
+      }
+
+      val flatTriples = JellyFormatVariant.DEFAULT_OPTIONS.clone
+        .setPhysicalType(PhysicalStreamType.TRIPLES)
+        .setLogicalType(LogicalStreamType.FLAT_TRIPLES)
+      for (variantName, variant) <- Seq(
+          ("", JellyFormatVariant.builder),
+          (" (pipelined)", JellyFormatVariant.builder.pipelined(true)),
+          (" (reordered)", JellyFormatVariant.builder.options(flatTriples).reorderWindow(16)),
+        )
+      do
+        s"write a frame once it reaches the maximum age, without more statements$variantName" in {
+          val out = new ByteArrayOutputStream()
+          val writer = writerFactory(
+            variant
+              .enableNamespaceDeclarations(false)
+              .maxFrameAgeMillis(20)
+              .build(),
+            out,
+          )
+          writer.start()
+          writer.triple(testTriple)
+          val deadline = System.nanoTime() + 5_000_000_000L
+          while out.size == 0 && System.nanoTime() < deadline do Thread.sleep(5)
+          out.size should be > 0
+          writer.triple(testTriple)
+          writer.finish()
+          val input = ByteArrayInputStream(out.toByteArray)
+          RdfStreamFrame.parseDelimitedFrom(input).toByteArray.length should be > 0
+          RdfStreamFrame.parseDelimitedFrom(input) should not be null
+        }
+
+      for direct <- Seq(false, true) do
+        s"write the same output with pooled buffers and lookups (direct encoding: $direct)" in {
+          def write(variant: JellyFormatVariant, n: Int): Array[Byte] =
+            val out = new ByteArrayOutputStream()
+            val writer = writerFactory(variant, out)
+            writer.start()
+            for i <- 1 to n do
+              writer.triple(
+                Triple.create(
+                  NodeFactory.createURI(s"http://example.com/s${i % 7}"),
+                  testTriple.getPredicate,
+                  NodeFactory.createLiteralString(s"$i"),
+                ),
+              )
+            writer.finish()
+            out.toByteArray
+
+          val variant = JellyFormatVariant.builder
+            .enableNamespaceDeclarations(false)
+            .directEncoding(direct)
+            .frameSize(16)
+            .build()
+          val pool = EncoderPool(4)
+          val pooled = variant.toBuilder.encoderPool(pool).build()
+          for n <- Seq(100, 3, 50) do write(pooled, n) should be(write(variant, n))
+          pool.getMisses should be(1)
+          pool.getHits should be(2)
+        }
+
       "not split stream into multiple frames if it's non-delimited" in {
         val out = new ByteArrayOutputStream()
         val writer = writerFactory(
@@ -187,6 +287,35 @@ class JellyWriterSpec extends AnyWordSpec, Matchers, JenaTest:
         writer.quad(Quad.create(null, testTriple))
       }.getMessage should include("Cannot write quads to a Jelly TRIPLES stream")
     }
+
+    for statements <- Seq(1000, 10) do
+      s"tune the lookup table sizes on a sample of the statements ($statements statements)" in {
+        val variant = JellyFormatVariant.builder.autoTuneSampleSize(100).frameSize(16).build()
+        val out = new ByteArrayOutputStream()
+        val writer = JellyStreamWriterAutodetectType(converterFactory, variant, out)
+        val graph = GraphFactory.createDefaultGraph()
+        writer.start()
+        for i <- 0 until statements do
+          val t = Triple.create(
+            NodeFactory.createURI(s"http://example.com/s/${i / 10}"),
+            NodeFactory.createURI(s"http://example.com/p/${i % 7}"),
+            NodeFactory.createLiteralString(s"literal $i"),
+          )
+          graph.add(t)
+          writer.triple(t)
+        writer.finish()
+        val bytes = out.toByteArray
+
+        val f = RdfStreamFrame.parseDelimitedFrom(ByteArrayInputStream(bytes))
+        val options = f.getRows.asScala.head.getOptions
+        options.getMaxNameTableSize should be(128)
+        options.getMaxPrefixTableSize should be(16)
+        options.getPhysicalType should be(PhysicalStreamType.TRIPLES)
+        val parsed = RDFParser.source(ByteArrayInputStream(bytes))
+          .lang(JellyLanguage.JELLY)
+          .toGraph()
+        parsed.isIsomorphicWith(graph) should be(true)
+      }
   }
 
   val classicWriters: Seq[(String, JellyFormatVariant => JellyGraphWriter | JellyDatasetWriter)] =
@@ -217,3 +346,194 @@ class JellyWriterSpec extends AnyWordSpec, Matchers, JenaTest:
             datasetWriter.getLang should be(JellyLanguage.JELLY)
       }
     }
+
+  "JellyGraphWriter and JellyDatasetWriter" should {
+    def triple(i: Int) = Triple.create(
+      NodeFactory.createURI(s"http://example.com/s/${i / 10}"),
+      NodeFactory.createURI(s"http://example.com/p/${i % 7}"),
+      NodeFactory.createLiteralString(s"literal $i"),
+    )
+
+    def parallelVariant = JellyFormatVariant.builder
+      .frameSize(4)
+      .parallelism(4)
+      .build()
+
+    def countOptionsRows(bytes: Array[Byte]): Int =
+      val in = ByteArrayInputStream(bytes)
+      Iterator
+        .continually(RdfStreamFrame.parseDelimitedFrom(in))
+        .takeWhile(_ != null)
+        .map(_.getRows.toArray.count(_.asInstanceOf[RdfStreamRow].hasOptions))
+        .sum
+
+    "write a graph in parallel as concatenated streams" in {
+      val graph = GraphFactory.createDefaultGraph()
+      for i <- 0 until 10_000 do graph.add(triple(i))
+      val out = new ByteArrayOutputStream()
+      JellyGraphWriter(converterFactory, parallelVariant).write(out, graph, null, null, Context())
+      val bytes = out.toByteArray
+      // 10 000 triples in chunks of 4 * 256 = 1024 triples
+      countOptionsRows(bytes) should be(10)
+      val parsed = RDFParser.source(ByteArrayInputStream(bytes)).lang(JellyLanguage.JELLY).toGraph()
+      parsed.isIsomorphicWith(graph) should be(true)
+    }
+
+    "write a dataset in parallel as concatenated streams" in {
+      val dataset = DatasetGraphFactory.create()
+      for i <- 0 until 5_000 do
+        dataset.add(Quad.create(NodeFactory.createURI(s"http://example.com/g/${i % 3}"), triple(i)))
+      val out = new ByteArrayOutputStream()
+      JellyDatasetWriter(converterFactory, parallelVariant).write(out, dataset, null, null, Context())
+      val bytes = out.toByteArray
+      countOptionsRows(bytes) should be(5)
+      val parsed = DatasetGraphFactory.create()
+      RDFParser.source(ByteArrayInputStream(bytes)).lang(JellyLanguage.JELLY).parse(parsed)
+      parsed.stream().count() should be(5_000)
+      dataset.stream().allMatch(q => parsed.contains(q)) should be(true)
+    }
+
+    "write an empty graph in parallel" in {
+      val out = new ByteArrayOutputStream()
+      JellyGraphWriter(converterFactory, parallelVariant)
+        .write(out, GraphFactory.createDefaultGraph(), null, null, Context())
+      out.size should be(0)
+    }
+
+    def assertIndexMatches(indexer: FrameIndexer, bytes: Array[Byte]): Unit =
+      val expected = FrameIndex.build(ByteArrayInputStream(bytes), 1).getEntries.asScala
+      val actual = indexer.getIndex.getEntries.asScala
+      actual.size should be(expected.size)
+      actual.map(e => (e.frameNumber, e.byteOffset, e.statementCount)) should be(
+        expected.map(e => (e.frameNumber, e.byteOffset, e.statementCount)),
+      )
+
+    for (directEncoding, pipelined) <- Seq((false, false), (true, false), (false, true), (true, true)) do
+      s"index the written frames (direct encoding: $directEncoding, pipelined: $pipelined)" in {
+        val indexer = FrameIndexer(1)
+        val variant = JellyFormatVariant.builder
+          .frameSize(16)
+          .directEncoding(directEncoding)
+          .pipelined(pipelined)
+          .frameIndexer(indexer)
+          .build()
+        val out = new ByteArrayOutputStream()
+        val graph = GraphFactory.createDefaultGraph()
+        for i <- 0 until 1000 do graph.add(triple(i))
+        JellyGraphWriter(converterFactory, variant).write(out, graph, null, null, Context())
+        indexer.getStatementCount should be(1000)
+        assertIndexMatches(indexer, out.toByteArray)
+      }
+
+    "index the frames written in parallel, with the indexer set in the context" in {
+      val indexer = FrameIndexer(1)
+      val context = Context()
+      context.set(JellyLanguage.SYMBOL_FRAME_INDEXER, indexer)
+      val graph = GraphFactory.createDefaultGraph()
+      for i <- 0 until 5000 do graph.add(triple(i))
+      val out = new ByteArrayOutputStream()
+      JellyGraphWriter(converterFactory, parallelVariant).write(out, graph, null, null, context)
+      indexer.getStatementCount should be(5000)
+      assertIndexMatches(indexer, out.toByteArray)
+    }
+
+    for directEncoding <- Seq(false, true) do
+      s"write and read a graph with a pre-shared dictionary (direct encoding: $directEncoding)" in {
+        val graph = GraphFactory.createDefaultGraph()
+        for i <- 0 until 100 do graph.add(triple(i))
+        val builder = LookupDictionary.newBuilder()
+        graph.find().forEachRemaining(t => builder.addIri(t.getPredicate.getURI))
+        val dictionary = builder.build(100, 0)
+        val context = Context()
+        context.set(JellyLanguage.SYMBOL_DICTIONARY, dictionary)
+        val variant = JellyFormatVariant.builder.directEncoding(directEncoding).build()
+
+        def write(context: Context): Array[Byte] =
+          val out = new ByteArrayOutputStream()
+          JellyGraphWriter(converterFactory, variant).write(out, graph, null, null, context)
+          out.toByteArray
+
+        val bytes = write(context)
+        bytes.length should be < write(Context()).length
+        val frame = RdfStreamFrame.parseDelimitedFrom(ByteArrayInputStream(bytes))
+        LookupDictionary.getFrameDictionaryId(frame) should be(dictionary.getId)
+        val parsed = RDFParser.source(ByteArrayInputStream(bytes))
+          .lang(JellyLanguage.JELLY)
+          .context(context)
+          .toGraph()
+        parsed.isIsomorphicWith(graph) should be(true)
+      }
+
+      s"refuse to read a graph with another dictionary (direct encoding: $directEncoding)" in {
+        val graph = GraphFactory.createDefaultGraph()
+        for i <- 0 until 10 do graph.add(triple(i))
+        val dictionary = LookupDictionary(Seq("https://test.org/a").asJava, Seq().asJava)
+        val other = LookupDictionary(Seq("https://test.org/b").asJava, Seq().asJava)
+        val variant = JellyFormatVariant.builder.directEncoding(directEncoding).build()
+        val writeContext = Context()
+        writeContext.set(JellyLanguage.SYMBOL_DICTIONARY, dictionary)
+        val out = new ByteArrayOutputStream()
+        JellyGraphWriter(converterFactory, variant).write(out, graph, null, null, writeContext)
+
+        for readDictionary <- Seq(other, null) do
+          val readContext = Context()
+          if readDictionary != null then
+            readContext.set(JellyLanguage.SYMBOL_DICTIONARY, readDictionary)
+          intercept[RdfProtoDeserializationError] {
+            RDFParser.source(ByteArrayInputStream(out.toByteArray))
+              .lang(JellyLanguage.JELLY)
+              .context(readContext)
+              .toGraph()
+          }
+      }
+
+    "tune the lookup table sizes on a sample of the graph" in {
+      val graph = GraphFactory.createDefaultGraph()
+      for i <- 0 until 1000 do graph.add(triple(i))
+      val context = Context()
+      context.set(JellyLanguage.SYMBOL_AUTO_TUNE_SAMPLE_SIZE, 100)
+      val out = new ByteArrayOutputStream()
+      JellyGraphWriter(converterFactory, JellyFormatVariant.getDefault)
+        .write(out, graph, null, null, context)
+      val bytes = out.toByteArray
+
+      val f = RdfStreamFrame.parseDelimitedFrom(ByteArrayInputStream(bytes))
+      f.getRows.asScala.head.getOptions.getMaxNameTableSize should be(128)
+      val parsed = RDFParser.source(ByteArrayInputStream(bytes))
+        .lang(JellyLanguage.JELLY)
+        .toGraph()
+      parsed.isIsomorphicWith(graph) should be(true)
+    }
+
+    "warm up the lookups with the prefix map and the vocabulary" in {
+      val graph = GraphFactory.createDefaultGraph()
+      for i <- 0 until 100 do graph.add(triple(i))
+      val prefixMap = PrefixMapFactory.create()
+      prefixMap.add("s", "http://example.com/s/")
+      prefixMap.add("other", "http://other.org/")
+      val context = Context()
+      context.set(JellyLanguage.SYMBOL_WARM_UP_FROM_PREFIXES, true)
+      context.set(
+        JellyLanguage.SYMBOL_VOCABULARY,
+        LookupVocabulary.ofIris((0 until 7).map(i => s"http://example.com/p/$i").asJava),
+      )
+      val out = new ByteArrayOutputStream()
+      JellyGraphWriter(converterFactory, JellyFormatVariant.getDefault)
+        .write(out, graph, prefixMap, null, context)
+      val bytes = out.toByteArray
+
+      val rows = RdfStreamFrame.parseDelimitedFrom(ByteArrayInputStream(bytes))
+        .getRows.asScala.toSeq
+      rows.head.hasOptions should be(true)
+      rows.slice(1, 3).map(_.getPrefix.getValue).toSet should be(
+        Set("http://example.com/s/", "http://other.org/"),
+      )
+      rows(3).getPrefix.getValue should be("http://example.com/p/")
+      rows.slice(4, 11).map(_.getName.getValue) should be((0 until 7).map(_.toString))
+      // The output can be read without knowing the vocabulary
+      val parsed = RDFParser.source(ByteArrayInputStream(bytes))
+        .lang(JellyLanguage.JELLY)
+        .toGraph()
+      parsed.isIsomorphicWith(graph) should be(true)
+    }
+  }
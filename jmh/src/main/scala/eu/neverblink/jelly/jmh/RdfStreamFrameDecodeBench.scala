@@ -1,9 +1,12 @@
 package eu.neverblink.jelly.jmh
 
+import com.google.protobuf.CodedInputStream
 import eu.neverblink.jelly.convert.jena.JenaConverterFactory
 import eu.neverblink.jelly.core.JellyOptions
 import eu.neverblink.jelly.core.RdfHandler.{AnyStatementHandler, TripleHandler}
+import eu.neverblink.jelly.core.memory.RowBuffer
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame
+import eu.neverblink.protoc.java.runtime.ProtoMessage
 import org.apache.jena.graph.Node
 import org.openjdk.jmh.annotations.*
 import org.openjdk.jmh.infra.Blackhole
@@ -12,6 +15,7 @@ object RdfStreamFrameDecodeBench:
   @State(Scope.Benchmark)
   class BenchInput:
     var toDecode: Array[RdfStreamFrame] = _
+    var toDecodeBytes: Array[Array[Byte]] = _
 
     @Setup(Level.Trial)
     def setup(): Unit =
@@ -21,6 +25,7 @@ object RdfStreamFrameDecodeBench:
         .continually(RdfStreamFrame.parseDelimitedFrom(gzis))
         .takeWhile(_ != null)
         .toArray
+      toDecodeBytes = toDecode.map(_.toByteArray)
 
 class RdfStreamFrameDecodeBench extends CommonParams:
   import RdfStreamFrameDecodeBench.*
@@ -66,3 +71,35 @@ class RdfStreamFrameDecodeBench extends CommonParams:
     for i <- input.toDecode.indices do
       val frame = input.toDecode(i)
       frame.getRows.forEach(decoder.ingestRow(_))
+
+  @Benchmark
+  @OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+  @BenchmarkMode(Array(Mode.AverageTime))
+  def triplesDecoderFromBytes(blackhole: Blackhole, input: BenchInput): Unit =
+    val decoder = JenaConverterFactory.getInstance().triplesDecoder(
+      consumingHandler(blackhole),
+      JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+    )
+    val buffer = RowBuffer.newSingle(decoder.ingestRow(_))
+    for i <- input.toDecodeBytes.indices do
+      ProtoMessage.mergeFrom(RdfStreamFrame.newInstance().setRows(buffer), input.toDecodeBytes(i))
+      buffer.clear()
+
+  @Benchmark
+  @OutputTimeUnit(java.util.concurrent.TimeUnit.MICROSECONDS)
+  @BenchmarkMode(Array(Mode.AverageTime))
+  def triplesDecoderIngestFrame(blackhole: Blackhole, input: BenchInput): Unit =
+    val decoder = JenaConverterFactory.getInstance().triplesDecoder(
+      consumingHandler(blackhole),
+      JellyOptions.DEFAULT_SUPPORTED_OPTIONS,
+    )
+    for i <- input.toDecodeBytes.indices do
+      decoder.ingestFrame(CodedInputStream.newInstance(input.toDecodeBytes(i)))
+
+  private def consumingHandler(blackhole: Blackhole): TripleHandler[Node] =
+    new TripleHandler[Node] {
+      override def handleTriple(subject: Node, predicate: Node, `object`: Node): Unit =
+        blackhole.consume(subject)
+        blackhole.consume(predicate)
+        blackhole.consume(`object`)
+    }
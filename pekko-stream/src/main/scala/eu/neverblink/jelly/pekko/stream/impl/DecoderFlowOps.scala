@@ -1,5 +1,6 @@
 package eu.neverblink.jelly.pekko.stream.impl
 
+import eu.neverblink.jelly.core.jfr.FrameDecodedEvent
 import eu.neverblink.jelly.core.proto.v1.*
 import eu.neverblink.jelly.core.utils.{QuadMaker, TripleMaker}
 import eu.neverblink.jelly.core.{
@@ -101,9 +102,15 @@ trait DecoderFlowOps:
   ): Flow[RdfStreamFrame, Seq[TOut], NotUsed] =
     Flow[RdfStreamFrame]
       .map(frame => {
+        val event = FrameDecodedEvent()
+        event.begin()
         frame.getRows.asScala.foreach(row => {
           decoder.ingestRow(row)
         })
+        event.end()
+        if event.shouldCommit() then
+          event.set(null, frame.getRows.size, frame.getSerializedSize)
+          event.commit()
         val output = buffer.asScala.toList
         buffer.clear()
         output
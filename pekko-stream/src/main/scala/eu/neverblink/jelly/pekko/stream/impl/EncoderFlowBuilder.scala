@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.pekko.stream.impl
 
 import eu.neverblink.jelly.core.ProtoEncoder.Params
+import eu.neverblink.jelly.core.jfr.FrameEncodedEvent
 import eu.neverblink.jelly.core.memory.RowBuffer
 import eu.neverblink.jelly.core.proto.v1.*
 import eu.neverblink.jelly.core.utils.{GraphHolder, QuadExtractor, TripleExtractor}
@@ -439,16 +440,7 @@ final class EncoderFlowBuilderImpl[TNode](using
     override protected[EncoderFlowBuilderImpl] def flowInternal(
         encoder: TEncoder,
     ): Flow[IterableOnce[TTriple], RdfStreamFrame, NotUsed] =
-      groupedFlow(
-        e =>
-          encoder.handleTriple(
-            tripleExtractor.getTripleSubject(e),
-            tripleExtractor.getTriplePredicate(e),
-            tripleExtractor.getTripleObject(e),
-          ),
-        maybeLimiter,
-        encoder,
-      )
+      groupedFlow(consumeTriples(encoder)(using tripleExtractor), maybeLimiter, encoder)
 
     override protected def paramMutator(p: Params): Params =
       p.withOptions(makeOptions(opt, PhysicalStreamType.TRIPLES, lst))
@@ -496,17 +488,7 @@ final class EncoderFlowBuilderImpl[TNode](using
     override protected[EncoderFlowBuilderImpl] def flowInternal(
         encoder: TEncoder,
     ): Flow[IterableOnce[TQuad], RdfStreamFrame, NotUsed] =
-      groupedFlow(
-        e =>
-          encoder.handleQuad(
-            quadExtractor.getQuadSubject(e),
-            quadExtractor.getQuadPredicate(e),
-            quadExtractor.getQuadObject(e),
-            quadExtractor.getQuadGraph(e),
-          ),
-        maybeLimiter,
-        encoder,
-      )
+      groupedFlow(consumeQuads(encoder)(using quadExtractor), maybeLimiter, encoder)
 
     override protected def paramMutator(p: Params): Params =
       p.withOptions(makeOptions(opt, PhysicalStreamType.QUADS, lst))
@@ -526,12 +508,13 @@ final class EncoderFlowBuilderImpl[TNode](using
     override protected[EncoderFlowBuilderImpl] def flowInternal(
         encoder: TEncoder,
     ): Flow[GraphHolder[TNode, TTriple], RdfStreamFrame, NotUsed] =
+      val graphConsumer = consumeGraph(encoder)(using tripleExtractor)
       Flow[GraphHolder[TNode, TTriple]]
         // Make each graph into a 1-element "group"
         .map(Seq(_))
         .via(
           groupedFlow[GraphHolder[TNode, TTriple]](
-            consumeGraph(encoder)(using tripleExtractor),
+            _.iterator.foreach(graphConsumer),
             maybeLimiter,
             encoder,
           ),
@@ -555,7 +538,12 @@ final class EncoderFlowBuilderImpl[TNode](using
     override protected[EncoderFlowBuilderImpl] def flowInternal(
         encoder: TEncoder,
     ): Flow[IterableOnce[GraphHolder[TNode, TTriple]], RdfStreamFrame, NotUsed] =
-      groupedFlow(consumeGraph(encoder)(using tripleExtractor), maybeLimiter, encoder)
+      val graphConsumer = consumeGraph(encoder)(using tripleExtractor)
+      groupedFlow[GraphHolder[TNode, TTriple]](
+        _.iterator.foreach(graphConsumer),
+        maybeLimiter,
+        encoder,
+      )
 
     override protected def paramMutator(p: Params): Params =
       p.withOptions(makeOptions(opt, PhysicalStreamType.GRAPHS, LogicalStreamType.DATASETS))
@@ -575,22 +563,66 @@ final class EncoderFlowBuilderImpl[TNode](using
         if opt.getLogicalType == LogicalStreamType.UNSPECIFIED then lst else opt.getLogicalType,
       )
 
-  private def consumeGraph[TEncoder <: ProtoEncoder[TNode], TTriple](
+  private def consumeGraph[TTriple](
       encoder: TEncoder,
   )(using tripleExtractor: TripleExtractor[TNode, TTriple]): GraphHolder[TNode, TTriple] => Unit =
+    val triplesConsumer = consumeTriples(encoder)
     graphDeclaration => {
       encoder.handleGraphStart(graphDeclaration.name())
-      graphDeclaration.triples().asScala
-        .foreach(triple =>
-          encoder.handleTriple(
-            tripleExtractor.getTripleSubject(triple),
-            tripleExtractor.getTriplePredicate(triple),
-            tripleExtractor.getTripleObject(triple),
-          ),
-        )
+      triplesConsumer(graphDeclaration.triples().asScala)
       encoder.handleGraphEnd()
     }
 
+  /** Passes groups of triples to the encoder in batches of [[ProtoEncoder.BATCH_SIZE]], with
+    * [[ProtoEncoder.handleTriples]]. The batch arrays are reused for all groups.
+    */
+  private def consumeTriples[TTriple](
+      encoder: TEncoder,
+  )(using tripleExtractor: TripleExtractor[TNode, TTriple]): IterableOnce[TTriple] => Unit =
+    val subjects = newBatchArray()
+    val predicates = newBatchArray()
+    val objects = newBatchArray()
+    triples => {
+      val it = triples.iterator
+      while it.hasNext do
+        var count = 0
+        while count < ProtoEncoder.BATCH_SIZE && it.hasNext do
+          val triple = it.next()
+          subjects(count) = tripleExtractor.getTripleSubject(triple)
+          predicates(count) = tripleExtractor.getTriplePredicate(triple)
+          objects(count) = tripleExtractor.getTripleObject(triple)
+          count += 1
+        encoder.handleTriples(subjects, predicates, objects, count)
+    }
+
+  /** Passes groups of quads to the encoder in batches of [[ProtoEncoder.BATCH_SIZE]], with
+    * [[ProtoEncoder.handleQuads]]. The batch arrays are reused for all groups.
+    */
+  private def consumeQuads[TQuad](
+      encoder: TEncoder,
+  )(using quadExtractor: QuadExtractor[TNode, TQuad]): IterableOnce[TQuad] => Unit =
+    val subjects = newBatchArray()
+    val predicates = newBatchArray()
+    val objects = newBatchArray()
+    val graphs = newBatchArray()
+    quads => {
+      val it = quads.iterator
+      while it.hasNext do
+        var count = 0
+        while count < ProtoEncoder.BATCH_SIZE && it.hasNext do
+          val quad = it.next()
+          subjects(count) = quadExtractor.getQuadSubject(quad)
+          predicates(count) = quadExtractor.getQuadPredicate(quad)
+          objects(count) = quadExtractor.getQuadObject(quad)
+          graphs(count) = quadExtractor.getQuadGraph(quad)
+          count += 1
+        encoder.handleQuads(subjects, predicates, objects, graphs, count)
+    }
+
+  // TNode is erased, so the encoder sees a plain Object[]
+  private def newBatchArray(): Array[TNode] =
+    new Array[AnyRef](ProtoEncoder.BATCH_SIZE).asInstanceOf[Array[TNode]]
+
   private def flatFlow[TIn](
       transform: TIn => Unit,
       limiter: SizeLimiter,
@@ -603,14 +635,10 @@ final class EncoderFlowBuilderImpl[TNode](using
         buffer.getRows.asScala
       })
       .via(limiter.flow)
-      .map(rows => {
-        val frame = RdfStreamFrame.newInstance
-        rows.foreach(frame.addRows)
-        frame
-      })
+      .map(rows => makeFrame(rows, encoder, beginEvent()))
 
   private def groupedFlow[TIn](
-      transform: TIn => Unit,
+      consume: IterableOnce[TIn] => Unit,
       maybeLimiter: Option[SizeLimiter],
       encoder: TEncoder,
   ): Flow[IterableOnce[TIn], RdfStreamFrame, NotUsed] =
@@ -618,21 +646,35 @@ final class EncoderFlowBuilderImpl[TNode](using
     maybeLimiter match
       case Some(limiter) =>
         Flow[IterableOnce[TIn]].flatMapConcat(elems => {
-          elems.iterator.foreach(transform)
+          consume(elems)
           val rows = buffer.getRows.asScala.toSeq
           Source(rows)
             .via(limiter.flow)
-            .map(rows => {
-              val frame = RdfStreamFrame.newInstance
-              rows.foreach(frame.addRows)
-              frame
-            })
+            .map(rows => makeFrame(rows, encoder, beginEvent()))
         })
       case None =>
         Flow[IterableOnce[TIn]].map(elems => {
-          elems.iterator.foreach(transform)
-          val rows = buffer.getRows.asScala
-          val frame = RdfStreamFrame.newInstance
-          rows.foreach(frame.addRows)
-          frame
+          val event = beginEvent()
+          consume(elems)
+          makeFrame(buffer.getRows.asScala, encoder, event)
         })
+
+  private def beginEvent(): FrameEncodedEvent =
+    val event = FrameEncodedEvent()
+    event.begin()
+    event
+
+  /** Builds a frame from the rows and emits its [[FrameEncodedEvent]] JFR event.
+    */
+  private def makeFrame(
+      rows: Iterable[RdfStreamRow],
+      encoder: TEncoder,
+      event: FrameEncodedEvent,
+  ): RdfStreamFrame =
+    val frame = RdfStreamFrame.newInstance
+    rows.foreach(frame.addRows)
+    event.end()
+    if event.shouldCommit() then
+      event.set(encoder.getOptions.getStreamName, frame.getRows.size, frame.getSerializedSize)
+      event.commit()
+    frame
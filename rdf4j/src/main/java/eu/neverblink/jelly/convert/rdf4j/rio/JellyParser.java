@@ -7,12 +7,9 @@ import eu.neverblink.jelly.convert.rdf4j.*;
 import eu.neverblink.jelly.core.RdfHandler;
 import eu.neverblink.jelly.core.RdfProtoDeserializationError;
 import eu.neverblink.jelly.core.internal.ProtoDecoderImpl;
-import eu.neverblink.jelly.core.memory.RowBuffer;
-import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.utils.IoUtils;
-import eu.neverblink.protoc.java.runtime.MessageFactory;
-import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -118,6 +115,9 @@ public final class JellyParser extends AbstractRDFParser {
     /**
      * Read Jelly RDF data from an InputStream.
      * Automatically detects whether the input is a single frame (non-delimited) or a stream of frames (delimited).
+     * <p>
+     * If the input is a FileInputStream, the file is memory-mapped and parsed without copying it through
+     * the stream, from the current position to the end of the file.
      */
     @Override
     public void parse(InputStream in, String baseURI) throws IOException, RDFParseException, RDFHandlerException {
@@ -159,23 +159,25 @@ public final class JellyParser extends AbstractRDFParser {
         };
 
         final var decoder = new ProtoDecoderImpl.AnyStatementDecoder<>(decoderConverter, handler, options);
-        // Single row buffer -- rows are passed to the decoder immediately after being read
-        final RowBuffer buffer = RowBuffer.newSingle(decoder::ingestRow);
-        final RdfStreamFrame.Mutable reusableFrame = RdfStreamFrame.newInstance().setRows(buffer);
-        final MessageFactory<RdfStreamFrame> getReusableFrame = () -> reusableFrame;
 
         rdfHandler.startRDF();
         try {
+            if (in instanceof FileInputStream fileInput && IoUtils.isMappable(fileInput.getChannel())) {
+                // Reading from a file – memory-map it instead of copying it through the stream
+                // The rows are decoded straight from the wire format, without creating row messages
+                IoUtils.readFile(fileInput.getChannel(), decoder::ingestFrame);
+                return;
+            }
+
             final var delimitingResponse = IoUtils.autodetectDelimiting(in);
             if (delimitingResponse.isDelimited()) {
                 // Delimited Jelly file
                 // In this case, we can read multiple frames
-                readStream(delimitingResponse.newInput(), getReusableFrame, frame -> buffer.clear());
+                readStream(delimitingResponse.newInput(), decoder::ingestFrame);
             } else {
                 // Non-delimited Jelly file
                 // In this case, we can only read one frame
-                ProtoMessage.parseFrom(delimitingResponse.newInput(), getReusableFrame);
-                buffer.clear();
+                IoUtils.readFrame(delimitingResponse.newInput(), decoder::ingestFrame);
             }
         } catch (RdfProtoDeserializationError e) {
             // Rewrap exceptions
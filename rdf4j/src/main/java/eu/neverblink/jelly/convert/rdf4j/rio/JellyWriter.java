@@ -5,13 +5,20 @@ import static eu.neverblink.jelly.convert.rdf4j.rio.JellyFormat.JELLY;
 import com.google.protobuf.CodedOutputStream;
 import eu.neverblink.jelly.convert.rdf4j.Rdf4jConverterFactory;
 import eu.neverblink.jelly.core.ProtoEncoder;
+import eu.neverblink.jelly.core.RdfHandler;
+import eu.neverblink.jelly.core.jfr.FrameEncodedEvent;
+import eu.neverblink.jelly.core.jfr.FrameWrittenEvent;
 import eu.neverblink.jelly.core.memory.EncoderAllocator;
-import eu.neverblink.jelly.core.memory.ReusableRowBuffer;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
 import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.jelly.core.utils.FrameLimiter;
+import eu.neverblink.jelly.core.utils.PipelinedFrameWriter;
+import eu.neverblink.jelly.core.utils.StatementReorderer;
 import eu.neverblink.protoc.java.runtime.ProtobufUtil;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -31,7 +38,18 @@ import org.eclipse.rdf4j.rio.helpers.AbstractRDFWriter;
  * The writer will automatically set the logical stream type based on the physical stream type.
  * If no physical stream type is set, it will default to quads, because we really have no way of knowing in RDF4J.
  * If you want your stream to be really of type TRIPLES, set the PHYSICAL_TYPE setting yourself.
- *
+ * <p>
+ * If the REORDER_WINDOW setting is positive, the statements are grouped with a {@link StatementReorderer}
+ * before encoding.
+ * <p>
+ * In delimited output, a frame is written when it reaches FRAME_SIZE rows, MAX_FRAME_BYTES bytes, or
+ * MAX_FRAME_AGE_MILLIS milliseconds of age (see {@link FrameLimiter}). With an age limit, old frames are also
+ * written by a background timer, so endRDF() must be called to stop it.
+ * <p>
+ * If the ENCODER_POOL setting is set, the buffers and lookups are taken from the pool in startRDF(), and returned
+ * to it in endRDF().
+ * <p>
+ * Each frame emits the {@link FrameEncodedEvent} and {@link FrameWrittenEvent} JFR events.
  */
 public final class JellyWriter extends AbstractRDFWriter {
 
@@ -40,12 +58,25 @@ public final class JellyWriter extends AbstractRDFWriter {
     private final OutputStream outputStream;
     private final CodedOutputStream codedOutput;
     // Initialized in startRDF()
-    private ReusableRowBuffer buffer = null;
+    private RowBuffer buffer = null;
     private EncoderAllocator allocator = null;
+    // Only set if direct encoding is enabled
+    private SerializedFrameBuffer frameBuffer = null;
+    // Only set if pipelined output is enabled
+    private PipelinedFrameWriter pipeline = null;
+    // Only set if the ENCODER_POOL setting is set
+    private EncoderPool.Lease lease = null;
     private final RdfStreamFrame.Mutable reusableFrame;
 
     private RdfStreamOptions options;
     private ProtoEncoder<Value> encoder;
+    // Only set if reordering is enabled and allowed by the stream type
+    private StatementReorderer<Value> reorderer = null;
+    private final EncodingHandler encodingHandler = new EncodingHandler();
+    // Decides when to end a frame, in delimited output. Initialized in startRDF()
+    private FrameLimiter limiter = null;
+    // JFR event of the frame being encoded, begun when the previous frame was written
+    private FrameEncodedEvent encodedEvent;
 
     private int frameSize = 256;
     private boolean enableNamespaceDeclarations = true;
@@ -77,6 +108,13 @@ public final class JellyWriter extends AbstractRDFWriter {
         settings.add(JellyWriterSettings.FRAME_SIZE);
         settings.add(JellyWriterSettings.ENABLE_NAMESPACE_DECLARATIONS);
         settings.add(JellyWriterSettings.DELIMITED_OUTPUT);
+        settings.add(JellyWriterSettings.DIRECT_ENCODING);
+        settings.add(JellyWriterSettings.PIPELINED_OUTPUT);
+        settings.add(JellyWriterSettings.SELF_CONTAINED_FRAMES);
+        settings.add(JellyWriterSettings.REORDER_WINDOW);
+        settings.add(JellyWriterSettings.MAX_FRAME_BYTES);
+        settings.add(JellyWriterSettings.MAX_FRAME_AGE_MILLIS);
+        settings.add(JellyWriterSettings.ENCODER_POOL);
         return settings;
     }
 
@@ -117,43 +155,170 @@ public final class JellyWriter extends AbstractRDFWriter {
         frameSize = config.get(JellyWriterSettings.FRAME_SIZE);
         enableNamespaceDeclarations = config.get(JellyWriterSettings.ENABLE_NAMESPACE_DECLARATIONS);
         isDelimited = config.get(JellyWriterSettings.DELIMITED_OUTPUT);
-        buffer = RowBuffer.newReusableForEncoder(frameSize + 8);
-        allocator = EncoderAllocator.newArenaAllocator(frameSize + 8);
+        final var pool = config.get(JellyWriterSettings.ENCODER_POOL);
+        lease = pool != null ? pool.acquire(frameSize) : null;
+        if (isDelimited && config.get(JellyWriterSettings.PIPELINED_OUTPUT)) {
+            pipeline = new PipelinedFrameWriter(outputStream, frameSize + 8, 1, options.getStreamName());
+            buffer = pipeline.getRowBuffer();
+            allocator = pipeline.getAllocator();
+        } else if (lease != null) {
+            buffer = lease.getRowBuffer();
+            allocator = lease.getAllocator();
+        } else {
+            buffer = RowBuffer.newReusableForEncoder(frameSize + 8);
+            allocator = EncoderAllocator.newArenaAllocator(frameSize + 8);
+        }
         reusableFrame.setRows(buffer);
-        encoder = converterFactory.encoder(
-            ProtoEncoder.Params.of(options, enableNamespaceDeclarations, buffer, allocator)
+        final var params = ProtoEncoder.Params.of(
+            options,
+            enableNamespaceDeclarations,
+            buffer,
+            allocator
+        )
+            .withSelfContainedFrames(config.get(JellyWriterSettings.SELF_CONTAINED_FRAMES))
+            .withPoolLease(lease);
+        if (config.get(JellyWriterSettings.DIRECT_ENCODING)) {
+            frameBuffer = lease != null ? lease.getFrameBuffer() : new SerializedFrameBuffer();
+            encoder = converterFactory.directEncoder(params, frameBuffer);
+        } else {
+            encoder = converterFactory.encoder(params);
+        }
+        final int reorderWindow = config.get(JellyWriterSettings.REORDER_WINDOW);
+        if (reorderWindow > 0 && StatementReorderer.canReorder(logicalType)) {
+            reorderer = new StatementReorderer<>(encodingHandler, logicalType, reorderWindow);
+        } else {
+            reorderer = null;
+        }
+        limiter = new FrameLimiter(
+            frameSize,
+            config.get(JellyWriterSettings.MAX_FRAME_BYTES),
+            config.get(JellyWriterSettings.MAX_FRAME_AGE_MILLIS)
         );
+        beginFrameEvent();
+        if (isDelimited) {
+            limiter.startTimer(this::flushExpiredFrame);
+        }
     }
 
     @Override
     protected void consumeStatement(Statement st) {
         checkWritingStarted();
+        if (!limiter.isTimerStarted()) {
+            addStatement(st);
+            return;
+        }
+        limiter.lock();
+        try {
+            addStatement(st);
+        } finally {
+            limiter.unlock();
+        }
+    }
+
+    private void addStatement(Statement st) {
+        final RdfHandler.AnyStatementHandler<Value> handler = reorderer != null ? reorderer : encodingHandler;
+        limiter.statementAdded();
         if (options.getPhysicalType() == PhysicalStreamType.TRIPLES) {
-            encoder.handleTriple(st.getSubject(), st.getPredicate(), st.getObject());
+            handler.handleTriple(st.getSubject(), st.getPredicate(), st.getObject());
         } else {
-            encoder.handleQuad(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+            handler.handleQuad(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
         }
+    }
 
-        if (isDelimited && buffer.size() >= frameSize) {
+    /**
+     * Passes the statements to the encoder, writing the frame when it is full.
+     */
+    private final class EncodingHandler implements RdfHandler.AnyStatementHandler<Value> {
+
+        @Override
+        public void handleTriple(Value subject, Value predicate, Value object) {
+            encoder.handleTriple(subject, predicate, object);
+            flushIfFrameFull();
+        }
+
+        @Override
+        public void handleQuad(Value subject, Value predicate, Value object, Value graph) {
+            encoder.handleQuad(subject, predicate, object, graph);
+            flushIfFrameFull();
+        }
+    }
+
+    private void flushIfFrameFull() {
+        if (isDelimited && limiter.shouldFlush(bufferedRows(), encoder.getFrameBytes())) {
             flushBuffer();
         }
     }
 
+    /**
+     * Called by the timer of the limiter when the current frame is older than the maximum age.
+     * Writes out the frame, and flushes the output so that the consumer gets it right away.
+     */
+    private void flushExpiredFrame() {
+        if (reorderer != null) {
+            reorderer.flush();
+        }
+        if (bufferedRows() > 0) {
+            flushBuffer();
+        } else {
+            limiter.frameWritten();
+        }
+        try {
+            if (pipeline != null) {
+                // The frame is written by the pipeline's thread, which flushes the output after it
+                pipeline.flush();
+                return;
+            }
+            codedOutput.flush();
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new RDFHandlerException("Error flushing output", e);
+        }
+    }
+
     @Override
     public void endRDF() throws RDFHandlerException {
         checkWritingStarted();
+        limiter.lock();
+        try {
+            limiter.close();
+            endStream();
+        } finally {
+            if (lease != null) {
+                // The encoder must not be used after this
+                lease.close();
+            }
+            limiter.unlock();
+        }
+    }
+
+    private void endStream() {
+        if (reorderer != null) {
+            reorderer.flush();
+        }
         if (!isDelimited) {
             // Non-delimited variant – whole stream in one frame
+            commitFrameEvent();
+            final int rows = bufferedRows();
+            final var writtenEvent = new FrameWrittenEvent();
+            writtenEvent.begin();
             try {
-                reusableFrame.writeTo(codedOutput);
+                if (frameBuffer != null) {
+                    frameBuffer.writeTo(codedOutput);
+                } else {
+                    reusableFrame.writeTo(codedOutput);
+                }
             } catch (Exception e) {
                 throw new RDFHandlerException("Error writing frame", e);
             }
-        } else if (!buffer.isEmpty()) {
+            commitWrittenEvent(writtenEvent, rows);
+        } else if (bufferedRows() > 0) {
             flushBuffer();
         }
 
         try {
+            if (pipeline != null) {
+                pipeline.close();
+            }
             // !!! CodedOutputStream.flush() does not flush the underlying OutputStream,
             // so we need to do it explicitly.
             codedOutput.flush();
@@ -173,22 +338,96 @@ public final class JellyWriter extends AbstractRDFWriter {
     public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
         checkWritingStarted();
         if (enableNamespaceDeclarations) {
-            encoder.handleNamespace(prefix, valueFactory.createIRI(uri));
-            if (isDelimited && buffer.size() >= frameSize) {
-                flushBuffer();
+            limiter.lock();
+            try {
+                limiter.statementAdded();
+                if (reorderer != null) {
+                    // Keep the declaration before the statements that follow it
+                    reorderer.flush();
+                }
+                encoder.handleNamespace(prefix, valueFactory.createIRI(uri));
+                flushIfFrameFull();
+            } finally {
+                limiter.unlock();
             }
         }
     }
 
+    private int bufferedRows() {
+        return frameBuffer != null ? frameBuffer.size() : buffer.size();
+    }
+
     private void flushBuffer() {
-        reusableFrame.resetCachedSize();
+        commitFrameEvent();
+        writeFrame();
+        // With self-contained frames, the next frame starts with fresh lookups
+        encoder.newFrame();
+        limiter.frameWritten(reorderer != null && reorderer.size() > 0);
+        beginFrameEvent();
+    }
+
+    private void beginFrameEvent() {
+        encodedEvent = new FrameEncodedEvent();
+        encodedEvent.begin();
+    }
+
+    private void commitFrameEvent() {
+        encodedEvent.end();
+        if (encodedEvent.shouldCommit()) {
+            encodedEvent.set(options.getStreamName(), bufferedRows(), encoder.getFrameBytes());
+            encodedEvent.commit();
+        }
+    }
+
+    /**
+     * Commits the event of a written frame if the recording wants it. The size is taken from the encoder,
+     * which is still at the written frame, so the frame is never walked just for the event.
+     * @param writtenEvent event begun before writing the frame
+     * @param rows number of rows in the frame
+     */
+    private void commitWrittenEvent(FrameWrittenEvent writtenEvent, int rows) {
+        writtenEvent.end();
+        if (writtenEvent.shouldCommit()) {
+            writtenEvent.set(options.getStreamName(), rows, encoder.getFrameBytes());
+            writtenEvent.commit();
+        }
+    }
+
+    private void writeFrame() {
+        if (pipeline != null) {
+            // The pipeline's thread emits the event once the frame is written
+            try {
+                if (frameBuffer != null) {
+                    pipeline.submitFrame(frameBuffer);
+                } else {
+                    pipeline.submitFrame();
+                }
+            } catch (IOException e) {
+                throw new RDFHandlerException("Error writing frame", e);
+            }
+            return;
+        }
+        // The rows are counted up front, as the frame is cleared once written
+        final int rows = bufferedRows();
+        final var writtenEvent = new FrameWrittenEvent();
+        writtenEvent.begin();
         try {
-            reusableFrame.writeDelimitedTo(codedOutput);
+            if (frameBuffer != null) {
+                frameBuffer.writeDelimitedTo(codedOutput);
+            } else {
+                reusableFrame.resetCachedSize();
+                reusableFrame.writeDelimitedTo(codedOutput);
+            }
+            commitWrittenEvent(writtenEvent, rows);
         } catch (Exception e) {
             throw new RDFHandlerException("Error writing frame", e);
         } finally {
-            buffer.clear();
-            allocator.releaseAll();
+            if (frameBuffer != null) {
+                frameBuffer.clear();
+            } else {
+                buffer.clear();
+                allocator.releaseAll();
+            }
         }
     }
 }
@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.convert.rdf4j.rio;
 
 import eu.neverblink.jelly.core.internal.BaseJellyOptions;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
@@ -30,6 +31,41 @@ public final class JellyWriterSettings extends WriterConfig {
         return this;
     }
 
+    public JellyWriterSettings setDirectEncoding(boolean directEncoding) {
+        this.set(DIRECT_ENCODING, directEncoding);
+        return this;
+    }
+
+    public JellyWriterSettings setPipelinedOutput(boolean pipelined) {
+        this.set(PIPELINED_OUTPUT, pipelined);
+        return this;
+    }
+
+    public JellyWriterSettings setSelfContainedFrames(boolean selfContainedFrames) {
+        this.set(SELF_CONTAINED_FRAMES, selfContainedFrames);
+        return this;
+    }
+
+    public JellyWriterSettings setReorderWindow(int reorderWindow) {
+        this.set(REORDER_WINDOW, reorderWindow);
+        return this;
+    }
+
+    public JellyWriterSettings setMaxFrameBytes(int maxFrameBytes) {
+        this.set(MAX_FRAME_BYTES, maxFrameBytes);
+        return this;
+    }
+
+    public JellyWriterSettings setMaxFrameAgeMillis(int maxFrameAgeMillis) {
+        this.set(MAX_FRAME_AGE_MILLIS, maxFrameAgeMillis);
+        return this;
+    }
+
+    public JellyWriterSettings setEncoderPool(EncoderPool encoderPool) {
+        this.set(ENCODER_POOL, encoderPool);
+        return this;
+    }
+
     public JellyWriterSettings setJellyOptions(RdfStreamOptions options) {
         this.set(STREAM_NAME, options.getStreamName());
         this.set(PHYSICAL_TYPE, options.getPhysicalType());
@@ -67,6 +103,62 @@ public final class JellyWriterSettings extends WriterConfig {
         true
     );
 
+    public static final BooleanRioSetting DIRECT_ENCODING = new BooleanRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.directEncoding",
+        "Serialize the rows straight into a byte buffer as the statements are encoded, without building " +
+            "intermediate protobuf objects. The output is the same, but with much lower allocation rates.",
+        false
+    );
+
+    public static final BooleanRioSetting PIPELINED_OUTPUT = new BooleanRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.pipelinedOutput",
+        "Serialize and write the frames on a background thread, while the next frame is being encoded. " +
+            "This helps when the output is slow (e.g., compressed or sent over the network). " +
+            "Only applies to delimited output.",
+        false
+    );
+
+    public static final BooleanRioSetting SELF_CONTAINED_FRAMES = new BooleanRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.selfContainedFrames",
+        "Start every frame with its own options row and lookup entries, so that it can be decoded without " +
+            "reading the previous frames. This allows for seeking in, splitting, and decoding large files in " +
+            "parallel, at the cost of a larger output. Only applies to delimited output.",
+        false
+    );
+
+    public static final IntegerRioSetting REORDER_WINDOW = new IntegerRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.reorderWindow",
+        "Number of statements to buffer and write grouped by graph, subject, and predicate, so that more " +
+            "repeated terms can be left out of the output. Larger windows give smaller output, at the cost of " +
+            "latency and memory. 0 keeps the input order. Only applies to flat triple and quad streams.",
+        0
+    );
+
+    public static final IntegerRioSetting MAX_FRAME_BYTES = new IntegerRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.maxFrameBytes",
+        "Maximum serialized size of a frame in bytes. A frame is written when it reaches either this size or " +
+            "the frame size in rows, which bounds the memory used for data with very large literals. " +
+            "0 means no limit. Only applies to delimited output.",
+        0
+    );
+
+    public static final IntegerRioSetting MAX_FRAME_AGE_MILLIS = new IntegerRioSetting(
+        "eu.neverblink.jelly.convert.rdf4j.rio.maxFrameAgeMillis",
+        "Maximum time in milliseconds between encoding the first statement of a frame and writing the frame. " +
+            "The frame is also written if no more statements come in, by a background timer. This bounds the " +
+            "latency for consumers of slow, live streams. 0 means no limit. Only applies to delimited output.",
+        0
+    );
+
+    public static final ClassRioSetting<EncoderPool> ENCODER_POOL = new ClassRioSetting<>(
+        "eu.neverblink.jelly.convert.rdf4j.rio.encoderPool",
+        "Pool to take the writer's buffers and lookups from, and return them to in endRDF(). The pool can be " +
+            "shared between writers, which then reuse the structures of the previous outputs instead of " +
+            "allocating new ones. This helps when writing many small outputs, e.g., in a server. " +
+            "Null (the default) disables pooling.",
+        null
+    );
+
     public static final StringRioSetting STREAM_NAME = new StringRioSetting(
         "eu.neverblink.jelly.convert.rdf4j.rio.streamName",
         "Stream name",
@@ -1,6 +1,7 @@
 package eu.neverblink.jelly.convert.titanium;
 
 import com.apicatalog.rdf.api.RdfQuadConsumer;
+import com.google.protobuf.CodedInputStream;
 import eu.neverblink.jelly.convert.titanium.internal.TitaniumConverterFactory;
 import eu.neverblink.jelly.core.InternalApi;
 import eu.neverblink.jelly.core.ProtoDecoder;
@@ -8,6 +9,7 @@ import eu.neverblink.jelly.core.RdfHandler;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamRow;
+import java.io.IOException;
 
 @InternalApi
 final class TitaniumJellyDecoderImpl implements TitaniumJellyDecoder {
@@ -41,6 +43,14 @@ final class TitaniumJellyDecoderImpl implements TitaniumJellyDecoder {
         decoder.ingestRow(row);
     }
 
+    /**
+     * Ingests a serialized frame straight from the wire format, without creating row messages.
+     * The quads are sent to the consumer of the handler.
+     */
+    void ingestFrame(CodedInputStream input) throws IOException {
+        decoder.ingestFrame(input);
+    }
+
     @Override
     public RdfStreamOptions getSupportedOptions() {
         return supportedOptions;
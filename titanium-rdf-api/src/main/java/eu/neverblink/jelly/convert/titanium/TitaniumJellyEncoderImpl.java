@@ -10,7 +10,9 @@ import eu.neverblink.jelly.core.InternalApi;
 import eu.neverblink.jelly.core.ProtoEncoder;
 import eu.neverblink.jelly.core.RdfProtoSerializationError;
 import eu.neverblink.jelly.core.memory.EncoderAllocator;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
 import eu.neverblink.jelly.core.proto.v1.LogicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.PhysicalStreamType;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
@@ -22,8 +24,37 @@ final class TitaniumJellyEncoderImpl implements TitaniumJellyEncoder {
 
     private final EncoderAllocator allocator;
     private final RowBuffer buffer;
+    // Only set if direct encoding is enabled
+    private final SerializedFrameBuffer frameBuffer;
 
     public TitaniumJellyEncoderImpl(RdfStreamOptions options, int frameSize) {
+        this(
+            options,
+            RowBuffer.newReusableForEncoder(frameSize + 8),
+            EncoderAllocator.newArenaAllocator(frameSize + 8),
+            null,
+            false,
+            null
+        );
+    }
+
+    /**
+     * @param options stream options
+     * @param buffer row buffer for the encoder
+     * @param allocator allocator for the encoder
+     * @param frameBuffer if not null, the rows are serialized directly into this buffer, instead of
+     *                    the row buffer, which then stays empty.
+     * @param selfContainedFrames whether each frame should be decodable independently of the previous ones
+     * @param lease pool lease to take the lookups from, or null
+     */
+    TitaniumJellyEncoderImpl(
+        RdfStreamOptions options,
+        RowBuffer buffer,
+        EncoderAllocator allocator,
+        SerializedFrameBuffer frameBuffer,
+        boolean selfContainedFrames,
+        EncoderPool.Lease lease
+    ) {
         // We set the stream type to QUADS, as this is the only type supported by Titanium.
         final var supportedOptions = options
             .clone()
@@ -37,11 +68,22 @@ final class TitaniumJellyEncoderImpl implements TitaniumJellyEncoder {
             .setGeneralizedStatements(false)
             .setRdfStar(false);
 
-        this.buffer = RowBuffer.newReusableForEncoder(frameSize + 8);
-        this.allocator = EncoderAllocator.newArenaAllocator(frameSize + 8);
-        this.encoder = TitaniumConverterFactory.getInstance().encoder(
-            ProtoEncoder.Params.of(supportedOptions, false, this.buffer, this.allocator)
-        );
+        this.buffer = buffer;
+        this.allocator = allocator;
+        this.frameBuffer = frameBuffer;
+        final var params = ProtoEncoder.Params.of(
+            supportedOptions,
+            false,
+            this.buffer,
+            this.allocator
+        )
+            .withSelfContainedFrames(selfContainedFrames)
+            .withPoolLease(lease);
+        if (frameBuffer != null) {
+            this.encoder = TitaniumConverterFactory.getInstance().directEncoder(params, frameBuffer);
+        } else {
+            this.encoder = TitaniumConverterFactory.getInstance().encoder(params);
+        }
     }
 
     public TitaniumJellyEncoderImpl(RdfStreamOptions options) {
@@ -50,7 +92,7 @@ final class TitaniumJellyEncoderImpl implements TitaniumJellyEncoder {
 
     @Override
     public int getRowCount() {
-        return buffer.size();
+        return frameBuffer != null ? frameBuffer.size() : buffer.size();
     }
 
     @Override
@@ -60,8 +102,36 @@ final class TitaniumJellyEncoderImpl implements TitaniumJellyEncoder {
 
     @Override
     public void clearRows() {
+        if (frameBuffer != null) {
+            frameBuffer.clear();
+        }
         buffer.clear();
         allocator.releaseAll();
+        newFrame();
+    }
+
+    /**
+     * Notifies the encoder that the following rows go into a new frame.
+     * @see ProtoEncoder#newFrame()
+     */
+    void newFrame() {
+        encoder.newFrame();
+    }
+
+    /**
+     * Returns the serialized size of the rows in the current frame.
+     * @see ProtoEncoder#getFrameBytes()
+     */
+    long getFrameBytes() {
+        return encoder.getFrameBytes();
+    }
+
+    /**
+     * Returns the buffer with serialized rows, or null if direct encoding is disabled.
+     * @return frame buffer
+     */
+    SerializedFrameBuffer getFrameBuffer() {
+        return frameBuffer;
     }
 
     @Override
@@ -10,6 +10,7 @@ import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import eu.neverblink.jelly.core.utils.IoUtils;
 import eu.neverblink.protoc.java.runtime.MessageFactory;
 import eu.neverblink.protoc.java.runtime.ProtoMessage;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -23,7 +24,7 @@ final class TitaniumJellyReaderImpl implements TitaniumJellyReader {
     private final RdfStreamOptions supportedOptions;
 
     private final TitaniumAnyStatementHandler handler = new TitaniumAnyStatementHandler();
-    private final TitaniumJellyDecoder decoder;
+    private final TitaniumJellyDecoderImpl decoder;
 
     TitaniumJellyReaderImpl(RdfStreamOptions supportedOptions) {
         this.supportedOptions = supportedOptions;
@@ -48,22 +49,31 @@ final class TitaniumJellyReaderImpl implements TitaniumJellyReader {
     private void parseInternal(RdfQuadConsumer consumer, InputStream inputStream, boolean oneFrame) throws IOException {
         handler.assignConsumer(consumer);
 
-        final RowBuffer buffer = RowBuffer.newSingle(row -> decoder.ingestRow(consumer, row));
-        final RdfStreamFrame.Mutable reusableFrame = RdfStreamFrame.newInstance().setRows(buffer);
-        final MessageFactory<RdfStreamFrame> getReusableFrame = () -> reusableFrame;
+        if (
+            !oneFrame &&
+            inputStream instanceof FileInputStream fileInput &&
+            IoUtils.isMappable(fileInput.getChannel())
+        ) {
+            // Reading a whole file – memory-map it instead of copying it through the stream.
+            // The rows are decoded straight from the wire format, without creating row messages.
+            IoUtils.readFile(fileInput.getChannel(), decoder::ingestFrame);
+            return;
+        }
 
         var delimitingResponse = IoUtils.autodetectDelimiting(inputStream);
         if (!delimitingResponse.isDelimited()) {
             // File contains a single frame
-            var newIn = delimitingResponse.newInput();
-            ProtoMessage.parseFrom(newIn, getReusableFrame);
-            buffer.clear();
+            IoUtils.readFrame(delimitingResponse.newInput(), decoder::ingestFrame);
             return;
         }
 
         // Delimiting response is true
         if (oneFrame) {
-            // May contain multiple frames, but we only want one
+            // May contain multiple frames, but we only want one.
+            // Parse it into a message, to not read past its end in the input stream.
+            final RowBuffer buffer = RowBuffer.newSingle(row -> decoder.ingestRow(consumer, row));
+            final RdfStreamFrame.Mutable reusableFrame = RdfStreamFrame.newInstance().setRows(buffer);
+            final MessageFactory<RdfStreamFrame> getReusableFrame = () -> reusableFrame;
             var newIn = delimitingResponse.newInput();
             ProtoMessage.parseDelimitedFrom(newIn, getReusableFrame);
             buffer.clear();
@@ -71,6 +81,6 @@ final class TitaniumJellyReaderImpl implements TitaniumJellyReader {
         }
 
         // May contain multiple frames
-        readStream(delimitingResponse.newInput(), getReusableFrame, frame -> buffer.clear());
+        readStream(delimitingResponse.newInput(), decoder::ingestFrame);
     }
 }
@@ -2,6 +2,7 @@ package eu.neverblink.jelly.convert.titanium;
 
 import com.apicatalog.rdf.api.RdfQuadConsumer;
 import eu.neverblink.jelly.core.JellyOptions;
+import eu.neverblink.jelly.core.memory.EncoderPool;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
 import java.io.OutputStream;
 
@@ -25,6 +26,16 @@ public interface TitaniumJellyWriter extends RdfQuadConsumer, AutoCloseable {
         return new TitaniumJellyWriterImpl(outputStream, options, frameSize);
     }
 
+    /**
+     * Creates a builder for a TitaniumJellyWriter, for settings beyond the options and the frame size.
+     * By default, the builder uses the big preset and a frame size of 256.
+     * @param outputStream The output stream to write to.
+     * @return Builder
+     */
+    static Builder builder(OutputStream outputStream) {
+        return new Builder(outputStream);
+    }
+
     /**
      * Factory method to create a new TitaniumJellyWriter instance.
      * This method uses the default options (big preset) and a frame size of 256.
@@ -52,4 +63,120 @@ public interface TitaniumJellyWriter extends RdfQuadConsumer, AutoCloseable {
      * @return int
      */
     int getFrameSize();
+
+    /**
+     * Builder for {@link TitaniumJellyWriter}.
+     */
+    final class Builder {
+
+        final OutputStream outputStream;
+        RdfStreamOptions options = JellyOptions.BIG_STRICT;
+        int frameSize = 256;
+        boolean directEncoding = false;
+        boolean pipelined = false;
+        boolean selfContainedFrames = false;
+        int maxFrameBytes = 0;
+        int maxFrameAgeMillis = 0;
+        EncoderPool encoderPool = null;
+
+        private Builder(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        /**
+         * @param options The options to use for encoding.
+         * @return this
+         */
+        public Builder options(RdfStreamOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * @param frameSize Maximum number of rows to buffer before writing to the output stream.
+         * @return this
+         */
+        public Builder frameSize(int frameSize) {
+            this.frameSize = frameSize;
+            return this;
+        }
+
+        /**
+         * @param directEncoding If true, the rows are serialized straight into a byte buffer, without
+         *                       building intermediate protobuf objects. The output is the same, but with
+         *                       less allocation.
+         * @return this
+         */
+        public Builder directEncoding(boolean directEncoding) {
+            this.directEncoding = directEncoding;
+            return this;
+        }
+
+        /**
+         * @param pipelined If true, frames are serialized and written to the output stream by a background
+         *                  thread, while the next frame is being encoded.
+         * @return this
+         */
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+
+        /**
+         * @param selfContainedFrames If true, every frame starts with its own options row and lookup entries,
+         *                            so that it can be decoded without the previous frames. The output is
+         *                            larger.
+         * @return this
+         */
+        public Builder selfContainedFrames(boolean selfContainedFrames) {
+            this.selfContainedFrames = selfContainedFrames;
+            return this;
+        }
+
+        /**
+         * @param maxFrameBytes Maximum serialized size of a frame in bytes, or 0 for no limit. A frame is
+         *                      written when it reaches either this size or the frame size in rows.
+         * @return this
+         */
+        public Builder maxFrameBytes(int maxFrameBytes) {
+            if (maxFrameBytes < 0) {
+                throw new IllegalArgumentException("Maximum frame bytes must not be negative, got " + maxFrameBytes);
+            }
+            this.maxFrameBytes = maxFrameBytes;
+            return this;
+        }
+
+        /**
+         * @param maxFrameAgeMillis Maximum time in milliseconds between encoding the first quad of a frame and
+         *                          writing the frame, or 0 for no limit. The frame is also written if no more
+         *                          quads come in, by a background timer – close() must then be called to stop it.
+         * @return this
+         */
+        public Builder maxFrameAgeMillis(int maxFrameAgeMillis) {
+            if (maxFrameAgeMillis < 0) {
+                throw new IllegalArgumentException(
+                    "Maximum frame age must not be negative, got " + maxFrameAgeMillis
+                );
+            }
+            this.maxFrameAgeMillis = maxFrameAgeMillis;
+            return this;
+        }
+
+        /**
+         * @param encoderPool Pool to take the buffers and lookups from, and return them to in close(), or
+         *                    null to allocate new ones. The pool can be shared between writers.
+         * @return this
+         */
+        public Builder encoderPool(EncoderPool encoderPool) {
+            this.encoderPool = encoderPool;
+            return this;
+        }
+
+        /**
+         * @return TitaniumJellyWriter
+         */
+        public TitaniumJellyWriter build() {
+            return new TitaniumJellyWriterImpl(this);
+        }
+    }
 }
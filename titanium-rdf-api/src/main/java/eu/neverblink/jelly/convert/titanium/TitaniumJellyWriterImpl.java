@@ -4,12 +4,19 @@ import com.apicatalog.rdf.api.RdfConsumerException;
 import com.apicatalog.rdf.api.RdfQuadConsumer;
 import com.google.protobuf.CodedOutputStream;
 import eu.neverblink.jelly.core.InternalApi;
+import eu.neverblink.jelly.core.memory.EncoderAllocator;
+import eu.neverblink.jelly.core.memory.EncoderPool;
+import eu.neverblink.jelly.core.memory.RowBuffer;
+import eu.neverblink.jelly.core.memory.SerializedFrameBuffer;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamFrame;
 import eu.neverblink.jelly.core.proto.v1.RdfStreamOptions;
+import eu.neverblink.jelly.core.utils.FrameLimiter;
+import eu.neverblink.jelly.core.utils.PipelinedFrameWriter;
 import eu.neverblink.protoc.java.runtime.ProtobufUtil;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 @InternalApi
 final class TitaniumJellyWriterImpl implements TitaniumJellyWriter, Closeable {
@@ -18,16 +25,51 @@ final class TitaniumJellyWriterImpl implements TitaniumJellyWriter, Closeable {
     private final CodedOutputStream codedOutput;
     private final int frameSize;
 
-    private final TitaniumJellyEncoder encoder;
+    private final TitaniumJellyEncoderImpl encoder;
     private final RdfStreamFrame.Mutable reusableFrame;
+    // Only set if pipelined output is enabled
+    private final PipelinedFrameWriter pipeline;
+    // Decides when to end a frame
+    private final FrameLimiter limiter;
+    // Only set if the builder has an encoder pool
+    private final EncoderPool.Lease lease;
 
     TitaniumJellyWriterImpl(OutputStream outputStream, RdfStreamOptions options, int frameSize) {
-        this.outputStream = outputStream;
+        this(TitaniumJellyWriter.builder(outputStream).options(options).frameSize(frameSize));
+    }
+
+    TitaniumJellyWriterImpl(TitaniumJellyWriter.Builder builder) {
+        this.outputStream = builder.outputStream;
         this.codedOutput = ProtobufUtil.createCodedOutputStream(outputStream);
-        this.frameSize = frameSize;
+        this.frameSize = builder.frameSize;
 
-        this.encoder = new TitaniumJellyEncoderImpl(options, frameSize);
+        this.lease = builder.encoderPool != null ? builder.encoderPool.acquire(frameSize) : null;
+        final RowBuffer buffer;
+        final EncoderAllocator allocator;
+        if (builder.pipelined) {
+            this.pipeline = new PipelinedFrameWriter(outputStream, frameSize + 8);
+            buffer = pipeline.getRowBuffer();
+            allocator = pipeline.getAllocator();
+        } else if (lease != null) {
+            this.pipeline = null;
+            buffer = lease.getRowBuffer();
+            allocator = lease.getAllocator();
+        } else {
+            this.pipeline = null;
+            buffer = RowBuffer.newReusableForEncoder(frameSize + 8);
+            allocator = EncoderAllocator.newArenaAllocator(frameSize + 8);
+        }
+        this.encoder = new TitaniumJellyEncoderImpl(
+            builder.options,
+            buffer,
+            allocator,
+            builder.directEncoding ? (lease != null ? lease.getFrameBuffer() : new SerializedFrameBuffer()) : null,
+            builder.selfContainedFrames,
+            lease
+        );
         this.reusableFrame = RdfStreamFrame.newInstance();
+        this.limiter = new FrameLimiter(frameSize, builder.maxFrameBytes, builder.maxFrameAgeMillis);
+        limiter.startTimer(this::flushExpiredFrame);
     }
 
     @Override
@@ -55,30 +97,93 @@ final class TitaniumJellyWriterImpl implements TitaniumJellyWriter, Closeable {
         String direction,
         String graph
     ) throws RdfConsumerException {
-        encoder.quad(subject, predicate, object, datatype, language, direction, graph);
-        if (encoder.getRowCount() >= frameSize) {
-            reusableFrame.resetCachedSize();
-            reusableFrame.setRows(encoder.getRows());
-            try {
-                reusableFrame.writeDelimitedTo(codedOutput);
-            } catch (IOException e) {
-                throw new RdfConsumerException(e);
-            }
-
-            encoder.clearRows();
+        if (!limiter.isTimerStarted()) {
+            addQuad(subject, predicate, object, datatype, language, direction, graph);
+            return this;
+        }
+        try {
+            limiter.lock();
+        } catch (UncheckedIOException e) {
+            // The timer failed to write a frame
+            throw new RdfConsumerException(e.getCause());
+        }
+        try {
+            addQuad(subject, predicate, object, datatype, language, direction, graph);
+        } finally {
+            limiter.unlock();
         }
 
         return this;
     }
 
+    private void addQuad(
+        String subject,
+        String predicate,
+        String object,
+        String datatype,
+        String language,
+        String direction,
+        String graph
+    ) throws RdfConsumerException {
+        try {
+            limiter.statementAdded();
+            encoder.quad(subject, predicate, object, datatype, language, direction, graph);
+            if (limiter.shouldFlush(encoder.getRowCount(), encoder.getFrameBytes())) {
+                writeFrame();
+            }
+        } catch (IOException e) {
+            throw new RdfConsumerException(e);
+        }
+    }
+
+    /**
+     * Called by the timer of the limiter when the current frame is older than the maximum age.
+     * Writes out the frame, and flushes the output so that the consumer gets it right away.
+     */
+    private void flushExpiredFrame() {
+        try {
+            if (encoder.getRowCount() > 0) {
+                writeFrame();
+            } else {
+                limiter.frameWritten();
+            }
+            if (pipeline != null) {
+                // The frame is written by the pipeline's thread, which flushes the output after it
+                pipeline.flush();
+            } else if (outputStream != null) {
+                codedOutput.flush();
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        if (encoder.getRowCount() > 0) {
-            reusableFrame.resetCachedSize();
-            reusableFrame.setRows(encoder.getRows());
-            reusableFrame.writeDelimitedTo(codedOutput);
+        try {
+            limiter.lock();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try {
+            limiter.close();
+            closeStream();
+        } finally {
+            if (lease != null) {
+                // The encoder must not be used after this
+                lease.close();
+            }
+            limiter.unlock();
+        }
+    }
 
-            encoder.clearRows();
+    private void closeStream() throws IOException {
+        if (encoder.getRowCount() > 0) {
+            writeFrame();
+        }
+        if (pipeline != null) {
+            pipeline.close();
         }
 
         if (outputStream != null) {
@@ -89,4 +194,28 @@ final class TitaniumJellyWriterImpl implements TitaniumJellyWriter, Closeable {
             outputStream.close();
         }
     }
+
+    private void writeFrame() throws IOException {
+        final var frameBuffer = encoder.getFrameBuffer();
+        if (pipeline != null) {
+            if (frameBuffer != null) {
+                pipeline.submitFrame(frameBuffer);
+            } else {
+                pipeline.submitFrame();
+            }
+            encoder.newFrame();
+            limiter.frameWritten();
+            return;
+        }
+        if (frameBuffer != null) {
+            frameBuffer.writeDelimitedTo(codedOutput);
+        } else {
+            reusableFrame.resetCachedSize();
+            reusableFrame.setRows(encoder.getRows());
+            reusableFrame.writeDelimitedTo(codedOutput);
+        }
+
+        encoder.clearRows();
+        limiter.frameWritten();
+    }
 }